@@ -0,0 +1,96 @@
+package com.synopsys.integration.blackduck.dockerinspector.output;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+import com.synopsys.integration.bdio.BdioReader;
+import com.synopsys.integration.bdio.BdioWriter;
+import com.synopsys.integration.bdio.model.BdioBillOfMaterials;
+import com.synopsys.integration.bdio.model.BdioProject;
+import com.synopsys.integration.bdio.model.SimpleBdioDocument;
+import com.synopsys.integration.exception.IntegrationException;
+
+// Compares reading the whole BDIO into a SimpleBdioDocument and writing it back out with copying it node by node (BdioTransformer)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx512m")
+public class BdioBenchmark {
+    private static final String CODELOCATION_PREFIX = "prefix";
+
+    @Param({ "1000", "20000" })
+    public int componentCount;
+
+    private final Gson gson = new Gson();
+    private File workingDir;
+    private File rawBdioFile;
+    private File outputBdioFile;
+
+    @Setup(Level.Trial)
+    public void createBdio() throws IOException {
+        workingDir = Files.createTempDirectory("dockerinspector-jmh-bdio").toFile();
+        rawBdioFile = new File(workingDir, "raw_bdio.jsonld");
+        SyntheticData.createBdio(rawBdioFile, componentCount);
+        outputBdioFile = new File(workingDir, "output_bdio.jsonld");
+    }
+
+    @TearDown(Level.Trial)
+    public void removeBdio() throws IOException {
+        FileUtils.deleteDirectory(workingDir);
+    }
+
+    @Benchmark
+    public SimpleBdioDocument readerWriterRoundTrip() throws IOException {
+        final SimpleBdioDocument bdioDocument;
+        try (final BdioReader bdioReader = new BdioReader(gson, Files.newBufferedReader(rawBdioFile.toPath(), StandardCharsets.UTF_8))) {
+            bdioDocument = bdioReader.readSimpleBdioDocument();
+        }
+        bdioDocument.getBillOfMaterials().spdxName = String.format("%s_%s", CODELOCATION_PREFIX, bdioDocument.getBillOfMaterials().spdxName);
+        try (final BdioWriter bdioWriter = new BdioWriter(gson, new FileOutputStream(outputBdioFile))) {
+            bdioWriter.writeSimpleBdioDocument(bdioDocument);
+        }
+        return bdioDocument;
+    }
+
+    @Benchmark
+    public BdioHeader streamingTransform() throws IOException, IntegrationException {
+        final BdioAdjuster bdioAdjuster = new BdioAdjuster() {
+            @Override
+            public void adjustBillOfMaterials(final BdioBillOfMaterials billOfMaterials) {
+                billOfMaterials.spdxName = String.format("%s_%s", CODELOCATION_PREFIX, billOfMaterials.spdxName);
+            }
+
+            @Override
+            public void adjustProject(final BdioProject project) {
+            }
+        };
+        try (final Reader bdioReader = Files.newBufferedReader(rawBdioFile.toPath(), StandardCharsets.UTF_8);
+            final Writer bdioWriter = Files.newBufferedWriter(outputBdioFile.toPath(), StandardCharsets.UTF_8)) {
+            return new BdioTransformer(gson).transform(bdioReader, bdioWriter, bdioAdjuster);
+        }
+    }
+}
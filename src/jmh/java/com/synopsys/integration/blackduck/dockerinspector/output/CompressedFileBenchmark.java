@@ -0,0 +1,74 @@
+package com.synopsys.integration.blackduck.dockerinspector.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompressedFileBenchmark {
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+
+    @Param({ "64" })
+    public int sizeMb;
+
+    // 0: one thread per available processor
+    @Param({ "1", "0" })
+    public int compressionThreads;
+
+    private File workingDir;
+    private File tarFile;
+    private File tarGzFile;
+    private File outputFile;
+
+    @Setup(Level.Trial)
+    public void createTarballs() throws IOException {
+        workingDir = Files.createTempDirectory("dockerinspector-jmh-compression").toFile();
+        tarFile = new File(workingDir, "synthetic.tar");
+        SyntheticData.createTarball(tarFile, sizeMb * BYTES_PER_MEGABYTE, false);
+        tarGzFile = new File(workingDir, "synthetic.tar.gz");
+        CompressedFile.gZipFile(tarFile, tarGzFile);
+        outputFile = new File(workingDir, "output");
+    }
+
+    @TearDown(Level.Iteration)
+    public void removeOutput() throws IOException {
+        FileUtils.deleteQuietly(outputFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void removeTarballs() throws IOException {
+        FileUtils.deleteDirectory(workingDir);
+    }
+
+    @Benchmark
+    public void gZipFile() throws IOException {
+        CompressedFile.gZipFile(tarFile, outputFile, compressionThreads, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    @Benchmark
+    public void gunZipFile() throws IOException {
+        CompressedFile.gunZipFile(tarGzFile, outputFile);
+    }
+}
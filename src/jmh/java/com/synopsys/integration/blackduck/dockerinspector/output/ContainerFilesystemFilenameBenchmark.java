@@ -0,0 +1,58 @@
+package com.synopsys.integration.blackduck.dockerinspector.output;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContainerFilesystemFilenameBenchmark {
+
+    @Param({ "", "sha256:b6e3ae1b3f1ab0b2c1a5e2cb0b7a5cf0c9f3c5f5d43c8bf96b7d01cc3d8b6bfb" })
+    public String platformTopLayerId;
+
+    private ContainerFilesystemFilename containerFilesystemFilename;
+
+    @Setup
+    public void setUp() {
+        final Config config = new Config() {
+            @Override
+            public String getDockerPlatformTopLayerId() {
+                return platformTopLayerId;
+            }
+
+            @Override
+            public String getDockerTar() {
+                return "/tmp/images/registry.example.com_team_app_1.2.3.tar";
+            }
+        };
+        containerFilesystemFilename = new ContainerFilesystemFilename();
+        containerFilesystemFilename.setConfig(config);
+    }
+
+    @Benchmark
+    public String fromRepoTag() {
+        return containerFilesystemFilename.deriveContainerFilesystemFilename("registry.example.com/team/app", "1.2.3");
+    }
+
+    @Benchmark
+    public String fromTarfile() {
+        return containerFilesystemFilename.deriveContainerFilesystemFilename(null, null);
+    }
+}
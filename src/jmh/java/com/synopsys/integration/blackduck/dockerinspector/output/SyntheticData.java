@@ -0,0 +1,83 @@
+package com.synopsys.integration.blackduck.dockerinspector.output;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+
+// Generates reproducible benchmark inputs, so that no Docker daemon (or saved image) is needed
+public class SyntheticData {
+    private static final int MIN_FILE_SIZE = 4 * 1024;
+    private static final int MAX_FILE_SIZE = 1024 * 1024;
+    private static final int FILES_PER_DIR = 50;
+    // Text-like content compresses roughly as well as typical image contents do
+    private static final String CONTENT_ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789 \n/._-";
+
+    private SyntheticData() {
+    }
+
+    // A container filesystem style tarball: everything under a single top level dir
+    public static void createTarball(final File tarFile, final long sizeBytes, final boolean gzip) throws IOException {
+        final Random random = new Random(sizeBytes);
+        final byte[] buffer = new byte[MAX_FILE_SIZE];
+        try (final OutputStream fileOutputStream = new BufferedOutputStream(new FileOutputStream(tarFile));
+            final TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(gzip ? new GZIPOutputStream(fileOutputStream) : fileOutputStream)) {
+            tarOutputStream.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            long bytesWritten = 0;
+            int fileIndex = 0;
+            while (bytesWritten < sizeBytes) {
+                final String dirName = String.format("containerfilesystem/usr/lib/dir%d/", fileIndex / FILES_PER_DIR);
+                if (fileIndex % FILES_PER_DIR == 0) {
+                    tarOutputStream.putArchiveEntry(new TarArchiveEntry(dirName));
+                    tarOutputStream.closeArchiveEntry();
+                }
+                final int fileSize = (int) Math.min(sizeBytes - bytesWritten, MIN_FILE_SIZE + random.nextInt(MAX_FILE_SIZE - MIN_FILE_SIZE));
+                for (int i = 0; i < fileSize; i++) {
+                    buffer[i] = (byte) CONTENT_ALPHABET.charAt(random.nextInt(CONTENT_ALPHABET.length()));
+                }
+                final TarArchiveEntry fileEntry = new TarArchiveEntry(String.format("%sfile%d.so", dirName, fileIndex));
+                fileEntry.setSize(fileSize);
+                tarOutputStream.putArchiveEntry(fileEntry);
+                tarOutputStream.write(buffer, 0, fileSize);
+                tarOutputStream.closeArchiveEntry();
+                bytesWritten += fileSize;
+                fileIndex++;
+            }
+            tarOutputStream.finish();
+        }
+    }
+
+    // BDIO as returned by the image inspector service: BillOfMaterials, Project, then one node per component
+    public static void createBdio(final File bdioFile, final int componentCount) throws IOException {
+        try (final Writer writer = Files.newBufferedWriter(bdioFile.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("[\n");
+            writer.write("{\"specVersion\": \"1.1.0\", \"spdx:name\": \"synthetic_image_1.0_DPKG\", \"@id\": \"uuid:0ed0503e-5646-4757-8666-c2708bba677f\", \"@type\": \"BillOfMaterials\", \"relationship\": []},\n");
+            writer.write("{\"name\": \"synthetic_image\", \"revision\": \"1.0\", \"@id\": \"http:ubuntu/synthetic_image/1.0\", \"@type\": \"Project\", ");
+            writer.write("\"externalIdentifier\": {\"externalSystemTypeId\": \"ubuntu\", \"externalId\": \"synthetic_image/1.0\", ");
+            writer.write("\"externalIdMetaData\": {\"forge\": {\"name\": \"ubuntu\", \"separator\": \"/\"}, \"name\": \"synthetic_image\", \"version\": \"1.0\"}}, \"relationship\": [");
+            for (int i = 0; i < componentCount; i++) {
+                writer.write(String.format("%s{\"related\": \"%s\", \"relationshipType\": \"DYNAMIC_LINK\"}", i == 0 ? "" : ", ", componentId(i)));
+            }
+            writer.write("]}");
+            for (int i = 0; i < componentCount; i++) {
+                writer.write(String.format(",\n{\"name\": \"package%d\", \"revision\": \"1.%d-1\", \"@id\": \"%s\", \"@type\": \"Component\", ", i, i, componentId(i)));
+                writer.write(String.format("\"externalIdentifier\": {\"externalSystemTypeId\": \"ubuntu\", \"externalId\": \"package%d/1.%d-1/amd64\", ", i, i));
+                writer.write(String.format("\"externalIdMetaData\": {\"forge\": {\"name\": \"ubuntu\", \"separator\": \"/\"}, \"name\": \"package%d\", \"version\": \"1.%d-1\", \"architecture\": \"amd64\"}}, \"relationship\": []}", i, i));
+            }
+            writer.write("\n]\n");
+        }
+    }
+
+    private static String componentId(final int componentIndex) {
+        return String.format("http:ubuntu/package%d/1_%d_1/amd64", componentIndex, componentIndex);
+    }
+}
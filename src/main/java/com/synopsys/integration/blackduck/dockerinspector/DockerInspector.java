@@ -42,19 +42,24 @@ import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.context.annotation.ComponentScan;
 
 import com.google.gson.Gson;
+import com.synopsys.integration.blackduck.dockerinspector.batch.BatchInspector;
+import com.synopsys.integration.blackduck.dockerinspector.blackduckclient.BdioUploadQueue;
 import com.synopsys.integration.blackduck.dockerinspector.blackduckclient.BlackDuckClient;
 import com.synopsys.integration.blackduck.dockerinspector.config.Config;
 import com.synopsys.integration.blackduck.dockerinspector.config.DockerInspectorSystemProperties;
 import com.synopsys.integration.blackduck.dockerinspector.config.ProgramPaths;
+import com.synopsys.integration.blackduck.dockerinspector.daemon.InspectorDaemon;
 import com.synopsys.integration.blackduck.dockerinspector.dockerclient.DockerClientManager;
 import com.synopsys.integration.blackduck.dockerinspector.exception.HelpGenerationException;
 import com.synopsys.integration.blackduck.dockerinspector.help.HelpWriter;
 import com.synopsys.integration.blackduck.dockerinspector.httpclient.HttpClientInspector;
+import com.synopsys.integration.blackduck.dockerinspector.metrics.MetricsExporter;
 import com.synopsys.integration.blackduck.dockerinspector.output.Output;
 import com.synopsys.integration.blackduck.dockerinspector.output.Result;
 import com.synopsys.integration.blackduck.dockerinspector.output.ResultFile;
 import com.synopsys.integration.blackduck.dockerinspector.programarguments.ArgumentParser;
 import com.synopsys.integration.blackduck.dockerinspector.programversion.ProgramVersion;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimer;
 import com.synopsys.integration.blackduck.imageinspector.api.name.ImageNameResolver;
 import com.synopsys.integration.exception.IntegrationException;
 
@@ -87,6 +92,12 @@ public class DockerInspector {
     @Autowired
     private HttpClientInspector inspector;
 
+    @Autowired
+    private BatchInspector batchInspector;
+
+    @Autowired
+    private InspectorDaemon inspectorDaemon;
+
     @Autowired
     private HelpWriter helpWriter;
 
@@ -96,6 +107,15 @@ public class DockerInspector {
     @Autowired
     private DockerInspectorSystemProperties dockerInspectorSystemProperties;
 
+    @Autowired
+    private PhaseTimer phaseTimer;
+
+    @Autowired
+    private MetricsExporter metricsExporter;
+
+    @Autowired
+    private BdioUploadQueue bdioUploadQueue;
+
     public static void main(String[] args) {
         SpringApplicationBuilder appBuilder = new SpringApplicationBuilder(DockerInspector.class);
         appBuilder.logStartupInfo(false);
@@ -111,7 +131,17 @@ public class DockerInspector {
             if (!initAndValidate(config)) {
                 System.exit(0);
             }
-            result = inspector.getBdio();
+            if (config.isMultiImageMode()) {
+                metricsExporter.start();
+            }
+            if (config.isDaemonMode()) {
+                result = inspectorDaemon.run();
+            } else if (config.isMultiImageMode()) {
+                result = batchInspector.inspectImages();
+            } else {
+                phaseTimer.startTimings();
+                result = inspector.getBdio();
+            }
         } catch (HelpGenerationException helpGenerationException) {
             String msg = String.format("Error generating help: %s", helpGenerationException.getMessage());
             logger.error(msg);
@@ -122,6 +152,16 @@ public class DockerInspector {
             logger.error(msg);
             logStackTraceIfDebug(e);
             result = Result.createResultFailure(msg);
+        } finally {
+            bdioUploadQueue.drain();
+            blackDuckClient.awaitPhoneHome();
+            metricsExporter.stop();
+        }
+        if (!config.isMultiImageMode()) {
+            result.setTimings(phaseTimer.getTimings().toMap());
+        }
+        if (!phaseTimer.getRunTimings().isEmpty()) {
+            result.setRunTimings(phaseTimer.getRunTimings().toMap());
         }
         File resultsFile = new File(output.getFinalOutputDir(), programPaths.getDockerInspectorResultsFilename());
         resultFile.write(new Gson(), resultsFile, result);
@@ -178,19 +218,23 @@ public class DockerInspector {
         logger.debug(String.format("running from dir: %s", System.getProperty("user.dir")));
         logger.trace(String.format("dockerImageTag: %s", config.getDockerImageTag()));
         logger.trace(String.format("Black Duck project: %s, version: %s;", config.getBlackDuckProjectName(), config.getBlackDuckProjectVersion()));
+        // Phone home and the Black Duck connection test run in the background while the image is pulled and inspected;
+        // the connection test result is checked before the first BDIO upload
         if (config.isPhoneHome() && !config.isOfflineMode()) {
             logger.debug("PhoneHome enabled");
-            try {
-                blackDuckClient.phoneHome(deriveDockerEngineVersion(config));
-            } catch (Exception e) {
-                logger.warn(String.format("Unable to phone home: %s", e.getMessage()));
-            }
+            blackDuckClient.startPhoneHome(() -> deriveDockerEngineVersion(config));
+        }
+        if (config.isDaemonMode()) {
+            logger.info(String.format("Starting daemon on port %d", config.getDaemonPort()));
+        } else if (config.isMultiImageMode()) {
+            logger.info(String.format("Inspecting the images listed in %s", config.getDockerImageList()));
+        } else {
+            initImageName();
+            logger.info(String.format("Inspecting image:tag %s:%s (platform: %s)",
+                config.getDockerImageRepo(), config.getDockerImageTag(),
+                Optional.ofNullable(config.getDockerImagePlatform()).orElse("<unspecified>")));
         }
-        initImageName();
-        logger.info(String.format("Inspecting image:tag %s:%s (platform: %s)",
-            config.getDockerImageRepo(), config.getDockerImageTag(),
-            Optional.ofNullable(config.getDockerImagePlatform()).orElse("<unspecified>")));
-        blackDuckClient.testBlackDuckConnection();
+        blackDuckClient.startConnectionTest();
         return true;
     }
 
@@ -0,0 +1,207 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang.exception.ExceptionUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.google.gson.Gson;
+import com.synopsys.integration.blackduck.dockerinspector.blackduckclient.BdioUploadQueue;
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.blackduck.dockerinspector.config.ProgramPaths;
+import com.synopsys.integration.blackduck.dockerinspector.httpclient.HttpClientInspector;
+import com.synopsys.integration.blackduck.dockerinspector.metrics.InspectorMetrics;
+import com.synopsys.integration.blackduck.dockerinspector.output.BatchResults;
+import com.synopsys.integration.blackduck.dockerinspector.output.BatchResults.BatchImageResult;
+import com.synopsys.integration.blackduck.dockerinspector.output.Output;
+import com.synopsys.integration.blackduck.dockerinspector.output.Result;
+import com.synopsys.integration.blackduck.dockerinspector.output.ResultFile;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimer;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimings;
+import com.synopsys.integration.blackduck.imageinspector.api.name.ImageNameResolver;
+import com.synopsys.integration.exception.IntegrationException;
+
+/*
+ * Inspects a list of images in a single run, so JVM/Spring startup, the docker client,
+ * and the image inspector services are shared by all of them.
+ */
+@Component
+public class BatchInspector {
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private Config config;
+
+    @Autowired
+    private ProgramPaths programPaths;
+
+    @Autowired
+    private HttpClientInspector inspector;
+
+    @Autowired
+    private ImageListReader imageListReader;
+
+    @Autowired
+    private Output output;
+
+    @Autowired
+    private ResultFile resultFile;
+
+    @Autowired
+    private Gson gson;
+
+    @Autowired
+    private PhaseTimer phaseTimer;
+
+    @Autowired
+    private InspectorMetrics inspectorMetrics;
+
+    @Autowired
+    private BdioUploadQueue bdioUploadQueue;
+
+    public Result inspectImages() throws IntegrationException {
+        List<String> images;
+        try {
+            images = imageListReader.read(config.getDockerImageList());
+        } catch (IOException e) {
+            throw new IntegrationException(String.format("Error reading image list %s: %s", config.getDockerImageList(), e.getMessage()), e);
+        }
+        int threadCount = Math.max(1, Math.min(config.getBatchThreadCount(), images.size()));
+        logger.info(String.format("Inspecting %d images using %d threads", images.size(), threadCount));
+        BatchResults batchResults = new BatchResults();
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        try {
+            // A thread moves on to the next image as soon as it has inspected one; the image's BDIO uploads in the background
+            List<Future<CompletableFuture<BatchImageResult>>> futureResults = new ArrayList<>(images.size());
+            for (String image : images) {
+                futureResults.add(executorService.submit(() -> startImageInspection(image)));
+            }
+            // Collect in list order so the summary order doesn't depend on which image finished first
+            for (int i = 0; i < images.size(); i++) {
+                batchResults.add(getResult(images.get(i), futureResults.get(i)));
+            }
+        } finally {
+            executorService.shutdownNow();
+            bdioUploadQueue.drain();
+            inspector.cleanupAfterMultipleImages();
+        }
+        File batchResultsFile = new File(output.getFinalOutputDir(), programPaths.getDockerInspectorBatchResultsFilename());
+        resultFile.write(gson, batchResultsFile, batchResults);
+        String summary = String.format("Inspected %d images: %d succeeded, %d failed. Per-image results: %s", batchResults.getImageCount(), batchResults.getSucceededCount(), batchResults.getFailedCount(),
+            batchResultsFile.getAbsolutePath());
+        logger.info(summary);
+        return Result.createResultMultipleImages(batchResults.getFailedCount() == 0, summary);
+    }
+
+    private BatchImageResult getResult(String image, Future<CompletableFuture<BatchImageResult>> futureResult) throws IntegrationException {
+        try {
+            return futureResult.get().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IntegrationException(String.format("Interrupted while inspecting %s", image), e);
+        } catch (ExecutionException e) {
+            Result result = Result.createResultFailure(String.format("Error inspecting image %s: %s", image, e.getCause().getMessage()));
+            return new BatchImageResult(image, deriveImageOutputDir(image).getAbsolutePath(), result);
+        }
+    }
+
+    // Inspects one image, writing its output and results.json to its own subdir of the output dir
+    public BatchImageResult inspectImage(String image) throws InterruptedException {
+        try {
+            CompletableFuture<BatchImageResult> inspection = startImageInspection(image);
+            // The caller is waiting for this image, so its upload shouldn't wait for a batch to fill
+            bdioUploadQueue.uploadBatch();
+            return inspection.get();
+        } catch (ExecutionException e) {
+            // Not expected: failures are reported in the image's result
+            Result result = Result.createResultFailure(String.format("Error inspecting image %s: %s", image, e.getCause().getMessage()));
+            return new BatchImageResult(image, deriveImageOutputDir(image).getAbsolutePath(), result);
+        }
+    }
+
+    // Inspects one image; the returned future completes (after its BDIO is uploaded) with its result, once its results.json has been written
+    private CompletableFuture<BatchImageResult> startImageInspection(String image) throws InterruptedException {
+        File imageOutputDir = deriveImageOutputDir(image);
+        PhaseTimings phaseTimings = phaseTimer.startTimings();
+        CompletableFuture<Result> inspection;
+        try {
+            ImageNameResolver resolver = new ImageNameResolver(image);
+            Optional<String> imageRepo = resolver.getNewImageRepo();
+            if (!imageRepo.isPresent()) {
+                throw new IntegrationException(String.format("Unable to parse image name %s", image));
+            }
+            String imageTag = resolver.getNewImageTag().orElse("latest");
+            logger.info(String.format("Inspecting image:tag %s:%s", imageRepo.get(), imageTag));
+            inspection = inspector.getBdio(imageRepo.get(), imageTag, imageOutputDir);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            String msg = String.format("Error inspecting image %s: %s", image, e.getMessage());
+            logger.error(msg);
+            logger.debug(String.format("Stack trace: %s", ExceptionUtils.getStackTrace(e)));
+            inspection = CompletableFuture.completedFuture(Result.createResultFailure(msg));
+        }
+        return inspection.handle((inspectionResult, uploadFailure) -> {
+            if (uploadFailure == null) {
+                return finishImageInspection(image, imageOutputDir, phaseTimings, inspectionResult);
+            }
+            String msg = String.format("Error uploading BDIO for image %s: %s", image, bdioUploadQueue.deriveUploadException(uploadFailure).getMessage());
+            logger.error(msg);
+            return finishImageInspection(image, imageOutputDir, phaseTimings, Result.createResultFailure(msg));
+        });
+    }
+
+    private BatchImageResult finishImageInspection(String image, File imageOutputDir, PhaseTimings phaseTimings, Result result) {
+        result.setTimings(phaseTimings.toMap());
+        inspectorMetrics.recordImageInspected(result);
+        resultFile.write(gson, new File(imageOutputDir, programPaths.getDockerInspectorResultsFilename()), result);
+        return new BatchImageResult(image, imageOutputDir.getAbsolutePath(), result);
+    }
+
+    private File deriveImageOutputDir(String image) {
+        return new File(output.getFinalOutputDir(), deriveImageOutputDirName(image));
+    }
+
+    private String deriveImageOutputDirName(String image) {
+        String dirName = image.replaceAll("[^A-Za-z0-9._-]", "_");
+        if (StringUtils.isBlank(dirName)) {
+            return "image";
+        }
+        return dirName;
+    }
+}
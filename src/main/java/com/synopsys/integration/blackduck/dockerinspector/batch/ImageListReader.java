@@ -0,0 +1,67 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.batch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.stereotype.Component;
+
+@Component
+public class ImageListReader {
+    public static final String STDIN_PATH = "-";
+    private static final String COMMENT_PREFIX = "#";
+
+    public List<String> read(String imageListPath) throws IOException {
+        if (STDIN_PATH.equals(imageListPath)) {
+            return read(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        }
+        try (InputStream imageListStream = new FileInputStream(new File(imageListPath))) {
+            return read(new InputStreamReader(imageListStream, StandardCharsets.UTF_8));
+        }
+    }
+
+    public List<String> read(Reader imageListReader) throws IOException {
+        // Duplicates would write to the same per-image output dir, so each image is inspected once
+        Set<String> images = new LinkedHashSet<>();
+        BufferedReader bufferedReader = new BufferedReader(imageListReader);
+        String line;
+        while ((line = bufferedReader.readLine()) != null) {
+            String image = line.trim();
+            if (!image.isEmpty() && !image.startsWith(COMMENT_PREFIX)) {
+                images.add(image);
+            }
+        }
+        return new ArrayList<>(images);
+    }
+}
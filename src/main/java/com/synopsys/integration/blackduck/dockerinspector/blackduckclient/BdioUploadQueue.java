@@ -0,0 +1,303 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.blackduckclient;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.synopsys.integration.blackduck.codelocation.bdioupload.UploadTarget;
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.blackduck.dockerinspector.timing.Phase;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimer;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimings;
+import com.synopsys.integration.blackduck.dockerinspector.timing.RunningPhase;
+import com.synopsys.integration.exception.IntegrationException;
+import com.synopsys.integration.util.NameVersion;
+
+/*
+ * Uploads BDIO to Black Duck on a small pool of background threads, retrying failed uploads with exponential backoff.
+ * Queued BDIO files are collected into upload batches of up to upload.bdio.batch.size files; a batch that hasn't filled
+ * within upload.bdio.batch.max.delay.seconds is uploaded as is.
+ * The queue is bounded: when it's full, submit() waits, so inspection can't run arbitrarily far ahead of uploading.
+ */
+@Component
+public class BdioUploadQueue {
+    private static final long INITIAL_RETRY_PAUSE_MILLISECONDS = 1000L;
+    private static final long MAX_RETRY_PAUSE_MILLISECONDS = 30000L;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final AtomicInteger uploaderThreadCount = new AtomicInteger(0);
+    private final List<QueuedUpload> unbatchedUploads = new ArrayList<>();
+    private ScheduledThreadPoolExecutor uploadExecutor;
+    private ScheduledFuture<?> scheduledBatchUpload;
+    private Semaphore queuePermits;
+
+    @Autowired
+    private Config config;
+
+    @Autowired
+    private BlackDuckClient blackDuckClient;
+
+    @Autowired
+    private PhaseTimer phaseTimer;
+
+    // The returned future completes when the upload succeeds, or fails (with the last upload error) when it has run out of retries
+    public CompletableFuture<Void> submit(File bdioFile, String codeLocationName, NameVersion projectAndVersion) throws IntegrationException, InterruptedException {
+        // Fail (before queueing anything) if the connection test started at startup failed
+        blackDuckClient.awaitConnectionTest();
+        Semaphore permits = getQueuePermits();
+        permits.acquire();
+        // The upload is timed as part of the submitting thread's (the image's) inspection
+        QueuedUpload queuedUpload = new QueuedUpload(UploadTarget.createDefault(projectAndVersion, codeLocationName, bdioFile), phaseTimer.getTimings());
+        try {
+            logger.debug(String.format("Queueing upload of %s", bdioFile.getName()));
+            addToBatch(queuedUpload);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        return queuedUpload.getUploaded();
+    }
+
+    // Waits for the given upload (starting it without waiting for its batch to fill); for callers that need the upload to be finished before they continue
+    public void awaitUpload(CompletableFuture<Void> upload) throws IntegrationException, InterruptedException {
+        uploadBatch();
+        try {
+            upload.get();
+        } catch (ExecutionException e) {
+            throw deriveUploadException(e);
+        }
+    }
+
+    // Starts uploading the queued BDIO files that haven't been uploaded yet, without waiting for their batch to fill
+    public synchronized void uploadBatch() {
+        if (scheduledBatchUpload != null) {
+            scheduledBatchUpload.cancel(false);
+            scheduledBatchUpload = null;
+        }
+        if (unbatchedUploads.isEmpty()) {
+            return;
+        }
+        List<QueuedUpload> batch = new ArrayList<>(unbatchedUploads);
+        unbatchedUploads.clear();
+        getUploadExecutor().execute(() -> upload(batch));
+    }
+
+    // The IntegrationException behind the exception with which an upload's future completed
+    public IntegrationException deriveUploadException(Throwable uploadFailure) {
+        Throwable cause = uploadFailure;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && (cause.getCause() != null)) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof IntegrationException) {
+            return (IntegrationException) cause;
+        }
+        return new IntegrationException(String.format("Error uploading BDIO: %s", cause.getMessage()), cause);
+    }
+
+    // Uploads any partial batch, then waits for all queued uploads to finish; no uploads can be submitted afterward
+    @PreDestroy
+    public void drain() {
+        ScheduledThreadPoolExecutor executorToDrain;
+        synchronized (this) {
+            if (uploadExecutor == null) {
+                return;
+            }
+            uploadBatch();
+            executorToDrain = uploadExecutor;
+            executorToDrain.shutdown();
+        }
+        // Wait without holding the lock, which a scheduled batch upload that's already running may need
+        logger.debug("Waiting for queued BDIO uploads to finish");
+        try {
+            while (!executorToDrain.awaitTermination(MAX_RETRY_PAUSE_MILLISECONDS, TimeUnit.MILLISECONDS)) {
+                logger.info("Waiting for queued BDIO uploads to finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while waiting for queued BDIO uploads to finish; abandoning them");
+            executorToDrain.shutdownNow();
+        }
+    }
+
+    private synchronized void addToBatch(QueuedUpload queuedUpload) {
+        // Results within a batch are reported by code location name, so a batch can't contain the same one twice
+        String codeLocationName = queuedUpload.getUploadTarget().getCodeLocationName();
+        if (unbatchedUploads.stream().anyMatch(unbatched -> unbatched.getUploadTarget().getCodeLocationName().equals(codeLocationName))) {
+            uploadBatch();
+        }
+        unbatchedUploads.add(queuedUpload);
+        if (unbatchedUploads.size() >= getBatchSize()) {
+            uploadBatch();
+        } else if (scheduledBatchUpload == null) {
+            scheduledBatchUpload = getUploadExecutor().schedule(this::uploadBatch, Math.max(0, config.getUploadBdioBatchMaxDelaySeconds()), TimeUnit.SECONDS);
+        }
+    }
+
+    // Uploads the batch, retrying (as a smaller batch) the uploads that failed, and completes each upload's future
+    private void upload(List<QueuedUpload> batch) {
+        int maxRetries = Math.max(0, config.getUploadBdioRetries());
+        long pauseMilliseconds = INITIAL_RETRY_PAUSE_MILLISECONDS;
+        List<QueuedUpload> uploadsToAttempt = batch;
+        for (int retryCount = 0; !uploadsToAttempt.isEmpty(); retryCount++) {
+            if (retryCount > 0) {
+                try {
+                    Thread.sleep(pauseMilliseconds);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    uploadsToAttempt.forEach(queuedUpload -> queuedUpload.fail(new IntegrationException(String.format("Interrupted while uploading %s", queuedUpload.getFileName()), e)));
+                    return;
+                }
+                pauseMilliseconds = Math.min(pauseMilliseconds * 2, MAX_RETRY_PAUSE_MILLISECONDS);
+            }
+            boolean retriesRemain = retryCount < maxRetries;
+            uploadsToAttempt = attemptUpload(uploadsToAttempt, retriesRemain);
+        }
+    }
+
+    // Returns the uploads that failed and should be retried
+    private List<QueuedUpload> attemptUpload(List<QueuedUpload> uploads, boolean retriesRemain) {
+        List<RunningPhase> uploadPhases = uploads.stream()
+                                              .map(QueuedUpload::startUploadPhase)
+                                              .collect(Collectors.toList());
+        Map<String, String> uploadErrorsByCodeLocationName = null;
+        IntegrationException batchUploadException = null;
+        try {
+            uploadErrorsByCodeLocationName = blackDuckClient.uploadBdio(uploads.stream()
+                                                                            .map(QueuedUpload::getUploadTarget)
+                                                                            .collect(Collectors.toList()));
+        } catch (IntegrationException e) {
+            batchUploadException = e;
+        } catch (RuntimeException e) {
+            batchUploadException = new IntegrationException(String.format("Error uploading BDIO: %s", e.getMessage()), e);
+        }
+        List<QueuedUpload> uploadsToRetry = new ArrayList<>();
+        for (int i = 0; i < uploads.size(); i++) {
+            QueuedUpload queuedUpload = uploads.get(i);
+            RunningPhase uploadPhase = uploadPhases.get(i);
+            IntegrationException uploadException = batchUploadException;
+            if (uploadException == null && uploadErrorsByCodeLocationName.containsKey(queuedUpload.getUploadTarget().getCodeLocationName())) {
+                uploadException = new IntegrationException(uploadErrorsByCodeLocationName.get(queuedUpload.getUploadTarget().getCodeLocationName()));
+            }
+            if (uploadException == null) {
+                uploadPhase.close();
+                queuedUpload.succeed();
+            } else if (retriesRemain) {
+                logger.warn(String.format("Upload of %s failed (%s); retrying", queuedUpload.getFileName(), uploadException.getMessage()));
+                uploadPhase.addRetry();
+                uploadPhase.close();
+                uploadsToRetry.add(queuedUpload);
+            } else {
+                logger.error(String.format("Upload of %s failed: %s", queuedUpload.getFileName(), uploadException.getMessage()));
+                uploadPhase.close();
+                queuedUpload.fail(uploadException);
+            }
+        }
+        return uploadsToRetry;
+    }
+
+    private synchronized Semaphore getQueuePermits() {
+        if (queuePermits == null) {
+            // Uploads in progress (and in a partial batch) hold a permit too, so the limit on waiting uploads is the queue size
+            queuePermits = new Semaphore(Math.max(1, config.getUploadBdioQueueSize()) + (getUploadThreadCount() * getBatchSize()), true);
+        }
+        return queuePermits;
+    }
+
+    private synchronized ScheduledThreadPoolExecutor getUploadExecutor() {
+        if (uploadExecutor == null) {
+            uploadExecutor = new ScheduledThreadPoolExecutor(getUploadThreadCount(), runnable -> {
+                Thread uploaderThread = new Thread(runnable, String.format("docker-inspector-bdio-uploader-%d", uploaderThreadCount.incrementAndGet()));
+                uploaderThread.setDaemon(true);
+                return uploaderThread;
+            });
+            // drain() uploads any partial batch itself, so a pending scheduled batch upload has nothing left to do
+            uploadExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        }
+        return uploadExecutor;
+    }
+
+    private int getUploadThreadCount() {
+        return Math.max(1, config.getUploadBdioThreadCount());
+    }
+
+    private int getBatchSize() {
+        return Math.max(1, config.getUploadBdioBatchSize());
+    }
+
+    private class QueuedUpload {
+        private final UploadTarget uploadTarget;
+        private final PhaseTimings phaseTimings;
+        private final CompletableFuture<Void> uploaded = new CompletableFuture<>();
+
+        QueuedUpload(UploadTarget uploadTarget, PhaseTimings phaseTimings) {
+            this.uploadTarget = uploadTarget;
+            this.phaseTimings = phaseTimings;
+        }
+
+        UploadTarget getUploadTarget() {
+            return uploadTarget;
+        }
+
+        String getFileName() {
+            return uploadTarget.getUploadFile().getName();
+        }
+
+        CompletableFuture<Void> getUploaded() {
+            return uploaded;
+        }
+
+        RunningPhase startUploadPhase() {
+            RunningPhase uploadPhase = phaseTimings.start(Phase.UPLOAD);
+            uploadPhase.addBytes(uploadTarget.getUploadFile().length());
+            return uploadPhase;
+        }
+
+        void succeed() {
+            queuePermits.release();
+            uploaded.complete(null);
+        }
+
+        void fail(IntegrationException uploadException) {
+            queuePermits.release();
+            uploaded.completeExceptionally(uploadException);
+        }
+    }
+}
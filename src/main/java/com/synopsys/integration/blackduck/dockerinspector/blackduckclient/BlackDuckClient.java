@@ -22,12 +22,15 @@
  */
 package com.synopsys.integration.blackduck.dockerinspector.blackduckclient;
 
-import java.io.File;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -37,13 +40,16 @@ import org.springframework.stereotype.Component;
 
 import com.google.gson.Gson;
 import com.synopsys.integration.blackduck.codelocation.CodeLocationCreationData;
+import com.synopsys.integration.blackduck.codelocation.Result;
 import com.synopsys.integration.blackduck.codelocation.bdioupload.BdioUploadCodeLocationCreationRequest;
 import com.synopsys.integration.blackduck.codelocation.bdioupload.BdioUploadService;
 import com.synopsys.integration.blackduck.codelocation.bdioupload.UploadBatch;
 import com.synopsys.integration.blackduck.codelocation.bdioupload.UploadBatchOutput;
+import com.synopsys.integration.blackduck.codelocation.bdioupload.UploadOutput;
 import com.synopsys.integration.blackduck.codelocation.bdioupload.UploadTarget;
 import com.synopsys.integration.blackduck.configuration.BlackDuckServerConfigBuilder;
 import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.blackduck.dockerinspector.metrics.InspectorMetrics;
 import com.synopsys.integration.blackduck.dockerinspector.programversion.ProgramVersion;
 import com.synopsys.integration.blackduck.exception.BlackDuckIntegrationException;
 import com.synopsys.integration.blackduck.http.BlackDuckRequestFactory;
@@ -54,7 +60,6 @@ import com.synopsys.integration.exception.IntegrationException;
 import com.synopsys.integration.log.IntLogger;
 import com.synopsys.integration.log.Slf4jIntLogger;
 import com.synopsys.integration.util.IntEnvironmentVariables;
-import com.synopsys.integration.util.NameVersion;
 import com.synopsys.integration.util.NoThreadExecutorService;
 
 @Component
@@ -69,6 +74,18 @@ public class BlackDuckClient {
 
     private final Logger logger = LoggerFactory.getLogger(BlackDuckClient.class);
     private final IntLogger intLogger = new Slf4jIntLogger(logger);
+    // Built on first use and shared for the rest of the run (including, in daemon mode, the daemon's lifetime),
+    // so the connection authenticates once; the client re-authenticates itself if Black Duck rejects its token
+    private BlackDuckHttpClient httpConnection;
+    private BlackDuckServicesFactory blackDuckServicesFactory;
+    // The connection test and phone home run on background threads, off the critical path of image inspection
+    private final ExecutorService backgroundExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread backgroundThread = new Thread(runnable, "docker-inspector-blackduck-connection");
+        backgroundThread.setDaemon(true);
+        return backgroundThread;
+    });
+    private CompletableFuture<Void> connectionTest;
+    private CompletableFuture<Void> phoneHome;
 
     @Autowired
     private Config config;
@@ -79,6 +96,9 @@ public class BlackDuckClient {
     @Autowired
     private ProgramVersion programVersion;
 
+    @Autowired
+    private InspectorMetrics inspectorMetrics;
+
     public void testBlackDuckConnection() throws BlackDuckIntegrationException {
         logger.trace(String.format("Black Duck username: %s",
             getBlackDuckUsername())); // ArgsWithSpacesTest tests this in output
@@ -87,10 +107,8 @@ public class BlackDuckClient {
                 "Upload of BDIO disabled or offline mode is enabled; skipping verification of Black Duck connection");
             return;
         }
-        BlackDuckHttpClient httpConnection;
         try {
-            httpConnection = createHttpConnection(intLogger);
-            httpConnection.attemptAuthentication();
+            getHttpConnection().attemptAuthentication();
         } catch (IntegrationException e) {
             String msg = String.format("Error connecting to Black Duck: %s", e.getMessage());
             throw new BlackDuckIntegrationException(msg);
@@ -98,32 +116,93 @@ public class BlackDuckClient {
         logger.info("Successful connection to Black Duck.");
     }
 
-    public void uploadBdio(File bdioFile, String codeLocationName, NameVersion projectAndVersion)
-        throws IntegrationException {
+    // Starts testBlackDuckConnection() on a background thread; awaitConnectionTest() reports its result
+    public synchronized void startConnectionTest() {
+        CompletableFuture<Void> startedConnectionTest = new CompletableFuture<>();
+        backgroundExecutor.execute(() -> {
+            try {
+                testBlackDuckConnection();
+                startedConnectionTest.complete(null);
+            } catch (BlackDuckIntegrationException | RuntimeException e) {
+                startedConnectionTest.completeExceptionally(e);
+            }
+        });
+        connectionTest = startedConnectionTest;
+    }
+
+    // Waits for the connection test started by startConnectionTest(), or (if none was started) tests the connection now
+    public void awaitConnectionTest() throws BlackDuckIntegrationException, InterruptedException {
+        CompletableFuture<Void> startedConnectionTest;
+        synchronized (this) {
+            startedConnectionTest = connectionTest;
+        }
+        if (startedConnectionTest == null) {
+            testBlackDuckConnection();
+            return;
+        }
+        try {
+            startedConnectionTest.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BlackDuckIntegrationException) {
+                throw (BlackDuckIntegrationException) e.getCause();
+            }
+            throw new BlackDuckIntegrationException(String.format("Error connecting to Black Duck: %s", e.getCause().getMessage()));
+        }
+    }
+
+    // Uploads the given BDIO files in one upload batch; returns the error message for each file that failed to upload, keyed by code location name
+    public Map<String, String> uploadBdio(List<UploadTarget> uploadTargets) throws IntegrationException {
+        Map<String, String> uploadErrorsByCodeLocationName = new HashMap<>();
         if (config.isOfflineMode()) {
             logger.info("Upload of BDIO has been disabled by offline mode");
-            return;
+            return uploadErrorsByCodeLocationName;
         }
-        logger.info("Uploading BDIO files.");
-        BlackDuckHttpClient httpConnection = createHttpConnection(intLogger);
-        BlackDuckServicesFactory blackDuckServicesFactory = createBlackDuckServicesFactory(
-            intLogger,
-            httpConnection);
-        BdioUploadService bdioUploadService = blackDuckServicesFactory.createBdioUploadService();
-
-        UploadBatch uploadBatch = new UploadBatch();
-        UploadTarget uploadTarget = UploadTarget.createDefault(projectAndVersion, codeLocationName, bdioFile);
-        logger.info(String.format("uploading %s", uploadTarget.getUploadFile().getName()));
-        uploadBatch.addUploadTarget(uploadTarget);
-        BdioUploadCodeLocationCreationRequest uploadRequest = bdioUploadService
-                                                                  .createUploadRequest(uploadBatch);
-        CodeLocationCreationData<UploadBatchOutput> bdioUploadResults = bdioUploadService
-                                                                            .uploadBdio(uploadRequest);
-        bdioUploadResults.getOutput().getOutputs().stream().forEach(o -> logger.debug(String
-                                                                                          .format("\tUpload %s: output: %s%n", o.getCodeLocationName(),
-                                                                                              o.getResponse().orElse("unknown"))));
-        logger.info(
-            String.format("Uploaded bdio file %s to %s", bdioFile.getName(), config.getBlackDuckUrl()));
+        long uploadStartTimeMillis = System.currentTimeMillis();
+        boolean uploadSucceeded = false;
+        try {
+            logger.info("Uploading BDIO files.");
+            BdioUploadService bdioUploadService = getBlackDuckServicesFactory().createBdioUploadService();
+
+            UploadBatch uploadBatch = new UploadBatch();
+            for (UploadTarget uploadTarget : uploadTargets) {
+                logger.info(String.format("uploading %s", uploadTarget.getUploadFile().getName()));
+                uploadBatch.addUploadTarget(uploadTarget);
+            }
+            BdioUploadCodeLocationCreationRequest uploadRequest = bdioUploadService
+                                                                      .createUploadRequest(uploadBatch);
+            CodeLocationCreationData<UploadBatchOutput> bdioUploadResults = bdioUploadService
+                                                                                .uploadBdio(uploadRequest);
+            for (UploadOutput uploadOutput : bdioUploadResults.getOutput().getOutputs()) {
+                logger.debug(String.format("\tUpload %s: output: %s%n", uploadOutput.getCodeLocationName(), uploadOutput.getResponse().orElse("unknown")));
+                if (uploadOutput.getResult() == Result.FAILURE) {
+                    uploadErrorsByCodeLocationName.put(uploadOutput.getCodeLocationName(), uploadOutput.getErrorMessage().orElse("unknown error"));
+                }
+            }
+            uploadSucceeded = uploadErrorsByCodeLocationName.isEmpty();
+        } finally {
+            inspectorMetrics.recordUpload(System.currentTimeMillis() - uploadStartTimeMillis, uploadSucceeded);
+        }
+        for (UploadTarget uploadTarget : uploadTargets) {
+            if (!uploadErrorsByCodeLocationName.containsKey(uploadTarget.getCodeLocationName())) {
+                logger.info(
+                    String.format("Uploaded bdio file %s to %s", uploadTarget.getUploadFile().getName(), config.getBlackDuckUrl()));
+            }
+        }
+        return uploadErrorsByCodeLocationName;
+    }
+
+    private synchronized BlackDuckHttpClient getHttpConnection() {
+        if (httpConnection == null) {
+            httpConnection = createHttpConnection(intLogger);
+        }
+        return httpConnection;
+    }
+
+    private synchronized BlackDuckServicesFactory getBlackDuckServicesFactory() {
+        if (blackDuckServicesFactory == null) {
+            blackDuckServicesFactory = createBlackDuckServicesFactory(intLogger, getHttpConnection());
+        }
+        return blackDuckServicesFactory;
     }
 
     private BlackDuckServicesFactory createBlackDuckServicesFactory(IntLogger intLogger,
@@ -140,6 +219,28 @@ public class BlackDuckClient {
         return config.getBlackDuckUsername();
     }
 
+    // Phones home on a background thread; the docker engine version is derived there too, since that can involve a call to the docker engine
+    public synchronized void startPhoneHome(Supplier<String> dockerEngineVersionSupplier) {
+        phoneHome = CompletableFuture.runAsync(() -> {
+            try {
+                phoneHome(dockerEngineVersionSupplier.get());
+            } catch (Exception e) {
+                logger.warn(String.format("Unable to phone home: %s", e.getMessage()));
+            }
+        }, backgroundExecutor);
+    }
+
+    // Waits for phone home (if started) to finish, so it isn't cut short when the program exits
+    public void awaitPhoneHome() {
+        CompletableFuture<Void> startedPhoneHome;
+        synchronized (this) {
+            startedPhoneHome = phoneHome;
+        }
+        if (startedPhoneHome != null) {
+            startedPhoneHome.join();
+        }
+    }
+
     public void phoneHome(String dockerEngineVersion) {
         logger.debug("Attempting to phone home");
         try {
@@ -152,12 +253,6 @@ public class BlackDuckClient {
     }
 
     private void phoneHomeBlackDuckConnection(String dockerEngineVersion) {
-
-        BlackDuckHttpClient httpConnection = createHttpConnection(intLogger);
-        BlackDuckServicesFactory blackDuckServicesFactory = createBlackDuckServicesFactory(
-            intLogger,
-            httpConnection);
-
         Map<String, String> metaDataMap = new HashMap<>();
         if (StringUtils.isNotBlank(dockerEngineVersion)) {
             metaDataMap
@@ -180,7 +275,7 @@ public class BlackDuckClient {
                 .put(PHONE_HOME_METADATA_NAME_PLATFORM_TOP_LAYER_ID_SPECIFIED, "true");
         }
 
-        BlackDuckPhoneHomeHelper.createPhoneHomeHelper(blackDuckServicesFactory).handlePhoneHome(
+        BlackDuckPhoneHomeHelper.createPhoneHomeHelper(getBlackDuckServicesFactory()).handlePhoneHome(
             programVersion.getProgramId(), programVersion.getProgramVersion(), metaDataMap);
         logger.trace("Attempt to phone home completed");
     }
@@ -0,0 +1,142 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.blackduck.dockerinspector.config.ProgramPaths;
+import com.synopsys.integration.blackduck.dockerinspector.imagetar.ImageTarMetadata;
+import com.synopsys.integration.blackduck.dockerinspector.imagetar.ImageTarMetadataReader;
+import com.synopsys.integration.blackduck.dockerinspector.programversion.ProgramVersion;
+
+/*
+ * Caches the (unadjusted) BDIO returned by the image inspector service.
+ * The package databases the image inspector reads are cumulative across layers,
+ * so the BDIO for an image depends on its entire layer chain; the key is therefore
+ * the ordered list of layer diff IDs plus everything else that affects the BDIO.
+ */
+@Component
+public class BdioCache {
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+    private static final String KEY_FIELD_SEPARATOR = "\n";
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final Config config;
+    private final ProgramVersion programVersion;
+    private final ImageTarMetadataReader imageTarMetadataReader;
+    private final LruFileCache lruFileCache;
+
+    @Autowired
+    public BdioCache(Config config, ProgramPaths programPaths, ProgramVersion programVersion, ImageTarMetadataReader imageTarMetadataReader) {
+        this.config = config;
+        this.programVersion = programVersion;
+        this.imageTarMetadataReader = imageTarMetadataReader;
+        this.lruFileCache = new LruFileCache(new File(programPaths.getDockerInspectorBdioCacheDirPath()), config.getBdioCacheMaxSizeMb() * BYTES_PER_MEGABYTE);
+    }
+
+    public boolean isApplicable() {
+        // The container filesystem is a side effect of inspection, so when it's needed the image must be inspected
+        return config.isBdioCacheEnabled() && !config.isOutputIncludeContainerfilesystem() && !config.isOutputIncludeSquashedImage();
+    }
+
+    public Optional<String> deriveKey(File imageTarfile, String givenImageRepo, String givenImageTag) {
+        if (!isApplicable()) {
+            return Optional.empty();
+        }
+        try {
+            ImageTarMetadata imageTarMetadata = imageTarMetadataReader.read(imageTarfile, givenImageRepo, givenImageTag);
+            StringBuilder keySource = new StringBuilder();
+            appendKeyField(keySource, givenImageRepo);
+            appendKeyField(keySource, givenImageTag);
+            for (String diffId : imageTarMetadata.getDiffIds()) {
+                appendKeyField(keySource, diffId);
+            }
+            appendKeyField(keySource, Boolean.toString(config.isOrganizeComponentsByLayer()));
+            appendKeyField(keySource, Boolean.toString(config.isIncludeRemovedComponents()));
+            appendKeyField(keySource, config.getDockerPlatformTopLayerId());
+            appendKeyField(keySource, config.getTargetImageLinuxDistroOverride());
+            appendKeyField(keySource, StringUtils.isNotBlank(config.getInspectorImageVersion()) ? config.getInspectorImageVersion() : programVersion.getInspectorImageVersion());
+            String key = String.format("%s.jsonld", sha256Hex(keySource.toString()));
+            logger.debug(String.format("BDIO cache key for %s (%d layers): %s", imageTarfile.getName(), imageTarMetadata.getDiffIds().size(), key));
+            return Optional.of(key);
+        } catch (Exception e) {
+            logger.debug(String.format("Unable to derive BDIO cache key from %s; BDIO will not be cached: %s", imageTarfile.getAbsolutePath(), e.getMessage()));
+            return Optional.empty();
+        }
+    }
+
+    public boolean find(String key, File bdioFile) {
+        Optional<File> cachedBdioFile = lruFileCache.get(key);
+        if (!cachedBdioFile.isPresent()) {
+            return false;
+        }
+        try {
+            FileUtils.copyFile(cachedBdioFile.get(), bdioFile);
+            logger.info(String.format("Found BDIO in BDIO cache: %s; skipping image inspection", cachedBdioFile.get().getAbsolutePath()));
+            return true;
+        } catch (IOException e) {
+            logger.warn(String.format("Unable to read cached BDIO %s: %s", cachedBdioFile.get().getAbsolutePath(), e.getMessage()));
+            return false;
+        }
+    }
+
+    public void store(String key, File bdioFile) {
+        File tempFile = lruFileCache.createTempFile();
+        try {
+            FileUtils.copyFile(bdioFile, tempFile);
+            File cachedBdioFile = lruFileCache.put(key, tempFile);
+            logger.debug(String.format("Stored BDIO in BDIO cache: %s", cachedBdioFile.getAbsolutePath()));
+        } catch (IOException e) {
+            logger.warn(String.format("Unable to store BDIO in BDIO cache: %s", e.getMessage()));
+        } finally {
+            lruFileCache.discardTempFile(tempFile);
+        }
+    }
+
+    private void appendKeyField(StringBuilder keySource, String value) {
+        keySource.append(StringUtils.defaultString(value));
+        keySource.append(KEY_FIELD_SEPARATOR);
+    }
+
+    private String sha256Hex(String value) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] hash = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
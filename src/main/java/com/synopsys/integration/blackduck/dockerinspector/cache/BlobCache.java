@@ -0,0 +1,75 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.blackduck.dockerinspector.config.ProgramPaths;
+
+// Image layers and configs fetched from a registry, keyed by (content) digest, so a layer shared by several images is fetched once
+@Component
+public class BlobCache {
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final LruFileCache lruFileCache;
+
+    @Autowired
+    public BlobCache(Config config, ProgramPaths programPaths) {
+        this.lruFileCache = new LruFileCache(new File(programPaths.getDockerInspectorBlobCacheDirPath()), config.getBlobCacheMaxSizeMb() * BYTES_PER_MEGABYTE);
+    }
+
+    public Optional<File> find(String digest) {
+        Optional<File> cachedBlob = lruFileCache.get(deriveKey(digest));
+        cachedBlob.ifPresent(blob -> logger.debug(String.format("Found blob %s in blob cache: %s", digest, blob.getAbsolutePath())));
+        return cachedBlob;
+    }
+
+    // Holds the part of the blob fetched so far; it survives a failed fetch so the next attempt can resume where it stopped
+    public File getPartialFile(String digest) {
+        return lruFileCache.getTempFile(deriveKey(digest));
+    }
+
+    // The caller must have verified that the content of tempBlob matches the digest
+    public File store(String digest, File tempBlob) throws IOException {
+        File cachedBlob = lruFileCache.put(deriveKey(digest), tempBlob);
+        logger.debug(String.format("Stored blob %s in blob cache: %s", digest, cachedBlob.getAbsolutePath()));
+        return cachedBlob;
+    }
+
+    public void discardTempFile(File tempBlob) {
+        lruFileCache.discardTempFile(tempBlob);
+    }
+
+    private String deriveKey(String digest) {
+        // Digests look like sha256:<hex>; colons are not portable in filenames
+        return digest.replace(":", "_");
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.cache;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.blackduck.dockerinspector.config.ProgramPaths;
+
+@Component
+public class ImageTarCache {
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final Config config;
+    private final LruFileCache lruFileCache;
+
+    @Autowired
+    public ImageTarCache(Config config, ProgramPaths programPaths) {
+        this.config = config;
+        this.lruFileCache = new LruFileCache(new File(programPaths.getDockerInspectorImageTarCacheDirPath()), config.getImageTarCacheMaxSizeMb() * BYTES_PER_MEGABYTE);
+    }
+
+    public boolean isEnabled() {
+        return config.isImageTarCacheEnabled();
+    }
+
+    // The caller gets its own link to (or copy of) the cached tarfile, so an eviction while the image is in use can't remove it
+    public boolean find(String imageId, File imageTarfile) throws IOException {
+        if (!lruFileCache.getCopy(deriveKey(imageId), imageTarfile)) {
+            return false;
+        }
+        logger.info(String.format("Found image %s in image tarfile cache; linked it to %s", imageId, imageTarfile.getAbsolutePath()));
+        return true;
+    }
+
+    public File createTempFile() {
+        return lruFileCache.createTempFile();
+    }
+
+    // Links the tarfile to imageTarfile before storing it, for the same reason as find()
+    public void store(String imageId, File tempTarfile, File imageTarfile) throws IOException {
+        lruFileCache.linkOrCopy(tempTarfile, imageTarfile);
+        File cachedTarfile = lruFileCache.put(deriveKey(imageId), tempTarfile);
+        logger.debug(String.format("Stored image %s in image tarfile cache: %s", imageId, cachedTarfile.getAbsolutePath()));
+    }
+
+    public void discardTempFile(File tempTarfile) {
+        lruFileCache.discardTempFile(tempTarfile);
+    }
+
+    private String deriveKey(String imageId) {
+        // Image IDs look like sha256:<hex>; colons are not portable in filenames
+        return String.format("%s.tar", imageId.replace(":", "_"));
+    }
+}
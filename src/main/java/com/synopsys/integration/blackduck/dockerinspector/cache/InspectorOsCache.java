@@ -0,0 +1,112 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.Properties;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.synopsys.integration.blackduck.dockerinspector.config.ProgramPaths;
+import com.synopsys.integration.blackduck.imageinspector.api.ImageInspectorOsEnum;
+
+/*
+ * Remembers (across runs) which image inspector OS each image repo needed,
+ * so later images from the same repo go straight to the right inspector service.
+ */
+@Component
+public class InspectorOsCache {
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final File cacheFile;
+    private Properties inspectorOsByRepo;
+
+    @Autowired
+    public InspectorOsCache(ProgramPaths programPaths) {
+        this.cacheFile = new File(programPaths.getDockerInspectorInspectorOsCacheFilePath());
+    }
+
+    public synchronized Optional<ImageInspectorOsEnum> find(String imageRepo) {
+        if (StringUtils.isBlank(imageRepo)) {
+            return Optional.empty();
+        }
+        String inspectorOsName = load().getProperty(imageRepo);
+        if (inspectorOsName == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(ImageInspectorOsEnum.valueOf(inspectorOsName));
+        } catch (IllegalArgumentException e) {
+            logger.debug(String.format("Ignoring invalid inspector OS %s for repo %s in %s", inspectorOsName, imageRepo, cacheFile.getAbsolutePath()));
+            return Optional.empty();
+        }
+    }
+
+    public synchronized void store(String imageRepo, ImageInspectorOsEnum inspectorOs) {
+        if (StringUtils.isBlank(imageRepo) || inspectorOs.name().equals(load().getProperty(imageRepo))) {
+            return;
+        }
+        inspectorOsByRepo.setProperty(imageRepo, inspectorOs.name());
+        File tempFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+        try {
+            cacheFile.getParentFile().mkdirs();
+            try (OutputStream outputStream = new FileOutputStream(tempFile)) {
+                inspectorOsByRepo.store(outputStream, "Image inspector OS by image repo");
+            }
+            try {
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            logger.debug(String.format("Recorded inspector OS %s for repo %s", inspectorOs.name(), imageRepo));
+        } catch (IOException e) {
+            logger.warn(String.format("Unable to update inspector OS cache %s: %s", cacheFile.getAbsolutePath(), e.getMessage()));
+        }
+    }
+
+    private Properties load() {
+        if (inspectorOsByRepo == null) {
+            inspectorOsByRepo = new Properties();
+            if (cacheFile.isFile()) {
+                try (InputStream inputStream = new FileInputStream(cacheFile)) {
+                    inspectorOsByRepo.load(inputStream);
+                } catch (IOException e) {
+                    logger.warn(String.format("Unable to read inspector OS cache %s: %s", cacheFile.getAbsolutePath(), e.getMessage()));
+                }
+            }
+        }
+        return inspectorOsByRepo;
+    }
+}
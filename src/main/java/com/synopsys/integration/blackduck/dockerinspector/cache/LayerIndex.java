@@ -0,0 +1,89 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.blackduck.dockerinspector.config.ProgramPaths;
+
+// Filtered (slim) image layers, keyed by layer digest (diff ID), so each layer is read and filtered once no matter how many images share it.
+// The key also holds the version of the filter rules, so a layer filtered by other rules isn't reused.
+@Component
+public class LayerIndex {
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final LruFileCache lruFileCache;
+
+    @Autowired
+    public LayerIndex(Config config, ProgramPaths programPaths) {
+        this.lruFileCache = new LruFileCache(new File(programPaths.getDockerInspectorLayerIndexDirPath()), config.getLayerIndexMaxSizeMb() * BYTES_PER_MEGABYTE);
+    }
+
+    public Optional<File> find(String diffId, int filterVersion) {
+        Optional<File> slimLayer = lruFileCache.get(deriveKey(diffId, filterVersion));
+        slimLayer.ifPresent(layer -> logger.debug(String.format("Found layer %s in layer index: %s", diffId, layer.getAbsolutePath())));
+        return slimLayer;
+    }
+
+    // Keeps the given layers from being evicted (by this process) until they're unpinned
+    public void pin(Collection<String> diffIds, int filterVersion) {
+        lruFileCache.pin(deriveKeys(diffIds, filterVersion));
+    }
+
+    public void unpin(Collection<String> diffIds, int filterVersion) {
+        lruFileCache.unpin(deriveKeys(diffIds, filterVersion));
+    }
+
+    public File createTempFile() {
+        return lruFileCache.createTempFile();
+    }
+
+    public File store(String diffId, int filterVersion, File tempSlimLayer) throws IOException {
+        File slimLayer = lruFileCache.put(deriveKey(diffId, filterVersion), tempSlimLayer);
+        logger.debug(String.format("Stored layer %s in layer index: %s", diffId, slimLayer.getAbsolutePath()));
+        return slimLayer;
+    }
+
+    public void discardTempFile(File tempSlimLayer) {
+        lruFileCache.discardTempFile(tempSlimLayer);
+    }
+
+    private Collection<String> deriveKeys(Collection<String> diffIds, int filterVersion) {
+        return diffIds.stream().map(diffId -> deriveKey(diffId, filterVersion)).collect(Collectors.toList());
+    }
+
+    private String deriveKey(String diffId, int filterVersion) {
+        // Diff IDs look like sha256:<hex>; colons are not portable in filenames
+        return String.format("%s.v%d.tar", diffId.replace(":", "_"), filterVersion);
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * A directory of cache entries (one file per key) bounded by total size.
+ * Entry age is tracked via file modification time, so the recency information
+ * survives across runs without a separate index file.
+ */
+public class LruFileCache {
+    private static final String TEMP_FILE_PREFIX = ".tmp-";
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final File cacheDir;
+    private final long maxSizeBytes;
+    // Pinned entries are not evicted; keys can be pinned more than once (by concurrent users), so each has a count
+    private final Map<String, Integer> pinCountsByKey = new HashMap<>();
+
+    public LruFileCache(File cacheDir, long maxSizeBytes) {
+        this.cacheDir = cacheDir;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    public Optional<File> get(String key) {
+        File entry = new File(cacheDir, key);
+        if (!entry.isFile()) {
+            logger.debug(String.format("Cache miss: %s", entry.getAbsolutePath()));
+            return Optional.empty();
+        }
+        if (!entry.setLastModified(System.currentTimeMillis())) {
+            logger.debug(String.format("Unable to update last modified time of cache entry %s", entry.getAbsolutePath()));
+        }
+        logger.debug(String.format("Cache hit: %s", entry.getAbsolutePath()));
+        return Optional.of(entry);
+    }
+
+    // Links (or, where the file system can't, copies) the entry to destination, which, unlike the entry itself, stays in place when the entry is evicted
+    public boolean getCopy(String key, File destination) throws IOException {
+        Optional<File> entry = get(key);
+        if (!entry.isPresent()) {
+            return false;
+        }
+        try {
+            linkOrCopy(entry.get(), destination);
+            return true;
+        } catch (NoSuchFileException e) {
+            logger.debug(String.format("Cache entry %s was evicted before it could be copied", entry.get().getAbsolutePath()));
+            return false;
+        }
+    }
+
+    public void linkOrCopy(File file, File destination) throws IOException {
+        destination.getParentFile().mkdirs();
+        Files.deleteIfExists(destination.toPath());
+        try {
+            Files.createLink(destination.toPath(), file.toPath());
+        } catch (NoSuchFileException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            logger.debug(String.format("Unable to link %s to %s (%s); copying it instead", file.getAbsolutePath(), destination.getAbsolutePath(), e.getMessage()));
+            Files.copy(file.toPath(), destination.toPath());
+        }
+    }
+
+    // The caller writes the new entry to this file, then passes it to put()
+    public File createTempFile() {
+        cacheDir.mkdirs();
+        return new File(cacheDir, TEMP_FILE_PREFIX + UUID.randomUUID().toString());
+    }
+
+    // Like createTempFile(), but named after the key, so an entry whose writing was interrupted can be resumed (in this run or a later one)
+    public File getTempFile(String key) {
+        cacheDir.mkdirs();
+        return new File(cacheDir, TEMP_FILE_PREFIX + key);
+    }
+
+    public File put(String key, File tempFile) throws IOException {
+        File entry = new File(cacheDir, key);
+        try {
+            Files.move(tempFile.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        logger.debug(String.format("Added cache entry %s", entry.getAbsolutePath()));
+        evict(key);
+        return entry;
+    }
+
+    public void discardTempFile(File tempFile) {
+        try {
+            Files.deleteIfExists(tempFile.toPath());
+        } catch (IOException e) {
+            logger.warn(String.format("Unable to remove temporary cache file %s: %s", tempFile.getAbsolutePath(), e.getMessage()));
+        }
+    }
+
+    // Pins only protect entries from eviction by this process, not by other processes sharing the cache dir
+    public synchronized void pin(Collection<String> keys) {
+        for (String key : keys) {
+            pinCountsByKey.merge(key, 1, Integer::sum);
+        }
+    }
+
+    public synchronized void unpin(Collection<String> keys) {
+        for (String key : keys) {
+            pinCountsByKey.computeIfPresent(key, (pinnedKey, pinCount) -> pinCount > 1 ? pinCount - 1 : null);
+        }
+    }
+
+    public synchronized void evict(String protectedKey) {
+        File[] entries = cacheDir.listFiles(file -> file.isFile() && !file.getName().startsWith(TEMP_FILE_PREFIX));
+        if (entries == null) {
+            return;
+        }
+        long totalSizeBytes = 0L;
+        for (File entry : entries) {
+            totalSizeBytes += entry.length();
+        }
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        for (File entry : entries) {
+            if (totalSizeBytes <= maxSizeBytes) {
+                break;
+            }
+            if (entry.getName().equals(protectedKey) || pinCountsByKey.containsKey(entry.getName())) {
+                continue;
+            }
+            long entrySizeBytes = entry.length();
+            if (entry.delete()) {
+                logger.debug(String.format("Evicted least recently used cache entry %s (%d bytes)", entry.getAbsolutePath(), entrySizeBytes));
+                totalSizeBytes -= entrySizeBytes;
+            } else {
+                logger.warn(String.format("Unable to evict cache entry %s", entry.getAbsolutePath()));
+            }
+        }
+    }
+}
@@ -154,6 +154,14 @@ public class Config {
     @Value("${output.include.squashedimage:false}")
     private Boolean outputIncludeSquashedImage = Boolean.FALSE;
 
+    @ValueDescription(description = "The number of threads used to compress the squashed image (0: one per available processor)", defaultValue = "0", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${output.compression.threads:0}")
+    private Integer outputCompressionThreads = 0;
+
+    @ValueDescription(description = "The gzip compression level (1: fastest; 9: smallest) used to compress the squashed image", defaultValue = "6", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${output.compression.level:6}")
+    private Integer outputCompressionLevel = 6;
+
     // If you want dirs/files/links omitted from the container filesystem, specify the list of absolute paths here (e.g. /etc)
     @ValueDescription(description = "Comma-separated list of directories/files/links (specified as absolute paths) to exclude from the container filesystem", defaultValue = "", group = Config.GROUP_PUBLIC, deprecated = false)
     @Value("${output.containerfilesystem.excluded.paths:}")
@@ -188,10 +196,46 @@ public class Config {
     @Value("${docker.image.platform:}")
     private String dockerImagePlatform = "";
 
+    @ValueDescription(description = "Path to a file listing the Docker images (one image name:tag per line) to inspect in a single run. Use - to read the list from standard input. Blank lines and lines starting with # are ignored", defaultValue = "", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${docker.image.list:}")
+    private String dockerImageList = "";
+
+    @ValueDescription(description = "The number of images (listed via docker.image.list) to inspect concurrently", defaultValue = "3", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${batch.thread.count:3}")
+    private Integer batchThreadCount = 3;
+
+    @ValueDescription(description = "Run as a long-lived daemon that keeps the image inspector services running and accepts images (one name:tag per line) to inspect on a local (loopback) TCP port", defaultValue = "false", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${daemon.mode:false}")
+    private Boolean daemonMode = Boolean.FALSE;
+
+    @ValueDescription(description = "The local (loopback) TCP port on which the daemon (see daemon.mode) accepts requests", defaultValue = "9100", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${daemon.port:9100}")
+    private Integer daemonPort = 9100;
+
+    @ValueDescription(description = "In daemon and multi-image (docker.image.list) modes: the local (loopback) TCP port on which to serve metrics in Prometheus text format (at /metrics). 0 disables the endpoint", defaultValue = "0", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${metrics.port:0}")
+    private Integer metricsPort = 0;
+
+    @ValueDescription(description = "In daemon and multi-image (docker.image.list) modes: the path of a file to which metrics are periodically written in Prometheus text format (for example, for the node-exporter textfile collector; the filename should end in .prom)", defaultValue = "", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${metrics.textfile.path:}")
+    private String metricsTextfilePath = "";
+
+    @ValueDescription(description = "The number of seconds between writes of the metrics file (see metrics.textfile.path)", defaultValue = "15", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${metrics.textfile.interval.seconds:15}")
+    private Integer metricsTextfileIntervalSeconds = 15;
+
     @ValueDescription(description = "Docker tarfile path", defaultValue = "", group = Config.GROUP_PUBLIC, deprecated = false)
     @Value("${docker.tar:}")
     private String dockerTar = "";
 
+    @ValueDescription(description = "Path to an OCI image layout directory (as written by skopeo, buildah, or BuildKit) containing the target image. The image is read directly from the directory, without using the Docker engine. If the layout contains more than one image, docker.image selects one by its tag (org.opencontainers.image.ref.name)", defaultValue = "", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${oci.image.layout.dir:}")
+    private String ociImageLayoutDir = "";
+
+    @ValueDescription(description = "URL (for example, http://localhost:5000) of a registry (or registry mirror) that supports the Docker Registry HTTP API V2. When set, the target image(s) are fetched directly from this registry, without using the Docker engine", defaultValue = "", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${registry.url:}")
+    private String registryUrl = "";
+
     @ValueDescription(description = "The ID (shown in the 'IMAGE ID' column of 'docker images' output) of the target Docker image. The target image must already be local (must appear in the output of 'docker images').", defaultValue = "", group = Config.GROUP_PUBLIC, deprecated = false)
     @Value("${docker.image.id:}")
     private String dockerImageId = "";
@@ -224,6 +268,26 @@ public class Config {
     @Value("${upload.bdio:true}")
     private Boolean uploadBdio = Boolean.TRUE;
 
+    @ValueDescription(description = "The number of threads that upload BDIO to Black Duck in the background. In multi-image (docker.image.list) mode, inspection of the next image continues while earlier BDIO uploads", defaultValue = "2", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${upload.bdio.thread.count:2}")
+    private Integer uploadBdioThreadCount = 2;
+
+    @ValueDescription(description = "The maximum number of BDIO uploads waiting for an upload thread; when the queue is full, image inspection waits for an upload to finish", defaultValue = "10", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${upload.bdio.queue.size:10}")
+    private Integer uploadBdioQueueSize = 10;
+
+    @ValueDescription(description = "The number of times a failed BDIO upload is retried (with exponential backoff) before it is reported as failed", defaultValue = "2", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${upload.bdio.retries:2}")
+    private Integer uploadBdioRetries = 2;
+
+    @ValueDescription(description = "In multi-image mode: the maximum number of BDIO files uploaded to Black Duck together in one upload batch", defaultValue = "1", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${upload.bdio.batch.size:1}")
+    private Integer uploadBdioBatchSize = 1;
+
+    @ValueDescription(description = "In multi-image mode: the maximum time (in seconds) a BDIO file waits for its upload batch to fill before the batch is uploaded", defaultValue = "10", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${upload.bdio.batch.max.delay.seconds:10}")
+    private Integer uploadBdioBatchMaxDelaySeconds = 10;
+
     @ValueDescription(description = "Repository name for the Docker Inspector images", defaultValue = "blackducksoftware", group = Config.GROUP_PRIVATE, deprecated = false)
     @Value("${inspector.repository:blackducksoftware}")
     private String inspectorRepository = "blackducksoftware";
@@ -248,6 +312,42 @@ public class Config {
     @Value("${cleanup.inspector.image:false}")
     private Boolean cleanupInspectorImage = Boolean.FALSE;
 
+    @ValueDescription(description = "Keep saved image tarfiles in a cache (in the working directory) keyed by image ID, and reuse them instead of saving the image again?", defaultValue = "false", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${image.tar.cache.enabled:false}")
+    private Boolean imageTarCacheEnabled = Boolean.FALSE;
+
+    @ValueDescription(description = "Maximum total size (in megabytes) of the image tarfile cache. When exceeded, the least recently used tarfiles are removed", defaultValue = "10240", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${image.tar.cache.max.size.mb:10240}")
+    private Long imageTarCacheMaxSizeMb = 10240L;
+
+    @ValueDescription(description = "Send the image inspector service a slim image tarfile whose layers contain only the package manager databases and Linux distribution release files, instead of the complete image? Each layer is filtered once and kept in a layer index (in the working directory) keyed by its digest. Not used when container filesystem or squashed image output, components organized by layer, or removed components are requested", defaultValue = "false", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${image.tar.slim.enabled:false}")
+    private Boolean imageTarSlimEnabled = Boolean.FALSE;
+
+    @ValueDescription(description = "Maximum total size (in megabytes) of the layer index used by image.tar.slim.enabled. When exceeded, the least recently used layers are removed", defaultValue = "1024", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${layer.index.max.size.mb:1024}")
+    private Long layerIndexMaxSizeMb = 1024L;
+
+    @ValueDescription(description = "Keep generated BDIO in a cache (in the working directory) keyed by the image's layer chain and inspection options, and reuse it instead of inspecting an unchanged image again? Not used when container filesystem or squashed image output is requested", defaultValue = "false", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${bdio.cache.enabled:false}")
+    private Boolean bdioCacheEnabled = Boolean.FALSE;
+
+    @ValueDescription(description = "Maximum total size (in megabytes) of the BDIO cache. When exceeded, the least recently used entries are removed", defaultValue = "1024", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${bdio.cache.max.size.mb:1024}")
+    private Long bdioCacheMaxSizeMb = 1024L;
+
+    @ValueDescription(description = "Maximum total size (in megabytes) of the cache (in the working directory) of image layers and configs fetched from registry.url. Layers already in the cache are not fetched again. When exceeded, the least recently used blobs are removed", defaultValue = "10240", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${blob.cache.max.size.mb:10240}")
+    private Long blobCacheMaxSizeMb = 10240L;
+
+    @ValueDescription(description = "The maximum number of image layers (blobs) fetched from registry.url at the same time", defaultValue = "3", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${registry.blob.fetch.threads:3}")
+    private Integer registryBlobFetchThreads = 3;
+
+    @ValueDescription(description = "The number of times a blob fetch from registry.url that fails with a network error (or an HTTP 408, 429, or 5xx status) is retried. Each retry resumes from where the previous attempt stopped", defaultValue = "3", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${registry.blob.fetch.retries:3}")
+    private Integer registryBlobFetchRetries = 3;
+
     @ValueDescription(description = "In generated BDIO, organize components by layer?", defaultValue = "false", group = Config.GROUP_PRIVATE, deprecated = false)
     @Value("${bdio.organize.components.by.layer:false}")
     private Boolean organizeComponentsByLayer = Boolean.FALSE;
@@ -303,6 +403,22 @@ public class Config {
     @Value("${imageinspector.service.distro.default:ubuntu}")
     private String imageInspectorDefaultDistro = INSPECTOR_OS_UBUNTU;
 
+    @ValueDescription(description = "The maximum number of concurrent requests sent to each (alpine, centos, ubuntu) image inspector service that Docker Inspector starts", defaultValue = "2", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${imageinspector.service.concurrency:2}")
+    private Integer imageInspectorServiceConcurrency = 2;
+
+    @ValueDescription(description = "If true: pull all (alpine, centos, ubuntu) image inspector images and start their services in parallel while the target image is being saved, so the service that inspects it is already running", defaultValue = "false", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${imageinspector.service.warmup:false}")
+    private Boolean imageInspectorServiceWarmup = Boolean.FALSE;
+
+    @ValueDescription(description = "The maximum number of (kept alive and reused) HTTP connections to each image inspector service", defaultValue = "8", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${imageinspector.service.connection.pool.size:8}")
+    private Integer imageInspectorServiceConnectionPoolSize = 8;
+
+    @ValueDescription(description = "Before sending a request to an image inspector service that Docker Inspector starts, predict which (alpine, centos, or ubuntu) service the image needs (from the package manager databases in its layers, or from earlier images from the same repo), to avoid a redirect?", defaultValue = "true", group = Config.GROUP_PUBLIC, deprecated = false)
+    @Value("${imageinspector.service.distro.predict:true}")
+    private Boolean imageInspectorServiceDistroPredict = Boolean.TRUE;
+
     @ValueDescription(description = "The number of lines of the image inspector service log to include in the Docker Inspector log when log level is DEBUG or higher", defaultValue = "10000", group = Config.GROUP_PUBLIC, deprecated = false)
     @Value("${imageinspector.service.log.length:10000}")
     private Integer imageInspectorServiceLogLength = 10000;
@@ -500,6 +616,14 @@ public class Config {
         return optionsByFieldName.get("outputIncludeSquashedImage").getResolvedValue().equals("true");
     }
 
+    public Integer getOutputCompressionThreads() {
+        return new Integer(optionsByFieldName.get("outputCompressionThreads").getResolvedValue());
+    }
+
+    public Integer getOutputCompressionLevel() {
+        return new Integer(optionsByFieldName.get("outputCompressionLevel").getResolvedValue());
+    }
+
     public boolean isUsePlatformDefaultDockerHost() {
         return optionsByFieldName.get("usePlatformDefaultDockerHost").getResolvedValue().equals("true");
     }
@@ -524,6 +648,14 @@ public class Config {
         return unEscape(optionsByFieldName.get("dockerTar").getResolvedValue());
     }
 
+    public String getOciImageLayoutDir() {
+        return unEscape(optionsByFieldName.get("ociImageLayoutDir").getResolvedValue());
+    }
+
+    public String getRegistryUrl() {
+        return optionsByFieldName.get("registryUrl").getResolvedValue();
+    }
+
     public String getDockerImageId() {
         return optionsByFieldName.get("dockerImageId").getResolvedValue();
     }
@@ -636,6 +768,26 @@ public class Config {
         return optionsByFieldName.get("uploadBdio").getResolvedValue().equals("true");
     }
 
+    public Integer getUploadBdioThreadCount() {
+        return new Integer(optionsByFieldName.get("uploadBdioThreadCount").getResolvedValue());
+    }
+
+    public Integer getUploadBdioQueueSize() {
+        return new Integer(optionsByFieldName.get("uploadBdioQueueSize").getResolvedValue());
+    }
+
+    public Integer getUploadBdioRetries() {
+        return new Integer(optionsByFieldName.get("uploadBdioRetries").getResolvedValue());
+    }
+
+    public Integer getUploadBdioBatchSize() {
+        return new Integer(optionsByFieldName.get("uploadBdioBatchSize").getResolvedValue());
+    }
+
+    public Integer getUploadBdioBatchMaxDelaySeconds() {
+        return new Integer(optionsByFieldName.get("uploadBdioBatchMaxDelaySeconds").getResolvedValue());
+    }
+
     public boolean isCleanupTargetImage() {
         return optionsByFieldName.get("cleanupTargetImage").getResolvedValue().equals("true");
     }
@@ -648,6 +800,42 @@ public class Config {
         return optionsByFieldName.get("cleanupInspectorImage").getResolvedValue().equals("true");
     }
 
+    public boolean isImageTarCacheEnabled() {
+        return optionsByFieldName.get("imageTarCacheEnabled").getResolvedValue().equals("true");
+    }
+
+    public Long getImageTarCacheMaxSizeMb() {
+        return new Long(optionsByFieldName.get("imageTarCacheMaxSizeMb").getResolvedValue());
+    }
+
+    public boolean isImageTarSlimEnabled() {
+        return optionsByFieldName.get("imageTarSlimEnabled").getResolvedValue().equals("true");
+    }
+
+    public Long getLayerIndexMaxSizeMb() {
+        return new Long(optionsByFieldName.get("layerIndexMaxSizeMb").getResolvedValue());
+    }
+
+    public boolean isBdioCacheEnabled() {
+        return optionsByFieldName.get("bdioCacheEnabled").getResolvedValue().equals("true");
+    }
+
+    public Long getBdioCacheMaxSizeMb() {
+        return new Long(optionsByFieldName.get("bdioCacheMaxSizeMb").getResolvedValue());
+    }
+
+    public Long getBlobCacheMaxSizeMb() {
+        return new Long(optionsByFieldName.get("blobCacheMaxSizeMb").getResolvedValue());
+    }
+
+    public Integer getRegistryBlobFetchThreads() {
+        return new Integer(optionsByFieldName.get("registryBlobFetchThreads").getResolvedValue());
+    }
+
+    public Integer getRegistryBlobFetchRetries() {
+        return new Integer(optionsByFieldName.get("registryBlobFetchRetries").getResolvedValue());
+    }
+
     public boolean isOrganizeComponentsByLayer() {
         return optionsByFieldName.get("organizeComponentsByLayer").getResolvedValue().equals("true");
     }
@@ -664,6 +852,55 @@ public class Config {
         return optionsByFieldName.get("offlineMode").getResolvedValue().equals("true");
     }
 
+    public Integer getBatchThreadCount() {
+        return new Integer(optionsByFieldName.get("batchThreadCount").getResolvedValue());
+    }
+
+    public boolean isImageInspectorServiceDistroPredict() {
+        return optionsByFieldName.get("imageInspectorServiceDistroPredict").getResolvedValue().equals("true");
+    }
+
+    public Integer getImageInspectorServiceConcurrency() {
+        return new Integer(optionsByFieldName.get("imageInspectorServiceConcurrency").getResolvedValue());
+    }
+
+    public boolean isImageInspectorServiceWarmup() {
+        return optionsByFieldName.get("imageInspectorServiceWarmup").getResolvedValue().equals("true");
+    }
+
+    public Integer getImageInspectorServiceConnectionPoolSize() {
+        return new Integer(optionsByFieldName.get("imageInspectorServiceConnectionPoolSize").getResolvedValue());
+    }
+
+    public String getDockerImageList() {
+        return optionsByFieldName.get("dockerImageList").getResolvedValue();
+    }
+
+    public boolean isDaemonMode() {
+        return optionsByFieldName.get("daemonMode").getResolvedValue().equals("true");
+    }
+
+    public Integer getDaemonPort() {
+        return new Integer(optionsByFieldName.get("daemonPort").getResolvedValue());
+    }
+
+    public Integer getMetricsPort() {
+        return new Integer(optionsByFieldName.get("metricsPort").getResolvedValue());
+    }
+
+    public String getMetricsTextfilePath() {
+        return optionsByFieldName.get("metricsTextfilePath").getResolvedValue();
+    }
+
+    public Integer getMetricsTextfileIntervalSeconds() {
+        return new Integer(optionsByFieldName.get("metricsTextfileIntervalSeconds").getResolvedValue());
+    }
+
+    // In multi-image mode, one run inspects many images, so services and working files are shared across images
+    public boolean isMultiImageMode() {
+        return StringUtils.isNotBlank(getDockerImageList()) || isDaemonMode();
+    }
+
     public void setDockerImageRepo(String newValue) {
         optionsByFieldName.get("dockerImageRepo").setResolvedValue(newValue);
     }
@@ -712,6 +949,19 @@ public class Config {
         this.dockerImageTag = null;
         this.dockerInspectorJavaOptsValue = null;
         this.dockerTar = null;
+        this.ociImageLayoutDir = null;
+        this.registryUrl = null;
+        this.dockerImageList = null;
+        this.daemonMode = null;
+        this.daemonPort = null;
+        this.metricsPort = null;
+        this.metricsTextfilePath = null;
+        this.metricsTextfileIntervalSeconds = null;
+        this.batchThreadCount = null;
+        this.imageInspectorServiceConcurrency = null;
+        this.imageInspectorServiceWarmup = null;
+        this.imageInspectorServiceConnectionPoolSize = null;
+        this.imageInspectorServiceDistroPredict = null;
         this.blackDuckAlwaysTrustCert = null;
         this.blackDuckCodelocationPrefix = null;
         this.blackDuckCodelocationName = null;
@@ -736,6 +986,8 @@ public class Config {
         this.loggingLevel = null;
         this.outputIncludeContainerfilesystem = null;
         this.outputIncludeSquashedImage = null;
+        this.outputCompressionThreads = null;
+        this.outputCompressionLevel = null;
         this.usePlatformDefaultDockerHost = null;
         this.containerFileSystemExcludedPaths = null;
         this.outputPath = null;
@@ -744,9 +996,23 @@ public class Config {
         this.workingDirPath = null;
         this.systemPropertiesPath = null;
         this.uploadBdio = null;
+        this.uploadBdioThreadCount = null;
+        this.uploadBdioQueueSize = null;
+        this.uploadBdioRetries = null;
+        this.uploadBdioBatchSize = null;
+        this.uploadBdioBatchMaxDelaySeconds = null;
         this.inspectorRepository = null;
         this.cleanupInspectorContainer = null;
         this.cleanupInspectorImage = null;
+        this.imageTarCacheEnabled = null;
+        this.imageTarCacheMaxSizeMb = null;
+        this.imageTarSlimEnabled = null;
+        this.layerIndexMaxSizeMb = null;
+        this.bdioCacheEnabled = null;
+        this.bdioCacheMaxSizeMb = null;
+        this.blobCacheMaxSizeMb = null;
+        this.registryBlobFetchThreads = null;
+        this.registryBlobFetchRetries = null;
         this.organizeComponentsByLayer = null;
         this.includeRemovedComponents = null;
         this.cleanupTargetImage = null;
@@ -37,6 +37,7 @@ import com.synopsys.integration.blackduck.dockerinspector.ProcessId;
 public class ProgramPaths {
     private final Config config;
     public static final String RESULTS_JSON_FILENAME = "results.json";
+    public static final String BATCH_RESULTS_JSON_FILENAME = "batchResults.json";
     private static final String RUNDIR_BASENAME = "run";
     public static final String OUTPUT_DIR = "output";
     private static final String TARGET_DIR = "target";
@@ -44,6 +45,12 @@ public class ProgramPaths {
     private static final String SQUASHED_IMAGE_DIR = "squashedImageBuildDir";
     private static final String SQUASHED_IMAGE_TARFILE_DIR = "squashedImageTarDir";
     private static final String SQUASHED_IMAGE_TARFILE_NAME = "squashedImage.tar";
+    private static final String IMAGE_TAR_CACHE_DIR = "imageTarCache";
+    private static final String BDIO_CACHE_DIR = "bdioCache";
+    private static final String BLOB_CACHE_DIR = "blobCache";
+    private static final String LAYER_INDEX_DIR = "layerIndex";
+    private static final String INSPECTOR_OS_CACHE_FILENAME = "inspectorOsCache.properties";
+    private static final String DAEMON_TOKEN_FILENAME = "daemon.token";
     private final String dockerInspectorPgmDirPath;
     private final String dockerInspectorRunDirName;
     private final String dockerInspectorRunDirPath;
@@ -58,6 +65,12 @@ public class ProgramPaths {
     private final String dockerInspectorSquashedImageDirPath;
     private final String dockerInspectorSquashedImageTarFilePath;
     private final String dockerInspectorWorkingOutputPath;
+    private final String dockerInspectorImageTarCacheDirPath;
+    private final String dockerInspectorBdioCacheDirPath;
+    private final String dockerInspectorBlobCacheDirPath;
+    private final String dockerInspectorLayerIndexDirPath;
+    private final String dockerInspectorInspectorOsCacheFilePath;
+    private final String dockerInspectorDaemonTokenFilePath;
 
     @Autowired
     public ProgramPaths(Config config, ProcessId processId) throws IOException {
@@ -76,6 +89,12 @@ public class ProgramPaths {
         File dockerInspectorSquashedImageTarFileDir = new File(runDir, SQUASHED_IMAGE_TARFILE_DIR);
         dockerInspectorSquashedImageTarFilePath = new File(dockerInspectorSquashedImageTarFileDir, SQUASHED_IMAGE_TARFILE_NAME).getCanonicalPath();
         dockerInspectorWorkingOutputPath = new File(runDir, OUTPUT_DIR).getCanonicalPath() + File.separator;
+        dockerInspectorImageTarCacheDirPath = new File(dockerInspectorPgmDirPath, IMAGE_TAR_CACHE_DIR).getCanonicalPath() + File.separator;
+        dockerInspectorBdioCacheDirPath = new File(dockerInspectorPgmDirPath, BDIO_CACHE_DIR).getCanonicalPath() + File.separator;
+        dockerInspectorBlobCacheDirPath = new File(dockerInspectorPgmDirPath, BLOB_CACHE_DIR).getCanonicalPath() + File.separator;
+        dockerInspectorLayerIndexDirPath = new File(dockerInspectorPgmDirPath, LAYER_INDEX_DIR).getCanonicalPath() + File.separator;
+        dockerInspectorInspectorOsCacheFilePath = new File(dockerInspectorPgmDirPath, INSPECTOR_OS_CACHE_FILENAME).getCanonicalPath();
+        dockerInspectorDaemonTokenFilePath = new File(dockerInspectorPgmDirPath, DAEMON_TOKEN_FILENAME).getCanonicalPath();
     }
 
     private String getProgramDirPath() throws IOException {
@@ -125,7 +144,35 @@ public class ProgramPaths {
         return dockerInspectorWorkingOutputPath;
     }
 
+    public String getDockerInspectorImageTarCacheDirPath() {
+        return dockerInspectorImageTarCacheDirPath;
+    }
+
+    public String getDockerInspectorBdioCacheDirPath() {
+        return dockerInspectorBdioCacheDirPath;
+    }
+
+    public String getDockerInspectorBlobCacheDirPath() {
+        return dockerInspectorBlobCacheDirPath;
+    }
+
+    public String getDockerInspectorLayerIndexDirPath() {
+        return dockerInspectorLayerIndexDirPath;
+    }
+
+    public String getDockerInspectorInspectorOsCacheFilePath() {
+        return dockerInspectorInspectorOsCacheFilePath;
+    }
+
+    public String getDockerInspectorDaemonTokenFilePath() {
+        return dockerInspectorDaemonTokenFilePath;
+    }
+
     public String getDockerInspectorResultsFilename() {
         return RESULTS_JSON_FILENAME;
     }
+
+    public String getDockerInspectorBatchResultsFilename() {
+        return BATCH_RESULTS_JSON_FILENAME;
+    }
 }
@@ -0,0 +1,386 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.daemon;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.google.gson.Gson;
+import com.synopsys.integration.blackduck.dockerinspector.batch.BatchInspector;
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.blackduck.dockerinspector.config.ProgramPaths;
+import com.synopsys.integration.blackduck.dockerinspector.httpclient.HttpClientInspector;
+import com.synopsys.integration.blackduck.dockerinspector.output.BatchResults.BatchImageResult;
+import com.synopsys.integration.blackduck.dockerinspector.output.Result;
+import com.synopsys.integration.blackduck.imageinspector.api.name.ImageNameResolver;
+import com.synopsys.integration.exception.IntegrationException;
+
+/*
+ * Keeps the image inspector services warm and inspects images submitted over a loopback-only TCP socket.
+ * The protocol is line oriented, so any TCP client (nc, bash /dev/tcp) can submit work:
+ * each request line is the daemon's token followed by an image name:tag, and the response to each is one line of JSON
+ * (the image's result). The request line <token> SHUTDOWN stops the daemon.
+ * Since any local user can connect to a loopback port, the token (written at startup to a file
+ * in the working dir that only the daemon's user can read) is what restricts who can submit images
+ * (which are uploaded using the daemon's Black Duck credentials) or stop the daemon.
+ */
+@Component
+public class InspectorDaemon {
+    public static final String SHUTDOWN_COMMAND = "SHUTDOWN";
+    private static final String COMMENT_PREFIX = "#";
+    private static final int CONNECTION_BACKLOG = 50;
+    // An idle connection is closed after this long, so it can't hold a connection thread (or delay shutdown) indefinitely
+    private static final int CONNECTION_IDLE_TIMEOUT_MILLIS = 60000;
+    private static final int TOKEN_LENGTH_BYTES = 32;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final AtomicBoolean shutdownRequested = new AtomicBoolean(false);
+    private final AtomicBoolean cleanedUp = new AtomicBoolean(false);
+    private final AtomicInteger succeededCount = new AtomicInteger(0);
+    private final AtomicInteger failedCount = new AtomicInteger(0);
+    // Requests for an image that's already being inspected share that inspection, rather than racing it for the same working files
+    private final ConcurrentMap<String, CompletableFuture<BatchImageResult>> inspectionsByImage = new ConcurrentHashMap<>();
+    private final Set<DaemonConnection> connections = ConcurrentHashMap.newKeySet();
+    private volatile ServerSocket serverSocket;
+    private volatile byte[] token;
+
+    @Autowired
+    private Config config;
+
+    @Autowired
+    private ProgramPaths programPaths;
+
+    @Autowired
+    private BatchInspector batchInspector;
+
+    @Autowired
+    private HttpClientInspector inspector;
+
+    @Autowired
+    private Gson gson;
+
+    public Result run() throws IntegrationException {
+        // Spring's shutdown hook isn't registered yet (we're running during context startup), so register our own
+        Thread cleanupHook = new Thread(this::cleanup, "docker-inspector-daemon-cleanup");
+        Runtime.getRuntime().addShutdownHook(cleanupHook);
+        ExecutorService connectionExecutor = Executors.newFixedThreadPool(Math.max(1, config.getBatchThreadCount()));
+        File tokenFile = new File(programPaths.getDockerInspectorDaemonTokenFilePath());
+        try (ServerSocket listeningSocket = new ServerSocket(config.getDaemonPort(), CONNECTION_BACKLOG, InetAddress.getLoopbackAddress())) {
+            serverSocket = listeningSocket;
+            writeTokenFile(tokenFile);
+            logger.info(String.format("Docker Inspector daemon listening on %s:%d; send the token from %s and an image name:tag per line to inspect it, or the token and %s to stop",
+                listeningSocket.getInetAddress().getHostAddress(), listeningSocket.getLocalPort(), tokenFile.getAbsolutePath(), SHUTDOWN_COMMAND));
+            while (!shutdownRequested.get()) {
+                Socket connection;
+                try {
+                    connection = listeningSocket.accept();
+                } catch (SocketException e) {
+                    if (shutdownRequested.get()) {
+                        break;
+                    }
+                    throw e;
+                }
+                DaemonConnection daemonConnection = new DaemonConnection(connection);
+                connections.add(daemonConnection);
+                connectionExecutor.submit(() -> serve(daemonConnection));
+            }
+        } catch (IOException e) {
+            throw new IntegrationException(String.format("Docker Inspector daemon error on port %d: %s", config.getDaemonPort(), e.getMessage()), e);
+        } finally {
+            drain(connectionExecutor);
+            cleanup();
+            removeShutdownHook(cleanupHook);
+            deleteTokenFile(tokenFile);
+        }
+        String summary = String.format("Docker Inspector daemon stopped after inspecting %d images: %d succeeded, %d failed",
+            succeededCount.get() + failedCount.get(), succeededCount.get(), failedCount.get());
+        logger.info(summary);
+        return Result.createResultMultipleImages(true, summary);
+    }
+
+    private void serve(DaemonConnection daemonConnection) {
+        Socket connection = daemonConnection.socket;
+        logger.debug(String.format("Accepted daemon connection from port %d", connection.getPort()));
+        try (Socket socket = connection;
+            BufferedReader requestReader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer responseWriter = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            synchronized (daemonConnection) {
+                if (daemonConnection.abandoned) {
+                    return;
+                }
+                daemonConnection.responseWriter = responseWriter;
+            }
+            socket.setSoTimeout(CONNECTION_IDLE_TIMEOUT_MILLIS);
+            String requestLine;
+            while ((requestLine = requestReader.readLine()) != null) {
+                String trimmedRequestLine = requestLine.trim();
+                if (trimmedRequestLine.isEmpty() || trimmedRequestLine.startsWith(COMMENT_PREFIX)) {
+                    continue;
+                }
+                String[] requestParts = trimmedRequestLine.split("\\s+", 2);
+                if (requestParts.length < 2 || !isValidToken(requestParts[0])) {
+                    logger.warn(String.format("Rejected a Docker Inspector daemon request without a valid token from port %d", connection.getPort()));
+                    writeResponseLine(responseWriter, gson.toJson(Result.createResultFailure(String.format("Request rejected: each request line must start with the token in %s",
+                        programPaths.getDockerInspectorDaemonTokenFilePath()))));
+                    return;
+                }
+                String request = requestParts[1];
+                if (SHUTDOWN_COMMAND.equals(request)) {
+                    // Requested first, so no request sent after this response is accepted
+                    requestShutdown();
+                    writeResponseLine(responseWriter, gson.toJson(Result.createResultMultipleImages(true, "Docker Inspector daemon is shutting down")));
+                    return;
+                }
+                if (shutdownRequested.get()) {
+                    writeResponseLine(responseWriter, gson.toJson(Result.createResultFailure(String.format("Docker Inspector daemon is shutting down; image %s was not inspected", request))));
+                    return;
+                }
+                synchronized (daemonConnection) {
+                    daemonConnection.pendingImage = request;
+                }
+                BatchImageResult imageResult = inspectImage(request);
+                synchronized (daemonConnection) {
+                    if (daemonConnection.abandoned) {
+                        // The daemon stopped waiting for this image, and has already responded
+                        return;
+                    }
+                    daemonConnection.pendingImage = null;
+                    writeResponseLine(responseWriter, gson.toJson(imageResult));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Docker Inspector daemon connection interrupted");
+        } catch (SocketTimeoutException e) {
+            logger.debug(String.format("Closing Docker Inspector daemon connection from port %d: idle for %d ms", connection.getPort(), CONNECTION_IDLE_TIMEOUT_MILLIS));
+        } catch (IOException e) {
+            logger.warn(String.format("Error serving Docker Inspector daemon connection: %s", e.getMessage()));
+        } finally {
+            connections.remove(daemonConnection);
+        }
+    }
+
+    private BatchImageResult inspectImage(String image) throws InterruptedException {
+        String imageKey = deriveImageKey(image);
+        CompletableFuture<BatchImageResult> newInspection = new CompletableFuture<>();
+        CompletableFuture<BatchImageResult> inFlightInspection = inspectionsByImage.putIfAbsent(imageKey, newInspection);
+        if (inFlightInspection != null) {
+            logger.info(String.format("Image %s is already being inspected; waiting for that inspection's result", image));
+            try {
+                return inFlightInspection.get();
+            } catch (ExecutionException e) {
+                Result result = Result.createResultFailure(String.format("Error inspecting image %s: %s", image, e.getCause().getMessage()));
+                return new BatchImageResult(image, null, result);
+            }
+        }
+        try {
+            BatchImageResult imageResult = batchInspector.inspectImage(image);
+            if (imageResult.getResult().isSucceeded()) {
+                succeededCount.incrementAndGet();
+            } else {
+                failedCount.incrementAndGet();
+            }
+            newInspection.complete(imageResult);
+            return imageResult;
+        } catch (InterruptedException | RuntimeException e) {
+            newInspection.completeExceptionally(e);
+            throw e;
+        } finally {
+            inspectionsByImage.remove(imageKey, newInspection);
+        }
+    }
+
+    // alpine and alpine:latest name the same image
+    private String deriveImageKey(String image) {
+        try {
+            ImageNameResolver resolver = new ImageNameResolver(image);
+            Optional<String> imageRepo = resolver.getNewImageRepo();
+            if (imageRepo.isPresent()) {
+                return String.format("%s:%s", imageRepo.get(), resolver.getNewImageTag().orElse("latest"));
+            }
+        } catch (RuntimeException e) {
+            logger.debug(String.format("Unable to parse image name %s: %s", image, e.getMessage()));
+        }
+        return image;
+    }
+
+    private void writeTokenFile(File tokenFile) throws IOException {
+        byte[] tokenBytes = new byte[TOKEN_LENGTH_BYTES];
+        new SecureRandom().nextBytes(tokenBytes);
+        StringBuilder tokenHex = new StringBuilder(tokenBytes.length * 2);
+        for (byte b : tokenBytes) {
+            tokenHex.append(String.format("%02x", b));
+        }
+        token = tokenHex.toString().getBytes(StandardCharsets.UTF_8);
+        Path tokenPath = tokenFile.toPath();
+        Files.createDirectories(tokenPath.getParent());
+        Files.deleteIfExists(tokenPath);
+        // Created readable by the owner only from the start, so there's no window in which others can read it
+        if (Files.getFileAttributeView(tokenPath.getParent(), PosixFileAttributeView.class) != null) {
+            Files.createFile(tokenPath, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(tokenPath);
+            tokenFile.setReadable(false, false);
+            tokenFile.setReadable(true, true);
+        }
+        Files.write(tokenPath, token);
+        logger.debug(String.format("Wrote Docker Inspector daemon token to %s", tokenFile.getAbsolutePath()));
+    }
+
+    private void deleteTokenFile(File tokenFile) {
+        try {
+            Files.deleteIfExists(tokenFile.toPath());
+        } catch (IOException e) {
+            logger.warn(String.format("Unable to delete Docker Inspector daemon token file %s: %s", tokenFile.getAbsolutePath(), e.getMessage()));
+        }
+    }
+
+    private boolean isValidToken(String requestToken) {
+        byte[] expectedToken = token;
+        // Compared in constant time, so the comparison doesn't reveal how much of a guessed token is correct
+        return expectedToken != null && MessageDigest.isEqual(expectedToken, requestToken.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeResponseLine(Writer responseWriter, String responseLine) throws IOException {
+        responseWriter.write(responseLine);
+        responseWriter.write('\n');
+        responseWriter.flush();
+    }
+
+    private void requestShutdown() {
+        logger.info("Docker Inspector daemon shutdown requested");
+        shutdownRequested.set(true);
+        ServerSocket listeningSocket = serverSocket;
+        if (listeningSocket != null) {
+            try {
+                listeningSocket.close();
+            } catch (IOException e) {
+                logger.debug(String.format("Error closing daemon socket: %s", e.getMessage()));
+            }
+        }
+    }
+
+    // Waits for the images being inspected, for up to the service timeout; connections still waiting after that get a failure response
+    private void drain(ExecutorService connectionExecutor) {
+        connectionExecutor.shutdown();
+        try {
+            if (connectionExecutor.awaitTermination(config.getServiceTimeout(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            logger.warn(String.format("Docker Inspector daemon connections still active after %d ms; abandoning them", config.getServiceTimeout()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        abandonConnections();
+        connectionExecutor.shutdownNow();
+    }
+
+    // Connections still waiting to be served, or waiting for an image's result, get a failure response; then each connection is closed
+    private void abandonConnections() {
+        for (DaemonConnection connection : connections) {
+            synchronized (connection) {
+                connection.abandoned = true;
+                String response = null;
+                if (connection.responseWriter == null) {
+                    response = gson.toJson(Result.createResultFailure("Docker Inspector daemon stopped before serving this connection"));
+                } else if (connection.pendingImage != null) {
+                    Result result = Result.createResultFailure(String.format("Docker Inspector daemon stopped before image %s was inspected", connection.pendingImage));
+                    response = gson.toJson(new BatchImageResult(connection.pendingImage, null, result));
+                }
+                try {
+                    if (response != null) {
+                        Writer responseWriter = connection.responseWriter;
+                        if (responseWriter == null) {
+                            responseWriter = new BufferedWriter(new OutputStreamWriter(connection.socket.getOutputStream(), StandardCharsets.UTF_8));
+                        }
+                        writeResponseLine(responseWriter, response);
+                    }
+                    connection.socket.close();
+                } catch (IOException e) {
+                    logger.debug(String.format("Error abandoning daemon connection from port %d: %s", connection.socket.getPort(), e.getMessage()));
+                }
+            }
+        }
+    }
+
+    // Runs on a SHUTDOWN request, and (via the JVM shutdown hook) when the daemon is killed
+    private void cleanup() {
+        if (cleanedUp.compareAndSet(false, true)) {
+            inspector.cleanupAfterMultipleImages();
+        }
+    }
+
+    private void removeShutdownHook(Thread cleanupHook) {
+        try {
+            Runtime.getRuntime().removeShutdownHook(cleanupHook);
+        } catch (IllegalStateException e) {
+            // The JVM is already shutting down
+        }
+    }
+
+    // The fields that change are guarded by the connection's lock: once it's abandoned (by drain()), only drain() responds on it
+    private static class DaemonConnection {
+        private final Socket socket;
+        // Null until a connection thread starts serving it
+        private Writer responseWriter;
+        // The image whose result the connection is waiting for, if any
+        private String pendingImage;
+        private boolean abandoned;
+
+        public DaemonConnection(Socket socket) {
+            this.socket = socket;
+        }
+    }
+}
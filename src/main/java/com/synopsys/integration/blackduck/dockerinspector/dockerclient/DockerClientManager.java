@@ -25,15 +25,18 @@ package com.synopsys.integration.blackduck.dockerinspector.dockerclient;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,10 +44,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.github.dockerjava.api.DockerClient;
-import com.github.dockerjava.api.command.BuildImageCmd;
-import com.github.dockerjava.api.command.BuildImageResultCallback;
 import com.github.dockerjava.api.command.CreateContainerCmd;
 import com.github.dockerjava.api.command.CreateContainerResponse;
+import com.github.dockerjava.api.command.InspectContainerResponse;
 import com.github.dockerjava.api.command.InspectImageCmd;
 import com.github.dockerjava.api.command.InspectImageResponse;
 import com.github.dockerjava.api.command.PullImageCmd;
@@ -73,11 +75,15 @@ import com.github.dockerjava.core.DockerClientImpl;
 import com.github.dockerjava.core.command.LogContainerResultCallback;
 import com.github.dockerjava.httpclient5.ApacheDockerHttpClient;
 import com.github.dockerjava.transport.DockerHttpClient;
+import com.synopsys.integration.blackduck.dockerinspector.cache.ImageTarCache;
 import com.synopsys.integration.blackduck.dockerinspector.config.Config;
 import com.synopsys.integration.blackduck.dockerinspector.config.ProgramPaths;
 import com.synopsys.integration.blackduck.dockerinspector.exception.DisabledException;
 import com.synopsys.integration.blackduck.dockerinspector.output.ImageTarFilename;
 import com.synopsys.integration.blackduck.dockerinspector.output.ImageTarWrapper;
+import com.synopsys.integration.blackduck.dockerinspector.timing.Phase;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimer;
+import com.synopsys.integration.blackduck.dockerinspector.timing.RunningPhase;
 import com.synopsys.integration.blackduck.exception.BlackDuckIntegrationException;
 import com.synopsys.integration.blackduck.imageinspector.api.ImageInspectorOsEnum;
 import com.synopsys.integration.blackduck.imageinspector.api.name.ImageNameResolver;
@@ -89,20 +95,25 @@ import com.synopsys.integration.util.OperatingSystemType;
 public class DockerClientManager {
     private static final String CONTAINER_APPNAME_LABEL_KEY = "app";
     private static final String CONTAINER_OS_LABEL_KEY = "os";
+    private static final int SAVE_BUFFER_SIZE_BYTES = 4 * 1024 * 1024;
     private final Logger logger = LoggerFactory.getLogger(DockerClientManager.class);
     private final FileOperations fileOperations;
     private final Config config;
     private final ImageTarFilename imageTarFilename;
     private final ProgramPaths programPaths;
+    private final ImageTarCache imageTarCache;
+    private final PhaseTimer phaseTimer;
     private final DockerClient dockerClient;
 
     @Autowired
     public DockerClientManager(FileOperations fileOperations, Config config, ImageTarFilename imageTarFilename,
-        ProgramPaths programPaths) {
+        ProgramPaths programPaths, ImageTarCache imageTarCache, PhaseTimer phaseTimer) {
         this.fileOperations = fileOperations;
         this.config = config;
         this.imageTarFilename = imageTarFilename;
         this.programPaths = programPaths;
+        this.imageTarCache = imageTarCache;
+        this.phaseTimer = phaseTimer;
 
         Builder builder = DefaultDockerClientConfig.createDefaultConfigBuilder();
         // The java-docker library's default docker host value is the Linux/Mac default value, so no action required
@@ -163,22 +174,36 @@ public class DockerClientManager {
         return tarWrapper;
     }
 
+    public ImageTarWrapper deriveDockerTarFileFromImage(String imageName, String tagName) throws IOException, IntegrationException {
+        ImageTarWrapper tarWrapper = getTarFileFromDockerImage(imageName, tagName, new File(programPaths.getDockerInspectorTargetDirPath()));
+        fileOperations.logFileOwnerGroupPerms(tarWrapper.getFile());
+        return tarWrapper;
+    }
+
     public String pullImage(String imageName, String tagName) throws IntegrationException, InterruptedException {
         validateMode();
         logger.info(String.format("Pulling image %s:%s", imageName, tagName));
         PullImageCmd pull = dockerClient.pullImageCmd(imageName).withTag(tagName);
-        return pullImage(imageName, tagName, pull);
+        return pullImage(imageName, tagName, pull, Phase.PULL);
+    }
+
+    // Pulls an image inspector image; timed separately from pulls of the image being inspected
+    public String pullInspectorImage(String imageName, String tagName) throws IntegrationException, InterruptedException {
+        validateMode();
+        logger.info(String.format("Pulling image inspector image %s:%s", imageName, tagName));
+        PullImageCmd pull = dockerClient.pullImageCmd(imageName).withTag(tagName);
+        return pullImage(imageName, tagName, pull, Phase.SERVICE_PULL);
     }
 
     public String pullImageByPlatform(String imageName, String tagName, String platform) throws IntegrationException, InterruptedException {
         validateMode();
         logger.info(String.format("Pulling image %s:%s, platform: %s", imageName, tagName, platform));
         PullImageCmd pull = dockerClient.pullImageCmd(imageName).withTag(tagName).withPlatform(platform);
-        return pullImage(imageName, tagName, pull);
+        return pullImage(imageName, tagName, pull, Phase.PULL);
     }
 
-    private String pullImage(String imageName, String tagName, PullImageCmd pull) throws IntegrationException, InterruptedException {
-        try {
+    private String pullImage(String imageName, String tagName, PullImageCmd pull, Phase phase) throws IntegrationException, InterruptedException {
+        try (RunningPhase pullPhase = phaseTimer.start(phase)) {
             pull.exec(new PullImageResultCallback()).awaitCompletion();
         } catch (NotFoundException e) {
             throw new BlackDuckIntegrationException(String.format("Pull failed: Image %s:%s not found. Please check the image name/tag. Error: %s", imageName, tagName, e.getMessage()), e);
@@ -220,6 +245,16 @@ public class DockerClientManager {
         String imageNameTag = String.format("%s:%s", runOnImageName, runOnTagName);
         logger.info(String.format("Starting container: %s", containerName));
         logger.debug(String.format("\timageNameTag: %s", imageNameTag));
+        try (RunningPhase serviceStartPhase = phaseTimer.start(Phase.SERVICE_START)) {
+            return createAndStartContainer(imageNameTag, containerName, inspectorOs, containerPort, hostPort, appNameLabelValue, jarPath,
+                inspectorUrlAlpine, inspectorUrlCentos, inspectorUrlUbuntu);
+        }
+    }
+
+    private String createAndStartContainer(String imageNameTag, String containerName, ImageInspectorOsEnum inspectorOs, int containerPort, int hostPort,
+        String appNameLabelValue,
+        String jarPath,
+        String inspectorUrlAlpine, String inspectorUrlCentos, String inspectorUrlUbuntu) throws IOException {
         stopRemoveContainerIfExists(dockerClient, containerName);
 
         logger.debug(String.format("Creating container %s from image %s", containerName, imageNameTag));
@@ -265,17 +300,14 @@ public class DockerClientManager {
         removeContainer(dockerClient, containerId);
     }
 
-    public String buildImage(File dockerBuildDir, Set<String> tags) throws IOException {
-        logger.debug(String.format("Building image: %s", tags));
-        String imageId;
-        try (BuildImageCmd buildImageCmd = dockerClient.buildImageCmd(dockerBuildDir).withTags(tags);
-            BuildImageResultCallback callback = new BuildImageResultCallback()) {
-            try (BuildImageResultCallback resultCallback = buildImageCmd.exec(callback)) {
-                imageId = resultCallback.awaitImageId();
-            }
+    public boolean isContainerRunning(String containerId) {
+        try {
+            InspectContainerResponse.ContainerState containerState = dockerClient.inspectContainerCmd(containerId).exec().getState();
+            return containerState != null && Boolean.TRUE.equals(containerState.getRunning());
+        } catch (NotFoundException e) {
+            logger.debug(String.format("Container %s not found", containerId));
+            return false;
         }
-        logger.debug(String.format("Built image: %s", imageId));
-        return imageId;
     }
 
     public Optional<String> lookupImageIdByRepoTag(String repo, String tag) {
@@ -328,7 +360,12 @@ public class DockerClientManager {
             throwIfPlatformSpecified(imageName, tagName, e);
             logger.warn(String.format("Unable to pull %s:%s; Proceeding anyway since the image might be in local docker image cache. Error on pull: %s", imageName, tagName, e.getMessage()));
         }
-        File imageTarFile = saveImageToDir(imageTarDirectory, imageTarFilename.deriveImageTarFilenameFromImageTag(imageName, tagName), imageName, tagName);
+        File imageTarFile;
+        if (imageTarCache.isEnabled()) {
+            imageTarFile = saveImageToCache(imageTarDirectory, imageTarFilename.deriveImageTarFilenameFromImageTag(imageName, tagName), imageName, tagName);
+        } else {
+            imageTarFile = saveImageToDir(imageTarDirectory, imageTarFilename.deriveImageTarFilenameFromImageTag(imageName, tagName), imageName, tagName);
+        }
         ImageTarWrapper imageTarWrapper = new ImageTarWrapper(imageTarFile, imageName, tagName);
         if (config.isCleanupTargetImage() && targetImageId.isPresent()) {
             removeImage(targetImageId.get());
@@ -384,6 +421,24 @@ public class DockerClientManager {
         return imageTarFile;
     }
 
+    // The run uses its own link to the cached tarfile, in the target dir, rather than the cache entry itself
+    private File saveImageToCache(File imageTarDirectory, String imageTarFilename, String imageName, String tagName) throws IOException {
+        String imageId = dockerClient.inspectImageCmd(String.format("%s:%s", imageName, tagName)).exec().getId();
+        File imageTarFile = new File(imageTarDirectory, imageTarFilename);
+        if (imageTarCache.find(imageId, imageTarFile)) {
+            logger.info(String.format("Image %s:%s (ID %s) is unchanged since it was last saved; skipping save", imageName, tagName, imageId));
+            return imageTarFile;
+        }
+        File tempImageTarFile = imageTarCache.createTempFile();
+        try {
+            saveImageToFile(imageName, tagName, tempImageTarFile);
+            imageTarCache.store(imageId, tempImageTarFile, imageTarFile);
+            return imageTarFile;
+        } finally {
+            imageTarCache.discardTempFile(tempImageTarFile);
+        }
+    }
+
     private Optional<Image> getLocalImage(DockerClient dockerClient, String imageName, String tagName) {
         String nonNullTagName = tagName == null ? "" : tagName;
         List<Image> images = dockerClient.listImagesCmd().withImageNameFilter(imageName).exec();
@@ -519,8 +574,28 @@ public class DockerClientManager {
         logger.info(String.format("Saving the docker image to : %s", imageTarFile.getCanonicalPath()));
         String imageToSave = String.format("%s:%s", imageName, tagName);
         SaveImageCmd saveCommand = dockerClient.saveImageCmd(imageToSave);
-        try (InputStream tarInputStream = saveCommand.exec()) {
-            FileUtils.copyInputStreamToFile(tarInputStream, imageTarFile);
+        long startTimeMillis = System.currentTimeMillis();
+        long bytesWritten;
+        try (RunningPhase savePhase = phaseTimer.start(Phase.SAVE);
+            InputStream tarInputStream = saveCommand.exec();
+            ReadableByteChannel tarInputChannel = Channels.newChannel(tarInputStream);
+            FileChannel tarOutputChannel = FileChannel.open(imageTarFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            bytesWritten = copyChannel(tarInputChannel, tarOutputChannel);
+            savePhase.addBytes(bytesWritten);
+        }
+        long elapsedMillis = Math.max(1L, System.currentTimeMillis() - startTimeMillis);
+        double megabytesPerSecond = (bytesWritten / (1024.0 * 1024.0)) / (elapsedMillis / 1000.0);
+        logger.info(String.format("Saved image %s (%d bytes) in %d ms (%.1f MB/sec)", imageToSave, bytesWritten, elapsedMillis, megabytesPerSecond));
+    }
+
+    private long copyChannel(ReadableByteChannel inputChannel, FileChannel outputChannel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(SAVE_BUFFER_SIZE_BYTES);
+        long totalBytesWritten = 0L;
+        while (inputChannel.read(buffer) >= 0 || buffer.position() > 0) {
+            buffer.flip();
+            totalBytesWritten += outputChannel.write(buffer);
+            buffer.compact();
         }
+        return totalBytesWritten;
     }
 }
@@ -24,9 +24,10 @@ package com.synopsys.integration.blackduck.dockerinspector.httpclient;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StringReader;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -35,18 +36,25 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import com.google.gson.Gson;
-import com.synopsys.integration.bdio.BdioReader;
-import com.synopsys.integration.bdio.model.SimpleBdioDocument;
-import com.synopsys.integration.blackduck.dockerinspector.blackduckclient.BlackDuckClient;
+import com.synopsys.integration.bdio.model.BdioBillOfMaterials;
+import com.synopsys.integration.bdio.model.BdioProject;
+import com.synopsys.integration.blackduck.dockerinspector.blackduckclient.BdioUploadQueue;
+import com.synopsys.integration.blackduck.dockerinspector.cache.BdioCache;
 import com.synopsys.integration.blackduck.dockerinspector.config.Config;
 import com.synopsys.integration.blackduck.dockerinspector.config.ProgramPaths;
 import com.synopsys.integration.blackduck.dockerinspector.dockerclient.DockerClientManager;
+import com.synopsys.integration.blackduck.dockerinspector.imagetar.SlimImageTarWriter;
+import com.synopsys.integration.blackduck.dockerinspector.output.BdioAdjuster;
+import com.synopsys.integration.blackduck.dockerinspector.output.BdioHeader;
 import com.synopsys.integration.blackduck.dockerinspector.output.ContainerFilesystemFilename;
 import com.synopsys.integration.blackduck.dockerinspector.output.ImageTarWrapper;
 import com.synopsys.integration.blackduck.dockerinspector.output.Output;
 import com.synopsys.integration.blackduck.dockerinspector.output.OutputFiles;
 import com.synopsys.integration.blackduck.dockerinspector.output.Result;
+import com.synopsys.integration.blackduck.dockerinspector.registry.DirectImageSource;
+import com.synopsys.integration.blackduck.dockerinspector.timing.Phase;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimer;
+import com.synopsys.integration.blackduck.dockerinspector.timing.RunningPhase;
 import com.synopsys.integration.blackduck.imageinspector.linux.FileOperations;
 import com.synopsys.integration.exception.IntegrationException;
 import com.synopsys.integration.util.NameVersion;
@@ -62,7 +70,7 @@ public class HttpClientInspector {
     private Config config;
 
     @Autowired
-    private BlackDuckClient blackDuckClient;
+    private BdioUploadQueue bdioUploadQueue;
 
     @Autowired
     private ProgramPaths programPaths;
@@ -70,6 +78,9 @@ public class HttpClientInspector {
     @Autowired
     private DockerClientManager dockerClientManager;
 
+    @Autowired
+    private DirectImageSource directImageSource;
+
     @Autowired
     private List<ImageInspectorClient> imageInspectorClients;
 
@@ -80,73 +91,190 @@ public class HttpClientInspector {
     private Output output;
 
     @Autowired
-    private Gson gson;
+    private ContainerFilesystemFilename containerFilesystemFilename;
 
     @Autowired
-    private ContainerFilesystemFilename containerFilesystemFilename;
+    private BdioCache bdioCache;
+
+    @Autowired
+    private PhaseTimer phaseTimer;
+
+    @Autowired
+    private SlimImageTarWriter slimImageTarWriter;
 
     public Result getBdio() throws IntegrationException, InterruptedException {
         ImageInspectorClient imageInspectorClient = chooseImageInspectorClient();
         try {
             output.ensureWorkingOutputDirIsWriteable();
-            ImageTarWrapper finalDockerTarfile = prepareDockerTarfile(imageInspectorClient);
-            String containerFileSystemFilename = containerFilesystemFilename.deriveContainerFilesystemFilename(finalDockerTarfile.getImageRepo(), finalDockerTarfile.getImageTag());
-            String dockerTarFilePathInContainer = containerPaths.getContainerPathToTargetFile(finalDockerTarfile.getFile().getCanonicalPath());
-            String containerFileSystemPathInContainer = null;
-            if (config.isOutputIncludeContainerfilesystem() || config.isOutputIncludeSquashedImage()) {
-                containerFileSystemPathInContainer = containerPaths.getContainerPathToOutputFile(containerFileSystemFilename);
-            }
-            String bdioString = imageInspectorClient.getBdio(finalDockerTarfile.getFile().getCanonicalPath(), dockerTarFilePathInContainer, config.getDockerImageRepo(), config.getDockerImageTag(),
-                containerFileSystemPathInContainer, config.getContainerFileSystemExcludedPaths(),
-                config.isOrganizeComponentsByLayer(), config.isIncludeRemovedComponents(),
-                config.isCleanupWorkingDir(), config.getDockerPlatformTopLayerId(),
-                config.getTargetImageLinuxDistroOverride());
-            logger.trace(String.format("bdioString: %s", bdioString));
-            SimpleBdioDocument bdioDocument = toBdioDocument(bdioString);
-            adjustBdio(bdioDocument);
-            OutputFiles outputFiles = output.addOutputToFinalOutputDir(bdioDocument, finalDockerTarfile.getImageRepo(), finalDockerTarfile.getImageTag());
-            if (config.isUploadBdio()) {
-                NameVersion projectAndVersion = new NameVersion(bdioDocument.getProject().name, bdioDocument.getProject().version);
-                blackDuckClient.uploadBdio(outputFiles.getBdioFile(), bdioDocument.getBillOfMaterials().spdxName, projectAndVersion);
-            }
+            imageInspectorClient.startServiceWarmup();
+            ImageTarWrapper finalDockerTarfile = deriveDockerTarfileFromConfig();
+            ImageTarWrapper inspectedDockerTarfile = prepareDockerTarfile(imageInspectorClient, finalDockerTarfile, config.getDockerImageRepo(), config.getDockerImageTag());
+            File rawBdioFile = inspect(imageInspectorClient, inspectedDockerTarfile, config.getDockerImageRepo(), config.getDockerImageTag());
+            OutputFiles outputFiles = output.addOutputToFinalOutputDir(rawBdioFile, new ConfiguredBdioAdjuster(), finalDockerTarfile.getImageRepo(), finalDockerTarfile.getImageTag());
+            bdioUploadQueue.awaitUpload(uploadBdio(outputFiles));
             cleanup();
-            Result result = Result.createResultSuccess(finalDockerTarfile.getImageRepo(), finalDockerTarfile.getImageTag(), finalDockerTarfile.getFile().getName(),
-                outputFiles.getBdioFile(),
-                outputFiles.getContainerFileSystemFile(),
-                outputFiles.getSquashedImageFile());
-            return result;
+            return createResultSuccess(finalDockerTarfile, outputFiles);
+        } catch (IOException e) {
+            throw new IntegrationException(e.getMessage(), e);
+        } finally {
+            imageInspectorClient.cleanupServices();
+        }
+    }
+
+    // Multi-image mode: inspect the given image without touching the image-specific configuration,
+    // leaving the services and the working dir in place for the next image.
+    // Returns once the image has been inspected; the returned future completes when its BDIO has been uploaded
+    public CompletableFuture<Result> getBdio(String imageRepo, String imageTag, File imageOutputDir) throws IntegrationException, InterruptedException {
+        ImageInspectorClient imageInspectorClient = chooseImageInspectorClient();
+        try {
+            output.ensureWorkingOutputDirIsWriteable();
+            imageInspectorClient.startServiceWarmup();
+            ImageTarWrapper finalDockerTarfile = deriveDockerTarfileFromImage(imageRepo, imageTag);
+            ImageTarWrapper inspectedDockerTarfile = null;
+            File rawBdioFile = null;
+            try {
+                inspectedDockerTarfile = prepareDockerTarfile(imageInspectorClient, finalDockerTarfile, imageRepo, imageTag);
+                rawBdioFile = inspect(imageInspectorClient, inspectedDockerTarfile, imageRepo, imageTag);
+                OutputFiles outputFiles = output.addOutputToImageOutputDir(rawBdioFile, new CodelocationPrefixBdioAdjuster(), imageRepo, imageTag, imageOutputDir);
+                Result result = createResultSuccess(finalDockerTarfile, outputFiles);
+                return uploadBdio(outputFiles).thenApply(uploaded -> result);
+            } finally {
+                removeImageTarfileIfTemporary(finalDockerTarfile);
+                removeImageTarfileIfTemporary(inspectedDockerTarfile);
+                removeRawBdioFile(rawBdioFile);
+            }
         } catch (IOException e) {
             throw new IntegrationException(e.getMessage(), e);
         }
     }
 
-    private void adjustBdio(SimpleBdioDocument bdioDocument) {
-        if (StringUtils.isNotBlank(config.getBlackDuckProjectName())) {
-            bdioDocument.getProject().name = config.getBlackDuckProjectName();
+    public void cleanupAfterMultipleImages() {
+        for (ImageInspectorClient client : imageInspectorClients) {
+            if (client.isApplicable()) {
+                client.cleanupServices();
+            }
         }
-        if (StringUtils.isNotBlank(config.getBlackDuckProjectVersion())) {
-            bdioDocument.getProject().version = config.getBlackDuckProjectVersion();
+        cleanup();
+    }
+
+    // Returns the file (in the shared target dir) to which the unadjusted BDIO was written
+    private File inspect(ImageInspectorClient imageInspectorClient, ImageTarWrapper finalDockerTarfile, String givenImageRepo, String givenImageTag)
+        throws IntegrationException, IOException, InterruptedException {
+        String containerFileSystemFilename = containerFilesystemFilename.deriveContainerFilesystemFilename(finalDockerTarfile.getImageRepo(), finalDockerTarfile.getImageTag());
+        String dockerTarFilePathInContainer = containerPaths.getContainerPathToTargetFile(finalDockerTarfile.getFile().getCanonicalPath());
+        String containerFileSystemPathInContainer = null;
+        if (config.isOutputIncludeContainerfilesystem() || config.isOutputIncludeSquashedImage()) {
+            containerFileSystemPathInContainer = containerPaths.getContainerPathToOutputFile(containerFileSystemFilename);
         }
-        if (StringUtils.isNotBlank(config.getBlackDuckCodelocationName())) {
-            bdioDocument.getBillOfMaterials().spdxName = config.getBlackDuckCodelocationName();
-        } else if (StringUtils.isNotBlank(config.getBlackDuckCodelocationPrefix())) {
-            bdioDocument.getBillOfMaterials().spdxName = String.format("%s_%s", config.getBlackDuckCodelocationPrefix(), bdioDocument.getBillOfMaterials().spdxName);
+        File rawBdioFile = deriveWorkingFile(finalDockerTarfile, "bdio.jsonld");
+        Optional<String> bdioCacheKey = bdioCache.deriveKey(finalDockerTarfile.getFile(), givenImageRepo, givenImageTag);
+        if (bdioCacheKey.isPresent() && bdioCache.find(bdioCacheKey.get(), rawBdioFile)) {
+            return rawBdioFile;
         }
+        imageInspectorClient.getBdio(finalDockerTarfile.getFile().getCanonicalPath(), dockerTarFilePathInContainer, givenImageRepo, givenImageTag,
+            containerFileSystemPathInContainer, config.getContainerFileSystemExcludedPaths(),
+            config.isOrganizeComponentsByLayer(), config.isIncludeRemovedComponents(),
+            config.isCleanupWorkingDir(), config.getDockerPlatformTopLayerId(),
+            config.getTargetImageLinuxDistroOverride(), rawBdioFile);
+        bdioCacheKey.ifPresent(key -> bdioCache.store(key, rawBdioFile));
+        return rawBdioFile;
     }
 
-    private SimpleBdioDocument toBdioDocument(String bdioString) throws IOException {
-        Reader reader = new StringReader(bdioString);
-        SimpleBdioDocument doc = null;
-        try (BdioReader bdioReader = new BdioReader(gson, reader)) {
-            doc = bdioReader.readSimpleBdioDocument();
-            return doc;
+    private CompletableFuture<Void> uploadBdio(OutputFiles outputFiles) throws IntegrationException, InterruptedException {
+        if (!config.isUploadBdio()) {
+            return CompletableFuture.completedFuture(null);
         }
+        BdioHeader bdioHeader = outputFiles.getBdioHeader();
+        NameVersion projectAndVersion = new NameVersion(bdioHeader.getProject().name, bdioHeader.getProject().version);
+        return bdioUploadQueue.submit(outputFiles.getBdioFile(), bdioHeader.getBillOfMaterials().spdxName, projectAndVersion);
     }
 
-    private ImageTarWrapper prepareDockerTarfile(ImageInspectorClient imageInspectorClient) throws IOException, IntegrationException {
-        ImageTarWrapper givenDockerTarfile = dockerClientManager.deriveDockerTarFileFromConfig();
-        ImageTarWrapper finalDockerTarfile = imageInspectorClient.copyTarfileToSharedDir(fileOperations, config, programPaths, givenDockerTarfile);
-        return finalDockerTarfile;
+    private Result createResultSuccess(ImageTarWrapper finalDockerTarfile, OutputFiles outputFiles) {
+        return Result.createResultSuccess(finalDockerTarfile.getImageRepo(), finalDockerTarfile.getImageTag(), finalDockerTarfile.getFile().getName(),
+            outputFiles.getBdioFile(),
+            outputFiles.getContainerFileSystemFile(),
+            outputFiles.getSquashedImageFile());
+    }
+
+    private class ConfiguredBdioAdjuster implements BdioAdjuster {
+        @Override
+        public void adjustBillOfMaterials(BdioBillOfMaterials billOfMaterials) {
+            if (StringUtils.isNotBlank(config.getBlackDuckCodelocationName())) {
+                billOfMaterials.spdxName = config.getBlackDuckCodelocationName();
+            } else {
+                adjustCodelocationPrefix(billOfMaterials);
+            }
+        }
+
+        @Override
+        public void adjustProject(BdioProject project) {
+            if (StringUtils.isNotBlank(config.getBlackDuckProjectName())) {
+                project.name = config.getBlackDuckProjectName();
+            }
+            if (StringUtils.isNotBlank(config.getBlackDuckProjectVersion())) {
+                project.version = config.getBlackDuckProjectVersion();
+            }
+        }
+    }
+
+    // The project name/version and codelocation name properties name a single image, so in multi-image mode only the prefix applies
+    private class CodelocationPrefixBdioAdjuster implements BdioAdjuster {
+        @Override
+        public void adjustBillOfMaterials(BdioBillOfMaterials billOfMaterials) {
+            adjustCodelocationPrefix(billOfMaterials);
+        }
+
+        @Override
+        public void adjustProject(BdioProject project) {
+        }
+    }
+
+    private void adjustCodelocationPrefix(BdioBillOfMaterials billOfMaterials) {
+        if (StringUtils.isNotBlank(config.getBlackDuckCodelocationPrefix())) {
+            billOfMaterials.spdxName = String.format("%s_%s", config.getBlackDuckCodelocationPrefix(), billOfMaterials.spdxName);
+        }
+    }
+
+    private ImageTarWrapper deriveDockerTarfileFromConfig() throws IOException, IntegrationException {
+        if (directImageSource.isApplicable()) {
+            return directImageSource.deriveImageTarFromConfig();
+        }
+        return dockerClientManager.deriveDockerTarFileFromConfig();
+    }
+
+    private ImageTarWrapper deriveDockerTarfileFromImage(String imageRepo, String imageTag) throws IOException, IntegrationException {
+        if (directImageSource.isApplicable()) {
+            return directImageSource.deriveImageTar(imageRepo, imageTag);
+        }
+        return dockerClientManager.deriveDockerTarFileFromImage(imageRepo, imageTag);
+    }
+
+    // Returns the tarfile (in the shared dir) that the image inspector service will read: a slim copy of the given tarfile if possible, else the given tarfile
+    private ImageTarWrapper prepareDockerTarfile(ImageInspectorClient imageInspectorClient, ImageTarWrapper givenDockerTarfile, String givenImageRepo, String givenImageTag)
+        throws IOException, IntegrationException {
+        try (RunningPhase sharedDirCopyPhase = phaseTimer.start(Phase.SHARED_DIR_COPY)) {
+            if (slimImageTarWriter.isApplicable()) {
+                File slimDockerTarfile = deriveWorkingFile(givenDockerTarfile, "slim.tar");
+                slimDockerTarfile.getParentFile().mkdirs();
+                if (slimImageTarWriter.write(givenDockerTarfile.getFile(), givenImageRepo, givenImageTag, slimDockerTarfile).isPresent()) {
+                    sharedDirCopyPhase.addBytes(slimDockerTarfile.length());
+                    return new ImageTarWrapper(slimDockerTarfile, givenDockerTarfile.getImageRepo(), givenDockerTarfile.getImageTag());
+                }
+                logger.info(String.format("Unable to slim image tarfile %s; the image inspector service will read all of it", givenDockerTarfile.getFile().getName()));
+            }
+            ImageTarWrapper finalDockerTarfile = imageInspectorClient.copyTarfileToSharedDir(fileOperations, config, programPaths, givenDockerTarfile);
+            if (!finalDockerTarfile.getFile().equals(givenDockerTarfile.getFile())) {
+                sharedDirCopyPhase.addBytes(finalDockerTarfile.getFile().length());
+            }
+            return finalDockerTarfile;
+        }
+    }
+
+    // Images given by different names can share a tarfile name (for example, tarfiles named by image ID), and
+    // inspections can run concurrently, so each working file gets a unique name
+    private File deriveWorkingFile(ImageTarWrapper dockerTarfile, String suffix) {
+        String dockerTarfileBaseName = StringUtils.removeEnd(dockerTarfile.getFile().getName(), ".tar");
+        return new File(programPaths.getDockerInspectorTargetDirPath(), String.format("%s_%s_%s", dockerTarfileBaseName, UUID.randomUUID().toString(), suffix));
     }
 
     private void cleanup() {
@@ -161,6 +289,24 @@ public class HttpClientInspector {
         }
     }
 
+    private void removeImageTarfileIfTemporary(ImageTarWrapper finalDockerTarfile) throws IOException {
+        if (!config.isCleanupWorkingDir() || (finalDockerTarfile == null)) {
+            return;
+        }
+        // Tarfiles outside the target dir are left in place; one from the image tarfile cache is a link, so removing it leaves the cache entry in place
+        File targetDir = new File(programPaths.getDockerInspectorTargetDirPath()).getCanonicalFile();
+        if (finalDockerTarfile.getFile().getCanonicalFile().toPath().startsWith(targetDir.toPath())) {
+            removeFileOrDir(finalDockerTarfile.getFile().getCanonicalPath());
+        }
+    }
+
+    private void removeRawBdioFile(File rawBdioFile) throws IOException {
+        if (!config.isCleanupWorkingDir() || (rawBdioFile == null)) {
+            return;
+        }
+        removeFileOrDir(rawBdioFile.getCanonicalPath());
+    }
+
     private void removeFileOrDir(String fileOrDirPath) throws IOException {
         logger.info(String.format("Removing file or dir: %s", fileOrDirPath));
         File fileOrDir = new File(fileOrDirPath);
@@ -22,38 +22,74 @@
  */
 package com.synopsys.integration.blackduck.dockerinspector.httpclient;
 
-import com.synopsys.integration.blackduck.dockerinspector.httpclient.connection.NonRedirectingIntHttpClient;
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.blackduck.dockerinspector.httpclient.connection.PooledIntHttpClient;
 import com.synopsys.integration.rest.client.IntHttpClient;
-import com.synopsys.integration.rest.proxy.ProxyInfo;
 import java.net.MalformedURLException;
 import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import javax.annotation.PreDestroy;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.synopsys.integration.log.IntLogger;
 import com.synopsys.integration.log.Slf4jIntLogger;
 
-
+/*
+ * Hands out one shared, pooled (keep-alive) connection per image inspector service, so health checks,
+ * version checks, and getBdio requests (from all threads, in multi-image mode) reuse TCP connections.
+ */
 @Component
 public class HttpConnectionCreator {
+    // Connections idle for longer than this are checked before reuse, since the service may have closed them
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLISECONDS = 1000;
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final Map<String, IntHttpClient> connectionsByKey = new ConcurrentHashMap<>();
+    private final Map<String, PoolingHttpClientConnectionManager> connectionPoolsByKey = new ConcurrentHashMap<>();
 
-    // Be sure to close the rest connection
-    public IntHttpClient createNonRedirectingConnection(final URI baseUri, final int timeoutSeconds) throws MalformedURLException {
-        logger.debug(String.format("Creating a rest connection (%d second timeout) for URL: %s", timeoutSeconds, baseUri.toString()));
-        final IntLogger intLogger = new Slf4jIntLogger(logger);
-        IntHttpClient connection = new NonRedirectingIntHttpClient(intLogger, timeoutSeconds, false, ProxyInfo.NO_PROXY_INFO);
-        return connection;
+    @Autowired
+    private Config config;
+
+    // The connection is shared; don't close it
+    public IntHttpClient getNonRedirectingConnection(final URI baseUri, final int timeoutSeconds) throws MalformedURLException {
+        return getConnection(baseUri, timeoutSeconds, false);
+    }
+
+    // The connection is shared; don't close it
+    public IntHttpClient getRedirectingConnection(final URI baseUri, final int timeoutSeconds) throws MalformedURLException {
+        return getConnection(baseUri, timeoutSeconds, true);
+    }
+
+    @PreDestroy
+    public void closeConnections() {
+        for (Map.Entry<String, PoolingHttpClientConnectionManager> connectionPool : connectionPoolsByKey.entrySet()) {
+            logger.debug(String.format("Closing connection pool for %s", connectionPool.getKey()));
+            connectionPool.getValue().close();
+        }
+        connectionPoolsByKey.clear();
+        connectionsByKey.clear();
+    }
 
+    private IntHttpClient getConnection(final URI baseUri, final int timeoutSeconds, final boolean followRedirects) {
+        final String key = String.format("%s (timeout: %d seconds, follow redirects: %b)", baseUri.toString(), timeoutSeconds, followRedirects);
+        return connectionsByKey.computeIfAbsent(key, k -> createConnection(k, timeoutSeconds, followRedirects));
     }
 
-    // Be sure to close the rest connection
-    public IntHttpClient createRedirectingConnection(final URI baseUri, final int timeoutSeconds) throws MalformedURLException {
-        logger.debug(String.format("Creating a rest connection (%d second timeout) for URL: %s", timeoutSeconds, baseUri.toString()));
+    private IntHttpClient createConnection(final String key, final int timeoutSeconds, final boolean followRedirects) {
+        final int poolSize = Math.max(1, config.getImageInspectorServiceConnectionPoolSize());
+        logger.debug(String.format("Creating a rest connection (pool size: %d) for %s", poolSize, key));
+        final PoolingHttpClientConnectionManager connectionPool = new PoolingHttpClientConnectionManager();
+        connectionPool.setMaxTotal(poolSize);
+        connectionPool.setDefaultMaxPerRoute(poolSize);
+        connectionPool.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLISECONDS);
+        connectionPoolsByKey.put(key, connectionPool);
         final IntLogger intLogger = new Slf4jIntLogger(logger);
-        IntHttpClient connection = new IntHttpClient(intLogger, timeoutSeconds, false, ProxyInfo.NO_PROXY_INFO);
-        return connection;
+        return new PooledIntHttpClient(intLogger, timeoutSeconds, followRedirects, connectionPool);
     }
 }
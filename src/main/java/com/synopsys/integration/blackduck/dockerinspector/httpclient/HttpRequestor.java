@@ -22,14 +22,26 @@
  */
 package com.synopsys.integration.blackduck.dockerinspector.httpclient;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.synopsys.integration.blackduck.dockerinspector.httpclient.response.SimpleResponse;
+import com.synopsys.integration.blackduck.dockerinspector.timing.Phase;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimer;
+import com.synopsys.integration.blackduck.dockerinspector.timing.RunningPhase;
 import com.synopsys.integration.exception.IntegrationException;
+import com.synopsys.integration.rest.RestConstants;
 import com.synopsys.integration.rest.HttpMethod;
 import com.synopsys.integration.rest.HttpUrl;
 import com.synopsys.integration.rest.client.IntHttpClient;
@@ -40,6 +52,9 @@ import com.synopsys.integration.rest.response.Response;
 public class HttpRequestor {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    @Autowired
+    private PhaseTimer phaseTimer;
+
     public SimpleResponse executeGetBdioRequest(IntHttpClient httpClient, URI imageInspectorUri,
         String containerPathToTarfile,
         String givenImageRepo, String givenImageTag,
@@ -49,7 +64,8 @@ public class HttpRequestor {
         boolean includeRemovedComponents,
         boolean cleanup,
         String platformTopLayerId,
-        String targetLinuxDistro)
+        String targetLinuxDistro,
+        File bdioFile)
         throws IntegrationException {
         String url = new ImageInspectorUrlBuilder()
                                .imageInspectorUri(imageInspectorUri)
@@ -67,8 +83,16 @@ public class HttpRequestor {
         logger.debug(String.format("Doing a getBdio request on %s", url));
         HttpUrl httpUrl = new HttpUrl(url);
         Request request = new Request.Builder(httpUrl).method(HttpMethod.GET).build();
-        try (Response response = httpClient.execute(request)) {
+        try (RunningPhase getBdioPhase = phaseTimer.start(Phase.GET_BDIO);
+            Response response = httpClient.execute(request)) {
             logger.debug(String.format("Response: HTTP status: %d", response.getStatusCode()));
+            if (response.getStatusCode() == RestConstants.OK_200) {
+                // The BDIO can be very large; stream it to the file rather than holding it in memory
+                long bdioSize = writeResponseBody(response, bdioFile);
+                getBdioPhase.addBytes(bdioSize);
+                logger.debug(String.format("Wrote %d bytes of BDIO to %s", bdioSize, bdioFile.getAbsolutePath()));
+                return new SimpleResponse(response.getStatusCode(), response.getHeaders(), null);
+            }
             return new SimpleResponse(response.getStatusCode(), response.getHeaders(), getResponseBody(response));
         } catch (IntegrationException ie) {
             if ((ie.getCause() != null) && (ie.getCause() instanceof java.net.SocketTimeoutException)) {
@@ -101,6 +125,13 @@ public class HttpRequestor {
         }
     }
 
+    private long writeResponseBody(Response response, File outputFile) throws IntegrationException, IOException {
+        try (InputStream responseBodyStream = response.getContent();
+            OutputStream outputFileStream = new BufferedOutputStream(new FileOutputStream(outputFile))) {
+            return IOUtils.copyLarge(responseBodyStream, outputFileStream);
+        }
+    }
+
     private String getResponseBody(Response response) throws IntegrationException {
         String responseBody = response.getContentString();
         logger.trace(String.format("Response: body: %s", responseBody));
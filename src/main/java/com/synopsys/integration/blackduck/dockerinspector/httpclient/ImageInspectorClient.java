@@ -27,7 +27,6 @@ import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Path;
 
-import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,30 +56,39 @@ public abstract class ImageInspectorClient {
         logger.debug(String.format("Required docker tarfile location: %s", finalDockerTarfile.getCanonicalPath()));
         if (!finalDockerTarfile.getCanonicalPath().equals(givenDockerTarfile.getFile().getCanonicalPath())) {
             logger.debug(String.format("Copying %s to %s", givenDockerTarfile.getFile().getCanonicalPath(), finalDockerTarfile.getCanonicalPath()));
-            FileUtils.copyFile(givenDockerTarfile.getFile(), finalDockerTarfile);
+            new SharedDirCopier().copy(givenDockerTarfile.getFile(), finalDockerTarfile);
             fileOperations.logFileOwnerGroupPerms(finalDockerTarfile);
         }
         logger.debug(String.format("Final docker tar file path: %s", finalDockerTarfile.getCanonicalPath()));
         return new ImageTarWrapper(finalDockerTarfile, givenDockerTarfile.getImageRepo(), givenDockerTarfile.getImageTag());
     }
 
-    private boolean fileIsInsideDir(File dir, File file) {
-        Path sharedDirPathObj = dir.toPath();
-        Path givenFilePathObj = file.toPath();
+    private boolean fileIsInsideDir(File dir, File file) throws IOException {
+        Path sharedDirPathObj = dir.getCanonicalFile().toPath();
+        Path givenFilePathObj = file.getCanonicalFile().toPath();
         if (givenFilePathObj.startsWith(sharedDirPathObj)) {
             return true;
         }
         return false;
     }
 
-    public abstract String getBdio(String hostPathToTarFile, String containerPathToInputDockerTarfile, String givenImageRepo, String givenImageTag,
+    // Writes the BDIO produced by the image inspector service to bdioFile
+    public abstract void getBdio(String hostPathToTarFile, String containerPathToInputDockerTarfile, String givenImageRepo, String givenImageTag,
         String containerPathToOutputFileSystemFile, String containerFileSystemExcludedPaths,
         boolean organizeComponentsByLayer, boolean includeRemovedComponents, boolean cleanup,
-        String platformTopLayerId, String targetLinuxDistro)
+        String platformTopLayerId, String targetLinuxDistro, File bdioFile)
         throws IntegrationException, IOException, InterruptedException;
 
     public abstract boolean isApplicable();
 
+    // In multi-image mode, cleanup of anything started to serve requests is deferred until all images have been inspected
+    public void cleanupServices() {
+    }
+
+    // Optionally starts services ahead of the first request, while the target image is still being prepared
+    public void startServiceWarmup() {
+    }
+
     protected void checkServiceVersion(ProgramVersion programVersion, ImageInspectorServices imageInspectorServices, IntHttpClient httpClient, URI imageInspectorUri) {
         String serviceVersion = imageInspectorServices.getServiceVersion(httpClient, imageInspectorUri);
         logger.info(String.format("Image Inspector Service version: %s", serviceVersion));
@@ -22,12 +22,21 @@
  */
 package com.synopsys.integration.blackduck.dockerinspector.httpclient;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.function.Predicate;
 
 import org.apache.commons.lang3.StringUtils;
@@ -40,7 +49,9 @@ import com.github.dockerjava.api.model.Container;
 import com.synopsys.integration.blackduck.dockerinspector.config.Config;
 import com.synopsys.integration.blackduck.dockerinspector.dockerclient.DockerClientManager;
 import com.synopsys.integration.blackduck.dockerinspector.httpclient.response.SimpleResponse;
+import com.synopsys.integration.blackduck.dockerinspector.metrics.InspectorMetrics;
 import com.synopsys.integration.blackduck.dockerinspector.programversion.ProgramVersion;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimer;
 import com.synopsys.integration.blackduck.imageinspector.api.ImageInspectorOsEnum;
 import com.synopsys.integration.exception.IntegrationException;
 import com.synopsys.integration.rest.RestConstants;
@@ -52,6 +63,18 @@ public class ImageInspectorClientStartServices extends ImageInspectorClient {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
     private final String II_SERVICE_URI_SCHEME = "http";
     private final String II_SERVICE_HOST = "localhost";
+    private final Set<String> containerIdsToCleanup = ConcurrentHashMap.newKeySet();
+    private final Set<String> imageIdsToCleanup = ConcurrentHashMap.newKeySet();
+    // Limits concurrent requests per service, and ensures only one thread starts a given service
+    private final Map<ImageInspectorOsEnum, Semaphore> requestPermitsByOs = new ConcurrentHashMap<>();
+    private final Map<ImageInspectorOsEnum, Object> serviceStartLocksByOs = new ConcurrentHashMap<>();
+    // Services warmed up ahead of the first request are pulled and started on background threads, one per inspector image
+    private final ExecutorService warmupExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread warmupThread = new Thread(runnable, "docker-inspector-service-warmup");
+        warmupThread.setDaemon(true);
+        return warmupThread;
+    });
+    private CompletableFuture<Void> serviceWarmup;
 
     @Autowired
     private Config config;
@@ -77,6 +100,15 @@ public class ImageInspectorClientStartServices extends ImageInspectorClient {
     @Autowired
     private ContainerName containerNameManager;
 
+    @Autowired
+    private InspectorOsPredictor inspectorOsPredictor;
+
+    @Autowired
+    private InspectorMetrics inspectorMetrics;
+
+    @Autowired
+    private PhaseTimer phaseTimer;
+
     @Override
     public boolean isApplicable() {
         boolean answer = config.isImageInspectorServiceStart();
@@ -84,18 +116,42 @@ public class ImageInspectorClientStartServices extends ImageInspectorClient {
         return answer;
     }
 
+    // Pulls every inspector image and starts its service in parallel; a service that fails to warm up is started (or not) when a request needs it
+    @Override
+    public synchronized void startServiceWarmup() {
+        if (!config.isImageInspectorServiceWarmup() || serviceWarmup != null) {
+            return;
+        }
+        logger.info(String.format("Warming up image inspector services: %s", inspectorImages.getInspectorImageOses()));
+        List<CompletableFuture<Void>> serviceWarmups = new ArrayList<>();
+        for (ImageInspectorOsEnum inspectorOs : inspectorImages.getInspectorImageOses()) {
+            // Warm-up isn't done for any one image, so it's timed as part of the run
+            serviceWarmups.add(CompletableFuture.runAsync(phaseTimer.withTimings(phaseTimer.getRunTimings(), () -> warmUpService(inspectorOs)), warmupExecutor));
+        }
+        serviceWarmup = CompletableFuture.allOf(serviceWarmups.toArray(new CompletableFuture[0]));
+    }
+
     @Override
-    public String getBdio(String hostPathToTarfile, String containerPathToInputDockerTarfile, String givenImageRepo, String givenImageTag,
+    public void getBdio(String hostPathToTarfile, String containerPathToInputDockerTarfile, String givenImageRepo, String givenImageTag,
         String containerPathToOutputFileSystemFile, String containerFileSystemExcludedPaths,
         boolean organizeComponentsByLayer, boolean includeRemovedComponents, boolean cleanup,
         String platformTopLayerId,
-        String targetLinuxDistro)
+        String targetLinuxDistro, File bdioFile)
         throws IntegrationException, InterruptedException, IOException {
         logger.info(dockerClientManager.getDockerJavaLibraryVersion());
 
-        // First, try the default inspector service (which will return either the BDIO, or a redirect)
-        ImageInspectorOsEnum inspectorOs = ImageInspectorOsEnum.determineOperatingSystem(config.getImageInspectorDefaultDistro());
-        URI imageInspectorBaseUri = deriveInspectorBaseUri(imageInspectorServices.getDefaultImageInspectorHostPortBasedOnDistro());
+        // First, try the predicted (or else the default) inspector service (which will return either the BDIO, or a redirect)
+        Optional<ImageInspectorOsEnum> predictedInspectorOs = inspectorOsPredictor.predict(hostPathToTarfile, givenImageRepo, givenImageTag);
+        ImageInspectorOsEnum inspectorOs;
+        URI imageInspectorBaseUri;
+        if (predictedInspectorOs.isPresent()) {
+            inspectorOs = predictedInspectorOs.get();
+            logger.info(String.format("Predicted that this image needs to be inspected on %s", inspectorOs.name()));
+            imageInspectorBaseUri = deriveInspectorBaseUri(imageInspectorServices.getImageInspectorHostPort(inspectorOs));
+        } else {
+            inspectorOs = ImageInspectorOsEnum.determineOperatingSystem(config.getImageInspectorDefaultDistro());
+            imageInspectorBaseUri = deriveInspectorBaseUri(imageInspectorServices.getDefaultImageInspectorHostPortBasedOnDistro());
+        }
         Predicate<Integer> initialRequestFailureCriteria = statusCode -> statusCode != RestConstants.OK_200 && statusCode != RestConstants.MOVED_TEMP_302 && statusCode != RestConstants.MOVED_PERM_301;
         SimpleResponse response = getResponseFromService(imageInspectorBaseUri, inspectorOs,
             containerPathToInputDockerTarfile,
@@ -103,10 +159,11 @@ public class ImageInspectorClientStartServices extends ImageInspectorClient {
             containerPathToOutputFileSystemFile, containerFileSystemExcludedPaths,
             organizeComponentsByLayer,
             includeRemovedComponents, cleanup, platformTopLayerId,
-            targetLinuxDistro,
+            targetLinuxDistro, bdioFile,
             initialRequestFailureCriteria);
         if (response.getStatusCode() == RestConstants.OK_200) {
-            return response.getBody();
+            inspectorOsPredictor.learn(givenImageRepo, inspectorOs);
+            return;
         }
         if (response.getStatusCode() >= RestConstants.BAD_REQUEST_400) {
             throw new IntegrationException(String.format("getBdio request returned status: %d: %s", response.getStatusCode(), response.getBody()));
@@ -117,16 +174,17 @@ public class ImageInspectorClientStartServices extends ImageInspectorClient {
 
         // Handle redirect
         ImageInspectorOsEnum correctedInspectorOs = ImageInspectorOsEnum.determineOperatingSystem(correctImageInspectorOsName);
+        inspectorMetrics.recordGetBdioRedirect(inspectorOs, correctedInspectorOs);
         URI correctedImageInspectorBaseUri = deriveInspectorBaseUri(imageInspectorServices.getImageInspectorHostPort(correctedInspectorOs));
         Predicate<Integer> correctedRequestFailureCriteria = statusCode -> statusCode != RestConstants.OK_200;
-        SimpleResponse responseFromCorrectedContainer = getResponseFromService(correctedImageInspectorBaseUri, correctedInspectorOs, containerPathToInputDockerTarfile,
+        getResponseFromService(correctedImageInspectorBaseUri, correctedInspectorOs, containerPathToInputDockerTarfile,
             givenImageRepo, givenImageTag,
             containerPathToOutputFileSystemFile, containerFileSystemExcludedPaths,
             organizeComponentsByLayer, includeRemovedComponents,
             cleanup, platformTopLayerId,
-            targetLinuxDistro,
+            targetLinuxDistro, bdioFile,
             correctedRequestFailureCriteria);
-        return responseFromCorrectedContainer.getBody();
+        inspectorOsPredictor.learn(givenImageRepo, correctedInspectorOs);
     }
 
     private SimpleResponse getResponseFromService(URI imageInspectorUri, ImageInspectorOsEnum inspectorOs,
@@ -134,27 +192,35 @@ public class ImageInspectorClientStartServices extends ImageInspectorClient {
         String givenImageRepo, String givenImageTag,
         String containerPathToOutputFileSystemFile, String containerFileSystemExcludedPaths,
         boolean organizeComponentsByLayer, boolean includeRemovedComponents, boolean cleanup, String platformTopLayerId,
-        String targetLinuxDistro,
+        String targetLinuxDistro, File bdioFile,
         Predicate<Integer> failureTest)
         throws IntegrationException, InterruptedException, IOException {
         SimpleResponse response = null;
         ContainerDetails serviceContainerDetails = null;
         IntHttpClient restConnection = null;
         try {
-            restConnection = createRestConnection(imageInspectorUri, deriveTimeoutSeconds());
-            serviceContainerDetails = ensureServiceReady(restConnection, imageInspectorUri, inspectorOs);
+            restConnection = getRestConnection(imageInspectorUri, deriveTimeoutSeconds());
+            synchronized (serviceStartLocksByOs.computeIfAbsent(inspectorOs, os -> new Object())) {
+                serviceContainerDetails = ensureServiceReady(restConnection, imageInspectorUri, inspectorOs);
+            }
+            Semaphore requestPermits = requestPermitsByOs.computeIfAbsent(inspectorOs, os -> new Semaphore(Math.max(1, config.getImageInspectorServiceConcurrency()), true));
+            requestPermits.acquire();
             try {
                 logger.info(String.format("Sending getBdio request to: %s (%s)", imageInspectorUri.toString(), inspectorOs.name()));
+                long requestStartTimeMillis = System.currentTimeMillis();
                 response = httpRequestor.executeGetBdioRequest(restConnection, imageInspectorUri, containerPathToInputDockerTarfile,
                     givenImageRepo, givenImageTag,
                     containerPathToOutputFileSystemFile, containerFileSystemExcludedPaths,
                     organizeComponentsByLayer, includeRemovedComponents, cleanup,
                     platformTopLayerId,
-                    targetLinuxDistro);
+                    targetLinuxDistro, bdioFile);
+                inspectorMetrics.recordGetBdioRequest(inspectorOs, System.currentTimeMillis() - requestStartTimeMillis);
                 logServiceLogIfDebug(serviceContainerDetails.getContainerId());
             } catch (IntegrationException e) {
                 logServiceError(serviceContainerDetails.getContainerId());
                 throw e;
+            } finally {
+                requestPermits.release();
             }
             int statusCode = response.getStatusCode();
             logger.debug(String.format("Response StatusCode: %d", statusCode));
@@ -178,20 +244,80 @@ public class ImageInspectorClientStartServices extends ImageInspectorClient {
             } else {
                 logger.trace(String.format("Service connection/image/container cleanup: image id: %s, container id: %s", serviceContainerDetails.getImageId(), serviceContainerDetails.getContainerId()));
             }
-            if (config.isCleanupInspectorContainer()) {
-                if (serviceContainerDetails != null) {
-                    dockerClientManager.stopRemoveContainer(serviceContainerDetails.getContainerId());
-                }
+            if (config.isMultiImageMode() || config.isImageInspectorServiceWarmup()) {
+                deferCleanup(serviceContainerDetails);
+            } else {
+                cleanup(serviceContainerDetails);
+            }
+        }
+        return response;
+    }
+
+    @Override
+    public void cleanupServices() {
+        // Let any warm-up finish first, so the containers it starts get cleaned up too
+        CompletableFuture<Void> startedServiceWarmup;
+        synchronized (this) {
+            startedServiceWarmup = serviceWarmup;
+            serviceWarmup = null;
+        }
+        if (startedServiceWarmup != null) {
+            startedServiceWarmup.join();
+        }
+        for (String containerId : containerIdsToCleanup) {
+            dockerClientManager.stopRemoveContainer(containerId);
+        }
+        containerIdsToCleanup.clear();
+        for (String imageId : imageIdsToCleanup) {
+            dockerClientManager.removeImage(imageId);
+        }
+        imageIdsToCleanup.clear();
+    }
+
+    private void warmUpService(ImageInspectorOsEnum inspectorOs) {
+        long warmupStartTimeMillis = System.currentTimeMillis();
+        try {
+            URI imageInspectorUri = deriveInspectorBaseUri(imageInspectorServices.getImageInspectorHostPort(inspectorOs));
+            IntHttpClient restConnection = getRestConnection(imageInspectorUri, deriveTimeoutSeconds());
+            ContainerDetails serviceContainerDetails;
+            synchronized (serviceStartLocksByOs.computeIfAbsent(inspectorOs, os -> new Object())) {
+                serviceContainerDetails = ensureServiceReady(restConnection, imageInspectorUri, inspectorOs);
             }
-            if (config.isCleanupInspectorImage()) {
-                if (serviceContainerDetails != null) {
-                    if (serviceContainerDetails.getImageId() != null) {
-                        dockerClientManager.removeImage(serviceContainerDetails.getImageId());
-                    }
+            deferCleanup(serviceContainerDetails);
+            logger.info(String.format("Image inspector service %s (%s) ready after %d ms", imageInspectorUri.toString(), inspectorOs.name(), System.currentTimeMillis() - warmupStartTimeMillis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn(String.format("Warm-up of the %s image inspector service was interrupted", inspectorOs.name()));
+        } catch (Exception e) {
+            logger.warn(String.format("Unable to warm up the %s image inspector service: %s; it will be started if a request needs it", inspectorOs.name(), e.getMessage()));
+        }
+    }
+
+    private void cleanup(ContainerDetails serviceContainerDetails) {
+        if (config.isCleanupInspectorContainer()) {
+            if (serviceContainerDetails != null) {
+                dockerClientManager.stopRemoveContainer(serviceContainerDetails.getContainerId());
+            }
+        }
+        if (config.isCleanupInspectorImage()) {
+            if (serviceContainerDetails != null) {
+                if (serviceContainerDetails.getImageId() != null) {
+                    dockerClientManager.removeImage(serviceContainerDetails.getImageId());
                 }
             }
         }
-        return response;
+    }
+
+    private void deferCleanup(ContainerDetails serviceContainerDetails) {
+        if (serviceContainerDetails == null) {
+            return;
+        }
+        if (config.isCleanupInspectorContainer()) {
+            containerIdsToCleanup.add(serviceContainerDetails.getContainerId());
+        }
+        if (config.isCleanupInspectorImage() && serviceContainerDetails.getImageId() != null) {
+            imageIdsToCleanup.add(serviceContainerDetails.getImageId());
+        }
     }
 
     private void logServiceError(String correctedContainerId) throws InterruptedException {
@@ -233,12 +359,12 @@ public class ImageInspectorClientStartServices extends ImageInspectorClient {
         return imageInspectorUri;
     }
 
-    private IntHttpClient createRestConnection(URI imageInspectorUri, int serviceRequestTimeoutSeconds) throws IntegrationException {
-        logger.debug(String.format("Creating a rest connection (%d second timeout) for URL: %s", serviceRequestTimeoutSeconds, imageInspectorUri.toString()));
+    private IntHttpClient getRestConnection(URI imageInspectorUri, int serviceRequestTimeoutSeconds) throws IntegrationException {
+        logger.debug(String.format("Getting a rest connection (%d second timeout) for URL: %s", serviceRequestTimeoutSeconds, imageInspectorUri.toString()));
         IntHttpClient restConnection;
         try {
             restConnection = httpConnectionCreator
-                                 .createNonRedirectingConnection(imageInspectorUri, serviceRequestTimeoutSeconds);
+                                 .getNonRedirectingConnection(imageInspectorUri, serviceRequestTimeoutSeconds);
         } catch (MalformedURLException e) {
             throw new IntegrationException(String.format("Error creating connection for URL: %s, timeout: %d", imageInspectorUri.toString(), serviceRequestTimeoutSeconds), e);
         }
@@ -269,8 +395,9 @@ public class ImageInspectorClientStartServices extends ImageInspectorClient {
             String.format("%s/%s/%s.jar", Config.CONTAINER_BLACKDUCK_DIR, Config.IMAGEINSPECTOR_WS_APPNAME, Config.IMAGEINSPECTOR_WS_APPNAME),
             deriveInspectorBaseUri(config.getImageInspectorHostPortAlpine()).toString(), deriveInspectorBaseUri(config.getImageInspectorHostPortCentos()).toString(),
             deriveInspectorBaseUri(config.getImageInspectorHostPortUbuntu()).toString());
+        inspectorMetrics.recordServiceContainerStart(inspectorOs);
         ContainerDetails containerDetails = new ContainerDetails(imageId.orElse(null), containerId);
-        serviceIsUp = imageInspectorServices.startService(httpClient, imageInspectorUri, imageInspectorRepo, imageInspectorTag);
+        serviceIsUp = imageInspectorServices.startService(httpClient, imageInspectorUri, imageInspectorRepo, imageInspectorTag, containerId);
         if (!serviceIsUp) {
             dockerClientManager.logServiceLogAsDebug(containerId);
             throw new IntegrationException(String.format("Tried to start image imspector container %s:%s, but service %s never came online", imageInspectorRepo, imageInspectorTag, imageInspectorUri.toString()));
@@ -282,7 +409,7 @@ public class ImageInspectorClientStartServices extends ImageInspectorClient {
     private Optional<String> pullImageTolerantly(String imageInspectorRepo, String imageInspectorTag) {
         Optional<String> imageId = Optional.empty();
         try {
-            imageId = Optional.ofNullable(dockerClientManager.pullImage(imageInspectorRepo, imageInspectorTag));
+            imageId = Optional.ofNullable(dockerClientManager.pullInspectorImage(imageInspectorRepo, imageInspectorTag));
             logger.debug(String.format("Pulled image ID %s", imageId.orElse("<null>")));
         } catch (Exception e) {
             logger.warn(String.format("Unable to pull docker image %s:%s; proceeding anyway since it may already exist locally", imageInspectorRepo, imageInspectorTag));
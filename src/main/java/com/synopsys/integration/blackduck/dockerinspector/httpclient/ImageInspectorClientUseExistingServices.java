@@ -22,6 +22,7 @@
  */
 package com.synopsys.integration.blackduck.dockerinspector.httpclient;
 
+import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -36,6 +37,7 @@ import com.synopsys.integration.blackduck.dockerinspector.config.Config;
 import com.synopsys.integration.blackduck.dockerinspector.httpclient.response.SimpleResponse;
 import com.synopsys.integration.blackduck.dockerinspector.programversion.ProgramVersion;
 import com.synopsys.integration.exception.IntegrationException;
+import com.synopsys.integration.rest.RestConstants;
 import com.synopsys.integration.rest.client.IntHttpClient;
 
 @Component
@@ -66,11 +68,11 @@ public class ImageInspectorClientUseExistingServices extends ImageInspectorClien
     }
 
     @Override
-    public String getBdio(String hostPathToTarfile, String containerPathToInputDockerTarfile, String givenImageRepo, String givenImageTag,
+    public void getBdio(String hostPathToTarfile, String containerPathToInputDockerTarfile, String givenImageRepo, String givenImageTag,
         String containerPathToOutputFileSystemFile, String containerFileSystemExcludedPaths,
         boolean organizeComponentsByLayer, boolean includeRemovedComponents,
         boolean cleanup, String platformTopLayerId,
-        String targetLinuxDistro)
+        String targetLinuxDistro, File bdioFile)
         throws IntegrationException, MalformedURLException {
         URI imageInspectorUri;
         try {
@@ -80,15 +82,17 @@ public class ImageInspectorClientUseExistingServices extends ImageInspectorClien
         }
         int serviceRequestTimeoutSeconds = deriveTimeoutSeconds();
         IntHttpClient httpClient = httpConnectionCreator
-                                       .createRedirectingConnection(imageInspectorUri, serviceRequestTimeoutSeconds);
+                                       .getRedirectingConnection(imageInspectorUri, serviceRequestTimeoutSeconds);
         checkServiceVersion(programVersion, imageInspectorServices, httpClient, imageInspectorUri);
         SimpleResponse response = restRequester.executeGetBdioRequest(httpClient, imageInspectorUri, containerPathToInputDockerTarfile,
             givenImageRepo, givenImageTag,
             containerPathToOutputFileSystemFile, containerFileSystemExcludedPaths,
             organizeComponentsByLayer, includeRemovedComponents, cleanup,
             platformTopLayerId,
-            targetLinuxDistro);
-        return response.getBody();
+            targetLinuxDistro, bdioFile);
+        if (response.getStatusCode() != RestConstants.OK_200) {
+            throw new IntegrationException(String.format("getBdio request returned status: %d: %s", response.getStatusCode(), response.getBody()));
+        }
     }
 
     private int deriveTimeoutSeconds() {
@@ -30,6 +30,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.blackduck.dockerinspector.dockerclient.DockerClientManager;
+import com.synopsys.integration.blackduck.dockerinspector.timing.Phase;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimer;
+import com.synopsys.integration.blackduck.dockerinspector.timing.RunningPhase;
 import com.synopsys.integration.blackduck.exception.BlackDuckIntegrationException;
 import com.synopsys.integration.blackduck.imageinspector.api.ImageInspectorOsEnum;
 import com.synopsys.integration.exception.IntegrationException;
@@ -38,7 +42,9 @@ import com.synopsys.integration.rest.client.IntHttpClient;
 @Component
 public class ImageInspectorServices {
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
-    private final int MAX_CONTAINER_START_TRY_COUNT = 30;
+    // Health checks start almost immediately and back off exponentially, so a service that's up in a few seconds is detected in a few seconds
+    private static final long INITIAL_HEALTH_CHECK_PAUSE_MILLISECONDS = 10L;
+    private static final long MAX_HEALTH_CHECK_PAUSE_MILLISECONDS = 5000L;
 
     @Autowired
     private Config config;
@@ -46,6 +52,12 @@ public class ImageInspectorServices {
     @Autowired
     private HttpRequestor httpRequestor;
 
+    @Autowired
+    private DockerClientManager dockerClientManager;
+
+    @Autowired
+    private PhaseTimer phaseTimer;
+
     public int getImageInspectorHostPort(final ImageInspectorOsEnum imageInspectorOs) throws BlackDuckIntegrationException {
         if (ImageInspectorOsEnum.ALPINE.equals(imageInspectorOs)) {
             return config.getImageInspectorHostPortAlpine();
@@ -86,16 +98,36 @@ public class ImageInspectorServices {
         throw new IntegrationException(String.format("Invalid value for property image.inspector.default: %s", inspectorOsName));
     }
 
-    public boolean startService(final IntHttpClient httpClient, final URI imageInspectorUri, final String imageInspectorRepo, final String imageInspectorTag) throws InterruptedException {
-        boolean serviceIsUp = false;
-        final long timeoutMilliseconds = config.getServiceTimeout() / MAX_CONTAINER_START_TRY_COUNT;
-        for (int tryIndex = 0; tryIndex < MAX_CONTAINER_START_TRY_COUNT && !serviceIsUp; tryIndex++) {
-            logger.debug(String.format("Pausing %d seconds to give service time to start up", (int) (timeoutMilliseconds / 1000L)));
-            Thread.sleep(timeoutMilliseconds);
-            logger.debug(String.format("Checking service %s to see if it is up; attempt %d of %d", imageInspectorUri.toString(), tryIndex + 1, MAX_CONTAINER_START_TRY_COUNT));
-            serviceIsUp = checkServiceHealth(httpClient, imageInspectorUri);
+    public boolean startService(final IntHttpClient httpClient, final URI imageInspectorUri, final String imageInspectorRepo, final String imageInspectorTag, final String containerId) throws InterruptedException {
+        final long startTimeMilliseconds = System.currentTimeMillis();
+        final long deadlineMilliseconds = startTimeMilliseconds + config.getServiceTimeout();
+        try (RunningPhase healthCheckPhase = phaseTimer.start(Phase.SERVICE_HEALTH_CHECK)) {
+            return awaitService(httpClient, imageInspectorUri, imageInspectorRepo, imageInspectorTag, containerId, startTimeMilliseconds, deadlineMilliseconds, healthCheckPhase);
+        }
+    }
+
+    private boolean awaitService(final IntHttpClient httpClient, final URI imageInspectorUri, final String imageInspectorRepo, final String imageInspectorTag, final String containerId,
+        final long startTimeMilliseconds, final long deadlineMilliseconds, final RunningPhase healthCheckPhase) throws InterruptedException {
+        long pauseMilliseconds = INITIAL_HEALTH_CHECK_PAUSE_MILLISECONDS;
+        for (int attemptCount = 1; ; attemptCount++) {
+            logger.debug(String.format("Checking service %s (%s:%s) to see if it is up; attempt %d", imageInspectorUri.toString(), imageInspectorRepo, imageInspectorTag, attemptCount));
+            if (checkServiceHealth(httpClient, imageInspectorUri)) {
+                logger.debug(String.format("Service %s came up after %d ms (%d health checks)", imageInspectorUri.toString(), System.currentTimeMillis() - startTimeMilliseconds, attemptCount));
+                return true;
+            }
+            if (!dockerClientManager.isContainerRunning(containerId)) {
+                logger.warn(String.format("Image inspector container %s (%s:%s) is no longer running; service %s will not come up", containerId, imageInspectorRepo, imageInspectorTag, imageInspectorUri.toString()));
+                return false;
+            }
+            final long remainingMilliseconds = deadlineMilliseconds - System.currentTimeMillis();
+            if (remainingMilliseconds <= 0) {
+                logger.debug(String.format("Service %s did not come up within %d ms", imageInspectorUri.toString(), config.getServiceTimeout()));
+                return false;
+            }
+            healthCheckPhase.addRetry();
+            Thread.sleep(Math.min(pauseMilliseconds, remainingMilliseconds));
+            pauseMilliseconds = Math.min(pauseMilliseconds * 2, MAX_HEALTH_CHECK_PAUSE_MILLISECONDS);
         }
-        return serviceIsUp;
     }
 
     public boolean checkServiceHealth(final IntHttpClient httpClient, final URI imageInspectorUri) {
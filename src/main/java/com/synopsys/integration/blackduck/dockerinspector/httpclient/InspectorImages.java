@@ -24,8 +24,10 @@ package com.synopsys.integration.blackduck.dockerinspector.httpclient;
 
 import com.synopsys.integration.blackduck.dockerinspector.programversion.ProgramVersion;
 import com.synopsys.integration.blackduck.imageinspector.api.ImageInspectorOsEnum;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.PostConstruct;
 
@@ -85,4 +87,8 @@ public class InspectorImages {
         }
         return image.getImageVersion();
     }
+
+    public Set<ImageInspectorOsEnum> getInspectorImageOses() {
+        return Collections.unmodifiableSet(inspectorImageMap.keySet());
+    }
 }
@@ -0,0 +1,76 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.httpclient;
+
+import java.io.File;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.synopsys.integration.blackduck.dockerinspector.cache.InspectorOsCache;
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.blackduck.dockerinspector.imagetar.ImageTarPackageManagerDetector;
+import com.synopsys.integration.blackduck.imageinspector.api.ImageInspectorOsEnum;
+
+@Component
+public class InspectorOsPredictor {
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private Config config;
+
+    @Autowired
+    private InspectorOsCache inspectorOsCache;
+
+    @Autowired
+    private ImageTarPackageManagerDetector imageTarPackageManagerDetector;
+
+    public Optional<ImageInspectorOsEnum> predict(String hostPathToTarfile, String givenImageRepo, String givenImageTag) {
+        if (!config.isImageInspectorServiceDistroPredict()) {
+            return Optional.empty();
+        }
+        Optional<ImageInspectorOsEnum> inspectorOs = inspectorOsCache.find(givenImageRepo);
+        if (inspectorOs.isPresent()) {
+            logger.debug(String.format("Repo %s was last inspected on %s", givenImageRepo, inspectorOs.get().name()));
+            return inspectorOs;
+        }
+        try {
+            inspectorOs = imageTarPackageManagerDetector.detectInspectorOs(new File(hostPathToTarfile), givenImageRepo, givenImageTag);
+        } catch (Exception e) {
+            logger.debug(String.format("Unable to predict inspector OS from %s: %s", hostPathToTarfile, e.getMessage()));
+            return Optional.empty();
+        }
+        inspectorOs.ifPresent(os -> logger.debug(String.format("Package manager database found in %s indicates inspector OS %s", hostPathToTarfile, os.name())));
+        return inspectorOs;
+    }
+
+    // Called with the inspector OS that actually served the image
+    public void learn(String givenImageRepo, ImageInspectorOsEnum inspectorOs) {
+        if (config.isImageInspectorServiceDistroPredict()) {
+            inspectorOsCache.store(givenImageRepo, inspectorOs);
+        }
+    }
+}
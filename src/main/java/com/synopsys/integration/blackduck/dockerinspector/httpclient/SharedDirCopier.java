@@ -0,0 +1,161 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.httpclient;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Puts an image tarfile (often several GB) into the shared dir as cheaply as the file system allows:
+ * 1. a hard link: no data is written, but only within one file system, and only if the tarfile is readable by the image inspector service as it is;
+ * 2. a reflink clone (cp --reflink=always, Linux only): no data is written, but only on file systems that share extents, such as btrfs and XFS;
+ * 3. a FileChannel.transferTo copy, which the kernel performs (sendfile on Linux) without copying the data through the JVM;
+ * 4. Files.copy.
+ * A clone or copy is made readable by others, since the image inspector service may run as another user.
+ */
+public class SharedDirCopier {
+    public enum Strategy {
+        HARD_LINK,
+        REFLINK,
+        TRANSFER_TO,
+        FILES_COPY
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public Strategy copy(File sourceFile, File targetFile) throws IOException {
+        Path source = sourceFile.toPath();
+        Path target = targetFile.toPath();
+        Files.createDirectories(target.getParent());
+        Files.deleteIfExists(target);
+        long startTimeMillis = System.currentTimeMillis();
+        Strategy strategy = copy(source, target);
+        long elapsedMillis = Math.max(1L, System.currentTimeMillis() - startTimeMillis);
+        double megabytesPerSecond = (sourceFile.length() / (1024.0 * 1024.0)) / (elapsedMillis / 1000.0);
+        logger.info(String.format("Put %s (%d bytes) in the shared dir as %s using strategy %s in %d ms (%.1f MB/sec)", sourceFile.getName(), sourceFile.length(),
+            targetFile.getAbsolutePath(), strategy, elapsedMillis, megabytesPerSecond));
+        return strategy;
+    }
+
+    private Strategy copy(Path source, Path target) throws IOException {
+        if (isReadableByOthers(source)) {
+            try {
+                Files.createLink(target, source);
+                return Strategy.HARD_LINK;
+            } catch (IOException | UnsupportedOperationException | SecurityException e) {
+                logger.debug(String.format("Unable to hard link %s to %s: %s", target, source, e.getMessage()));
+            }
+        } else {
+            // The link would share the tarfile's permissions, which the image inspector service (running as another user) may not be able to read
+            logger.debug(String.format("%s is not readable by others; not hard linking it", source));
+        }
+        Strategy strategy = cloneOrCopy(source, target);
+        makeReadableByOthers(target);
+        return strategy;
+    }
+
+    private Strategy cloneOrCopy(Path source, Path target) throws IOException {
+        if (reflink(source, target)) {
+            return Strategy.REFLINK;
+        }
+        try {
+            transfer(source, target);
+            return Strategy.TRANSFER_TO;
+        } catch (IOException e) {
+            logger.debug(String.format("Unable to copy %s to %s using FileChannel.transferTo: %s", source, target, e.getMessage()));
+            Files.deleteIfExists(target);
+        }
+        Files.copy(source, target);
+        return Strategy.FILES_COPY;
+    }
+
+    // The JDK has no API for cloning a file, so this uses GNU cp, which fails (rather than copying) if the file system can't clone
+    private boolean reflink(Path source, Path target) throws IOException {
+        if (!SystemUtils.IS_OS_LINUX) {
+            return false;
+        }
+        try {
+            Process cpProcess = new ProcessBuilder("cp", "--reflink=always", source.toString(), target.toString())
+                                    .redirectErrorStream(true)
+                                    .start();
+            String cpOutput = IOUtils.toString(cpProcess.getInputStream(), StandardCharsets.UTF_8);
+            int exitCode = cpProcess.waitFor();
+            if (exitCode == 0) {
+                return true;
+            }
+            logger.debug(String.format("Unable to clone %s to %s using cp --reflink=always (exit code %d): %s", source, target, exitCode, cpOutput.trim()));
+        } catch (IOException e) {
+            logger.debug(String.format("Unable to run cp --reflink=always: %s", e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.debug(String.format("Interrupted while cloning %s to %s", source, target));
+        }
+        Files.deleteIfExists(target);
+        return false;
+    }
+
+    private void transfer(Path source, Path target) throws IOException {
+        try (FileChannel sourceChannel = FileChannel.open(source, StandardOpenOption.READ);
+            FileChannel targetChannel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long size = sourceChannel.size();
+            long position = 0L;
+            // transferTo may transfer fewer bytes than requested
+            while (position < size) {
+                position += sourceChannel.transferTo(position, size - position, targetChannel);
+            }
+        }
+    }
+
+    // A clone or copy gets the tarfile's permissions (Files.copy, cp) or the umask (transferTo), either of which may exclude others
+    private void makeReadableByOthers(Path file) throws IOException {
+        PosixFileAttributeView posixAttributes = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+        if (posixAttributes == null) {
+            return;
+        }
+        Set<PosixFilePermission> permissions = posixAttributes.readAttributes().permissions();
+        if (permissions.add(PosixFilePermission.OTHERS_READ)) {
+            posixAttributes.setPermissions(permissions);
+        }
+    }
+
+    private boolean isReadableByOthers(Path file) throws IOException {
+        PosixFileAttributeView posixAttributes = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+        if (posixAttributes == null) {
+            return true;
+        }
+        return posixAttributes.readAttributes().permissions().contains(PosixFilePermission.OTHERS_READ);
+    }
+}
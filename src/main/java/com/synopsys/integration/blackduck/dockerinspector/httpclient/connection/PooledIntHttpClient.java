@@ -0,0 +1,46 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.httpclient.connection;
+
+import org.apache.http.conn.HttpClientConnectionManager;
+
+import com.synopsys.integration.log.IntLogger;
+import com.synopsys.integration.rest.client.IntHttpClient;
+import com.synopsys.integration.rest.proxy.ProxyInfo;
+
+// IntHttpClient builds a new Apache HttpClient per request and closes it with the response;
+// sharing one connection manager across those clients is what keeps connections alive between requests
+public class PooledIntHttpClient extends
+    IntHttpClient {
+
+    public PooledIntHttpClient(final IntLogger logger, final int timeout, final boolean followRedirects, final HttpClientConnectionManager connectionManager) {
+        super(logger, timeout, false, ProxyInfo.NO_PROXY_INFO);
+        getClientBuilder()
+            .setConnectionManager(connectionManager)
+            .setConnectionManagerShared(true);
+        if (!followRedirects) {
+            logger.debug("Disabling redirect handling on this HTTP client");
+            getClientBuilder().disableRedirectHandling();
+        }
+    }
+}
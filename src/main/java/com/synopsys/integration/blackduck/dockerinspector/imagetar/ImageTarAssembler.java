@@ -0,0 +1,146 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.imagetar;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.google.gson.Gson;
+import com.synopsys.integration.blackduck.dockerinspector.registry.BlobSource;
+import com.synopsys.integration.blackduck.dockerinspector.registry.ContentDescriptor;
+import com.synopsys.integration.blackduck.dockerinspector.registry.ImageManifest;
+import com.synopsys.integration.exception.IntegrationException;
+
+/*
+ * Writes a docker save (docker-archive) format tarfile, which is what the image inspector services read,
+ * from an image manifest and its blobs, so an image from an OCI image layout or a registry can be inspected
+ * without the Docker engine. Compressed layers are decompressed, since docker save tarfiles contain uncompressed layers.
+ */
+@Component
+public class ImageTarAssembler {
+    private static final String LAYER_FILENAME = "layer.tar";
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final Gson gson;
+
+    @Autowired
+    public ImageTarAssembler(Gson gson) {
+        this.gson = gson;
+    }
+
+    // Returns the size of the tarfile written
+    public long assemble(ImageManifest manifest, BlobSource blobSource, String repoTag, File imageTarfile) throws IOException, IntegrationException {
+        logger.debug(String.format("Writing %s (%d layers) to %s", repoTag, manifest.getLayers().size(), imageTarfile.getAbsolutePath()));
+        String configEntryName = String.format("%s.json", manifest.getConfig().getDigestHex());
+        List<String> layerEntryNames = new ArrayList<>(manifest.getLayers().size());
+        for (ContentDescriptor layer : manifest.getLayers()) {
+            layerEntryNames.add(String.format("%s/%s", layer.getDigestHex(), LAYER_FILENAME));
+        }
+        ImageTarManifestEntry manifestEntry = new ImageTarManifestEntry(configEntryName, Collections.singletonList(repoTag), layerEntryNames);
+        try (OutputStream imageTarfileStream = new BufferedOutputStream(new FileOutputStream(imageTarfile));
+            TarArchiveOutputStream imageTarStream = new TarArchiveOutputStream(imageTarfileStream)) {
+            imageTarStream.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            imageTarStream.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+            // The metadata goes first, so readers of the tarfile's metadata don't have to read past the layers
+            writeBytes(imageTarStream, ImageTarMetadataReader.MANIFEST_FILENAME, gson.toJson(Collections.singletonList(manifestEntry)).getBytes(StandardCharsets.UTF_8));
+            writeFile(imageTarStream, configEntryName, blobSource.getBlob(manifest.getConfig()));
+            Set<String> layerEntryNamesWritten = new HashSet<>();
+            for (int layerIndex = 0; layerIndex < manifest.getLayers().size(); layerIndex++) {
+                String layerEntryName = layerEntryNames.get(layerIndex);
+                // An image can contain the same layer more than once
+                if (layerEntryNamesWritten.add(layerEntryName)) {
+                    writeLayer(imageTarStream, layerEntryName, blobSource.getBlob(manifest.getLayers().get(layerIndex)), imageTarfile.getParentFile());
+                }
+            }
+        }
+        return imageTarfile.length();
+    }
+
+    private void writeLayer(TarArchiveOutputStream imageTarStream, String layerEntryName, File layerBlob, File tempDir) throws IOException, IntegrationException {
+        if (!isGzipped(layerBlob)) {
+            writeFile(imageTarStream, layerEntryName, layerBlob);
+            return;
+        }
+        // A tar entry's size precedes its content, so the layer is decompressed to a temp file first
+        File uncompressedLayer = File.createTempFile("layer", ".tar", tempDir);
+        try {
+            try (InputStream compressedLayerStream = new GZIPInputStream(new BufferedInputStream(new FileInputStream(layerBlob)));
+                OutputStream uncompressedLayerStream = new BufferedOutputStream(new FileOutputStream(uncompressedLayer))) {
+                IOUtils.copyLarge(compressedLayerStream, uncompressedLayerStream);
+            }
+            writeFile(imageTarStream, layerEntryName, uncompressedLayer);
+        } finally {
+            Files.deleteIfExists(uncompressedLayer.toPath());
+        }
+    }
+
+    private boolean isGzipped(File blob) throws IOException, IntegrationException {
+        try (InputStream blobStream = new FileInputStream(blob)) {
+            int firstByte = blobStream.read();
+            int secondByte = blobStream.read();
+            if (firstByte == 0x28 && secondByte == 0xb5) {
+                throw new IntegrationException(String.format("Layer %s is zstd-compressed, which is not supported", blob.getName()));
+            }
+            return firstByte == 0x1f && secondByte == 0x8b;
+        }
+    }
+
+    private void writeFile(TarArchiveOutputStream imageTarStream, String entryName, File file) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(entryName);
+        entry.setSize(file.length());
+        imageTarStream.putArchiveEntry(entry);
+        try (InputStream fileStream = new FileInputStream(file)) {
+            IOUtils.copyLarge(fileStream, imageTarStream);
+        }
+        imageTarStream.closeArchiveEntry();
+    }
+
+    private void writeBytes(TarArchiveOutputStream imageTarStream, String entryName, byte[] content) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(entryName);
+        entry.setSize(content.length);
+        imageTarStream.putArchiveEntry(entry);
+        imageTarStream.write(content);
+        imageTarStream.closeArchiveEntry();
+    }
+}
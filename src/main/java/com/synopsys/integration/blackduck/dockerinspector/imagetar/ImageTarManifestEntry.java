@@ -0,0 +1,64 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.imagetar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.annotations.SerializedName;
+
+// One element of the manifest.json array in a docker save (docker-archive) tarfile
+public class ImageTarManifestEntry {
+    @SerializedName("Config")
+    private String config;
+
+    @SerializedName("RepoTags")
+    private List<String> repoTags;
+
+    @SerializedName("Layers")
+    private List<String> layers;
+
+    public ImageTarManifestEntry(String config, List<String> repoTags, List<String> layers) {
+        this.config = config;
+        this.repoTags = repoTags;
+        this.layers = layers;
+    }
+
+    public String getConfig() {
+        return config;
+    }
+
+    public List<String> getRepoTags() {
+        if (repoTags == null) {
+            return new ArrayList<>(0);
+        }
+        return repoTags;
+    }
+
+    public List<String> getLayers() {
+        if (layers == null) {
+            return new ArrayList<>(0);
+        }
+        return layers;
+    }
+}
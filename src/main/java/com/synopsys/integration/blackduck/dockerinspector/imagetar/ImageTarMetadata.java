@@ -0,0 +1,48 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.imagetar;
+
+import java.util.List;
+
+public class ImageTarMetadata {
+    private final ImageTarManifestEntry manifestEntry;
+    // Uncompressed layer digests (config rootfs.diff_ids), lowest layer first
+    private final List<String> diffIds;
+
+    public ImageTarMetadata(ImageTarManifestEntry manifestEntry, List<String> diffIds) {
+        this.manifestEntry = manifestEntry;
+        this.diffIds = diffIds;
+    }
+
+    public ImageTarManifestEntry getManifestEntry() {
+        return manifestEntry;
+    }
+
+    public List<String> getLayerPaths() {
+        return manifestEntry.getLayers();
+    }
+
+    public List<String> getDiffIds() {
+        return diffIds;
+    }
+}
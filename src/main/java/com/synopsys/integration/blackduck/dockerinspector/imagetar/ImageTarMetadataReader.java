@@ -0,0 +1,141 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.imagetar;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.synopsys.integration.exception.IntegrationException;
+
+/*
+ * Reads the image metadata (manifest.json and the image config) from a docker save (docker-archive) tarfile
+ * without extracting it. Entries that are not needed are skipped, so only the (small) metadata entries are read.
+ */
+@Component
+public class ImageTarMetadataReader {
+    public static final String MANIFEST_FILENAME = "manifest.json";
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final Gson gson;
+
+    @Autowired
+    public ImageTarMetadataReader(Gson gson) {
+        this.gson = gson;
+    }
+
+    public ImageTarMetadata read(File imageTarfile, String givenRepo, String givenTag) throws IOException, IntegrationException {
+        ImageTarManifestEntry manifestEntry = findManifestEntry(readManifest(imageTarfile), givenRepo, givenTag);
+        String configJson = readEntryAsString(imageTarfile, manifestEntry.getConfig())
+                                .orElseThrow(() -> new IntegrationException(String.format("Image config %s not found in %s", manifestEntry.getConfig(), imageTarfile.getAbsolutePath())));
+        return new ImageTarMetadata(manifestEntry, parseDiffIds(configJson));
+    }
+
+    public List<ImageTarManifestEntry> readManifest(File imageTarfile) throws IOException, IntegrationException {
+        String manifestJson = readEntryAsString(imageTarfile, MANIFEST_FILENAME)
+                                  .orElseThrow(() -> new IntegrationException(String.format("%s not found in %s; it may not be a docker save format tarfile", MANIFEST_FILENAME, imageTarfile.getAbsolutePath())));
+        ImageTarManifestEntry[] manifestEntries = gson.fromJson(manifestJson, ImageTarManifestEntry[].class);
+        if (manifestEntries == null || manifestEntries.length == 0) {
+            throw new IntegrationException(String.format("%s in %s is empty", MANIFEST_FILENAME, imageTarfile.getAbsolutePath()));
+        }
+        return Arrays.asList(manifestEntries);
+    }
+
+    public Optional<String> readEntryAsString(File tarfile, String entryName) throws IOException {
+        try (InputStream fileInputStream = new BufferedInputStream(new FileInputStream(tarfile));
+            TarArchiveInputStream tarInputStream = new TarArchiveInputStream(fileInputStream)) {
+            TarArchiveEntry entry;
+            while ((entry = tarInputStream.getNextTarEntry()) != null) {
+                if (entryName.equals(normalizeEntryName(entry.getName()))) {
+                    try (Reader reader = new InputStreamReader(tarInputStream, StandardCharsets.UTF_8)) {
+                        return Optional.of(IOUtils.toString(reader));
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    public static String normalizeEntryName(String entryName) {
+        if (entryName.startsWith("./")) {
+            return entryName.substring(2);
+        }
+        return entryName;
+    }
+
+    private ImageTarManifestEntry findManifestEntry(List<ImageTarManifestEntry> manifestEntries, String givenRepo, String givenTag) throws IntegrationException {
+        if (StringUtils.isBlank(givenRepo)) {
+            logger.debug(String.format("No repo specified; using the first of %d images in the tarfile", manifestEntries.size()));
+            return manifestEntries.get(0);
+        }
+        String givenTagOrDefault = StringUtils.isBlank(givenTag) ? "latest" : givenTag;
+        String targetRepoTag = String.format("%s:%s", givenRepo, givenTagOrDefault);
+        for (ImageTarManifestEntry manifestEntry : manifestEntries) {
+            for (String repoTag : manifestEntry.getRepoTags()) {
+                if (repoTag.equals(targetRepoTag) || repoTag.endsWith("/" + targetRepoTag)) {
+                    return manifestEntry;
+                }
+            }
+        }
+        if (manifestEntries.size() == 1) {
+            return manifestEntries.get(0);
+        }
+        throw new IntegrationException(String.format("Image %s not found in the tarfile manifest", targetRepoTag));
+    }
+
+    private List<String> parseDiffIds(String configJson) throws IntegrationException {
+        JsonObject imageConfig = JsonParser.parseString(configJson).getAsJsonObject();
+        JsonObject rootFs = imageConfig.getAsJsonObject("rootfs");
+        if (rootFs == null || !rootFs.has("diff_ids")) {
+            throw new IntegrationException("Image config does not contain rootfs.diff_ids");
+        }
+        JsonArray diffIdArray = rootFs.getAsJsonArray("diff_ids");
+        List<String> diffIds = new ArrayList<>(diffIdArray.size());
+        for (JsonElement diffId : diffIdArray) {
+            diffIds.add(diffId.getAsString());
+        }
+        return diffIds;
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.imagetar;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.synopsys.integration.blackduck.imageinspector.api.ImageInspectorOsEnum;
+import com.synopsys.integration.exception.IntegrationException;
+
+/*
+ * Determines which image inspector (alpine, centos, ubuntu) can inspect an image by looking for
+ * package manager databases in the layers of its docker save tarfile. Only the uppermost layer that
+ * contains a package manager database matters, so layers are scanned from the top down, stopping at the first
+ * that has one; layers below it are skipped (seeked past) without being read. This is much cheaper than a getbdio
+ * request to the wrong inspector service, which extracts every layer of the image before redirecting.
+ */
+@Component
+public class ImageTarPackageManagerDetector {
+    private static final String WHITEOUT_PREFIX = ".wh.";
+    // When a layer contains more than one package manager database (for example, the rpm tool installed on a Debian image),
+    // the first of these found in the layer wins, regardless of the order of the layer's entries
+    private static final List<ImageInspectorOsEnum> INSPECTOR_OS_PRIORITY = Arrays.asList(ImageInspectorOsEnum.ALPINE, ImageInspectorOsEnum.UBUNTU, ImageInspectorOsEnum.CENTOS);
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final ImageTarMetadataReader imageTarMetadataReader;
+
+    @Autowired
+    public ImageTarPackageManagerDetector(ImageTarMetadataReader imageTarMetadataReader) {
+        this.imageTarMetadataReader = imageTarMetadataReader;
+    }
+
+    public Optional<ImageInspectorOsEnum> detectInspectorOs(File imageTarfile, String givenImageRepo, String givenImageTag) throws IOException, IntegrationException {
+        ImageTarMetadata imageTarMetadata = imageTarMetadataReader.read(imageTarfile, givenImageRepo, givenImageTag);
+        List<String> layerPaths = imageTarMetadata.getLayerPaths();
+        for (int layerIndex = layerPaths.size() - 1; layerIndex >= 0; layerIndex--) {
+            Optional<ImageInspectorOsEnum> layerInspectorOs = scanLayer(imageTarfile, layerPaths.get(layerIndex));
+            if (layerInspectorOs.isPresent()) {
+                logger.debug(String.format("Package manager database scan of %s found inspector OS %s in layer %d of %d", imageTarfile.getName(), layerInspectorOs.get(), layerIndex + 1, layerPaths.size()));
+                return layerInspectorOs;
+            }
+        }
+        logger.debug(String.format("Package manager database scan of %s (%d layers) found no package manager database", imageTarfile.getName(), layerPaths.size()));
+        return Optional.empty();
+    }
+
+    private Optional<ImageInspectorOsEnum> scanLayer(File imageTarfile, String layerPath) throws IOException {
+        // Reading past the entries before the layer reads only their headers; their content is skipped
+        try (InputStream fileInputStream = new BufferedInputStream(new FileInputStream(imageTarfile));
+            TarArchiveInputStream imageTarInputStream = new TarArchiveInputStream(fileInputStream)) {
+            TarArchiveEntry imageTarEntry;
+            while ((imageTarEntry = imageTarInputStream.getNextTarEntry()) != null) {
+                if (layerPath.equals(ImageTarMetadataReader.normalizeEntryName(imageTarEntry.getName()))) {
+                    return scanLayer(imageTarInputStream);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    // Must not close the given stream: it's positioned within the image tarfile
+    private Optional<ImageInspectorOsEnum> scanLayer(InputStream layerStream) throws IOException {
+        InputStream uncompressedLayerStream = new BufferedInputStream(layerStream);
+        uncompressedLayerStream.mark(2);
+        int firstByte = uncompressedLayerStream.read();
+        int secondByte = uncompressedLayerStream.read();
+        uncompressedLayerStream.reset();
+        if (firstByte == 0x1f && secondByte == 0x8b) {
+            uncompressedLayerStream = new GZIPInputStream(uncompressedLayerStream);
+        }
+        TarArchiveInputStream layerTarInputStream = new TarArchiveInputStream(uncompressedLayerStream);
+        Set<ImageInspectorOsEnum> layerInspectorOses = EnumSet.noneOf(ImageInspectorOsEnum.class);
+        TarArchiveEntry layerEntry;
+        while ((layerEntry = layerTarInputStream.getNextTarEntry()) != null) {
+            Optional<ImageInspectorOsEnum> entryInspectorOs = deriveInspectorOs(ImageTarMetadataReader.normalizeEntryName(layerEntry.getName()));
+            if (entryInspectorOs.isPresent()) {
+                layerInspectorOses.add(entryInspectorOs.get());
+                if (entryInspectorOs.get() == INSPECTOR_OS_PRIORITY.get(0)) {
+                    // Nothing else in the layer could change the answer
+                    break;
+                }
+            }
+        }
+        return INSPECTOR_OS_PRIORITY.stream()
+                   .filter(layerInspectorOses::contains)
+                   .findFirst();
+    }
+
+    public static Optional<ImageInspectorOsEnum> deriveInspectorOs(String layerEntryPath) {
+        String filename = layerEntryPath.substring(layerEntryPath.lastIndexOf('/') + 1);
+        if (filename.startsWith(WHITEOUT_PREFIX)) {
+            return Optional.empty();
+        }
+        if (layerEntryPath.equals("etc/alpine-release") || layerEntryPath.startsWith("lib/apk/db/")) {
+            return Optional.of(ImageInspectorOsEnum.ALPINE);
+        }
+        if (layerEntryPath.startsWith("var/lib/dpkg/")) {
+            return Optional.of(ImageInspectorOsEnum.UBUNTU);
+        }
+        if (layerEntryPath.startsWith("var/lib/rpm/")) {
+            return Optional.of(ImageInspectorOsEnum.CENTOS);
+        }
+        return Optional.empty();
+    }
+}
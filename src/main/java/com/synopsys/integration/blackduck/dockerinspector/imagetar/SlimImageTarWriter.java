@@ -0,0 +1,302 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.imagetar;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.google.gson.Gson;
+import com.synopsys.integration.blackduck.dockerinspector.cache.LayerIndex;
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.exception.IntegrationException;
+
+/*
+ * Writes a slim copy of a docker save tarfile for the image inspector services: the same manifest, config, and layers,
+ * but each layer holds only what the services read to discover packages (the package manager databases and the
+ * files that identify the Linux distribution, plus the directories and whiteouts along their paths).
+ * The services still rebuild the image's file system layer by layer, but from megabytes instead of gigabytes.
+ * Each layer is filtered once and kept in the layer index (keyed by diff ID and filter version), so only layers not seen before are read.
+ */
+@Component
+public class SlimImageTarWriter {
+    private static final String WHITEOUT_PREFIX = ".wh.";
+    private static final String OPAQUE_WHITEOUT_NAME = ".wh..wh..opq";
+    // etc/apk/ holds apk's configuration (arch, repositories, world), which its package database is read with
+    private static final List<String> PACKAGE_MANAGER_DATABASE_DIRS = Arrays.asList("lib/apk/db/", "etc/apk/", "var/lib/dpkg/", "var/lib/rpm/", "usr/lib/sysimage/rpm/");
+    private static final List<String> RELEASE_FILE_DIRS = Arrays.asList("etc/", "usr/lib/");
+    private static final Pattern RELEASE_FILE_PATTERN = Pattern.compile("^(etc/[^/]+[-_](release|version)|usr/lib/os-release)$");
+    // Part of each slim layer's layer index key; increment it whenever the rules above (what a slim layer keeps) change,
+    // so slim layers filtered by the old rules are not reused
+    static final int FILTER_VERSION = 2;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final Config config;
+    private final ImageTarMetadataReader imageTarMetadataReader;
+    private final LayerIndex layerIndex;
+    private final Gson gson;
+
+    @Autowired
+    public SlimImageTarWriter(Config config, ImageTarMetadataReader imageTarMetadataReader, LayerIndex layerIndex, Gson gson) {
+        this.config = config;
+        this.imageTarMetadataReader = imageTarMetadataReader;
+        this.layerIndex = layerIndex;
+        this.gson = gson;
+    }
+
+    // These outputs are derived from the complete file system (or from each layer's complete content)
+    public boolean isApplicable() {
+        return config.isImageTarSlimEnabled() && !config.isOutputIncludeContainerfilesystem() && !config.isOutputIncludeSquashedImage()
+                   && !config.isOrganizeComponentsByLayer() && !config.isIncludeRemovedComponents();
+    }
+
+    // Returns empty if the image can't be slimmed, in which case the complete tarfile must be inspected
+    public Optional<File> write(File imageTarfile, String givenImageRepo, String givenImageTag, File slimImageTarfile) throws IOException, IntegrationException {
+        ImageTarMetadata imageTarMetadata = imageTarMetadataReader.read(imageTarfile, givenImageRepo, givenImageTag);
+        List<String> layerPaths = imageTarMetadata.getLayerPaths();
+        List<String> diffIds = imageTarMetadata.getDiffIds();
+        if (layerPaths.size() != diffIds.size()) {
+            logger.debug(String.format("%s has %d layers but %d diff IDs; not slimming it", imageTarfile.getName(), layerPaths.size(), diffIds.size()));
+            return Optional.empty();
+        }
+        // Otherwise storing this image's new slim layers in the layer index could evict the ones already found for it before they're written
+        layerIndex.pin(diffIds, FILTER_VERSION);
+        try {
+            return writeWithLayersPinned(imageTarfile, imageTarMetadata, slimImageTarfile);
+        } finally {
+            layerIndex.unpin(diffIds, FILTER_VERSION);
+        }
+    }
+
+    private Optional<File> writeWithLayersPinned(File imageTarfile, ImageTarMetadata imageTarMetadata, File slimImageTarfile) throws IOException, IntegrationException {
+        List<String> layerPaths = imageTarMetadata.getLayerPaths();
+        List<String> diffIds = imageTarMetadata.getDiffIds();
+        Map<String, String> diffIdsByLayerPath = new HashMap<>();
+        Map<String, File> slimLayersByLayerPath = new HashMap<>();
+        for (int layerIndexInImage = 0; layerIndexInImage < layerPaths.size(); layerIndexInImage++) {
+            String layerPath = layerPaths.get(layerIndexInImage);
+            diffIdsByLayerPath.put(layerPath, diffIds.get(layerIndexInImage));
+            layerIndex.find(diffIds.get(layerIndexInImage), FILTER_VERSION).ifPresent(slimLayer -> slimLayersByLayerPath.put(layerPath, slimLayer));
+        }
+        logger.info(String.format("Image %s has %d layers; %d of them are new to the layer index", imageTarfile.getName(), diffIdsByLayerPath.size(),
+            diffIdsByLayerPath.size() - slimLayersByLayerPath.size()));
+        if (slimLayersByLayerPath.size() < diffIdsByLayerPath.size() && !filterNewLayers(imageTarfile, diffIdsByLayerPath, slimLayersByLayerPath)) {
+            return Optional.empty();
+        }
+        String configPath = imageTarMetadata.getManifestEntry().getConfig();
+        String configJson = imageTarMetadataReader.readEntryAsString(imageTarfile, configPath)
+                                .orElseThrow(() -> new IntegrationException(String.format("Image config %s not found in %s", configPath, imageTarfile.getAbsolutePath())));
+        String missingLayerPath = null;
+        try (OutputStream slimImageTarfileStream = new BufferedOutputStream(new FileOutputStream(slimImageTarfile));
+            TarArchiveOutputStream slimImageTarStream = createTarOutputStream(slimImageTarfileStream)) {
+            writeBytes(slimImageTarStream, ImageTarMetadataReader.MANIFEST_FILENAME,
+                gson.toJson(Collections.singletonList(imageTarMetadata.getManifestEntry())).getBytes(StandardCharsets.UTF_8));
+            writeBytes(slimImageTarStream, configPath, configJson.getBytes(StandardCharsets.UTF_8));
+            // An image can contain the same layer more than once
+            for (String layerPath : new LinkedHashSet<>(layerPaths)) {
+                if (!writeSlimLayer(slimImageTarStream, layerPath, slimLayersByLayerPath.get(layerPath))) {
+                    missingLayerPath = layerPath;
+                    break;
+                }
+            }
+        }
+        if (missingLayerPath != null) {
+            logger.debug(String.format("The slim copy of layer %s of %s was removed from the layer index before it could be read; not slimming the image", missingLayerPath,
+                imageTarfile.getName()));
+            Files.deleteIfExists(slimImageTarfile.toPath());
+            return Optional.empty();
+        }
+        logger.debug(String.format("Wrote slim image tarfile %s (%d bytes; the complete image tarfile is %d bytes)", slimImageTarfile.getAbsolutePath(), slimImageTarfile.length(),
+            imageTarfile.length()));
+        return Optional.of(slimImageTarfile);
+    }
+
+    // Adds the slim layers it creates to slimLayersByLayerPath; returns false if a layer can't be slimmed
+    private boolean filterNewLayers(File imageTarfile, Map<String, String> diffIdsByLayerPath, Map<String, File> slimLayersByLayerPath) throws IOException, IntegrationException {
+        try (InputStream fileInputStream = new BufferedInputStream(new FileInputStream(imageTarfile));
+            TarArchiveInputStream imageTarInputStream = new TarArchiveInputStream(fileInputStream)) {
+            TarArchiveEntry imageTarEntry;
+            while ((imageTarEntry = imageTarInputStream.getNextTarEntry()) != null) {
+                String entryName = ImageTarMetadataReader.normalizeEntryName(imageTarEntry.getName());
+                if (diffIdsByLayerPath.containsKey(entryName) && !slimLayersByLayerPath.containsKey(entryName)) {
+                    Optional<File> slimLayer = filterLayer(imageTarInputStream, entryName, diffIdsByLayerPath.get(entryName));
+                    if (!slimLayer.isPresent()) {
+                        return false;
+                    }
+                    slimLayersByLayerPath.put(entryName, slimLayer.get());
+                }
+            }
+        }
+        for (String layerPath : diffIdsByLayerPath.keySet()) {
+            if (!slimLayersByLayerPath.containsKey(layerPath)) {
+                throw new IntegrationException(String.format("Layer %s not found in %s", layerPath, imageTarfile.getAbsolutePath()));
+            }
+        }
+        return true;
+    }
+
+    // Must not close the given stream: it's positioned within the image tarfile
+    private Optional<File> filterLayer(InputStream layerStream, String layerPath, String diffId) throws IOException {
+        InputStream uncompressedLayerStream = new BufferedInputStream(layerStream);
+        uncompressedLayerStream.mark(2);
+        int firstByte = uncompressedLayerStream.read();
+        int secondByte = uncompressedLayerStream.read();
+        uncompressedLayerStream.reset();
+        if (firstByte == 0x1f && secondByte == 0x8b) {
+            uncompressedLayerStream = new GZIPInputStream(uncompressedLayerStream);
+        }
+        TarArchiveInputStream layerTarInputStream = new TarArchiveInputStream(uncompressedLayerStream);
+        File tempSlimLayer = layerIndex.createTempFile();
+        try {
+            int keptEntryCount = 0;
+            try (OutputStream slimLayerFileStream = new BufferedOutputStream(new FileOutputStream(tempSlimLayer));
+                TarArchiveOutputStream slimLayerStream = createTarOutputStream(slimLayerFileStream)) {
+                TarArchiveEntry layerEntry;
+                while ((layerEntry = layerTarInputStream.getNextTarEntry()) != null) {
+                    if (!isInspectedEntry(ImageTarMetadataReader.normalizeEntryName(layerEntry.getName()), layerEntry.isDirectory())) {
+                        continue;
+                    }
+                    // A hard link's target is an earlier entry in the same layer, which must be in the slim layer too
+                    if (layerEntry.isLink() && !isInspectedEntry(ImageTarMetadataReader.normalizeEntryName(layerEntry.getLinkName()), false)) {
+                        logger.debug(String.format("Layer %s contains hard link %s to %s, which isn't kept in a slim layer; not slimming the image", layerPath, layerEntry.getName(),
+                            layerEntry.getLinkName()));
+                        return Optional.empty();
+                    }
+                    slimLayerStream.putArchiveEntry(layerEntry);
+                    IOUtils.copyLarge(layerTarInputStream, slimLayerStream);
+                    slimLayerStream.closeArchiveEntry();
+                    keptEntryCount++;
+                }
+            }
+            logger.debug(String.format("Kept %d entries of layer %s (%s)", keptEntryCount, layerPath, diffId));
+            return Optional.of(layerIndex.store(diffId, FILTER_VERSION, tempSlimLayer));
+        } finally {
+            layerIndex.discardTempFile(tempSlimLayer);
+        }
+    }
+
+    // Whether a layer entry can affect the package manager databases or release files in the image's file system
+    static boolean isInspectedEntry(String entryPath, boolean isDirectory) {
+        String path = StringUtils.removeEnd(entryPath, "/");
+        String filename = path.substring(path.lastIndexOf('/') + 1);
+        String parentDirPath = path.substring(0, path.lastIndexOf('/') + 1);
+        if (filename.equals(OPAQUE_WHITEOUT_NAME)) {
+            // Hides everything that lower layers put in the directory
+            return isInspectedPath(StringUtils.removeEnd(parentDirPath, "/")) || isOnPathToInspectedFiles(parentDirPath);
+        }
+        if (filename.startsWith(WHITEOUT_PREFIX)) {
+            String removedPath = parentDirPath + filename.substring(WHITEOUT_PREFIX.length());
+            return isInspectedPath(removedPath) || isOnPathToInspectedFiles(removedPath + "/");
+        }
+        if (isDirectory) {
+            return isInspectedPath(path) || isOnPathToInspectedFiles(path + "/");
+        }
+        return isInspectedPath(path);
+    }
+
+    private static boolean isInspectedPath(String path) {
+        for (String packageManagerDatabaseDir : PACKAGE_MANAGER_DATABASE_DIRS) {
+            if ((path + "/").startsWith(packageManagerDatabaseDir)) {
+                return true;
+            }
+        }
+        return RELEASE_FILE_PATTERN.matcher(path).matches();
+    }
+
+    private static boolean isOnPathToInspectedFiles(String dirPath) {
+        if (dirPath.equals("/")) {
+            return false;
+        }
+        for (String inspectedDir : PACKAGE_MANAGER_DATABASE_DIRS) {
+            if (inspectedDir.startsWith(dirPath)) {
+                return true;
+            }
+        }
+        for (String releaseFileDir : RELEASE_FILE_DIRS) {
+            if (releaseFileDir.startsWith(dirPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private TarArchiveOutputStream createTarOutputStream(OutputStream outputStream) {
+        TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(outputStream);
+        tarOutputStream.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        tarOutputStream.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+        return tarOutputStream;
+    }
+
+    // Returns false if the slim layer is gone: pins don't stop another process sharing the layer index from evicting it
+    private boolean writeSlimLayer(TarArchiveOutputStream tarStream, String layerPath, File slimLayer) throws IOException {
+        FileInputStream slimLayerStream;
+        try {
+            slimLayerStream = new FileInputStream(slimLayer);
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        // Once open, the slim layer stays readable (at its current size) even if it's evicted
+        try (InputStream fileStream = slimLayerStream) {
+            TarArchiveEntry entry = new TarArchiveEntry(layerPath);
+            entry.setSize(slimLayerStream.getChannel().size());
+            tarStream.putArchiveEntry(entry);
+            IOUtils.copyLarge(fileStream, tarStream);
+        }
+        tarStream.closeArchiveEntry();
+        return true;
+    }
+
+    private void writeBytes(TarArchiveOutputStream tarStream, String entryName, byte[] content) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(entryName);
+        entry.setSize(content.length);
+        tarStream.putArchiveEntry(entry);
+        tarStream.write(content);
+        tarStream.closeArchiveEntry();
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.metrics;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import com.synopsys.integration.blackduck.dockerinspector.output.Result;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTiming;
+import com.synopsys.integration.blackduck.imageinspector.api.ImageInspectorOsEnum;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+
+/*
+ * The metrics collected while Docker Inspector runs. They are exposed (by MetricsExporter) only in the long-running
+ * (daemon and multi-image) modes, where they're worth scraping; recording them is cheap enough to do unconditionally.
+ */
+@Component
+public class InspectorMetrics {
+    private static final String RESULT_TAG_KEY = "result";
+    private static final String DISTRO_TAG_KEY = "distro";
+    private static final String PHASE_TAG_KEY = "phase";
+    private static final Duration MIN_EXPECTED_DURATION = Duration.ofMillis(1L);
+    private static final Duration MAX_EXPECTED_DURATION = Duration.ofHours(1L);
+    private final PrometheusMeterRegistry meterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+    public MeterRegistry getMeterRegistry() {
+        return meterRegistry;
+    }
+
+    // The current value of every metric, in Prometheus text exposition format
+    public String scrape() {
+        return meterRegistry.scrape();
+    }
+
+    public void recordImageInspected(Result result) {
+        Counter.builder("dockerinspector.images.inspected")
+            .description("Images inspected")
+            .tag(RESULT_TAG_KEY, deriveResultTagValue(result.isSucceeded()))
+            .register(meterRegistry)
+            .increment();
+        recordPhaseTimings(result.getTimings());
+    }
+
+    // Each phase is recorded once per image, so (for example) the save phase's bytes are the bytes saved per image
+    private void recordPhaseTimings(Map<String, PhaseTiming> timingsByPhaseName) {
+        for (Map.Entry<String, PhaseTiming> phaseTiming : timingsByPhaseName.entrySet()) {
+            String phaseName = phaseTiming.getKey();
+            PhaseTiming timing = phaseTiming.getValue();
+            createDurationTimer("dockerinspector.phase.duration", "Time spent in each phase of an image inspection, per image")
+                .tag(PHASE_TAG_KEY, phaseName)
+                .register(meterRegistry)
+                .record(timing.getWallTimeMillis(), TimeUnit.MILLISECONDS);
+            DistributionSummary.builder("dockerinspector.phase.bytes")
+                .description("Bytes processed by each phase of an image inspection, per image")
+                .baseUnit("bytes")
+                .tag(PHASE_TAG_KEY, phaseName)
+                .register(meterRegistry)
+                .record(timing.getBytes());
+            Counter.builder("dockerinspector.phase.retries")
+                .description("Retries within each phase of an image inspection")
+                .tag(PHASE_TAG_KEY, phaseName)
+                .register(meterRegistry)
+                .increment(timing.getRetries());
+        }
+    }
+
+    public void recordGetBdioRequest(ImageInspectorOsEnum inspectorOs, long elapsedMillis) {
+        createDurationTimer("dockerinspector.getbdio.duration", "Duration of getBdio requests to the image inspector services")
+            .tag(DISTRO_TAG_KEY, deriveDistroTagValue(inspectorOs))
+            .register(meterRegistry)
+            .record(elapsedMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordGetBdioRedirect(ImageInspectorOsEnum fromInspectorOs, ImageInspectorOsEnum toInspectorOs) {
+        Counter.builder("dockerinspector.getbdio.redirects")
+            .description("getBdio requests redirected to a different image inspector service")
+            .tag("from", deriveDistroTagValue(fromInspectorOs))
+            .tag("to", deriveDistroTagValue(toInspectorOs))
+            .register(meterRegistry)
+            .increment();
+    }
+
+    public void recordServiceContainerStart(ImageInspectorOsEnum inspectorOs) {
+        Counter.builder("dockerinspector.service.container.starts")
+            .description("Image inspector service containers started")
+            .tag(DISTRO_TAG_KEY, deriveDistroTagValue(inspectorOs))
+            .register(meterRegistry)
+            .increment();
+    }
+
+    public void recordUpload(long elapsedMillis, boolean succeeded) {
+        createDurationTimer("dockerinspector.upload.duration", "Duration of BDIO uploads to Black Duck")
+            .tag(RESULT_TAG_KEY, deriveResultTagValue(succeeded))
+            .register(meterRegistry)
+            .record(elapsedMillis, TimeUnit.MILLISECONDS);
+        if (!succeeded) {
+            Counter.builder("dockerinspector.upload.failures")
+                .description("BDIO uploads to Black Duck that failed")
+                .register(meterRegistry)
+                .increment();
+        }
+    }
+
+    private Timer.Builder createDurationTimer(String name, String description) {
+        return Timer.builder(name)
+                   .description(description)
+                   .publishPercentileHistogram()
+                   .minimumExpectedValue(MIN_EXPECTED_DURATION)
+                   .maximumExpectedValue(MAX_EXPECTED_DURATION);
+    }
+
+    private String deriveResultTagValue(boolean succeeded) {
+        return succeeded ? "success" : "failure";
+    }
+
+    private String deriveDistroTagValue(ImageInspectorOsEnum inspectorOs) {
+        return inspectorOs.name().toLowerCase();
+    }
+}
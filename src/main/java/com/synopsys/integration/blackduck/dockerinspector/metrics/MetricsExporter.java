@@ -0,0 +1,146 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.exception.IntegrationException;
+
+import io.prometheus.client.exporter.common.TextFormat;
+
+/*
+ * Exposes InspectorMetrics in Prometheus text format: served (for scraping) on a loopback-only port,
+ * and/or periodically written to a file (for the node-exporter textfile collector).
+ */
+@Component
+public class MetricsExporter {
+    public static final String METRICS_PATH = "/metrics";
+    private static final long TEXTFILE_WRITER_STOP_TIMEOUT_SECONDS = 10L;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private HttpServer metricsServer;
+    private ScheduledExecutorService textfileWriterExecutor;
+
+    @Autowired
+    private Config config;
+
+    @Autowired
+    private InspectorMetrics inspectorMetrics;
+
+    public synchronized void start() throws IntegrationException {
+        if (config.getMetricsPort() > 0) {
+            startServer(config.getMetricsPort());
+        }
+        if (StringUtils.isNotBlank(config.getMetricsTextfilePath())) {
+            startTextfileWriter(new File(config.getMetricsTextfilePath()), Math.max(1, config.getMetricsTextfileIntervalSeconds()));
+        }
+    }
+
+    // Writes the metrics file one last time, so it reflects the final values
+    public synchronized void stop() {
+        if (metricsServer != null) {
+            metricsServer.stop(0);
+            metricsServer = null;
+        }
+        if (textfileWriterExecutor != null) {
+            stopTextfileWriter();
+            writeTextfile(new File(config.getMetricsTextfilePath()));
+        }
+    }
+
+    private void startServer(int port) throws IntegrationException {
+        try {
+            metricsServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            throw new IntegrationException(String.format("Unable to serve metrics on port %d: %s", port, e.getMessage()), e);
+        }
+        metricsServer.createContext(METRICS_PATH, this::serveMetrics);
+        metricsServer.start();
+        logger.info(String.format("Serving metrics at http://%s:%d%s", metricsServer.getAddress().getAddress().getHostAddress(), metricsServer.getAddress().getPort(), METRICS_PATH));
+    }
+
+    private void serveMetrics(HttpExchange exchange) throws IOException {
+        try {
+            byte[] responseBody = inspectorMetrics.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", TextFormat.CONTENT_TYPE_004);
+            exchange.sendResponseHeaders(200, responseBody.length);
+            try (OutputStream responseStream = exchange.getResponseBody()) {
+                responseStream.write(responseBody);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void startTextfileWriter(File metricsFile, int intervalSeconds) {
+        textfileWriterExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread writerThread = new Thread(runnable, "docker-inspector-metrics-writer");
+            writerThread.setDaemon(true);
+            return writerThread;
+        });
+        textfileWriterExecutor.scheduleWithFixedDelay(() -> writeTextfile(metricsFile), 0L, intervalSeconds, TimeUnit.SECONDS);
+        logger.info(String.format("Writing metrics to %s every %d seconds", metricsFile.getAbsolutePath(), intervalSeconds));
+    }
+
+    private void stopTextfileWriter() {
+        textfileWriterExecutor.shutdown();
+        try {
+            if (!textfileWriterExecutor.awaitTermination(TEXTFILE_WRITER_STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                textfileWriterExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            textfileWriterExecutor.shutdownNow();
+        }
+        textfileWriterExecutor = null;
+    }
+
+    // The collector may read the file at any time, so it's written to a temp file that then replaces it
+    private void writeTextfile(File metricsFile) {
+        File tempMetricsFile = new File(metricsFile.getAbsoluteFile().getParentFile(), String.format(".%s.tmp", metricsFile.getName()));
+        try {
+            Files.write(tempMetricsFile.toPath(), inspectorMetrics.scrape().getBytes(StandardCharsets.UTF_8));
+            Files.move(tempMetricsFile.toPath(), metricsFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            logger.warn(String.format("Unable to write metrics to %s: %s", metricsFile.getAbsolutePath(), e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.output;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.synopsys.integration.util.Stringable;
+
+// The aggregate summary of a multi-image run
+public class BatchResults extends Stringable {
+    private int imageCount;
+    private int succeededCount;
+    private int failedCount;
+    private final List<BatchImageResult> imageResults = new ArrayList<>();
+
+    public synchronized void add(final BatchImageResult imageResult) {
+        imageResults.add(imageResult);
+        imageCount++;
+        if (imageResult.getResult().isSucceeded()) {
+            succeededCount++;
+        } else {
+            failedCount++;
+        }
+    }
+
+    public synchronized int getImageCount() {
+        return imageCount;
+    }
+
+    public synchronized int getSucceededCount() {
+        return succeededCount;
+    }
+
+    public synchronized int getFailedCount() {
+        return failedCount;
+    }
+
+    public synchronized List<BatchImageResult> getImageResults() {
+        return new ArrayList<>(imageResults);
+    }
+
+    public static class BatchImageResult extends Stringable {
+        private final String image;
+        private final String outputDir;
+        private final Result result;
+
+        public BatchImageResult(final String image, final String outputDir, final Result result) {
+            this.image = image;
+            this.outputDir = outputDir;
+            this.result = result;
+        }
+
+        public String getImage() {
+            return image;
+        }
+
+        public String getOutputDir() {
+            return outputDir;
+        }
+
+        public Result getResult() {
+            return result;
+        }
+    }
+}
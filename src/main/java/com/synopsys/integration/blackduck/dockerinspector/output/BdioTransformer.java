@@ -0,0 +1,95 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.output;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.synopsys.integration.bdio.model.BdioBillOfMaterials;
+import com.synopsys.integration.bdio.model.BdioProject;
+import com.synopsys.integration.exception.IntegrationException;
+
+/*
+ * Copies a BDIO document one node at a time, so that memory use does not grow with the number of components.
+ * Only the BillOfMaterials and Project nodes are deserialized (so they can be adjusted); all other nodes are copied as-is.
+ */
+public class BdioTransformer {
+    private static final String TYPE_PROPERTY = "@type";
+    private static final String BILL_OF_MATERIALS_TYPE = "BillOfMaterials";
+    private static final String PROJECT_TYPE = "Project";
+    private final Gson gson;
+
+    public BdioTransformer(final Gson gson) {
+        this.gson = gson;
+    }
+
+    public BdioHeader transform(final Reader bdioReader, final Writer bdioWriter, final BdioAdjuster bdioAdjuster) throws IOException, IntegrationException {
+        BdioBillOfMaterials billOfMaterials = null;
+        BdioProject project = null;
+        final JsonReader jsonReader = new JsonReader(bdioReader);
+        final JsonWriter jsonWriter = new JsonWriter(bdioWriter);
+        jsonWriter.setIndent("  ");
+        jsonReader.beginArray();
+        jsonWriter.beginArray();
+        while (jsonReader.hasNext()) {
+            final JsonElement node = JsonParser.parseReader(jsonReader);
+            final String nodeType = getNodeType(node);
+            if (BILL_OF_MATERIALS_TYPE.equals(nodeType)) {
+                billOfMaterials = gson.fromJson(node, BdioBillOfMaterials.class);
+                bdioAdjuster.adjustBillOfMaterials(billOfMaterials);
+                gson.toJson(billOfMaterials, BdioBillOfMaterials.class, jsonWriter);
+            } else if (PROJECT_TYPE.equals(nodeType)) {
+                project = gson.fromJson(node, BdioProject.class);
+                bdioAdjuster.adjustProject(project);
+                gson.toJson(project, BdioProject.class, jsonWriter);
+            } else {
+                gson.toJson(node, jsonWriter);
+            }
+        }
+        jsonReader.endArray();
+        jsonWriter.endArray();
+        jsonWriter.flush();
+        if ((billOfMaterials == null) || (project == null)) {
+            throw new IntegrationException("The BDIO returned by the image inspector service is missing its BillOfMaterials or Project node");
+        }
+        return new BdioHeader(billOfMaterials, project);
+    }
+
+    private String getNodeType(final JsonElement node) {
+        if (!node.isJsonObject()) {
+            return null;
+        }
+        final JsonObject nodeObject = node.getAsJsonObject();
+        if (!nodeObject.has(TYPE_PROPERTY) || !nodeObject.get(TYPE_PROPERTY).isJsonPrimitive()) {
+            return null;
+        }
+        return nodeObject.get(TYPE_PROPERTY).getAsString();
+    }
+}
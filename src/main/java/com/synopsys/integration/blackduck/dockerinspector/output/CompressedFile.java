@@ -22,13 +22,16 @@
  */
 package com.synopsys.integration.blackduck.dockerinspector.output;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,6 +39,7 @@ import com.synopsys.integration.blackduck.imageinspector.imageformat.docker.Dock
 
 public class CompressedFile {
     private static final Logger logger = LoggerFactory.getLogger(CompressedFile.class);
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
 
     public static void gunZipUnTarFile(final File tarGzFile, final File tempTarFile, final File destinationDir) throws IOException {
         gunZipFile(tarGzFile, tempTarFile);
@@ -48,27 +52,19 @@ public class CompressedFile {
     }
 
     public static void gZipFile(final File fileToCompress, final File compressedFile) throws IOException {
-        final byte[] buffer = new byte[1024];
-        try (final FileOutputStream fileOutputStream = new FileOutputStream(compressedFile);
-            final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(fileOutputStream);
-            final FileInputStream fileInputStream = new FileInputStream(fileToCompress)) {
-            int bytesRead;
-            while ((bytesRead = fileInputStream.read(buffer)) > 0) {
-                gzipOutputStream.write(buffer, 0, bytesRead);
-            }
-            gzipOutputStream.finish();
-        }
+        gZipFile(fileToCompress, compressedFile, 0, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    // threadCount 0: one thread per available processor
+    public static void gZipFile(final File fileToCompress, final File compressedFile, final int threadCount, final int compressionLevel) throws IOException {
+        new ParallelGzipCompressor(threadCount, compressionLevel).compress(fileToCompress, compressedFile);
     }
 
     public static void gunZipFile(final File gZippedFile, final File unCompressedFile) throws IOException {
         try (final FileInputStream fis = new FileInputStream(gZippedFile);
-            final GZIPInputStream gZIPInputStream = new GZIPInputStream(fis);
-            final FileOutputStream fos = new FileOutputStream(unCompressedFile)) {
-            final byte[] buffer = new byte[1024];
-            int len;
-            while ((len = gZIPInputStream.read(buffer)) > 0) {
-                fos.write(buffer, 0, len);
-            }
+            final GZIPInputStream gZIPInputStream = new GZIPInputStream(fis, IO_BUFFER_SIZE);
+            final OutputStream fos = new BufferedOutputStream(new FileOutputStream(unCompressedFile), IO_BUFFER_SIZE)) {
+            IOUtils.copyLarge(gZIPInputStream, fos, new byte[IO_BUFFER_SIZE]);
         }
     }
 }
@@ -23,9 +23,12 @@
 package com.synopsys.integration.blackduck.dockerinspector.output;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Optional;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -37,8 +40,9 @@ import org.springframework.stereotype.Component;
 import com.google.gson.Gson;
 import com.synopsys.integration.blackduck.dockerinspector.config.Config;
 import com.synopsys.integration.blackduck.dockerinspector.config.ProgramPaths;
-import com.synopsys.integration.bdio.BdioWriter;
-import com.synopsys.integration.bdio.model.SimpleBdioDocument;
+import com.synopsys.integration.blackduck.dockerinspector.timing.Phase;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimer;
+import com.synopsys.integration.blackduck.dockerinspector.timing.RunningPhase;
 import com.synopsys.integration.exception.IntegrationException;
 
 @Component
@@ -57,6 +61,9 @@ public class Output {
     @Autowired
     private ContainerFilesystemFilename containerFilesystemFilename;
 
+    @Autowired
+    private PhaseTimer phaseTimer;
+
     private SquashedImage squashedImage;
 
     @Autowired
@@ -82,7 +89,7 @@ public class Output {
         logger.debug(String.format("Output dir: %s; created: %b; successfully made writeable: %b; make executable: %b", outputDir.getAbsolutePath(), dirCreated, dirMadeWriteable, dirMadeExecutable));
     }
 
-    public OutputFiles addOutputToFinalOutputDir(final SimpleBdioDocument bdioDocument, final String repo, final String tag) throws IOException, IntegrationException {
+    public OutputFiles addOutputToFinalOutputDir(final File rawBdioFile, final BdioAdjuster bdioAdjuster, final String repo, final String tag) throws IOException, IntegrationException {
         // if user specified an output dir, use that; else use the working output dir
         File outputDir;
         if (StringUtils.isNotBlank(config.getOutputPath())) {
@@ -91,21 +98,60 @@ public class Output {
         } else {
             outputDir = new File(programPaths.getDockerInspectorWorkingOutputPath());
         }
-        final String bdioFilename = new BdioFilename(bdioDocument.getBillOfMaterials().spdxName).getBdioFilename();
-        final File outputBdioFile = new File(outputDir, bdioFilename);
-        final FileOutputStream outputBdioStream = new FileOutputStream(outputBdioFile);
-        logger.info(String.format("Writing BDIO to %s", outputBdioFile.getAbsolutePath()));
-        try (BdioWriter bdioWriter = new BdioWriter(gson, outputBdioStream)) {
-            bdioWriter.writeSimpleBdioDocument(bdioDocument);
-        }
+        final BdioHeader bdioHeader = writeBdio(rawBdioFile, bdioAdjuster, outputDir);
+        final File outputBdioFile = deriveOutputBdioFile(outputDir, bdioHeader);
         final String containerFileSystemFilename = containerFilesystemFilename.deriveContainerFilesystemFilename(repo, tag);
         final File containerFileSystemFile = new File(outputDir, containerFileSystemFilename);
         final File squashedImageFile = addSquashedImage(outputDir, containerFileSystemFile);
         removeContainerFileSystemIfNotRequested(containerFileSystemFile);
-        return new OutputFiles(outputBdioFile, containerFileSystemFile, squashedImageFile);
+        return new OutputFiles(outputBdioFile, bdioHeader, containerFileSystemFile, squashedImageFile);
+    }
+
+    // Multi-image mode: each image's output goes to its own dir
+    public OutputFiles addOutputToImageOutputDir(final File rawBdioFile, final BdioAdjuster bdioAdjuster, final String repo, final String tag, final File imageOutputDir) throws IOException, IntegrationException {
+        imageOutputDir.mkdirs();
+        final BdioHeader bdioHeader = writeBdio(rawBdioFile, bdioAdjuster, imageOutputDir);
+        final File outputBdioFile = deriveOutputBdioFile(imageOutputDir, bdioHeader);
+        final String containerFileSystemFilename = containerFilesystemFilename.deriveContainerFilesystemFilename(repo, tag);
+        final File workingContainerFileSystemFile = new File(programPaths.getDockerInspectorWorkingOutputPath(), containerFileSystemFilename);
+        final File containerFileSystemFile = new File(imageOutputDir, containerFileSystemFilename);
+        if (workingContainerFileSystemFile.exists() && !workingContainerFileSystemFile.getCanonicalPath().equals(containerFileSystemFile.getCanonicalPath())) {
+            logger.debug(String.format("Moving %s to %s", workingContainerFileSystemFile.getAbsolutePath(), containerFileSystemFile.getAbsolutePath()));
+            FileUtils.deleteQuietly(containerFileSystemFile);
+            FileUtils.moveFile(workingContainerFileSystemFile, containerFileSystemFile);
+        }
+        final File squashedImageFile = addSquashedImage(imageOutputDir, containerFileSystemFile);
+        removeContainerFileSystemIfNotRequested(containerFileSystemFile);
+        return new OutputFiles(outputBdioFile, bdioHeader, containerFileSystemFile, squashedImageFile);
+    }
+
+    // The output filename depends on the (adjusted) codelocation name, so the BDIO is streamed to a temp file that is renamed once it is complete
+    private BdioHeader writeBdio(final File rawBdioFile, final BdioAdjuster bdioAdjuster, final File outputDir) throws IOException, IntegrationException {
+        final File tempBdioFile = new File(outputDir, String.format("%s.tmp", rawBdioFile.getName()));
+        final BdioHeader bdioHeader;
+        try (RunningPhase bdioWritePhase = phaseTimer.start(Phase.BDIO_WRITE);
+            Reader bdioReader = Files.newBufferedReader(rawBdioFile.toPath(), StandardCharsets.UTF_8);
+            Writer bdioWriter = Files.newBufferedWriter(tempBdioFile.toPath(), StandardCharsets.UTF_8)) {
+            bdioHeader = new BdioTransformer(gson).transform(bdioReader, bdioWriter, bdioAdjuster);
+            bdioWriter.flush();
+            bdioWritePhase.addBytes(tempBdioFile.length());
+        } catch (IOException | IntegrationException e) {
+            FileUtils.deleteQuietly(tempBdioFile);
+            throw e;
+        }
+        final File outputBdioFile = deriveOutputBdioFile(outputDir, bdioHeader);
+        logger.info(String.format("Writing BDIO to %s", outputBdioFile.getAbsolutePath()));
+        Files.move(tempBdioFile.toPath(), outputBdioFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return bdioHeader;
+    }
+
+    private File deriveOutputBdioFile(final File outputDir, final BdioHeader bdioHeader) {
+        final String bdioFilename = new BdioFilename(bdioHeader.getBillOfMaterials().spdxName).getBdioFilename();
+        return new File(outputDir, bdioFilename);
     }
 
-    private File addSquashedImage(final File outputDir, final File containerFileSystemFile) throws IntegrationException {
+    // synchronized: the squashed image build dir and temp tarfile are shared by all images in a multi-image run
+    private synchronized File addSquashedImage(final File outputDir, final File containerFileSystemFile) throws IntegrationException {
         if (!config.isOutputIncludeSquashedImage()) {
             return null;
         }
@@ -121,8 +167,9 @@ public class Output {
         final File tempWorkingDir = new File(programPaths.getDockerInspectorSquashedImageDirPath());
         tempWorkingDir.mkdirs();
         logger.debug(String.format("Temp working dir: %s", tempWorkingDir.getAbsolutePath()));
-        try {
+        try (RunningPhase squashedImagePhase = phaseTimer.start(Phase.SQUASHED_IMAGE)) {
             squashedImage.createSquashedImageTarGz(containerFileSystemFile, squashedImageFile, tempTarFile, tempWorkingDir);
+            squashedImagePhase.addBytes(squashedImageFile.length());
         } catch (IOException e) {
             throw new IntegrationException(String.format("Error generating squashed image: %s", e.getMessage()), e);
         }
@@ -26,11 +26,13 @@ import java.io.File;
 
 public class OutputFiles {
     private File bdioFile;
+    private BdioHeader bdioHeader;
     private File containerFileSystemFile;
     private File squashedImageFile;
 
-    public OutputFiles(final File bdioFile, final File containerFileSystemFile, final File squashedImageFile) {
+    public OutputFiles(final File bdioFile, final BdioHeader bdioHeader, final File containerFileSystemFile, final File squashedImageFile) {
         this.bdioFile = bdioFile;
+        this.bdioHeader = bdioHeader;
         this.containerFileSystemFile = containerFileSystemFile;
         this.squashedImageFile = squashedImageFile;
     }
@@ -39,6 +41,10 @@ public class OutputFiles {
         return bdioFile;
     }
 
+    public BdioHeader getBdioHeader() {
+        return bdioHeader;
+    }
+
     public File getContainerFileSystemFile() {
         return containerFileSystemFile;
     }
@@ -0,0 +1,187 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.output;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Block-parallel (pigz-style) gzip compression. The input is split into fixed-size blocks that are
+ * deflated concurrently; each block is primed with the last 32K of the block before it (so compression
+ * ratio is close to that of a single stream) and ends on a byte boundary (sync flush), so the compressed
+ * blocks can simply be concatenated into one standard single-member gzip file.
+ */
+public class ParallelGzipCompressor {
+    private static final Logger logger = LoggerFactory.getLogger(ParallelGzipCompressor.class);
+    private static final int BLOCK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] GZIP_HEADER = new byte[] { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+    private final int threadCount;
+    private final int compressionLevel;
+
+    // threadCount 0: one thread per available processor; compressionLevel: 0 (none) through 9 (smallest), or -1 (the default level)
+    public ParallelGzipCompressor(final int threadCount, final int compressionLevel) {
+        if (threadCount < 0) {
+            throw new IllegalArgumentException(String.format("Invalid compression thread count %d: must be 0 (one per available processor) or more", threadCount));
+        }
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException(String.format("Invalid compression level %d: must be 0 (none) through 9 (smallest), or -1 (the default level)", compressionLevel));
+        }
+        this.threadCount = threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors();
+        this.compressionLevel = compressionLevel;
+    }
+
+    public void compress(final File fileToCompress, final File compressedFile) throws IOException {
+        logger.debug(String.format("Compressing %s to %s using %d thread(s), compression level %d", fileToCompress.getAbsolutePath(), compressedFile.getAbsolutePath(), threadCount, compressionLevel));
+        final ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        try (final InputStream inputStream = new FileInputStream(fileToCompress);
+            final OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(compressedFile), IO_BUFFER_SIZE)) {
+            compress(inputStream, outputStream, executorService);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void compress(final InputStream inputStream, final OutputStream outputStream, final ExecutorService executorService) throws IOException {
+        final CRC32 crc = new CRC32();
+        long uncompressedSize = 0;
+        // Bound the number of blocks held in memory
+        final int maxBlocksInFlight = threadCount * 2;
+        final Deque<Future<byte[]>> blocksInFlight = new ArrayDeque<>(maxBlocksInFlight);
+        outputStream.write(GZIP_HEADER);
+        byte[] dictionary = null;
+        byte[] block = readBlock(inputStream);
+        while (true) {
+            // Reading one block ahead tells us whether this is the last block, which must finish the deflate stream
+            final byte[] nextBlock = block.length == 0 ? null : readBlock(inputStream);
+            final boolean isLastBlock = nextBlock == null || nextBlock.length == 0;
+            crc.update(block, 0, block.length);
+            uncompressedSize += block.length;
+            blocksInFlight.addLast(executorService.submit(new BlockDeflater(block, dictionary, isLastBlock)));
+            if (blocksInFlight.size() >= maxBlocksInFlight) {
+                outputStream.write(waitForBlock(blocksInFlight.removeFirst()));
+            }
+            if (isLastBlock) {
+                break;
+            }
+            dictionary = Arrays.copyOfRange(block, Math.max(0, block.length - DICTIONARY_SIZE), block.length);
+            block = nextBlock;
+        }
+        while (!blocksInFlight.isEmpty()) {
+            outputStream.write(waitForBlock(blocksInFlight.removeFirst()));
+        }
+        writeIntLittleEndian(outputStream, crc.getValue());
+        writeIntLittleEndian(outputStream, uncompressedSize);
+    }
+
+    private byte[] readBlock(final InputStream inputStream) throws IOException {
+        final byte[] buffer = new byte[BLOCK_SIZE];
+        final int bytesRead = IOUtils.read(inputStream, buffer);
+        if (bytesRead == BLOCK_SIZE) {
+            return buffer;
+        }
+        return Arrays.copyOf(buffer, bytesRead);
+    }
+
+    private byte[] waitForBlock(final Future<byte[]> compressedBlock) throws IOException {
+        try {
+            return compressedBlock.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing", e);
+        } catch (final ExecutionException e) {
+            throw new IOException(String.format("Error compressing: %s", e.getCause().getMessage()), e.getCause());
+        }
+    }
+
+    // The gzip trailer stores values modulo 2^32
+    private void writeIntLittleEndian(final OutputStream outputStream, final long value) throws IOException {
+        outputStream.write((int) (value & 0xff));
+        outputStream.write((int) ((value >> 8) & 0xff));
+        outputStream.write((int) ((value >> 16) & 0xff));
+        outputStream.write((int) ((value >> 24) & 0xff));
+    }
+
+    private class BlockDeflater implements Callable<byte[]> {
+        private final byte[] block;
+        private final byte[] dictionary;
+        private final boolean isLastBlock;
+
+        BlockDeflater(final byte[] block, final byte[] dictionary, final boolean isLastBlock) {
+            this.block = block;
+            this.dictionary = dictionary;
+            this.isLastBlock = isLastBlock;
+        }
+
+        @Override
+        public byte[] call() {
+            // nowrap: raw deflate data; the gzip header and trailer are written separately
+            final Deflater deflater = new Deflater(compressionLevel, true);
+            try {
+                if (dictionary != null) {
+                    deflater.setDictionary(dictionary);
+                }
+                deflater.setInput(block);
+                final ByteArrayOutputStream compressedBlock = new ByteArrayOutputStream(block.length / 2 + 64);
+                final byte[] buffer = new byte[IO_BUFFER_SIZE];
+                if (isLastBlock) {
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        final int compressedLength = deflater.deflate(buffer);
+                        compressedBlock.write(buffer, 0, compressedLength);
+                    }
+                } else {
+                    int compressedLength;
+                    do {
+                        compressedLength = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                        compressedBlock.write(buffer, 0, compressedLength);
+                    } while (compressedLength == buffer.length);
+                }
+                return compressedBlock.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+}
@@ -23,7 +23,10 @@
 package com.synopsys.integration.blackduck.dockerinspector.output;
 
 import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTiming;
 import com.synopsys.integration.util.Stringable;
 
 public class Result extends Stringable {
@@ -36,6 +39,9 @@ public class Result extends Stringable {
     private final String bdioFilename;
     private final String containerFilesystemFilename;
     private final String squashedImageFilename;
+    private Map<String, PhaseTiming> timings = new LinkedHashMap<>();
+    // Phases not done for any one image (such as image inspector service warm-up); omitted when there are none
+    private Map<String, PhaseTiming> runTimings;
 
     public static Result createResultFailure(final String message) {
         return new Result(false, message, "unknown", "unknwon", "unknown","none", "none", "none");
@@ -48,6 +54,10 @@ public class Result extends Stringable {
         return new Result(true, "Docker Inspector succeeded.", imageRepo, imageTag, dockerTarfilename, bdioFilename, containerFilesystemFilename, squashedImageFilename);
     }
 
+    public static Result createResultMultipleImages(final boolean succeeded, final String message) {
+        return new Result(succeeded, message, "multiple", "multiple", "none", "none", "none", "none");
+    }
+
     private Result(final Boolean succeeded, final String message, final String imageRepo, final String imageTag, final String dockerTarfilename, final String bdioFilename,
         final String containerFilesystemFilename, final String squashedImageFilename) {
         this.succeeded = succeeded;
@@ -92,6 +102,22 @@ public class Result extends Stringable {
         return squashedImageFilename;
     }
 
+    public Map<String, PhaseTiming> getTimings() {
+        return timings;
+    }
+
+    public void setTimings(final Map<String, PhaseTiming> timings) {
+        this.timings = timings;
+    }
+
+    public Map<String, PhaseTiming> getRunTimings() {
+        return runTimings;
+    }
+
+    public void setRunTimings(final Map<String, PhaseTiming> runTimings) {
+        this.runTimings = runTimings;
+    }
+
     public int getReturnCode() {
         return isSucceeded() ? 0 : -1;
     }
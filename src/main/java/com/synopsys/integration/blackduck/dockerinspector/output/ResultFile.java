@@ -47,4 +47,18 @@ public class ResultFile {
             logger.error(String.format("Error writing output file: %s", e.getMessage()));
         }
     }
+
+    public void write(final Gson gson, final File batchResultsOutputFile, final BatchResults batchResults) {
+        try {
+            logger.trace(String.format("Writing batchResultsOutputFile: %s; batch results: %s", batchResultsOutputFile.getAbsolutePath(), batchResults.toString()));
+            batchResultsOutputFile.getParentFile().mkdirs();
+            try (FileOutputStream resultOutputStream = new FileOutputStream(batchResultsOutputFile)) {
+                try (ResultWriter resultWriter = new ResultWriter(gson, resultOutputStream)) {
+                    resultWriter.writeBatchResults(batchResults);
+                }
+            }
+        } catch (final Exception e) {
+            logger.error(String.format("Error writing output file: %s", e.getMessage()));
+        }
+    }
 }
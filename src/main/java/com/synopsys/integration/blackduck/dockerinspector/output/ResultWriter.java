@@ -44,6 +44,10 @@ public class ResultWriter implements Closeable {
         gson.toJson(result, result.getClass(), jsonWriter);
     }
 
+    public void writeBatchResults(final BatchResults batchResults) {
+        gson.toJson(batchResults, batchResults.getClass(), jsonWriter);
+    }
+
     @Override
     public void close() throws IOException {
         jsonWriter.close();
@@ -22,91 +22,218 @@
  */
 package com.synopsys.integration.blackduck.dockerinspector.output;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.HashSet;
-import java.util.Optional;
-import java.util.Set;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
 
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import com.synopsys.integration.blackduck.dockerinspector.dockerclient.DockerClientManager;
-import com.synopsys.integration.blackduck.imageinspector.linux.FileOperations;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.blackduck.dockerinspector.imagetar.ImageTarManifestEntry;
+import com.synopsys.integration.blackduck.dockerinspector.imagetar.ImageTarMetadataReader;
 import com.synopsys.integration.exception.IntegrationException;
 
+/*
+ * Writes a single-layer docker-archive (docker save format) tarfile directly from the container filesystem:
+ * the layer is the container filesystem re-rooted at /, and the manifest.json and image config are generated.
+ */
 @Component
 public class SquashedImage {
     private static final Logger logger = LoggerFactory.getLogger(SquashedImage.class);
-    private static final String IMAGE_REPO_PREFIX = "dockerinspectorsquashed";
-    private static final String IMAGE_TAG = "1";
-    private static final int MAX_NAME_GENERATION_ATTEMPTS = 20;
-    private static final int MAX_IMAGE_REPO_INDEX = 10000;
+    private static final String LAYER_FILENAME = "layer.tar";
+    private static final String CREATED_BY = "blackduck-docker-inspector squashed image";
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
 
-    private DockerClientManager dockerClientManager;
-    private FileOperations fileOperations;
+    private Config config;
+    private Gson gson;
 
     @Autowired
-    public void setDockerClientManager(DockerClientManager dockerClientManager) {
-        this.dockerClientManager = dockerClientManager;
+    public void setConfig(Config config) {
+        this.config = config;
     }
 
     @Autowired
-    public void setFileOperations(FileOperations fileOperations) {
-        this.fileOperations = fileOperations;
+    public void setGson(Gson gson) {
+        this.gson = gson;
     }
 
     public void createSquashedImageTarGz(File targetImageFileSystemTarGz, File squashedImageTarGz,
         File tempTarFile, File tempWorkingDir) throws IOException, IntegrationException {
         logger.info(String.format("Transforming container filesystem %s to squashed image %s", targetImageFileSystemTarGz, squashedImageTarGz));
-        File dockerBuildDir = tempWorkingDir;
-        File containerFileSystemDir = new File(dockerBuildDir, "containerFileSystem");
-        containerFileSystemDir.mkdirs();
-        CompressedFile.gunZipUnTarFile(targetImageFileSystemTarGz, tempTarFile, containerFileSystemDir);
-        fileOperations.pruneProblematicSymLinksRecursively(containerFileSystemDir);
-        File dockerfile = new File(dockerBuildDir, "Dockerfile");
-        String dockerfileContents = String.format("FROM scratch\nCOPY %s/* .\n", containerFileSystemDir.getName());
-        FileUtils.writeStringToFile(dockerfile, dockerfileContents, StandardCharsets.UTF_8);
-
-        String imageRepoTag = generateUniqueImageRepoTag();
-        Set<String> tags = new HashSet<>();
-        tags.add(imageRepoTag);
-        String squashedImageId = dockerClientManager.buildImage(dockerBuildDir, tags);
-
+        // Invalid compression settings are reported before, not after, the (lengthy) squashing
+        ParallelGzipCompressor compressor = createCompressor();
+        File layerTarFile = new File(tempWorkingDir, LAYER_FILENAME);
         try {
-            ImageTarWrapper generatedSquashedImageTarfile = dockerClientManager.getTarFileFromDockerImageById(squashedImageId, tempWorkingDir);
-            logger.info(String.format("Generated squashed tarfile: %s", generatedSquashedImageTarfile.getFile().getAbsolutePath()));
-            CompressedFile.gZipFile(generatedSquashedImageTarfile.getFile(), squashedImageTarGz);
+            String layerDigest = writeLayerTar(targetImageFileSystemTarGz, layerTarFile);
+            String imageConfig = generateImageConfig(layerDigest);
+            String imageConfigFilename = String.format("%s.json", sha256Hex(imageConfig.getBytes(StandardCharsets.UTF_8)));
+            String layerPath = String.format("%s/%s", layerDigest, LAYER_FILENAME);
+            ImageTarManifestEntry manifestEntry = new ImageTarManifestEntry(imageConfigFilename, null, Collections.singletonList(layerPath));
+            String manifest = gson.toJson(Collections.singletonList(manifestEntry));
+            writeImageTar(tempTarFile, layerTarFile, layerDigest, layerPath, imageConfigFilename, imageConfig, manifest);
+            logger.info(String.format("Generated squashed tarfile: %s", tempTarFile.getAbsolutePath()));
+            compressor.compress(tempTarFile, squashedImageTarGz);
         } finally {
-            logger.debug(String.format("Removing temporary squashed image: %s", imageRepoTag));
-            String[] imageRepoTagParts = imageRepoTag.split(":");
-            Optional<String> imageId = dockerClientManager.lookupImageIdByRepoTag(imageRepoTagParts[0], imageRepoTagParts[1]);
-            if (imageId.isPresent()) {
-                dockerClientManager.removeImage(imageId.get());
-            } else {
-                logger.warn(String.format("Unable to remove temporary squashed image because image %s was not found", imageRepoTag));
+            layerTarFile.delete();
+            tempTarFile.delete();
+        }
+    }
+
+    private ParallelGzipCompressor createCompressor() throws IntegrationException {
+        try {
+            return new ParallelGzipCompressor(config.getOutputCompressionThreads(), config.getOutputCompressionLevel());
+        } catch (IllegalArgumentException e) {
+            throw new IntegrationException(String.format("Invalid value for property output.compression.threads or output.compression.level: %s", e.getMessage()), e);
+        }
+    }
+
+    // The container filesystem tarfile has a single top level dir; the layer has the contents of that dir at its root
+    private String writeLayerTar(File targetImageFileSystemTarGz, File layerTarFile) throws IOException, IntegrationException {
+        MessageDigest layerDigest = createSha256Digest();
+        try (InputStream fileInputStream = new BufferedInputStream(new FileInputStream(targetImageFileSystemTarGz), IO_BUFFER_SIZE);
+            TarArchiveInputStream containerFileSystemTarInputStream = new TarArchiveInputStream(new GZIPInputStream(fileInputStream, IO_BUFFER_SIZE));
+            OutputStream fileOutputStream = new BufferedOutputStream(new FileOutputStream(layerTarFile), IO_BUFFER_SIZE);
+            TarArchiveOutputStream layerTarOutputStream = createTarOutputStream(new DigestOutputStream(fileOutputStream, layerDigest))) {
+            TarArchiveEntry entry;
+            while ((entry = containerFileSystemTarInputStream.getNextTarEntry()) != null) {
+                String layerEntryName = stripTopLevelDir(entry.getName());
+                if (layerEntryName.isEmpty()) {
+                    continue;
+                }
+                entry.setName(layerEntryName);
+                if (entry.isLink()) {
+                    // Hard link targets are paths within the archive; symbolic link targets are left as-is
+                    entry.setLinkName(stripTopLevelDir(entry.getLinkName()));
+                }
+                layerTarOutputStream.putArchiveEntry(entry);
+                if (entry.isFile()) {
+                    IOUtils.copyLarge(containerFileSystemTarInputStream, layerTarOutputStream);
+                }
+                layerTarOutputStream.closeArchiveEntry();
             }
+            layerTarOutputStream.finish();
         }
+        return toHex(layerDigest.digest());
     }
 
-    String generateUniqueImageRepoTag() throws IntegrationException {
-
-        for (int i = 0; i < MAX_NAME_GENERATION_ATTEMPTS; i++) {
-            int randomImageRepoIndex = (int) (Math.random() * MAX_IMAGE_REPO_INDEX);
-            String imageRepoCandidate = String.format("%s-%d", IMAGE_REPO_PREFIX, randomImageRepoIndex);
-            String imageRepoTagCandidate = String.format("%s:%s", imageRepoCandidate, IMAGE_TAG);
-            logger.debug(String.format("Squashed image repo:name candidate: %s", imageRepoTagCandidate));
-            Optional<String> foundImageId = dockerClientManager.lookupImageIdByRepoTag(imageRepoCandidate, IMAGE_TAG);
-            if (!foundImageId.isPresent()) {
-                return imageRepoTagCandidate;
-            } else {
-                logger.debug(String.format("\tImage repo:name %s is not available", imageRepoTagCandidate));
+    private void writeImageTar(File imageTarFile, File layerTarFile, String layerDigest, String layerPath, String imageConfigFilename, String imageConfig, String manifest) throws IOException {
+        try (OutputStream fileOutputStream = new BufferedOutputStream(new FileOutputStream(imageTarFile), IO_BUFFER_SIZE);
+            TarArchiveOutputStream imageTarOutputStream = createTarOutputStream(fileOutputStream)) {
+            TarArchiveEntry layerDirEntry = new TarArchiveEntry(String.format("%s/", layerDigest));
+            imageTarOutputStream.putArchiveEntry(layerDirEntry);
+            imageTarOutputStream.closeArchiveEntry();
+            TarArchiveEntry layerEntry = new TarArchiveEntry(layerPath);
+            layerEntry.setSize(layerTarFile.length());
+            imageTarOutputStream.putArchiveEntry(layerEntry);
+            try (InputStream layerInputStream = new FileInputStream(layerTarFile)) {
+                IOUtils.copyLarge(layerInputStream, imageTarOutputStream, new byte[IO_BUFFER_SIZE]);
             }
+            imageTarOutputStream.closeArchiveEntry();
+            writeTextEntry(imageTarOutputStream, imageConfigFilename, imageConfig);
+            writeTextEntry(imageTarOutputStream, ImageTarMetadataReader.MANIFEST_FILENAME, manifest);
+            imageTarOutputStream.finish();
+        }
+    }
+
+    private void writeTextEntry(TarArchiveOutputStream tarOutputStream, String entryName, String contents) throws IOException {
+        byte[] contentBytes = contents.getBytes(StandardCharsets.UTF_8);
+        TarArchiveEntry entry = new TarArchiveEntry(entryName);
+        entry.setSize(contentBytes.length);
+        tarOutputStream.putArchiveEntry(entry);
+        tarOutputStream.write(contentBytes);
+        tarOutputStream.closeArchiveEntry();
+    }
+
+    private String generateImageConfig(String layerDigest) {
+        String created = Instant.now().truncatedTo(ChronoUnit.SECONDS).toString();
+        JsonObject imageConfig = new JsonObject();
+        imageConfig.addProperty("architecture", deriveArchitecture());
+        imageConfig.addProperty("os", "linux");
+        imageConfig.addProperty("created", created);
+        imageConfig.add("config", new JsonObject());
+        JsonObject rootfs = new JsonObject();
+        rootfs.addProperty("type", "layers");
+        JsonArray diffIds = new JsonArray();
+        diffIds.add(String.format("sha256:%s", layerDigest));
+        rootfs.add("diff_ids", diffIds);
+        imageConfig.add("rootfs", rootfs);
+        JsonObject historyEntry = new JsonObject();
+        historyEntry.addProperty("created", created);
+        historyEntry.addProperty("created_by", CREATED_BY);
+        JsonArray history = new JsonArray();
+        history.add(historyEntry);
+        imageConfig.add("history", history);
+        return gson.toJson(imageConfig);
+    }
+
+    // Docker uses the GOARCH names
+    private String deriveArchitecture() {
+        String osArch = System.getProperty("os.arch");
+        if ("aarch64".equals(osArch)) {
+            return "arm64";
+        }
+        if ("x86_64".equals(osArch) || "amd64".equals(osArch)) {
+            return "amd64";
+        }
+        return osArch;
+    }
+
+    private String stripTopLevelDir(String entryName) {
+        String normalizedEntryName = entryName.startsWith("./") ? entryName.substring(2) : entryName;
+        int firstSlashIndex = normalizedEntryName.indexOf('/');
+        if (firstSlashIndex < 0) {
+            return "";
+        }
+        return normalizedEntryName.substring(firstSlashIndex + 1);
+    }
+
+    private TarArchiveOutputStream createTarOutputStream(OutputStream outputStream) {
+        TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(outputStream);
+        tarOutputStream.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        tarOutputStream.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+        return tarOutputStream;
+    }
+
+    private MessageDigest createSha256Digest() throws IntegrationException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IntegrationException(String.format("Unable to compute layer digest: %s", e.getMessage()), e);
+        }
+    }
+
+    private String sha256Hex(byte[] value) throws IntegrationException {
+        return toHex(createSha256Digest().digest(value));
+    }
+
+    private String toHex(byte[] hash) {
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(String.format("%02x", b));
         }
-        throw new IntegrationException(String.format("Failed to find an available image repo:tag to use when building the squashed image"));
+        return hex.toString();
     }
 }
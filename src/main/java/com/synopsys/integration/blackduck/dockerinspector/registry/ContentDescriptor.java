@@ -0,0 +1,110 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.registry;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.synopsys.integration.exception.IntegrationException;
+
+// An OCI content descriptor: a reference (by digest) to a manifest, config, or layer blob
+public class ContentDescriptor {
+    public static final String ANNOTATION_REF_NAME = "org.opencontainers.image.ref.name";
+    // Digests end up in file names and URLs, so only the algorithms (and encodings) registries use are accepted
+    private static final Pattern DIGEST_PATTERN = Pattern.compile("^(sha256:[a-f0-9]{64}|sha512:[a-f0-9]{128})$");
+    private String mediaType;
+    private String digest;
+    private long size;
+    private Platform platform;
+    private Map<String, String> annotations;
+
+    public ContentDescriptor(String mediaType, String digest, long size) {
+        this.mediaType = mediaType;
+        this.digest = digest;
+        this.size = size;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getDigest() throws IntegrationException {
+        if (digest == null || !DIGEST_PATTERN.matcher(digest).matches()) {
+            throw new IntegrationException(String.format("Unsupported or invalid content digest: %s", digest));
+        }
+        return digest;
+    }
+
+    // The java.security.MessageDigest algorithm name for the digest
+    public String getDigestAlgorithm() throws IntegrationException {
+        return getDigest().startsWith("sha512:") ? "SHA-512" : "SHA-256";
+    }
+
+    public String getDigestHex() throws IntegrationException {
+        String validDigest = getDigest();
+        return validDigest.substring(validDigest.indexOf(':') + 1);
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public Map<String, String> getAnnotations() {
+        if (annotations == null) {
+            return new HashMap<>(0);
+        }
+        return annotations;
+    }
+
+    public String getRefName() {
+        return getAnnotations().get(ANNOTATION_REF_NAME);
+    }
+
+    // platformSpec is os/architecture[/variant], as in docker.image.platform
+    public boolean matchesPlatform(String platformSpec) {
+        if (platform == null) {
+            return false;
+        }
+        String[] platformParts = platformSpec.split("/");
+        if (platformParts.length < 2 || !platformParts[0].equals(platform.os) || !platformParts[1].equals(platform.architecture)) {
+            return false;
+        }
+        return platformParts.length < 3 || platformParts[2].equals(platform.variant);
+    }
+
+    public String getPlatformDescription() {
+        if (platform == null) {
+            return "<unspecified>";
+        }
+        return StringUtils.isBlank(platform.variant) ? String.format("%s/%s", platform.os, platform.architecture) : String.format("%s/%s/%s", platform.os, platform.architecture, platform.variant);
+    }
+
+    private static class Platform {
+        private String os;
+        private String architecture;
+        private String variant;
+    }
+}
@@ -0,0 +1,303 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.registry;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.google.gson.Gson;
+import com.synopsys.integration.blackduck.dockerinspector.cache.BlobCache;
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.blackduck.dockerinspector.config.ProgramPaths;
+import com.synopsys.integration.blackduck.dockerinspector.imagetar.ImageTarAssembler;
+import com.synopsys.integration.blackduck.dockerinspector.output.ImageTarFilename;
+import com.synopsys.integration.blackduck.dockerinspector.output.ImageTarWrapper;
+import com.synopsys.integration.blackduck.dockerinspector.timing.Phase;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimer;
+import com.synopsys.integration.blackduck.dockerinspector.timing.RunningPhase;
+import com.synopsys.integration.exception.IntegrationException;
+
+/*
+ * Produces the image tarfile for the image inspector services without the Docker engine (no pull, no save):
+ * reads the image from an OCI image layout directory (oci.image.layout.dir), or fetches it from a registry (registry.url),
+ * and writes the tarfile directly from the image's blobs. Blobs fetched from a registry are kept in the blob cache,
+ * so layers shared between images (or between runs) are fetched once.
+ */
+@Component
+public class DirectImageSource {
+    private static final String DEFAULT_PLATFORM = "linux/amd64";
+    private static final String DEFAULT_TAG = "latest";
+    private static final long INITIAL_RETRY_PAUSE_MILLISECONDS = 1000L;
+    private static final long MAX_RETRY_PAUSE_MILLISECONDS = 30000L;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private Config config;
+
+    @Autowired
+    private ProgramPaths programPaths;
+
+    @Autowired
+    private ImageTarFilename imageTarFilename;
+
+    @Autowired
+    private ImageTarAssembler imageTarAssembler;
+
+    @Autowired
+    private BlobCache blobCache;
+
+    @Autowired
+    private PhaseTimer phaseTimer;
+
+    @Autowired
+    private Gson gson;
+
+    private final ConcurrentMap<String, Object> blobFetchLocks = new ConcurrentHashMap<>();
+
+    // docker.tar, if given, takes precedence
+    public boolean isApplicable() {
+        return StringUtils.isBlank(config.getDockerTar()) && (StringUtils.isNotBlank(config.getOciImageLayoutDir()) || StringUtils.isNotBlank(config.getRegistryUrl()));
+    }
+
+    public ImageTarWrapper deriveImageTarFromConfig() throws IOException, IntegrationException {
+        return deriveImageTar(config.getDockerImageRepo(), config.getDockerImageTag());
+    }
+
+    public ImageTarWrapper deriveImageTar(String imageRepo, String imageTag) throws IOException, IntegrationException {
+        if (StringUtils.isNotBlank(config.getOciImageLayoutDir())) {
+            return deriveImageTarFromLayout(new File(config.getOciImageLayoutDir()), imageRepo, imageTag);
+        }
+        if (StringUtils.isBlank(imageRepo)) {
+            throw new IntegrationException("When registry.url is set, the image must be specified using docker.image");
+        }
+        return deriveImageTarFromRegistry(imageRepo, StringUtils.defaultIfBlank(imageTag, DEFAULT_TAG));
+    }
+
+    private ImageTarWrapper deriveImageTarFromLayout(File layoutDir, String givenImageRepo, String givenImageTag) throws IOException, IntegrationException {
+        logger.info(String.format("Reading the image from OCI image layout %s", layoutDir.getAbsolutePath()));
+        OciImageLayout layout = new OciImageLayout(layoutDir, gson);
+        ContentDescriptor image = layout.findImage(givenImageRepo, givenImageTag);
+        ImageManifest manifest = layout.readImageManifest(image, getPlatform());
+        // Without docker.image, the image is named after the layout directory and its tag in the layout
+        String imageRepo = StringUtils.isNotBlank(givenImageRepo) ? givenImageRepo : layoutDir.getName();
+        String imageTag = StringUtils.isNotBlank(givenImageTag) ? givenImageTag : deriveTagFromRefName(image.getRefName());
+        return assembleImageTar(manifest, layout, imageRepo, imageTag);
+    }
+
+    private ImageTarWrapper deriveImageTarFromRegistry(String imageRepo, String imageTag) throws IOException, IntegrationException {
+        int timeoutMilliseconds = (int) Math.min(Integer.MAX_VALUE, config.getCommandTimeout());
+        try (RegistryClient registryClient = new RegistryClient(config.getRegistryUrl(), deriveRepository(imageRepo), timeoutMilliseconds, config.getRegistryBlobFetchThreads(), gson)) {
+            logger.info(String.format("Fetching image %s:%s from registry %s", imageRepo, imageTag, config.getRegistryUrl()));
+            ImageManifest manifest;
+            Map<String, File> blobsByDigest = new LinkedHashMap<>();
+            try (RunningPhase pullPhase = phaseTimer.start(Phase.PULL)) {
+                manifest = registryClient.fetchImageManifest(imageTag, getPlatform());
+                fetchBlobs(registryClient, manifest, blobsByDigest, pullPhase);
+            }
+            // Normally the blobs were all just fetched or found in the cache; if the cache evicted any to make room for the others, they're fetched again
+            BlobSource cachedBlobs = blob -> {
+                File blobFile = blobsByDigest.get(blob.getDigest());
+                if (blobFile != null && blobFile.isFile()) {
+                    return blobFile;
+                }
+                return getBlob(registryClient, blob).getFile();
+            };
+            return assembleImageTar(manifest, cachedBlobs, imageRepo, imageTag);
+        }
+    }
+
+    // Fetches the image's blobs that aren't already in the blob cache, up to registry.blob.fetch.threads at a time
+    private void fetchBlobs(RegistryClient registryClient, ImageManifest manifest, Map<String, File> blobsByDigest, RunningPhase pullPhase) throws IOException, IntegrationException {
+        Map<String, ContentDescriptor> blobsToFetch = new LinkedHashMap<>();
+        for (ContentDescriptor layer : manifest.getLayers()) {
+            blobsToFetch.putIfAbsent(layer.getDigest(), layer);
+        }
+        blobsToFetch.putIfAbsent(manifest.getConfig().getDigest(), manifest.getConfig());
+        int threadCount = Math.max(1, Math.min(config.getRegistryBlobFetchThreads(), blobsToFetch.size()));
+        logger.debug(String.format("Fetching %d blob(s) using %d thread(s)", blobsToFetch.size(), threadCount));
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        try {
+            Map<String, Future<FetchedBlob>> blobFetches = new LinkedHashMap<>();
+            for (ContentDescriptor blob : blobsToFetch.values()) {
+                blobFetches.put(blob.getDigest(), executorService.submit(() -> getBlob(registryClient, blob)));
+            }
+            for (Map.Entry<String, Future<FetchedBlob>> blobFetch : blobFetches.entrySet()) {
+                FetchedBlob fetchedBlob = waitForBlob(blobFetch.getValue());
+                blobsByDigest.put(blobFetch.getKey(), fetchedBlob.getFile());
+                pullPhase.addBytes(fetchedBlob.getBytesFetched());
+                for (int retry = 0; retry < fetchedBlob.getRetries(); retry++) {
+                    pullPhase.addRetry();
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private FetchedBlob waitForBlob(Future<FetchedBlob> blobFetch) throws IOException, IntegrationException {
+        try {
+            return blobFetch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IntegrationException("Interrupted while fetching blobs", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof IntegrationException) {
+                throw (IntegrationException) e.getCause();
+            }
+            throw new IntegrationException(String.format("Error fetching blob: %s", e.getCause().getMessage()), e.getCause());
+        }
+    }
+
+    private FetchedBlob getBlob(RegistryClient registryClient, ContentDescriptor blob) throws IOException, IntegrationException {
+        // Images inspected concurrently often share layers; only one thread at a time fetches (and writes the partial file of) a given blob
+        synchronized (blobFetchLocks.computeIfAbsent(blob.getDigest(), digest -> new Object())) {
+            Optional<File> cachedBlob = blobCache.find(blob.getDigest());
+            if (cachedBlob.isPresent()) {
+                logger.debug(String.format("Blob %s is already in the blob cache; not fetching it again", blob.getDigest()));
+                return new FetchedBlob(cachedBlob.get(), 0L, 0);
+            }
+            File partialBlob = blobCache.getPartialFile(blob.getDigest());
+            if (partialBlob.length() > 0) {
+                logger.info(String.format("Resuming fetch of blob %s (%d of %d bytes were fetched earlier)", blob.getDigest(), partialBlob.length(), blob.getSize()));
+            } else {
+                logger.debug(String.format("Fetching blob %s (%d bytes)", blob.getDigest(), blob.getSize()));
+            }
+            long bytesFetched = 0L;
+            int retries = 0;
+            long pauseMilliseconds = INITIAL_RETRY_PAUSE_MILLISECONDS;
+            while (true) {
+                long partialBlobLength = partialBlob.length();
+                try {
+                    bytesFetched += registryClient.fetchBlob(blob, partialBlob);
+                    break;
+                } catch (IOException e) {
+                    // A network error or transient HTTP status; the partial file keeps what was fetched, so the retry (or a later run) resumes from there
+                    bytesFetched += Math.max(0L, partialBlob.length() - partialBlobLength);
+                    if (retries >= config.getRegistryBlobFetchRetries()) {
+                        throw e;
+                    }
+                    retries++;
+                    logger.warn(String.format("Error fetching blob %s (%d of %d bytes fetched): %s; retry %d of %d in %d ms", blob.getDigest(), partialBlob.length(), blob.getSize(),
+                        e.getMessage(), retries, config.getRegistryBlobFetchRetries(), pauseMilliseconds));
+                    pause(pauseMilliseconds);
+                    pauseMilliseconds = Math.min(pauseMilliseconds * 2, MAX_RETRY_PAUSE_MILLISECONDS);
+                } catch (IntegrationException e) {
+                    // The content doesn't match its digest or size, or the registry refused the request (a 4xx status); nothing worth resuming
+                    blobCache.discardTempFile(partialBlob);
+                    throw e;
+                }
+            }
+            return new FetchedBlob(blobCache.store(blob.getDigest(), partialBlob), bytesFetched, retries);
+        }
+    }
+
+    private void pause(long pauseMilliseconds) throws IntegrationException {
+        try {
+            Thread.sleep(pauseMilliseconds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IntegrationException("Interrupted while waiting to retry a blob fetch", e);
+        }
+    }
+
+    private ImageTarWrapper assembleImageTar(ImageManifest manifest, BlobSource blobSource, String imageRepo, String imageTag) throws IOException, IntegrationException {
+        File imageTarDir = new File(programPaths.getDockerInspectorTargetDirPath());
+        imageTarDir.mkdirs();
+        File imageTarFile = new File(imageTarDir, imageTarFilename.deriveImageTarFilenameFromImageTag(imageRepo, imageTag));
+        try (RunningPhase savePhase = phaseTimer.start(Phase.SAVE)) {
+            savePhase.addBytes(imageTarAssembler.assemble(manifest, blobSource, String.format("%s:%s", imageRepo, imageTag), imageTarFile));
+        }
+        logger.debug(String.format("Wrote image tarfile %s", imageTarFile.getAbsolutePath()));
+        return new ImageTarWrapper(imageTarFile, imageRepo, imageTag);
+    }
+
+    private String getPlatform() {
+        return StringUtils.defaultIfBlank(config.getDockerImagePlatform(), DEFAULT_PLATFORM);
+    }
+
+    // The repository name within the registry: an image name's first component names its registry if it looks like a hostname (as Docker decides)
+    static String deriveRepository(String imageRepo) {
+        int firstSlashIndex = imageRepo.indexOf('/');
+        if (firstSlashIndex > 0) {
+            String firstComponent = imageRepo.substring(0, firstSlashIndex);
+            if (firstComponent.contains(".") || firstComponent.contains(":") || firstComponent.equals("localhost")) {
+                return imageRepo.substring(firstSlashIndex + 1);
+            }
+        }
+        return imageRepo;
+    }
+
+    // A ref name is a tag, or (as some tools write it) a full image name ending in :tag
+    static String deriveTagFromRefName(String refName) {
+        if (StringUtils.isBlank(refName)) {
+            return DEFAULT_TAG;
+        }
+        int lastColonIndex = refName.lastIndexOf(':');
+        if (lastColonIndex > refName.lastIndexOf('/')) {
+            return refName.substring(lastColonIndex + 1);
+        }
+        return refName.contains("/") ? DEFAULT_TAG : refName;
+    }
+
+    private static class FetchedBlob {
+        private final File file;
+        private final long bytesFetched;
+        private final int retries;
+
+        FetchedBlob(File file, long bytesFetched, int retries) {
+            this.file = file;
+            this.bytesFetched = bytesFetched;
+            this.retries = retries;
+        }
+
+        File getFile() {
+            return file;
+        }
+
+        long getBytesFetched() {
+            return bytesFetched;
+        }
+
+        int getRetries() {
+            return retries;
+        }
+    }
+}
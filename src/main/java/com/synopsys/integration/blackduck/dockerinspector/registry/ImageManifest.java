@@ -0,0 +1,93 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.registry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.synopsys.integration.exception.IntegrationException;
+
+/*
+ * An image manifest or image index (manifest list), in either OCI or Docker (schema 2) form; the two forms have the same structure.
+ * A manifest has a config and layers; an index has manifests (one per platform, or per tag in an OCI layout's index.json).
+ */
+public class ImageManifest {
+    public static final String MEDIA_TYPE_OCI_MANIFEST = "application/vnd.oci.image.manifest.v1+json";
+    public static final String MEDIA_TYPE_OCI_INDEX = "application/vnd.oci.image.index.v1+json";
+    public static final String MEDIA_TYPE_DOCKER_MANIFEST = "application/vnd.docker.distribution.manifest.v2+json";
+    public static final String MEDIA_TYPE_DOCKER_MANIFEST_LIST = "application/vnd.docker.distribution.manifest.list.v2+json";
+    private int schemaVersion;
+    private String mediaType;
+    private ContentDescriptor config;
+    private List<ContentDescriptor> layers;
+    private List<ContentDescriptor> manifests;
+
+    public int getSchemaVersion() {
+        return schemaVersion;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public boolean isIndex() {
+        return manifests != null || MEDIA_TYPE_OCI_INDEX.equals(mediaType) || MEDIA_TYPE_DOCKER_MANIFEST_LIST.equals(mediaType);
+    }
+
+    public ContentDescriptor getConfig() {
+        return config;
+    }
+
+    // Lowest layer first
+    public List<ContentDescriptor> getLayers() {
+        if (layers == null) {
+            return new ArrayList<>(0);
+        }
+        return layers;
+    }
+
+    public List<ContentDescriptor> getManifests() {
+        if (manifests == null) {
+            return new ArrayList<>(0);
+        }
+        return manifests;
+    }
+
+    // For an index: the manifest for the given platform (os/architecture[/variant]), or the only manifest if the index has just one
+    public ContentDescriptor selectManifestForPlatform(String platformSpec) throws IntegrationException {
+        List<ContentDescriptor> platformManifests = getManifests().stream()
+                                                        .filter(manifest -> manifest.matchesPlatform(platformSpec))
+                                                        .collect(Collectors.toList());
+        if (!platformManifests.isEmpty()) {
+            return platformManifests.get(0);
+        }
+        if (getManifests().size() == 1) {
+            return getManifests().get(0);
+        }
+        String availablePlatforms = getManifests().stream()
+                                        .map(ContentDescriptor::getPlatformDescription)
+                                        .collect(Collectors.joining(", "));
+        throw new IntegrationException(String.format("The image has no manifest for platform %s; available platforms: %s", platformSpec, availablePlatforms));
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.registry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.synopsys.integration.exception.IntegrationException;
+
+/*
+ * An OCI image layout directory (https://github.com/opencontainers/image-spec/blob/main/image-layout.md):
+ * an index.json that lists the images (by tag, in the org.opencontainers.image.ref.name annotation)
+ * and a blobs/<algorithm>/<hex> file for each manifest, config, and layer. Blobs are read in place.
+ */
+public class OciImageLayout implements BlobSource {
+    private static final String OCI_LAYOUT_FILENAME = "oci-layout";
+    private static final String INDEX_FILENAME = "index.json";
+    private static final String BLOBS_DIRNAME = "blobs";
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final File layoutDir;
+    private final Gson gson;
+
+    public OciImageLayout(File layoutDir, Gson gson) throws IntegrationException {
+        if (!new File(layoutDir, OCI_LAYOUT_FILENAME).isFile() || !new File(layoutDir, INDEX_FILENAME).isFile()) {
+            throw new IntegrationException(String.format("%s is not an OCI image layout directory (it must contain %s and %s)", layoutDir.getAbsolutePath(), OCI_LAYOUT_FILENAME, INDEX_FILENAME));
+        }
+        this.layoutDir = layoutDir;
+        this.gson = gson;
+    }
+
+    // The index.json entry for the image with the given tag (or, if no tag is given, for the only image in the layout)
+    public ContentDescriptor findImage(String repo, String tag) throws IOException, IntegrationException {
+        List<ContentDescriptor> images = readManifest(new File(layoutDir, INDEX_FILENAME)).getManifests();
+        if (images.isEmpty()) {
+            throw new IntegrationException(String.format("The OCI image layout %s contains no images", layoutDir.getAbsolutePath()));
+        }
+        if (StringUtils.isBlank(tag)) {
+            if (images.size() > 1) {
+                throw new IntegrationException(String.format("The OCI image layout %s contains %d images; use docker.image to select one by tag (available: %s)",
+                    layoutDir.getAbsolutePath(), images.size(), describeRefNames(images)));
+            }
+            return images.get(0);
+        }
+        for (ContentDescriptor image : images) {
+            String refName = image.getRefName();
+            if (refName != null && (refName.equals(tag) || refName.equals(String.format("%s:%s", repo, tag)) || refName.endsWith(String.format("/%s:%s", repo, tag)))) {
+                return image;
+            }
+        }
+        throw new IntegrationException(String.format("No image with tag %s found in OCI image layout %s (available: %s)", tag, layoutDir.getAbsolutePath(), describeRefNames(images)));
+    }
+
+    // Follows the given index.json entry (through a multi-platform index, if necessary) to the image manifest for the given platform
+    public ImageManifest readImageManifest(ContentDescriptor image, String platformSpec) throws IOException, IntegrationException {
+        ImageManifest manifest = readManifest(getBlob(image));
+        if (manifest.isIndex()) {
+            ContentDescriptor platformManifest = manifest.selectManifestForPlatform(platformSpec);
+            logger.debug(String.format("Selected manifest %s (platform: %s) from the image index", platformManifest.getDigest(), platformManifest.getPlatformDescription()));
+            manifest = readManifest(getBlob(platformManifest));
+        }
+        if (manifest.getConfig() == null) {
+            throw new IntegrationException(String.format("Manifest %s in OCI image layout %s has no config", image.getDigest(), layoutDir.getAbsolutePath()));
+        }
+        return manifest;
+    }
+
+    @Override
+    public File getBlob(ContentDescriptor blob) throws IntegrationException {
+        String algorithm = blob.getDigest().substring(0, blob.getDigest().indexOf(':'));
+        File blobFile = new File(new File(new File(layoutDir, BLOBS_DIRNAME), algorithm), blob.getDigestHex());
+        if (!blobFile.isFile()) {
+            throw new IntegrationException(String.format("Blob %s is missing from OCI image layout %s", blob.getDigest(), layoutDir.getAbsolutePath()));
+        }
+        return blobFile;
+    }
+
+    private ImageManifest readManifest(File manifestFile) throws IOException, IntegrationException {
+        try {
+            ImageManifest manifest = gson.fromJson(FileUtils.readFileToString(manifestFile, StandardCharsets.UTF_8), ImageManifest.class);
+            if (manifest == null) {
+                throw new IntegrationException(String.format("%s is empty", manifestFile.getAbsolutePath()));
+            }
+            return manifest;
+        } catch (JsonParseException e) {
+            throw new IntegrationException(String.format("Error parsing %s: %s", manifestFile.getAbsolutePath(), e.getMessage()), e);
+        }
+    }
+
+    private String describeRefNames(List<ContentDescriptor> images) {
+        return images.stream()
+                   .map(image -> StringUtils.defaultString(image.getRefName(), "<untagged>"))
+                   .collect(Collectors.joining(", "));
+    }
+}
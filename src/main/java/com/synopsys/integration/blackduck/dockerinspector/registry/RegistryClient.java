@@ -0,0 +1,363 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.registry;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.synopsys.integration.exception.IntegrationException;
+
+/*
+ * A minimal client for the Docker Registry HTTP API V2 (https://docs.docker.com/registry/spec/api/): fetches manifests and blobs of one repository.
+ * Supports anonymous access, including the anonymous bearer token flow that public registries use.
+ * Redirects (registries commonly redirect blob requests to storage) are followed here rather than by HttpClient,
+ * so the registry's credentials aren't sent to another host.
+ */
+public class RegistryClient implements Closeable {
+    private static final String MANIFEST_MEDIA_TYPES = String.join(", ", ImageManifest.MEDIA_TYPE_OCI_INDEX, ImageManifest.MEDIA_TYPE_DOCKER_MANIFEST_LIST,
+        ImageManifest.MEDIA_TYPE_OCI_MANIFEST, ImageManifest.MEDIA_TYPE_DOCKER_MANIFEST);
+    private static final String OFFICIAL_IMAGE_NAMESPACE = "library/";
+    private static final Pattern REPOSITORY_PATTERN = Pattern.compile("^[a-z0-9]+(?:(?:[._]|__|-+)[a-z0-9]+)*(?:/[a-z0-9]+(?:(?:[._]|__|-+)[a-z0-9]+)*)*$");
+    private static final Pattern TAG_PATTERN = Pattern.compile("^[\\w][\\w.-]{0,127}$");
+    private static final Pattern CHALLENGE_PARAMETER_PATTERN = Pattern.compile("(\\w+)=\"([^\"]*)\"");
+    private static final int MAX_REDIRECTS = 5;
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final URI registryUri;
+    private final Gson gson;
+    private final CloseableHttpClient httpClient;
+    private String repository;
+    private volatile String bearerToken;
+
+    // maxConnections: the number of blobs that can be fetched at the same time
+    public RegistryClient(String registryUrl, String repository, int timeoutMilliseconds, int maxConnections, Gson gson) throws IntegrationException {
+        if (!REPOSITORY_PATTERN.matcher(repository).matches()) {
+            throw new IntegrationException(String.format("Invalid repository name: %s", repository));
+        }
+        try {
+            this.registryUri = new URI(StringUtils.removeEnd(registryUrl, "/"));
+        } catch (URISyntaxException e) {
+            throw new IntegrationException(String.format("Invalid registry URL %s: %s", registryUrl, e.getMessage()), e);
+        }
+        this.repository = repository;
+        this.gson = gson;
+        RequestConfig requestConfig = RequestConfig.custom()
+                                          .setConnectTimeout(timeoutMilliseconds)
+                                          .setConnectionRequestTimeout(timeoutMilliseconds)
+                                          .setSocketTimeout(timeoutMilliseconds)
+                                          .build();
+        this.httpClient = HttpClients.custom()
+                              .useSystemProperties()
+                              .setDefaultRequestConfig(requestConfig)
+                              .disableRedirectHandling()
+                              .setMaxConnPerRoute(maxConnections)
+                              .setMaxConnTotal(maxConnections * 2)
+                              .build();
+    }
+
+    public String getRepository() {
+        return repository;
+    }
+
+    // Fetches the manifest for the given tag, following a multi-platform index to the manifest for the given platform
+    public ImageManifest fetchImageManifest(String tag, String platformSpec) throws IOException, IntegrationException {
+        if (!TAG_PATTERN.matcher(tag).matches()) {
+            throw new IntegrationException(String.format("Invalid tag: %s", tag));
+        }
+        ImageManifest manifest = fetchManifestForTag(tag);
+        if (manifest.isIndex()) {
+            ContentDescriptor platformManifest = manifest.selectManifestForPlatform(platformSpec);
+            logger.debug(String.format("Selected manifest %s (platform: %s) from the image index", platformManifest.getDigest(), platformManifest.getPlatformDescription()));
+            manifest = fetchManifest(platformManifest.getDigest());
+        }
+        if (manifest.getConfig() == null) {
+            throw new IntegrationException(String.format("The manifest for %s:%s has no config; only Docker schema 2 and OCI image manifests are supported", repository, tag));
+        }
+        return manifest;
+    }
+
+    // Streams the blob to partialFile, verifying its digest (and size) as it's written; returns the number of bytes fetched.
+    // If partialFile already holds the start of the blob (left by an interrupted fetch), only the rest of the blob is fetched.
+    // On IOException, partialFile keeps whatever was fetched, so calling this again resumes the fetch.
+    public long fetchBlob(ContentDescriptor blob, File partialFile) throws IOException, IntegrationException {
+        MessageDigest messageDigest = createMessageDigest(blob);
+        long resumeOffset = partialFile.isFile() ? partialFile.length() : 0L;
+        if (blob.getSize() > 0 && resumeOffset > blob.getSize()) {
+            logger.debug(String.format("Partial blob %s is larger than the blob; fetching the whole blob", partialFile.getAbsolutePath()));
+            resumeOffset = 0L;
+        }
+        if (resumeOffset > 0 && resumeOffset == blob.getSize()) {
+            // The previous fetch got every byte, but didn't finish (or failed verification)
+            updateDigest(messageDigest, partialFile, resumeOffset);
+            verifyBlob(blob, resumeOffset, messageDigest);
+            return 0L;
+        }
+        Map<String, String> headers = new HashMap<>();
+        if (resumeOffset > 0) {
+            headers.put(HttpHeaders.RANGE, String.format("bytes=%d-", resumeOffset));
+        }
+        long bytesFetched;
+        try (CloseableHttpResponse response = execute(deriveUri("blobs", blob.getDigest()), headers)) {
+            boolean resuming = resumeOffset > 0 && response.getStatusLine().getStatusCode() == HttpStatus.SC_PARTIAL_CONTENT;
+            if (resuming) {
+                checkContentRange(response, blob.getDigest(), partialFile, resumeOffset);
+                logger.debug(String.format("Resuming fetch of blob %s at byte %d", blob.getDigest(), resumeOffset));
+                updateDigest(messageDigest, partialFile, resumeOffset);
+            } else {
+                // Without a range (or if the server ignored it) the response holds the whole blob
+                checkStatus(response, String.format("blob %s", blob.getDigest()));
+                resumeOffset = 0L;
+            }
+            try (InputStream blobStream = new DigestInputStream(response.getEntity().getContent(), messageDigest);
+                OutputStream partialStream = new BufferedOutputStream(new FileOutputStream(partialFile, resuming))) {
+                bytesFetched = IOUtils.copyLarge(blobStream, partialStream);
+            }
+        }
+        verifyBlob(blob, resumeOffset + bytesFetched, messageDigest);
+        return bytesFetched;
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    private ImageManifest fetchManifestForTag(String tag) throws IOException, IntegrationException {
+        try {
+            return fetchManifest(tag);
+        } catch (ManifestNotFoundException e) {
+            // Registries (and mirrors) of Docker Hub store its official images (alpine:latest) under library/ (library/alpine:latest)
+            if (repository.contains("/")) {
+                throw e;
+            }
+            logger.debug(String.format("Manifest for %s:%s not found; trying %s%s", repository, tag, OFFICIAL_IMAGE_NAMESPACE, repository));
+            repository = OFFICIAL_IMAGE_NAMESPACE + repository;
+            bearerToken = null;
+            return fetchManifest(tag);
+        }
+    }
+
+    private ImageManifest fetchManifest(String reference) throws IOException, IntegrationException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(HttpHeaders.ACCEPT, MANIFEST_MEDIA_TYPES);
+        try (CloseableHttpResponse response = execute(deriveUri("manifests", reference), headers)) {
+            // Docker Hub answers 401 (even with an anonymous token) for repositories that don't exist
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode == HttpStatus.SC_NOT_FOUND || statusCode == HttpStatus.SC_UNAUTHORIZED) {
+                throw new ManifestNotFoundException(String.format("Manifest for %s:%s not found (or not accessible anonymously) in registry %s", repository, reference, registryUri));
+            }
+            checkStatus(response, String.format("manifest %s", reference));
+            String manifestJson = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+            ImageManifest manifest = gson.fromJson(manifestJson, ImageManifest.class);
+            if (manifest == null) {
+                throw new IntegrationException(String.format("Empty manifest for %s:%s", repository, reference));
+            }
+            return manifest;
+        } catch (JsonParseException e) {
+            throw new IntegrationException(String.format("Error parsing manifest for %s:%s: %s", repository, reference, e.getMessage()), e);
+        }
+    }
+
+    private CloseableHttpResponse execute(URI uri, Map<String, String> headers) throws IOException, IntegrationException {
+        URI requestUri = uri;
+        boolean authenticationAttempted = false;
+        int redirectCount = 0;
+        while (true) {
+            HttpGet request = new HttpGet(requestUri);
+            headers.forEach(request::setHeader);
+            boolean toRegistry = isRegistryHost(requestUri);
+            if (toRegistry && bearerToken != null) {
+                request.setHeader(HttpHeaders.AUTHORIZATION, String.format("Bearer %s", bearerToken));
+            }
+            logger.trace(String.format("GET %s", requestUri));
+            CloseableHttpResponse response = httpClient.execute(request);
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode == HttpStatus.SC_UNAUTHORIZED && toRegistry && !authenticationAttempted) {
+                Header challenge = response.getFirstHeader(HttpHeaders.WWW_AUTHENTICATE);
+                response.close();
+                bearerToken = fetchBearerToken(challenge);
+                authenticationAttempted = true;
+            } else if (isRedirect(statusCode)) {
+                Header location = response.getFirstHeader(HttpHeaders.LOCATION);
+                response.close();
+                if (location == null || ++redirectCount > MAX_REDIRECTS) {
+                    throw new IntegrationException(String.format("Too many (or invalid) redirects fetching %s", uri));
+                }
+                requestUri = requestUri.resolve(location.getValue());
+            } else {
+                return response;
+            }
+        }
+    }
+
+    private String fetchBearerToken(Header challenge) throws IOException, IntegrationException {
+        if (challenge == null || !challenge.getValue().startsWith("Bearer ")) {
+            throw new IntegrationException(String.format("Registry %s requires authentication, which is not supported; only anonymous access is supported", registryUri));
+        }
+        Map<String, String> challengeParameters = new HashMap<>();
+        Matcher parameterMatcher = CHALLENGE_PARAMETER_PATTERN.matcher(challenge.getValue());
+        while (parameterMatcher.find()) {
+            challengeParameters.put(parameterMatcher.group(1), parameterMatcher.group(2));
+        }
+        if (!challengeParameters.containsKey("realm")) {
+            throw new IntegrationException(String.format("Registry %s sent an authentication challenge with no realm", registryUri));
+        }
+        try {
+            URIBuilder tokenUriBuilder = new URIBuilder(challengeParameters.get("realm"));
+            if (challengeParameters.containsKey("service")) {
+                tokenUriBuilder.addParameter("service", challengeParameters.get("service"));
+            }
+            tokenUriBuilder.addParameter("scope", challengeParameters.getOrDefault("scope", String.format("repository:%s:pull", repository)));
+            logger.debug(String.format("Requesting an anonymous token from %s", challengeParameters.get("realm")));
+            try (CloseableHttpResponse response = httpClient.execute(new HttpGet(tokenUriBuilder.build()))) {
+                checkStatus(response, "token");
+                JsonObject tokenResponse = gson.fromJson(EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8), JsonObject.class);
+                String tokenFieldName = tokenResponse.has("token") ? "token" : "access_token";
+                if (!tokenResponse.has(tokenFieldName)) {
+                    throw new IntegrationException(String.format("The token response from %s contains no token", challengeParameters.get("realm")));
+                }
+                return tokenResponse.get(tokenFieldName).getAsString();
+            }
+        } catch (URISyntaxException | JsonParseException e) {
+            throw new IntegrationException(String.format("Error getting an anonymous token for registry %s: %s", registryUri, e.getMessage()), e);
+        }
+    }
+
+    private URI deriveUri(String resourceType, String reference) {
+        return URI.create(String.format("%s/v2/%s/%s/%s", registryUri, repository, resourceType, reference));
+    }
+
+    private boolean isRegistryHost(URI uri) {
+        return StringUtils.equalsIgnoreCase(uri.getScheme(), registryUri.getScheme()) && StringUtils.equalsIgnoreCase(uri.getAuthority(), registryUri.getAuthority());
+    }
+
+    private boolean isRedirect(int statusCode) {
+        return statusCode == HttpStatus.SC_MOVED_PERMANENTLY || statusCode == HttpStatus.SC_MOVED_TEMPORARILY || statusCode == HttpStatus.SC_SEE_OTHER
+                   || statusCode == HttpStatus.SC_TEMPORARY_REDIRECT || statusCode == 308;
+    }
+
+    // A transient status (the registry, or the storage it redirected to, is overloaded or briefly unavailable) is an IOException, like a network error,
+    // which callers retry; any other status is an IntegrationException
+    private void checkStatus(CloseableHttpResponse response, String description) throws IOException, IntegrationException {
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode != HttpStatus.SC_OK) {
+            String responseBody = response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+            String msg = String.format("Error fetching %s of %s from registry %s: HTTP status %d: %s", description, repository, registryUri, statusCode,
+                StringUtils.abbreviate(responseBody, 200));
+            if (isTransientStatus(statusCode)) {
+                throw new IOException(msg);
+            }
+            throw new IntegrationException(msg);
+        }
+    }
+
+    private boolean isTransientStatus(int statusCode) {
+        return statusCode == HttpStatus.SC_REQUEST_TIMEOUT || statusCode == 429 || statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+    }
+
+    private MessageDigest createMessageDigest(ContentDescriptor blob) throws IntegrationException {
+        try {
+            return MessageDigest.getInstance(blob.getDigestAlgorithm());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IntegrationException(String.format("Unable to verify blob %s: %s", blob.getDigest(), e.getMessage()), e);
+        }
+    }
+
+    private void verifyBlob(ContentDescriptor blob, long size, MessageDigest messageDigest) throws IntegrationException {
+        if (blob.getSize() > 0 && size != blob.getSize()) {
+            throw new IntegrationException(String.format("Blob %s from registry %s has size %d; expected %d", blob.getDigest(), registryUri, size, blob.getSize()));
+        }
+        String actualDigestHex = toHex(messageDigest.digest());
+        if (!actualDigestHex.equals(blob.getDigestHex())) {
+            throw new IntegrationException(String.format("Blob %s from registry %s has digest %s; its content is corrupt", blob.getDigest(), registryUri, actualDigestHex));
+        }
+    }
+
+    private void checkContentRange(CloseableHttpResponse response, String digest, File partialFile, long resumeOffset) throws IOException {
+        Header contentRange = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+        if (contentRange == null || !contentRange.getValue().startsWith(String.format("bytes %d-", resumeOffset))) {
+            // The partial blob can't be resumed from this response; the next attempt starts over
+            Files.deleteIfExists(partialFile.toPath());
+            throw new IOException(String.format("Registry %s returned range %s of blob %s; requested bytes from %d", registryUri,
+                contentRange == null ? "(none)" : contentRange.getValue(), digest, resumeOffset));
+        }
+    }
+
+    private void updateDigest(MessageDigest messageDigest, File partialFile, long length) throws IOException {
+        try (InputStream partialStream = new DigestInputStream(new FileInputStream(partialFile), messageDigest)) {
+            IOUtils.copyLarge(partialStream, NullOutputStream.NULL_OUTPUT_STREAM, 0L, length);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static class ManifestNotFoundException extends IntegrationException {
+        private static final long serialVersionUID = 1L;
+
+        ManifestNotFoundException(String message) {
+            super(message);
+        }
+    }
+}
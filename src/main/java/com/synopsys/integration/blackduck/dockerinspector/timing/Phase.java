@@ -20,18 +20,28 @@
  * specific language governing permissions and limitations
  * under the License.
  */
-package com.synopsys.integration.blackduck.dockerinspector.httpclient.connection;
+package com.synopsys.integration.blackduck.dockerinspector.timing;
 
-import com.synopsys.integration.rest.client.IntHttpClient;
-import com.synopsys.integration.log.IntLogger;
-import com.synopsys.integration.rest.proxy.ProxyInfo;
+public enum Phase {
+    PULL("pull"),
+    SAVE("save"),
+    SHARED_DIR_COPY("sharedDirCopy"),
+    SERVICE_PULL("servicePull"),
+    SERVICE_START("serviceStart"),
+    SERVICE_HEALTH_CHECK("serviceHealthCheck"),
+    GET_BDIO("getBdio"),
+    BDIO_WRITE("bdioWrite"),
+    SQUASHED_IMAGE("squashedImage"),
+    UPLOAD("upload");
 
-public class NonRedirectingIntHttpClient extends
-    IntHttpClient {
+    private final String name;
 
-    public NonRedirectingIntHttpClient(final IntLogger logger, final int timeout, final boolean trustCert, final ProxyInfo proxyInfo) {
-        super(logger, timeout, trustCert, proxyInfo);
-        logger.debug("Disabling redirect handling on this HTTP client");
-        getClientBuilder().disableRedirectHandling();
+    Phase(String name) {
+        this.name = name;
+    }
+
+    // The name used in results.json
+    public String getName() {
+        return name;
     }
 }
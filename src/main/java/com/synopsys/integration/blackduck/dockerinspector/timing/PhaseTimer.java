@@ -0,0 +1,77 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.timing;
+
+import org.springframework.stereotype.Component;
+
+/*
+ * Records how long each phase of an image inspection takes.
+ * A phase is recorded in the timings bound to the thread that runs it: those of the image the thread is inspecting
+ * (bound by startTimings when the image's inspection starts), or, for a task run on another thread, whatever timings
+ * the submitting code passed to withTimings. Work done for the run as a whole rather than for one image
+ * (such as image inspector service warm-up), and anything recorded on a thread with no timings bound, goes in the run timings.
+ */
+@Component
+public class PhaseTimer {
+    private final PhaseTimings runTimings = new PhaseTimings();
+    private final ThreadLocal<PhaseTimings> timingsForCurrentThread = new ThreadLocal<>();
+
+    public PhaseTimings startTimings() {
+        PhaseTimings phaseTimings = new PhaseTimings();
+        timingsForCurrentThread.set(phaseTimings);
+        return phaseTimings;
+    }
+
+    public PhaseTimings getTimings() {
+        PhaseTimings phaseTimings = timingsForCurrentThread.get();
+        if (phaseTimings == null) {
+            return runTimings;
+        }
+        return phaseTimings;
+    }
+
+    public PhaseTimings getRunTimings() {
+        return runTimings;
+    }
+
+    // Returns a task that records its phases in the given timings, whichever thread runs it
+    public Runnable withTimings(PhaseTimings phaseTimings, Runnable task) {
+        return () -> {
+            PhaseTimings runningThreadTimings = timingsForCurrentThread.get();
+            timingsForCurrentThread.set(phaseTimings);
+            try {
+                task.run();
+            } finally {
+                if (runningThreadTimings == null) {
+                    timingsForCurrentThread.remove();
+                } else {
+                    timingsForCurrentThread.set(runningThreadTimings);
+                }
+            }
+        };
+    }
+
+    public RunningPhase start(Phase phase) {
+        return getTimings().start(phase);
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.timing;
+
+import com.synopsys.integration.util.Stringable;
+
+// The totals for all executions of one phase
+public class PhaseTiming extends Stringable {
+    private int count;
+    private long wallTimeMillis;
+    private long bytes;
+    private int retries;
+
+    public PhaseTiming() {
+    }
+
+    private PhaseTiming(int count, long wallTimeMillis, long bytes, int retries) {
+        this.count = count;
+        this.wallTimeMillis = wallTimeMillis;
+        this.bytes = bytes;
+        this.retries = retries;
+    }
+
+    void add(long executionWallTimeMillis, long executionBytes, int executionRetries) {
+        count++;
+        wallTimeMillis += executionWallTimeMillis;
+        bytes += executionBytes;
+        retries += executionRetries;
+    }
+
+    PhaseTiming copy() {
+        return new PhaseTiming(count, wallTimeMillis, bytes, retries);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getWallTimeMillis() {
+        return wallTimeMillis;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+}
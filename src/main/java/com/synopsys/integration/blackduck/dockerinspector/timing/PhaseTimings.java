@@ -0,0 +1,53 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.timing;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// The phase timings for one image inspection (or, for work not done for any one image, for the run)
+public class PhaseTimings {
+    private final Map<Phase, PhaseTiming> timingsByPhase = new EnumMap<>(Phase.class);
+
+    public RunningPhase start(Phase phase) {
+        return new RunningPhase(this, phase);
+    }
+
+    synchronized void record(Phase phase, long wallTimeMillis, long bytes, int retries) {
+        timingsByPhase.computeIfAbsent(phase, p -> new PhaseTiming()).add(wallTimeMillis, bytes, retries);
+    }
+
+    public synchronized boolean isEmpty() {
+        return timingsByPhase.isEmpty();
+    }
+
+    // Keyed by phase name, in the order the phases normally run
+    public synchronized Map<String, PhaseTiming> toMap() {
+        Map<String, PhaseTiming> timingsByPhaseName = new LinkedHashMap<>();
+        for (Map.Entry<Phase, PhaseTiming> phaseTiming : timingsByPhase.entrySet()) {
+            timingsByPhaseName.put(phaseTiming.getKey().getName(), phaseTiming.getValue().copy());
+        }
+        return timingsByPhaseName;
+    }
+}
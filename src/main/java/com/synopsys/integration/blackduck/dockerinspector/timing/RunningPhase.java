@@ -0,0 +1,51 @@
+/**
+ * blackduck-docker-inspector
+ *
+ * Copyright (c) 2021 Synopsys, Inc.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.synopsys.integration.blackduck.dockerinspector.timing;
+
+// One execution of a phase; the wall time is recorded when it is closed
+public class RunningPhase implements AutoCloseable {
+    private final PhaseTimings phaseTimings;
+    private final Phase phase;
+    private final long startTimeMillis;
+    private long bytes;
+    private int retries;
+
+    RunningPhase(PhaseTimings phaseTimings, Phase phase) {
+        this.phaseTimings = phaseTimings;
+        this.phase = phase;
+        this.startTimeMillis = System.currentTimeMillis();
+    }
+
+    public void addBytes(long bytesProcessed) {
+        bytes += bytesProcessed;
+    }
+
+    public void addRetry() {
+        retries++;
+    }
+
+    @Override
+    public void close() {
+        phaseTimings.record(phase, System.currentTimeMillis() - startTimeMillis, bytes, retries);
+    }
+}
@@ -0,0 +1,151 @@
+package com.synopsys.integration.blackduck.dockerinspector.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.google.gson.Gson;
+import com.synopsys.integration.blackduck.dockerinspector.blackduckclient.BdioUploadQueue;
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.blackduck.dockerinspector.config.ProgramPaths;
+import com.synopsys.integration.blackduck.dockerinspector.httpclient.HttpClientInspector;
+import com.synopsys.integration.blackduck.dockerinspector.metrics.InspectorMetrics;
+import com.synopsys.integration.blackduck.dockerinspector.output.BatchResults;
+import com.synopsys.integration.blackduck.dockerinspector.output.BatchResults.BatchImageResult;
+import com.synopsys.integration.blackduck.dockerinspector.output.Output;
+import com.synopsys.integration.blackduck.dockerinspector.output.Result;
+import com.synopsys.integration.blackduck.dockerinspector.output.ResultFile;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimer;
+import com.synopsys.integration.exception.IntegrationException;
+
+@ExtendWith(SpringExtension.class)
+public class BatchInspectorTest {
+    private static final File OUTPUT_DIR = new File("test/output/batchInspectorTest");
+    private static final List<String> IMAGES = Arrays.asList("alpine:3.12", "centos:7", "ubuntu:20.04");
+
+    @Mock
+    private Config config;
+
+    @Mock
+    private ProgramPaths programPaths;
+
+    @Mock
+    private HttpClientInspector inspector;
+
+    @Mock
+    private ImageListReader imageListReader;
+
+    @Mock
+    private Output output;
+
+    @Mock
+    private ResultFile resultFile;
+
+    @Mock
+    private BdioUploadQueue bdioUploadQueue;
+
+    @Spy
+    private Gson gson = new Gson();
+
+    @Spy
+    private PhaseTimer phaseTimer = new PhaseTimer();
+
+    @Spy
+    private InspectorMetrics inspectorMetrics = new InspectorMetrics();
+
+    @InjectMocks
+    private BatchInspector batchInspector;
+
+    @BeforeEach
+    public void setUp() throws IOException, IntegrationException {
+        Mockito.when(config.getDockerImageList()).thenReturn("images.txt");
+        Mockito.when(config.getBatchThreadCount()).thenReturn(IMAGES.size());
+        Mockito.when(imageListReader.read("images.txt")).thenReturn(IMAGES);
+        Mockito.when(output.getFinalOutputDir()).thenReturn(OUTPUT_DIR);
+        Mockito.when(programPaths.getDockerInspectorResultsFilename()).thenReturn("results.json");
+        Mockito.when(programPaths.getDockerInspectorBatchResultsFilename()).thenReturn("batchResults.json");
+        Mockito.when(bdioUploadQueue.deriveUploadException(Mockito.any())).thenCallRealMethod();
+    }
+
+    @Test
+    public void testResultsInListOrder() throws IntegrationException, InterruptedException {
+        // The first image in the list is the last to finish
+        Mockito.when(inspector.getBdio(Mockito.eq("alpine"), Mockito.eq("3.12"), Mockito.any(File.class)))
+            .thenAnswer(invocation -> CompletableFuture.supplyAsync(() -> succeededAfterPause("alpine")));
+        Mockito.when(inspector.getBdio(Mockito.eq("centos"), Mockito.eq("7"), Mockito.any(File.class))).thenReturn(CompletableFuture.completedFuture(succeeded("centos")));
+        Mockito.when(inspector.getBdio(Mockito.eq("ubuntu"), Mockito.eq("20.04"), Mockito.any(File.class))).thenReturn(CompletableFuture.completedFuture(succeeded("ubuntu")));
+
+        Result result = batchInspector.inspectImages();
+
+        assertTrue(result.isSucceeded());
+        List<BatchImageResult> imageResults = writtenBatchResults().getImageResults();
+        assertEquals(IMAGES, imageResults.stream().map(BatchImageResult::getImage).collect(Collectors.toList()));
+        assertEquals(new File(OUTPUT_DIR, "alpine_3.12").getAbsolutePath(), imageResults.get(0).getOutputDir());
+        assertEquals("alpine", imageResults.get(0).getResult().getMessage());
+    }
+
+    @Test
+    public void testFailedImagesDoNotAffectOthers() throws IntegrationException, InterruptedException {
+        Mockito.when(inspector.getBdio(Mockito.eq("alpine"), Mockito.eq("3.12"), Mockito.any(File.class))).thenReturn(CompletableFuture.completedFuture(succeeded("alpine")));
+        Mockito.when(inspector.getBdio(Mockito.eq("centos"), Mockito.eq("7"), Mockito.any(File.class))).thenThrow(new IntegrationException("Image not found"));
+        CompletableFuture<Result> failedUpload = new CompletableFuture<>();
+        failedUpload.completeExceptionally(new IntegrationException("Service unavailable"));
+        Mockito.when(inspector.getBdio(Mockito.eq("ubuntu"), Mockito.eq("20.04"), Mockito.any(File.class))).thenReturn(failedUpload);
+
+        Result result = batchInspector.inspectImages();
+
+        assertFalse(result.isSucceeded());
+        assertTrue(result.getMessage().contains("Inspected 3 images: 1 succeeded, 2 failed"));
+        BatchResults batchResults = writtenBatchResults();
+        List<BatchImageResult> imageResults = batchResults.getImageResults();
+        assertEquals(IMAGES, imageResults.stream().map(BatchImageResult::getImage).collect(Collectors.toList()));
+        assertTrue(imageResults.get(0).getResult().isSucceeded());
+        assertFalse(imageResults.get(1).getResult().isSucceeded());
+        assertTrue(imageResults.get(1).getResult().getMessage().contains("Image not found"));
+        assertFalse(imageResults.get(2).getResult().isSucceeded());
+        assertTrue(imageResults.get(2).getResult().getMessage().contains("Service unavailable"));
+
+        // Every image gets its own results file, and the run cleans up once, after all of them
+        for (String imageOutputDirName : Arrays.asList("alpine_3.12", "centos_7", "ubuntu_20.04")) {
+            Mockito.verify(resultFile).write(Mockito.eq(gson), Mockito.eq(new File(new File(OUTPUT_DIR, imageOutputDirName), "results.json")), Mockito.any(Result.class));
+        }
+        Mockito.verify(bdioUploadQueue).drain();
+        Mockito.verify(inspector).cleanupAfterMultipleImages();
+    }
+
+    private Result succeeded(String message) {
+        return Result.createResultMultipleImages(true, message);
+    }
+
+    private Result succeededAfterPause(String message) {
+        try {
+            Thread.sleep(500L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return succeeded(message);
+    }
+
+    private BatchResults writtenBatchResults() {
+        ArgumentCaptor<BatchResults> batchResults = ArgumentCaptor.forClass(BatchResults.class);
+        Mockito.verify(resultFile).write(Mockito.eq(gson), Mockito.eq(new File(OUTPUT_DIR, "batchResults.json")), batchResults.capture());
+        return batchResults.getValue();
+    }
+}
@@ -0,0 +1,26 @@
+package com.synopsys.integration.blackduck.dockerinspector.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class ImageListReaderTest {
+
+    @Test
+    public void testRead() throws IOException {
+        String imageList = "# nightly scan\nalpine:3.12\n\n  centos:7  \nubuntu:latest\nalpine:3.12\n";
+        List<String> images = new ImageListReader().read(new StringReader(imageList));
+        assertEquals(Arrays.asList("alpine:3.12", "centos:7", "ubuntu:latest"), images);
+    }
+
+    @Test
+    public void testReadEmpty() throws IOException {
+        List<String> images = new ImageListReader().read(new StringReader(""));
+        assertEquals(0, images.size());
+    }
+}
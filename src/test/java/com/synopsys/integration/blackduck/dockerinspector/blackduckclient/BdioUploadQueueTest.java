@@ -0,0 +1,165 @@
+package com.synopsys.integration.blackduck.dockerinspector.blackduckclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.synopsys.integration.blackduck.codelocation.bdioupload.UploadTarget;
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimer;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimings;
+import com.synopsys.integration.blackduck.exception.BlackDuckIntegrationException;
+import com.synopsys.integration.exception.IntegrationException;
+import com.synopsys.integration.util.NameVersion;
+
+@ExtendWith(SpringExtension.class)
+public class BdioUploadQueueTest {
+    private static final File BDIO_FILE = new File("src/test/resources/testApkBdio1.jsonld");
+    private static final NameVersion PROJECT_AND_VERSION = new NameVersion("testProject", "testVersion");
+
+    @Mock
+    private Config config;
+
+    @Mock
+    private BlackDuckClient blackDuckClient;
+
+    @Spy
+    private PhaseTimer phaseTimer = new PhaseTimer();
+
+    @InjectMocks
+    private BdioUploadQueue bdioUploadQueue;
+
+    @AfterEach
+    public void tearDown() {
+        bdioUploadQueue.drain();
+    }
+
+    @Test
+    public void testFailedUploadIsRetried() throws IntegrationException, InterruptedException {
+        configure(1, 1);
+        Mockito.when(blackDuckClient.uploadBdio(Mockito.anyList()))
+            .thenThrow(new IntegrationException("Service unavailable"))
+            .thenReturn(Collections.emptyMap());
+
+        CompletableFuture<Void> upload = bdioUploadQueue.submit(BDIO_FILE, "testCodeLocation", PROJECT_AND_VERSION);
+        bdioUploadQueue.awaitUpload(upload);
+
+        Mockito.verify(blackDuckClient, Mockito.times(2)).uploadBdio(Mockito.anyList());
+    }
+
+    @Test
+    public void testUploadFailsWhenOutOfRetries() throws IntegrationException, InterruptedException {
+        configure(0, 1);
+        Mockito.when(blackDuckClient.uploadBdio(Mockito.anyList())).thenThrow(new IntegrationException("Service unavailable"));
+
+        CompletableFuture<Void> upload = bdioUploadQueue.submit(BDIO_FILE, "testCodeLocation", PROJECT_AND_VERSION);
+        IntegrationException uploadException = assertThrows(IntegrationException.class, () -> bdioUploadQueue.awaitUpload(upload));
+
+        assertEquals("Service unavailable", uploadException.getMessage());
+        Mockito.verify(blackDuckClient, Mockito.times(1)).uploadBdio(Mockito.anyList());
+    }
+
+    @Test
+    public void testNothingIsUploadedWhenConnectionTestFailed() throws IntegrationException, InterruptedException {
+        configure(0, 1);
+        Mockito.doThrow(new BlackDuckIntegrationException("Error connecting to Black Duck: Unauthorized")).when(blackDuckClient).awaitConnectionTest();
+
+        BlackDuckIntegrationException uploadException = assertThrows(BlackDuckIntegrationException.class,
+            () -> bdioUploadQueue.submit(BDIO_FILE, "testCodeLocation", PROJECT_AND_VERSION));
+
+        assertEquals("Error connecting to Black Duck: Unauthorized", uploadException.getMessage());
+        Mockito.verify(blackDuckClient, Mockito.never()).uploadBdio(Mockito.anyList());
+    }
+
+    @Test
+    public void testUploadsAreBatched() throws IntegrationException, InterruptedException {
+        configure(0, 3);
+        Mockito.when(blackDuckClient.uploadBdio(Mockito.anyList())).thenReturn(Collections.emptyMap());
+
+        CompletableFuture<Void> upload1 = bdioUploadQueue.submit(BDIO_FILE, "testCodeLocation1", PROJECT_AND_VERSION);
+        CompletableFuture<Void> upload2 = bdioUploadQueue.submit(BDIO_FILE, "testCodeLocation2", PROJECT_AND_VERSION);
+        CompletableFuture<Void> upload3 = bdioUploadQueue.submit(BDIO_FILE, "testCodeLocation3", PROJECT_AND_VERSION);
+        bdioUploadQueue.awaitUpload(upload1);
+        bdioUploadQueue.awaitUpload(upload2);
+        bdioUploadQueue.awaitUpload(upload3);
+
+        assertEquals(3, captureUploadBatches(1).get(0).size());
+    }
+
+    @Test
+    public void testPartialBatchIsUploadedAfterMaxDelay() throws IntegrationException, InterruptedException, ExecutionException, TimeoutException {
+        configure(0, 5);
+        Mockito.when(config.getUploadBdioBatchMaxDelaySeconds()).thenReturn(1);
+        Mockito.when(blackDuckClient.uploadBdio(Mockito.anyList())).thenReturn(Collections.emptyMap());
+
+        CompletableFuture<Void> upload = bdioUploadQueue.submit(BDIO_FILE, "testCodeLocation", PROJECT_AND_VERSION);
+        upload.get(30, TimeUnit.SECONDS);
+
+        assertEquals(1, captureUploadBatches(1).get(0).size());
+    }
+
+    @Test
+    public void testOnlyFailedUploadsInBatchAreRetried() throws IntegrationException, InterruptedException {
+        configure(1, 2);
+        Mockito.when(blackDuckClient.uploadBdio(Mockito.anyList()))
+            .thenReturn(Collections.singletonMap("testCodeLocation2", "Bad request"))
+            .thenReturn(Collections.emptyMap());
+
+        CompletableFuture<Void> upload1 = bdioUploadQueue.submit(BDIO_FILE, "testCodeLocation1", PROJECT_AND_VERSION);
+        CompletableFuture<Void> upload2 = bdioUploadQueue.submit(BDIO_FILE, "testCodeLocation2", PROJECT_AND_VERSION);
+        bdioUploadQueue.awaitUpload(upload1);
+        bdioUploadQueue.awaitUpload(upload2);
+
+        List<List<UploadTarget>> uploadBatches = captureUploadBatches(2);
+        assertEquals(2, uploadBatches.get(0).size());
+        assertEquals(1, uploadBatches.get(1).size());
+        assertEquals("testCodeLocation2", uploadBatches.get(1).get(0).getCodeLocationName());
+    }
+
+    @Test
+    public void testUploadIsTimedAsPartOfSubmittersInspection() throws IntegrationException, InterruptedException {
+        configure(1, 1);
+        Mockito.when(blackDuckClient.uploadBdio(Mockito.anyList()))
+            .thenThrow(new IntegrationException("Service unavailable"))
+            .thenReturn(Collections.emptyMap());
+        PhaseTimings submitterTimings = phaseTimer.startTimings();
+
+        bdioUploadQueue.awaitUpload(bdioUploadQueue.submit(BDIO_FILE, "testCodeLocation", PROJECT_AND_VERSION));
+
+        assertEquals(2, submitterTimings.toMap().get("upload").getCount());
+        assertEquals(1, submitterTimings.toMap().get("upload").getRetries());
+        assertEquals(2 * BDIO_FILE.length(), submitterTimings.toMap().get("upload").getBytes());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<UploadTarget>> captureUploadBatches(int expectedBatchCount) throws IntegrationException {
+        ArgumentCaptor<List<UploadTarget>> uploadBatchCaptor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(blackDuckClient, Mockito.times(expectedBatchCount)).uploadBdio(uploadBatchCaptor.capture());
+        return uploadBatchCaptor.getAllValues();
+    }
+
+    private void configure(int retries, int batchSize) {
+        Mockito.when(config.getUploadBdioThreadCount()).thenReturn(2);
+        Mockito.when(config.getUploadBdioQueueSize()).thenReturn(4);
+        Mockito.when(config.getUploadBdioRetries()).thenReturn(retries);
+        Mockito.when(config.getUploadBdioBatchSize()).thenReturn(batchSize);
+        Mockito.when(config.getUploadBdioBatchMaxDelaySeconds()).thenReturn(60);
+    }
+}
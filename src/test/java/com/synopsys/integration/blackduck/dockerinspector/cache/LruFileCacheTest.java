@@ -0,0 +1,117 @@
+package com.synopsys.integration.blackduck.dockerinspector.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Optional;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class LruFileCacheTest {
+    private static final File cacheDir = new File("test/output/lruFileCacheTest");
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        FileUtils.deleteDirectory(cacheDir);
+    }
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        LruFileCache cache = new LruFileCache(cacheDir, 1000L);
+        assertFalse(cache.get("a").isPresent());
+
+        put(cache, "a", 10);
+
+        Optional<File> entry = cache.get("a");
+        assertTrue(entry.isPresent());
+        assertEquals(10L, entry.get().length());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws IOException {
+        LruFileCache cache = new LruFileCache(cacheDir, 25L);
+        put(cache, "a", 10);
+        new File(cacheDir, "a").setLastModified(System.currentTimeMillis() - 20000L);
+        put(cache, "b", 10);
+        new File(cacheDir, "b").setLastModified(System.currentTimeMillis() - 10000L);
+
+        put(cache, "c", 10);
+
+        assertFalse(cache.get("a").isPresent());
+        assertTrue(cache.get("b").isPresent());
+        assertTrue(cache.get("c").isPresent());
+    }
+
+    @Test
+    public void testNewEntryKeptEvenIfLargerThanLimit() throws IOException {
+        LruFileCache cache = new LruFileCache(cacheDir, 5L);
+        put(cache, "a", 10);
+        assertTrue(cache.get("a").isPresent());
+    }
+
+    @Test
+    public void testTempFileForKeySurvivesEviction() throws IOException {
+        LruFileCache cache = new LruFileCache(cacheDir, 5L);
+        File partialFile = cache.getTempFile("a");
+        FileUtils.writeStringToFile(partialFile, "xxxxxxxxxx", StandardCharsets.UTF_8);
+
+        put(cache, "b", 10);
+
+        assertEquals(partialFile, cache.getTempFile("a"));
+        assertEquals(10L, cache.getTempFile("a").length());
+        assertFalse(cache.get("a").isPresent());
+        cache.put("a", partialFile);
+        assertTrue(cache.get("a").isPresent());
+    }
+
+    @Test
+    public void testPinnedEntryNotEvicted() throws IOException {
+        LruFileCache cache = new LruFileCache(cacheDir, 15L);
+        put(cache, "a", 10);
+        new File(cacheDir, "a").setLastModified(System.currentTimeMillis() - 10000L);
+        cache.pin(Collections.singletonList("a"));
+        cache.pin(Collections.singletonList("a"));
+
+        put(cache, "b", 10);
+        assertTrue(cache.get("a").isPresent());
+        new File(cacheDir, "a").setLastModified(System.currentTimeMillis() - 10000L);
+
+        // Still pinned once
+        cache.unpin(Collections.singletonList("a"));
+        put(cache, "c", 10);
+        assertTrue(cache.get("a").isPresent());
+        new File(cacheDir, "a").setLastModified(System.currentTimeMillis() - 10000L);
+
+        cache.unpin(Collections.singletonList("a"));
+        put(cache, "d", 10);
+        assertFalse(cache.get("a").isPresent());
+    }
+
+    @Test
+    public void testCopySurvivesEviction() throws IOException {
+        LruFileCache cache = new LruFileCache(cacheDir, 15L);
+        put(cache, "a", 10);
+        File copy = new File(cacheDir.getParentFile(), "lruFileCacheTestCopy/a.tar");
+        assertTrue(cache.getCopy("a", copy));
+        new File(cacheDir, "a").setLastModified(System.currentTimeMillis() - 10000L);
+
+        put(cache, "b", 10);
+
+        assertFalse(cache.get("a").isPresent());
+        assertEquals(10L, copy.length());
+        assertFalse(cache.getCopy("a", copy));
+    }
+
+    private void put(LruFileCache cache, String key, int size) throws IOException {
+        File tempFile = cache.createTempFile();
+        FileUtils.writeStringToFile(tempFile, new String(new char[size]).replace('\0', 'x'), StandardCharsets.UTF_8);
+        cache.put(key, tempFile);
+    }
+}
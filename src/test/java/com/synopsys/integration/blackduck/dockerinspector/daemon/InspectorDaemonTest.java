@@ -0,0 +1,269 @@
+package com.synopsys.integration.blackduck.dockerinspector.daemon;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.synopsys.integration.blackduck.dockerinspector.batch.BatchInspector;
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.blackduck.dockerinspector.config.ProgramPaths;
+import com.synopsys.integration.blackduck.dockerinspector.httpclient.HttpClientInspector;
+import com.synopsys.integration.blackduck.dockerinspector.output.BatchResults.BatchImageResult;
+import com.synopsys.integration.blackduck.dockerinspector.output.Result;
+
+@ExtendWith(SpringExtension.class)
+public class InspectorDaemonTest {
+    private static final File testDir = new File("test/output/inspectorDaemonTest");
+    private static final File tokenFile = new File(testDir, "daemon.token");
+
+    @Mock
+    private Config config;
+
+    @Mock
+    private ProgramPaths programPaths;
+
+    @Mock
+    private BatchInspector batchInspector;
+
+    @Mock
+    private HttpClientInspector inspector;
+
+    @Spy
+    private Gson gson = new Gson();
+
+    @InjectMocks
+    private InspectorDaemon inspectorDaemon;
+
+    private int port;
+    private CompletableFuture<Result> daemonRun;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        FileUtils.deleteDirectory(testDir);
+        try (ServerSocket freePortSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = freePortSocket.getLocalPort();
+        }
+        Mockito.when(config.getDaemonPort()).thenReturn(port);
+        Mockito.when(config.getBatchThreadCount()).thenReturn(2);
+        Mockito.when(config.getServiceTimeout()).thenReturn(30000L);
+        Mockito.when(programPaths.getDockerInspectorDaemonTokenFilePath()).thenReturn(tokenFile.getAbsolutePath());
+        Mockito.when(batchInspector.inspectImage(Mockito.anyString()))
+            .thenAnswer(invocation -> new BatchImageResult(invocation.getArgument(0), "testOutputDir", Result.createResultMultipleImages(true, "inspected")));
+        daemonRun = CompletableFuture.supplyAsync(() -> {
+            try {
+                return inspectorDaemon.run();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        waitForTokenFile();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        if (!daemonRun.isDone()) {
+            sendRequest(String.format("%s SHUTDOWN", readToken()));
+        }
+        daemonRun.get(30, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testImageInspectedAndShutdown() throws Exception {
+        String token = readToken();
+        try (Socket socket = connect();
+            BufferedReader responseReader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer requestWriter = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            writeRequestLine(requestWriter, "# a comment");
+            writeRequestLine(requestWriter, String.format("%s alpine:3.12", token));
+            JsonObject imageResult = gson.fromJson(responseReader.readLine(), JsonObject.class);
+            assertEquals("alpine:3.12", imageResult.get("image").getAsString());
+            assertTrue(imageResult.getAsJsonObject("result").get("succeeded").getAsBoolean());
+
+            writeRequestLine(requestWriter, String.format("%s SHUTDOWN", token));
+            JsonObject shutdownResult = gson.fromJson(responseReader.readLine(), JsonObject.class);
+            assertTrue(shutdownResult.get("succeeded").getAsBoolean());
+        }
+
+        Result daemonResult = daemonRun.get(30, TimeUnit.SECONDS);
+        assertTrue(daemonResult.isSucceeded());
+        assertTrue(daemonResult.getMessage().contains("1 succeeded"));
+        Mockito.verify(batchInspector).inspectImage("alpine:3.12");
+        Mockito.verify(inspector).cleanupAfterMultipleImages();
+        assertFalse(tokenFile.exists());
+    }
+
+    @Test
+    public void testConcurrentRequestsForImageShareInspection() throws Exception {
+        CountDownLatch inspectionStarted = new CountDownLatch(1);
+        CountDownLatch inspectionReleased = new CountDownLatch(1);
+        Mockito.when(batchInspector.inspectImage("alpine:3.12")).thenAnswer(invocation -> {
+            inspectionStarted.countDown();
+            inspectionReleased.await();
+            return new BatchImageResult("alpine:3.12", "testOutputDir", Result.createResultMultipleImages(true, "inspected"));
+        });
+        String token = readToken();
+        try (Socket firstSocket = connect();
+            BufferedReader firstResponseReader = new BufferedReader(new InputStreamReader(firstSocket.getInputStream(), StandardCharsets.UTF_8));
+            Writer firstRequestWriter = new OutputStreamWriter(firstSocket.getOutputStream(), StandardCharsets.UTF_8);
+            Socket secondSocket = connect();
+            BufferedReader secondResponseReader = new BufferedReader(new InputStreamReader(secondSocket.getInputStream(), StandardCharsets.UTF_8));
+            Writer secondRequestWriter = new OutputStreamWriter(secondSocket.getOutputStream(), StandardCharsets.UTF_8)) {
+            writeRequestLine(firstRequestWriter, String.format("%s alpine:3.12", token));
+            assertTrue(inspectionStarted.await(30, TimeUnit.SECONDS));
+            writeRequestLine(secondRequestWriter, String.format("%s alpine:3.12", token));
+            // Gives the second request time to find the first one's inspection in flight
+            Thread.sleep(1000L);
+            inspectionReleased.countDown();
+
+            for (BufferedReader responseReader : new BufferedReader[] { firstResponseReader, secondResponseReader }) {
+                JsonObject imageResult = gson.fromJson(responseReader.readLine(), JsonObject.class);
+                assertEquals("alpine:3.12", imageResult.get("image").getAsString());
+                assertTrue(imageResult.getAsJsonObject("result").get("succeeded").getAsBoolean());
+            }
+        }
+
+        Mockito.verify(batchInspector, Mockito.times(1)).inspectImage("alpine:3.12");
+    }
+
+    @Test
+    public void testShutdownWaitsForInspection() throws Exception {
+        CountDownLatch inspectionStarted = new CountDownLatch(1);
+        Mockito.when(batchInspector.inspectImage("alpine:3.12")).thenAnswer(invocation -> {
+            inspectionStarted.countDown();
+            Thread.sleep(1000L);
+            return new BatchImageResult("alpine:3.12", "testOutputDir", Result.createResultMultipleImages(true, "inspected"));
+        });
+        String token = readToken();
+        try (Socket socket = connect();
+            BufferedReader responseReader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer requestWriter = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            writeRequestLine(requestWriter, String.format("%s alpine:3.12", token));
+            assertTrue(inspectionStarted.await(30, TimeUnit.SECONDS));
+            sendRequest(String.format("%s SHUTDOWN", token));
+
+            JsonObject imageResult = gson.fromJson(responseReader.readLine(), JsonObject.class);
+            assertTrue(imageResult.getAsJsonObject("result").get("succeeded").getAsBoolean());
+        }
+
+        Result daemonResult = daemonRun.get(30, TimeUnit.SECONDS);
+        assertTrue(daemonResult.getMessage().contains("1 succeeded"));
+    }
+
+    @Test
+    public void testAbandonedRequestGetsFailureResponse() throws Exception {
+        CountDownLatch inspectionStarted = new CountDownLatch(1);
+        Mockito.when(batchInspector.inspectImage("alpine:3.12")).thenAnswer(invocation -> {
+            inspectionStarted.countDown();
+            // Until the daemon gives up on it
+            new CountDownLatch(1).await();
+            return null;
+        });
+        Mockito.when(config.getServiceTimeout()).thenReturn(1000L);
+        String token = readToken();
+        try (Socket socket = connect();
+            BufferedReader responseReader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer requestWriter = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            writeRequestLine(requestWriter, String.format("%s alpine:3.12", token));
+            assertTrue(inspectionStarted.await(30, TimeUnit.SECONDS));
+            sendRequest(String.format("%s SHUTDOWN", token));
+
+            JsonObject imageResult = gson.fromJson(responseReader.readLine(), JsonObject.class);
+            assertEquals("alpine:3.12", imageResult.get("image").getAsString());
+            assertFalse(imageResult.getAsJsonObject("result").get("succeeded").getAsBoolean());
+            assertTrue(imageResult.getAsJsonObject("result").get("message").getAsString().contains("stopped before image alpine:3.12 was inspected"));
+            assertNull(responseReader.readLine());
+        }
+
+        daemonRun.get(30, TimeUnit.SECONDS);
+        Mockito.verify(inspector).cleanupAfterMultipleImages();
+    }
+
+    @Test
+    public void testRequestWithoutValidTokenRejected() throws Exception {
+        for (String request : new String[] { "alpine:3.12", "SHUTDOWN", "0123456789abcdef alpine:3.12", "0123456789abcdef SHUTDOWN" }) {
+            try (Socket socket = connect();
+                BufferedReader responseReader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                Writer requestWriter = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+                writeRequestLine(requestWriter, request);
+                JsonObject rejection = gson.fromJson(responseReader.readLine(), JsonObject.class);
+                assertFalse(rejection.get("succeeded").getAsBoolean());
+                // The connection is closed after a rejected request
+                assertNull(responseReader.readLine());
+            }
+        }
+
+        assertFalse(daemonRun.isDone());
+        Mockito.verify(batchInspector, Mockito.never()).inspectImage(Mockito.anyString());
+    }
+
+    @Test
+    public void testTokenFileReadableByOwnerOnly() throws IOException {
+        assumeTrue(Files.getFileAttributeView(tokenFile.toPath(), PosixFileAttributeView.class) != null);
+
+        assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(tokenFile.toPath()));
+        assertEquals(64, readToken().length());
+    }
+
+    private void waitForTokenFile() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000L;
+        while (!(tokenFile.exists() && tokenFile.length() > 0) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertTrue(tokenFile.exists());
+    }
+
+    private String readToken() throws IOException {
+        return FileUtils.readFileToString(tokenFile, StandardCharsets.UTF_8);
+    }
+
+    private Socket connect() throws IOException {
+        return new Socket(InetAddress.getLoopbackAddress(), port);
+    }
+
+    private void sendRequest(String request) throws IOException {
+        try (Socket socket = connect();
+            BufferedReader responseReader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer requestWriter = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            writeRequestLine(requestWriter, request);
+            responseReader.readLine();
+        }
+    }
+
+    private void writeRequestLine(Writer requestWriter, String requestLine) throws IOException {
+        requestWriter.write(requestLine);
+        requestWriter.write('\n');
+        requestWriter.flush();
+    }
+}
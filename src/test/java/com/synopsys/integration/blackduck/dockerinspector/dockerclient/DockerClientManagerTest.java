@@ -1,17 +1,10 @@
 package com.synopsys.integration.blackduck.dockerinspector.dockerclient;
 
-import static org.junit.Assert.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.HashSet;
 import java.util.Optional;
-import java.util.Set;
 
-import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Tag;
@@ -23,10 +16,12 @@ import org.mockito.Mockito;
 import com.github.dockerjava.api.exception.BadRequestException;
 import com.github.dockerjava.api.exception.DockerClientException;
 import com.github.dockerjava.api.exception.InternalServerErrorException;
+import com.synopsys.integration.blackduck.dockerinspector.cache.ImageTarCache;
 import com.synopsys.integration.blackduck.dockerinspector.config.Config;
 import com.synopsys.integration.blackduck.dockerinspector.config.ProgramPaths;
 import com.synopsys.integration.blackduck.dockerinspector.output.ImageTarFilename;
 import com.synopsys.integration.blackduck.dockerinspector.output.ImageTarWrapper;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimer;
 import com.synopsys.integration.blackduck.exception.BlackDuckIntegrationException;
 import com.synopsys.integration.blackduck.imageinspector.linux.FileOperations;
 import com.synopsys.integration.exception.IntegrationException;
@@ -45,7 +40,7 @@ public class DockerClientManagerTest {
         config = Mockito.mock(Config.class);
         programPaths = Mockito.mock(ProgramPaths.class);
         FileOperations fileOperations = new FileOperations();
-        dockerClientManager = new DockerClientManager(fileOperations, config, new ImageTarFilename(), programPaths);
+        dockerClientManager = new DockerClientManager(fileOperations, config, new ImageTarFilename(), programPaths, Mockito.mock(ImageTarCache.class), new PhaseTimer());
     }
 
     @AfterAll
@@ -60,36 +55,6 @@ public class DockerClientManagerTest {
         }
     }
 
-    @Test
-    public void test() throws IOException {
-
-        Optional<String> foundImageIdInitial = dockerClientManager.lookupImageIdByRepoTag(imageRepo, imageTag);
-        if (foundImageIdInitial.isPresent()) {
-            dockerClientManager.removeImage(foundImageIdInitial.get());
-        }
-        Optional<String> foundImageIdShouldBeEmpty = dockerClientManager.lookupImageIdByRepoTag(imageRepo, imageTag);
-        assertFalse(foundImageIdShouldBeEmpty.isPresent());
-
-        File testWorkingDir = new File("test/output/dockerClientManagerTest");
-        testWorkingDir.mkdirs();
-        File dockerfile = new File(testWorkingDir, "Dockerfile");
-        File imageContents = new File(testWorkingDir, "test.txt");
-        imageContents.createNewFile();
-        String dockerfileContents = String.format("FROM scratch\nCOPY test.txt .\n");
-        FileUtils.writeStringToFile(dockerfile, dockerfileContents, StandardCharsets.UTF_8);
-
-        Set<String> tags = new HashSet<>();
-        tags.add(String.format("%s:%s", imageRepo, imageTag));
-        String createdImageId = dockerClientManager.buildImage(testWorkingDir, tags);
-        System.out.printf("Created image %s\n", createdImageId);
-
-        Optional<String> foundImageId = dockerClientManager.lookupImageIdByRepoTag(imageRepo, imageTag);
-
-        assertTrue(foundImageId.isPresent());
-        System.out.printf("Found image id: %s\n", foundImageId.get());
-        assertTrue(foundImageId.get().startsWith("sha256:"));
-    }
-
     @Test
     public void testDeriveDockerTarfileFromConfiguredTar() throws IOException, IntegrationException {
         Mockito.when(programPaths.getDockerInspectorTargetDirPath()).thenReturn("test/containerShared/target");
@@ -0,0 +1,43 @@
+package com.synopsys.integration.blackduck.dockerinspector.httpclient;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.rest.client.IntHttpClient;
+
+@ExtendWith(SpringExtension.class)
+public class HttpConnectionCreatorTest {
+
+    @Mock
+    private Config config;
+
+    @InjectMocks
+    private HttpConnectionCreator httpConnectionCreator;
+
+    @Test
+    public void testConnectionsAreSharedPerService() throws MalformedURLException {
+        Mockito.when(config.getImageInspectorServiceConnectionPoolSize()).thenReturn(4);
+        URI alpineServiceUri = URI.create("http://localhost:9000");
+        URI centosServiceUri = URI.create("http://localhost:9001");
+
+        IntHttpClient alpineConnection = httpConnectionCreator.getNonRedirectingConnection(alpineServiceUri, 60);
+        assertSame(alpineConnection, httpConnectionCreator.getNonRedirectingConnection(alpineServiceUri, 60));
+        assertNotSame(alpineConnection, httpConnectionCreator.getNonRedirectingConnection(centosServiceUri, 60));
+        assertNotSame(alpineConnection, httpConnectionCreator.getRedirectingConnection(alpineServiceUri, 60));
+
+        httpConnectionCreator.closeConnections();
+        assertNotSame(alpineConnection, httpConnectionCreator.getNonRedirectingConnection(alpineServiceUri, 60));
+        httpConnectionCreator.closeConnections();
+    }
+}
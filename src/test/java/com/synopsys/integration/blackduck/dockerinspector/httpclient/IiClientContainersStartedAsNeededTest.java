@@ -4,21 +4,29 @@ import static org.junit.Assert.assertEquals;
 
 import com.synopsys.integration.blackduck.dockerinspector.programversion.ProgramVersion;
 import com.synopsys.integration.rest.client.IntHttpClient;
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import org.apache.commons.io.FileUtils;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import com.github.dockerjava.api.model.Container;
 import com.synopsys.integration.blackduck.dockerinspector.config.Config;
 import com.synopsys.integration.blackduck.dockerinspector.dockerclient.DockerClientManager;
 import com.synopsys.integration.blackduck.dockerinspector.httpclient.response.SimpleResponse;
+import com.synopsys.integration.blackduck.dockerinspector.metrics.InspectorMetrics;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimer;
 import com.synopsys.integration.blackduck.imageinspector.api.ImageInspectorOsEnum;
 import com.synopsys.integration.exception.IntegrationException;
 import com.synopsys.integration.rest.RestConstants;
@@ -54,6 +62,15 @@ public class IiClientContainersStartedAsNeededTest {
     @Mock
     private ContainerName containerName;
 
+    @Mock
+    private InspectorOsPredictor inspectorOsPredictor;
+
+    @Spy
+    private InspectorMetrics inspectorMetrics = new InspectorMetrics();
+
+    @Spy
+    private PhaseTimer phaseTimer = new PhaseTimer();
+
     @Test
     public void test() throws IntegrationException, IOException, InterruptedException {
         Mockito.when(config.isImageInspectorServiceStart()).thenReturn(true);
@@ -64,7 +81,7 @@ public class IiClientContainersStartedAsNeededTest {
         Mockito.when(imageInspectorServices.getServiceVersion(Mockito.any(IntHttpClient.class), Mockito.any(URI.class))).thenReturn("2.2.2");
         Mockito.when(programVersion.getInspectorImageVersion()).thenReturn("2.2.2");
         Mockito.when(imageInspectorServices.startService(Mockito.any(IntHttpClient.class), Mockito.any(
-            URI.class), Mockito.anyString(), Mockito.anyString())).thenReturn(true);
+            URI.class), Mockito.anyString(), Mockito.anyString(), Mockito.anyString())).thenReturn(true);
 
         final Container targetContainer = Mockito.mock(Container.class);
         Mockito.when(targetContainer.getImage()).thenReturn("target");
@@ -72,20 +89,57 @@ public class IiClientContainersStartedAsNeededTest {
 
         final IntHttpClient restConnection = Mockito.mock(IntHttpClient.class);
         Mockito.when(
-            httpConnectionCreator.createNonRedirectingConnection(Mockito.any(URI.class), Mockito.anyInt())).thenReturn(restConnection);
+            httpConnectionCreator.getNonRedirectingConnection(Mockito.any(URI.class), Mockito.anyInt())).thenReturn(restConnection);
 
         Mockito.when(httpRequestor.executeSimpleGetRequest(Mockito.any(IntHttpClient.class), Mockito.any(URI.class), Mockito.anyString())).thenReturn("{\"status\":\"UP\"}");
-        final SimpleResponse response = new SimpleResponse(RestConstants.OK_200, null, "testResult");
+        final SimpleResponse response = new SimpleResponse(RestConstants.OK_200, null, null);
         Mockito.when(httpRequestor
             .executeGetBdioRequest(Mockito.any(IntHttpClient.class), Mockito.any(URI.class), Mockito.anyString(), Mockito.isNull(),
                 Mockito.isNull(), Mockito.isNull(), Mockito.anyString(), Mockito.anyBoolean(), Mockito.anyBoolean(), Mockito.anyBoolean(),
-                Mockito.isNull(), Mockito.isNull())).thenReturn(response);
+                Mockito.isNull(), Mockito.isNull(), Mockito.any(File.class))).thenAnswer(invocation -> {
+            FileUtils.writeStringToFile(invocation.getArgument(12), "testResult", StandardCharsets.UTF_8);
+            return response;
+        });
 
         Mockito.when(inspectorImages.getInspectorImageName(Mockito.any(ImageInspectorOsEnum.class))).thenReturn("blackduck/blackduck-imageinspector");
         Mockito.when(inspectorImages.getInspectorImageTag(Mockito.any(ImageInspectorOsEnum.class))).thenReturn("1.1.1");
 
         assertEquals(true, imageInspectorClientContainersStartedAsNeeded.isApplicable());
-        assertEquals("testResult", imageInspectorClientContainersStartedAsNeeded.getBdio("/tmp/t.tar", "/tmp/t.tar", null, null, null, "containerFileSystemFilename", false, true, false, null, null));
+        final File bdioFile = File.createTempFile("bdio", ".jsonld");
+        bdioFile.deleteOnExit();
+        imageInspectorClientContainersStartedAsNeeded.getBdio("/tmp/t.tar", "/tmp/t.tar", null, null, null, "containerFileSystemFilename", false, true, false, null, null, bdioFile);
+        assertEquals("testResult", FileUtils.readFileToString(bdioFile, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testServiceWarmup() throws IntegrationException, IOException, InterruptedException {
+        Mockito.when(config.isImageInspectorServiceStart()).thenReturn(true);
+        Mockito.when(config.isImageInspectorServiceWarmup()).thenReturn(true);
+        Mockito.when(config.isCleanupInspectorContainer()).thenReturn(true);
+        Mockito.when(inspectorImages.getInspectorImageOses()).thenReturn(new HashSet<>(Arrays.asList(ImageInspectorOsEnum.ALPINE, ImageInspectorOsEnum.CENTOS, ImageInspectorOsEnum.UBUNTU)));
+        Mockito.when(inspectorImages.getInspectorImageName(Mockito.any(ImageInspectorOsEnum.class))).thenReturn("blackduck/blackduck-imageinspector");
+        Mockito.when(inspectorImages.getInspectorImageTag(Mockito.any(ImageInspectorOsEnum.class))).thenReturn("1.1.1");
+        Mockito.when(containerName.deriveContainerNameFromImageInspectorRepo(Mockito.anyString())).thenReturn("testContainerName");
+        Mockito.when(imageInspectorServices.getServiceVersion(Mockito.any(IntHttpClient.class), Mockito.any(URI.class))).thenReturn("2.2.2");
+        Mockito.when(programVersion.getInspectorImageVersion()).thenReturn("2.2.2");
+        Mockito.when(imageInspectorServices.startService(Mockito.any(IntHttpClient.class), Mockito.any(
+            URI.class), Mockito.anyString(), Mockito.anyString(), Mockito.anyString())).thenReturn(true);
+        final IntHttpClient restConnection = Mockito.mock(IntHttpClient.class);
+        Mockito.when(
+            httpConnectionCreator.getNonRedirectingConnection(Mockito.any(URI.class), Mockito.anyInt())).thenReturn(restConnection);
+        Mockito.when(dockerClientManager.startContainerAsService(Mockito.anyString(), Mockito.anyString(), Mockito.anyString(), Mockito.any(ImageInspectorOsEnum.class), Mockito.anyInt(), Mockito.anyInt(),
+            Mockito.anyString(), Mockito.anyString(), Mockito.anyString(), Mockito.anyString(), Mockito.anyString()))
+            .thenAnswer(invocation -> String.format("container-%s", ((ImageInspectorOsEnum) invocation.getArgument(3)).name()));
+
+        imageInspectorClientContainersStartedAsNeeded.startServiceWarmup();
+        imageInspectorClientContainersStartedAsNeeded.startServiceWarmup();
+        imageInspectorClientContainersStartedAsNeeded.cleanupServices();
+
+        Mockito.verify(dockerClientManager, Mockito.times(3)).startContainerAsService(Mockito.anyString(), Mockito.anyString(), Mockito.anyString(), Mockito.any(ImageInspectorOsEnum.class), Mockito.anyInt(), Mockito.anyInt(),
+            Mockito.anyString(), Mockito.anyString(), Mockito.anyString(), Mockito.anyString(), Mockito.anyString());
+        Mockito.verify(dockerClientManager).stopRemoveContainer("container-ALPINE");
+        Mockito.verify(dockerClientManager).stopRemoveContainer("container-CENTOS");
+        Mockito.verify(dockerClientManager).stopRemoveContainer("container-UBUNTU");
     }
 
 }
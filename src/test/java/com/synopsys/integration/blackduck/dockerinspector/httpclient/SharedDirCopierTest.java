@@ -0,0 +1,64 @@
+package com.synopsys.integration.blackduck.dockerinspector.httpclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SharedDirCopierTest {
+    private static final File testDir = new File("test/output/sharedDirCopierTest");
+    private static final File sourceFile = new File(testDir, "image.tar");
+    private static final File targetFile = new File(testDir, "shared/target/image.tar");
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        FileUtils.deleteDirectory(testDir);
+        FileUtils.writeStringToFile(sourceFile, "not really an image tarfile", StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testHardLinkedWithinFileSystem() throws IOException {
+        assumeTrue(Files.getFileAttributeView(sourceFile.toPath(), PosixFileAttributeView.class) != null);
+        Files.setPosixFilePermissions(sourceFile.toPath(), PosixFilePermissions.fromString("rw-r--r--"));
+
+        SharedDirCopier.Strategy strategy = new SharedDirCopier().copy(sourceFile, targetFile);
+
+        assertEquals(SharedDirCopier.Strategy.HARD_LINK, strategy);
+        assertEquals(FileUtils.readFileToString(sourceFile, StandardCharsets.UTF_8), FileUtils.readFileToString(targetFile, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testCopiedIfNotReadableByOthers() throws IOException {
+        assumeTrue(Files.getFileAttributeView(sourceFile.toPath(), PosixFileAttributeView.class) != null);
+        Files.setPosixFilePermissions(sourceFile.toPath(), PosixFilePermissions.fromString("rw-------"));
+
+        SharedDirCopier.Strategy strategy = new SharedDirCopier().copy(sourceFile, targetFile);
+
+        assertNotEquals(SharedDirCopier.Strategy.HARD_LINK, strategy);
+        assertEquals(FileUtils.readFileToString(sourceFile, StandardCharsets.UTF_8), FileUtils.readFileToString(targetFile, StandardCharsets.UTF_8));
+        assertNotEquals(Files.getAttribute(sourceFile.toPath(), "unix:ino"), Files.getAttribute(targetFile.toPath(), "unix:ino"));
+        assertTrue(Files.getPosixFilePermissions(targetFile.toPath()).contains(PosixFilePermission.OTHERS_READ));
+        assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(sourceFile.toPath()));
+    }
+
+    @Test
+    public void testExistingTargetReplaced() throws IOException {
+        FileUtils.writeStringToFile(targetFile, "an older tarfile", StandardCharsets.UTF_8);
+
+        new SharedDirCopier().copy(sourceFile, targetFile);
+
+        assertEquals(FileUtils.readFileToString(sourceFile, StandardCharsets.UTF_8), FileUtils.readFileToString(targetFile, StandardCharsets.UTF_8));
+    }
+}
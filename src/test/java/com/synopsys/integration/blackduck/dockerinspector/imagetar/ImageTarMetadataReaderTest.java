@@ -0,0 +1,71 @@
+package com.synopsys.integration.blackduck.dockerinspector.imagetar;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.synopsys.integration.exception.IntegrationException;
+
+public class ImageTarMetadataReaderTest {
+    private static final File testDir = new File("test/output/imageTarMetadataReaderTest");
+    private static final File imageTarfile = new File(testDir, "image.tar");
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        FileUtils.deleteDirectory(testDir);
+        testDir.mkdirs();
+        try (TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(new FileOutputStream(imageTarfile))) {
+            addEntry(tarOutputStream, "abc123.json", "{\"rootfs\":{\"type\":\"layers\",\"diff_ids\":[\"sha256:aaa\",\"sha256:bbb\"]}}");
+            addEntry(tarOutputStream, "layer1/layer.tar", "not really a layer");
+            addEntry(tarOutputStream, "layer2/layer.tar", "not really a layer either");
+            addEntry(tarOutputStream, "manifest.json", "[{\"Config\":\"abc123.json\",\"RepoTags\":[\"alpine:3.12\"],\"Layers\":[\"layer1/layer.tar\",\"layer2/layer.tar\"]}]");
+        }
+    }
+
+    @Test
+    public void testRead() throws IOException, IntegrationException {
+        ImageTarMetadataReader reader = new ImageTarMetadataReader(new Gson());
+        ImageTarMetadata metadata = reader.read(imageTarfile, "alpine", "3.12");
+        assertEquals("abc123.json", metadata.getManifestEntry().getConfig());
+        assertEquals(Arrays.asList("layer1/layer.tar", "layer2/layer.tar"), metadata.getLayerPaths());
+        assertEquals(Arrays.asList("sha256:aaa", "sha256:bbb"), metadata.getDiffIds());
+    }
+
+    @Test
+    public void testReadNoRepoGiven() throws IOException, IntegrationException {
+        ImageTarMetadataReader reader = new ImageTarMetadataReader(new Gson());
+        ImageTarMetadata metadata = reader.read(imageTarfile, null, null);
+        assertEquals(2, metadata.getDiffIds().size());
+    }
+
+    @Test
+    public void testNotDockerSaveFormat() throws IOException {
+        File notAnImageTarfile = new File(testDir, "notAnImage.tar");
+        try (TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(new FileOutputStream(notAnImageTarfile))) {
+            addEntry(tarOutputStream, "index.json", "{}");
+        }
+        ImageTarMetadataReader reader = new ImageTarMetadataReader(new Gson());
+        assertThrows(IntegrationException.class, () -> reader.read(notAnImageTarfile, null, null));
+    }
+
+    private static void addEntry(TarArchiveOutputStream tarOutputStream, String name, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(bytes.length);
+        tarOutputStream.putArchiveEntry(entry);
+        tarOutputStream.write(bytes);
+        tarOutputStream.closeArchiveEntry();
+    }
+}
@@ -0,0 +1,112 @@
+package com.synopsys.integration.blackduck.dockerinspector.imagetar;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.synopsys.integration.blackduck.imageinspector.api.ImageInspectorOsEnum;
+import com.synopsys.integration.exception.IntegrationException;
+
+public class ImageTarPackageManagerDetectorTest {
+    private static final File testDir = new File("test/output/imageTarPackageManagerDetectorTest");
+    private static ImageTarPackageManagerDetector detector;
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        FileUtils.deleteDirectory(testDir);
+        testDir.mkdirs();
+        detector = new ImageTarPackageManagerDetector(new ImageTarMetadataReader(new Gson()));
+    }
+
+    @Test
+    public void testUppermostPackageManagerDbWins() throws IOException, IntegrationException {
+        byte[] baseLayer = createTar("etc/alpine-release", "lib/apk/db/installed");
+        byte[] appLayer = createTar("./var/lib/dpkg/status", "app/run.sh");
+        File imageTarfile = createImageTar("mixed.tar", baseLayer, appLayer);
+        assertEquals(Optional.of(ImageInspectorOsEnum.UBUNTU), detector.detectInspectorOs(imageTarfile, null, null));
+    }
+
+    @Test
+    public void testLayersWithoutPackageManagerDbIgnored() throws IOException, IntegrationException {
+        byte[] baseLayer = createTar("var/lib/rpm/Packages");
+        byte[] appLayer = createTar("app/run.sh");
+        File imageTarfile = createImageTar("centos.tar", baseLayer, appLayer);
+        assertEquals(Optional.of(ImageInspectorOsEnum.CENTOS), detector.detectInspectorOs(imageTarfile, null, null));
+    }
+
+    @Test
+    public void testLayersBelowUppermostPackageManagerDbNotRead() throws IOException, IntegrationException {
+        // Not a valid gzip stream, so reading it would fail
+        byte[] unreadableBaseLayer = { 0x1f, (byte) 0x8b, 0x00, 0x00, 0x00 };
+        byte[] appLayer = createTar("var/lib/rpm/Packages", "app/run.sh");
+        File imageTarfile = createImageTar("unreadableBase.tar", unreadableBaseLayer, appLayer);
+        assertEquals(Optional.of(ImageInspectorOsEnum.CENTOS), detector.detectInspectorOs(imageTarfile, null, null));
+    }
+
+    @Test
+    public void testPackageManagerDbPriorityWithinLayer() throws IOException, IntegrationException {
+        File rpmFirstImageTarfile = createImageTar("rpmFirst.tar", createTar("var/lib/rpm/Packages", "var/lib/dpkg/status"));
+        File dpkgFirstImageTarfile = createImageTar("dpkgFirst.tar", createTar("var/lib/dpkg/status", "var/lib/rpm/Packages"));
+        assertEquals(Optional.of(ImageInspectorOsEnum.UBUNTU), detector.detectInspectorOs(rpmFirstImageTarfile, null, null));
+        assertEquals(Optional.of(ImageInspectorOsEnum.UBUNTU), detector.detectInspectorOs(dpkgFirstImageTarfile, null, null));
+    }
+
+    @Test
+    public void testNoPackageManagerDb() throws IOException, IntegrationException {
+        File imageTarfile = createImageTar("busybox.tar", createTar("bin/busybox"));
+        assertFalse(detector.detectInspectorOs(imageTarfile, null, null).isPresent());
+    }
+
+    @Test
+    public void testWhiteoutIgnored() {
+        assertFalse(ImageTarPackageManagerDetector.deriveInspectorOs("var/lib/dpkg/.wh.status").isPresent());
+    }
+
+    private File createImageTar(String filename, byte[]... layers) throws IOException {
+        File imageTarfile = new File(testDir, filename);
+        StringBuilder layerList = new StringBuilder();
+        StringBuilder diffIdList = new StringBuilder();
+        try (TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(new FileOutputStream(imageTarfile))) {
+            for (int i = 0; i < layers.length; i++) {
+                String layerPath = String.format("layer%d/layer.tar", i);
+                addEntry(tarOutputStream, layerPath, layers[i]);
+                layerList.append(i == 0 ? "" : ",").append(String.format("\"%s\"", layerPath));
+                diffIdList.append(i == 0 ? "" : ",").append(String.format("\"sha256:%d\"", i));
+            }
+            addEntry(tarOutputStream, "config.json", String.format("{\"rootfs\":{\"type\":\"layers\",\"diff_ids\":[%s]}}", diffIdList).getBytes(StandardCharsets.UTF_8));
+            addEntry(tarOutputStream, "manifest.json", String.format("[{\"Config\":\"config.json\",\"RepoTags\":[\"test:1\"],\"Layers\":[%s]}]", layerList).getBytes(StandardCharsets.UTF_8));
+        }
+        return imageTarfile;
+    }
+
+    private byte[] createTar(String... paths) throws IOException {
+        ByteArrayOutputStream tarBytes = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(tarBytes)) {
+            for (String path : paths) {
+                addEntry(tarOutputStream, path, "content".getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return tarBytes.toByteArray();
+    }
+
+    private void addEntry(TarArchiveOutputStream tarOutputStream, String name, byte[] content) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(content.length);
+        tarOutputStream.putArchiveEntry(entry);
+        tarOutputStream.write(content);
+        tarOutputStream.closeArchiveEntry();
+    }
+}
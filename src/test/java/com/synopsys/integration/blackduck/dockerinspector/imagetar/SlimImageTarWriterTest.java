@@ -0,0 +1,190 @@
+package com.synopsys.integration.blackduck.dockerinspector.imagetar;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import com.google.gson.Gson;
+import com.synopsys.integration.blackduck.dockerinspector.cache.LayerIndex;
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.blackduck.dockerinspector.config.ProgramPaths;
+import com.synopsys.integration.exception.IntegrationException;
+
+public class SlimImageTarWriterTest {
+    private static final File testDir = new File("test/output/slimImageTarWriterTest");
+    private static final File imageTarfile = new File(testDir, "image.tar");
+    private static final File slimImageTarfile = new File(testDir, "image_slim.tar");
+    private static final File layerIndexDir = new File(testDir, "layerIndex");
+    private Config config;
+    private ProgramPaths programPaths;
+    private SlimImageTarWriter slimImageTarWriter;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        FileUtils.deleteDirectory(testDir);
+        testDir.mkdirs();
+        byte[] baseLayer = createLayer(Arrays.asList("etc/", "etc/os-release", "etc/passwd", "usr/", "usr/bin/", "usr/bin/bash", "var/", "var/lib/", "var/lib/dpkg/", "var/lib/dpkg/status"));
+        byte[] appLayer = createLayer(Arrays.asList("opt/", "opt/app/", "opt/app/app.jar", "var/lib/dpkg/.wh.status-old"));
+        try (TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(new FileOutputStream(imageTarfile))) {
+            addEntry(tarOutputStream, "layer1/layer.tar", baseLayer);
+            addEntry(tarOutputStream, "layer2/layer.tar", appLayer);
+            addEntry(tarOutputStream, "abc123.json", "{\"rootfs\":{\"type\":\"layers\",\"diff_ids\":[\"sha256:aaa\",\"sha256:bbb\"]}}".getBytes(StandardCharsets.UTF_8));
+            addEntry(tarOutputStream, "manifest.json", "[{\"Config\":\"abc123.json\",\"RepoTags\":[\"app:1.0\"],\"Layers\":[\"layer1/layer.tar\",\"layer2/layer.tar\"]}]".getBytes(StandardCharsets.UTF_8));
+        }
+        config = Mockito.mock(Config.class);
+        Mockito.when(config.getLayerIndexMaxSizeMb()).thenReturn(10L);
+        programPaths = Mockito.mock(ProgramPaths.class);
+        Mockito.when(programPaths.getDockerInspectorLayerIndexDirPath()).thenReturn(layerIndexDir.getAbsolutePath());
+        Gson gson = new Gson();
+        slimImageTarWriter = new SlimImageTarWriter(config, new ImageTarMetadataReader(gson), new LayerIndex(config, programPaths), gson);
+    }
+
+    @Test
+    public void testWrite() throws IOException, IntegrationException {
+        Optional<File> slimTarfile = slimImageTarWriter.write(imageTarfile, "app", "1.0", slimImageTarfile);
+
+        assertTrue(slimTarfile.isPresent());
+        ImageTarMetadata metadata = new ImageTarMetadataReader(new Gson()).read(slimTarfile.get(), "app", "1.0");
+        assertEquals(Arrays.asList("layer1/layer.tar", "layer2/layer.tar"), metadata.getLayerPaths());
+        assertEquals(Arrays.asList("sha256:aaa", "sha256:bbb"), metadata.getDiffIds());
+        Map<String, List<String>> layerEntries = readLayerEntries(slimTarfile.get());
+        assertEquals(Arrays.asList("etc/", "etc/os-release", "usr/", "var/", "var/lib/", "var/lib/dpkg/", "var/lib/dpkg/status"), layerEntries.get("layer1/layer.tar"));
+        assertEquals(Arrays.asList("var/lib/dpkg/.wh.status-old"), layerEntries.get("layer2/layer.tar"));
+    }
+
+    @Test
+    public void testLayersReusedFromLayerIndex() throws IOException, IntegrationException {
+        slimImageTarWriter.write(imageTarfile, "app", "1.0", slimImageTarfile);
+        assertEquals(2, layerIndexDir.list().length);
+        File slimBaseLayer = new File(layerIndexDir, String.format("sha256_aaa.v%d.tar", SlimImageTarWriter.FILTER_VERSION));
+        slimBaseLayer.setLastModified(0L);
+
+        File secondSlimImageTarfile = new File(testDir, "image_slim2.tar");
+        slimImageTarWriter.write(imageTarfile, "app", "1.0", secondSlimImageTarfile);
+
+        assertEquals(2, layerIndexDir.list().length);
+        // Found in the index (which marks it as recently used), not filtered again
+        assertTrue(slimBaseLayer.lastModified() > 0L);
+        assertEquals(slimImageTarfile.length(), secondSlimImageTarfile.length());
+    }
+
+    @Test
+    public void testLayersFilteredByOtherRulesNotReused() throws IOException, IntegrationException {
+        // Slim base layers left in the index by earlier filter rules (before and after they were versioned) that kept nothing
+        for (String staleSlimLayerName : Arrays.asList("sha256_aaa.tar", String.format("sha256_aaa.v%d.tar", SlimImageTarWriter.FILTER_VERSION - 1))) {
+            FileUtils.writeByteArrayToFile(new File(layerIndexDir, staleSlimLayerName), createLayer(Collections.emptyList()));
+        }
+
+        Optional<File> slimTarfile = slimImageTarWriter.write(imageTarfile, "app", "1.0", slimImageTarfile);
+
+        assertTrue(slimTarfile.isPresent());
+        assertEquals(Arrays.asList("etc/", "etc/os-release", "usr/", "var/", "var/lib/", "var/lib/dpkg/", "var/lib/dpkg/status"), readLayerEntries(slimTarfile.get()).get("layer1/layer.tar"));
+    }
+
+    @Test
+    public void testImageLayersNotEvictedWhileWritten() throws IOException, IntegrationException {
+        slimImageTarWriter.write(imageTarfile, "app", "1.0", slimImageTarfile);
+        new File(layerIndexDir, String.format("sha256_bbb.v%d.tar", SlimImageTarWriter.FILTER_VERSION)).delete();
+        // A layer index with no room: storing the new app layer would evict the base layer found for the same image
+        Mockito.when(config.getLayerIndexMaxSizeMb()).thenReturn(0L);
+        Gson gson = new Gson();
+        SlimImageTarWriter fullLayerIndexWriter = new SlimImageTarWriter(config, new ImageTarMetadataReader(gson), new LayerIndex(config, programPaths), gson);
+
+        File secondSlimImageTarfile = new File(testDir, "image_slim2.tar");
+        Optional<File> slimTarfile = fullLayerIndexWriter.write(imageTarfile, "app", "1.0", secondSlimImageTarfile);
+
+        assertTrue(slimTarfile.isPresent());
+        assertEquals(readLayerEntries(slimImageTarfile), readLayerEntries(secondSlimImageTarfile));
+    }
+
+    @Test
+    public void testMissingSlimLayerNotSlimmed() throws IOException, IntegrationException {
+        // As if another process evicted the slim base layer between finding and reading it
+        LayerIndex layerIndex = Mockito.spy(new LayerIndex(config, programPaths));
+        Mockito.doReturn(Optional.of(new File(layerIndexDir, "evicted.tar"))).when(layerIndex).find("sha256:aaa", SlimImageTarWriter.FILTER_VERSION);
+        Gson gson = new Gson();
+        SlimImageTarWriter evictingLayerIndexWriter = new SlimImageTarWriter(config, new ImageTarMetadataReader(gson), layerIndex, gson);
+
+        Optional<File> slimTarfile = evictingLayerIndexWriter.write(imageTarfile, "app", "1.0", slimImageTarfile);
+
+        assertFalse(slimTarfile.isPresent());
+        assertFalse(slimImageTarfile.exists());
+    }
+
+    @Test
+    public void testIsInspectedEntry() {
+        assertTrue(SlimImageTarWriter.isInspectedEntry("lib/apk/db/installed", false));
+        assertTrue(SlimImageTarWriter.isInspectedEntry("etc/apk/arch", false));
+        assertTrue(SlimImageTarWriter.isInspectedEntry("var/lib/rpm/Packages", false));
+        assertTrue(SlimImageTarWriter.isInspectedEntry("usr/lib/sysimage/rpm/rpmdb.sqlite", false));
+        assertTrue(SlimImageTarWriter.isInspectedEntry("etc/alpine-release", false));
+        assertTrue(SlimImageTarWriter.isInspectedEntry("etc/debian_version", false));
+        assertTrue(SlimImageTarWriter.isInspectedEntry("usr/lib/os-release", false));
+        assertTrue(SlimImageTarWriter.isInspectedEntry("var/lib/", true));
+        assertTrue(SlimImageTarWriter.isInspectedEntry("var/lib/.wh.dpkg", false));
+        assertTrue(SlimImageTarWriter.isInspectedEntry("etc/.wh..wh..opq", false));
+        assertFalse(SlimImageTarWriter.isInspectedEntry("etc/passwd", false));
+        assertFalse(SlimImageTarWriter.isInspectedEntry("usr/bin/", true));
+        assertFalse(SlimImageTarWriter.isInspectedEntry("usr/lib/x86_64-linux-gnu/libc.so.6", false));
+        assertFalse(SlimImageTarWriter.isInspectedEntry("opt/.wh.app", false));
+    }
+
+    private Map<String, List<String>> readLayerEntries(File tarfile) throws IOException {
+        Map<String, List<String>> layerEntries = new HashMap<>();
+        try (TarArchiveInputStream tarInputStream = new TarArchiveInputStream(new FileInputStream(tarfile))) {
+            TarArchiveEntry entry;
+            while ((entry = tarInputStream.getNextTarEntry()) != null) {
+                if (entry.getName().endsWith("layer.tar")) {
+                    List<String> entryNames = new ArrayList<>();
+                    TarArchiveInputStream layerInputStream = new TarArchiveInputStream(tarInputStream);
+                    TarArchiveEntry layerEntry;
+                    while ((layerEntry = layerInputStream.getNextTarEntry()) != null) {
+                        entryNames.add(layerEntry.getName());
+                    }
+                    layerEntries.put(entry.getName(), entryNames);
+                }
+            }
+        }
+        return layerEntries;
+    }
+
+    private static byte[] createLayer(List<String> entryNames) throws IOException {
+        ByteArrayOutputStream layerBytes = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream layerOutputStream = new TarArchiveOutputStream(layerBytes)) {
+            for (String entryName : entryNames) {
+                addEntry(layerOutputStream, entryName, entryName.endsWith("/") ? new byte[0] : entryName.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return layerBytes.toByteArray();
+    }
+
+    private static void addEntry(TarArchiveOutputStream tarOutputStream, String entryName, byte[] content) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(entryName);
+        entry.setSize(content.length);
+        tarOutputStream.putArchiveEntry(entry);
+        tarOutputStream.write(content);
+        tarOutputStream.closeArchiveEntry();
+    }
+}
@@ -0,0 +1,55 @@
+package com.synopsys.integration.blackduck.dockerinspector.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.synopsys.integration.blackduck.dockerinspector.output.Result;
+import com.synopsys.integration.blackduck.dockerinspector.timing.Phase;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimings;
+import com.synopsys.integration.blackduck.dockerinspector.timing.RunningPhase;
+import com.synopsys.integration.blackduck.imageinspector.api.ImageInspectorOsEnum;
+
+public class InspectorMetricsTest {
+
+    @Test
+    public void testImageInspected() {
+        InspectorMetrics inspectorMetrics = new InspectorMetrics();
+        PhaseTimings phaseTimings = new PhaseTimings();
+        try (RunningPhase savePhase = phaseTimings.start(Phase.SAVE)) {
+            savePhase.addBytes(1024L);
+        }
+        Result succeeded = Result.createResultMultipleImages(true, "test");
+        succeeded.setTimings(phaseTimings.toMap());
+        inspectorMetrics.recordImageInspected(succeeded);
+        inspectorMetrics.recordImageInspected(Result.createResultFailure("test"));
+        inspectorMetrics.recordImageInspected(Result.createResultFailure("test"));
+
+        assertEquals(1.0, inspectorMetrics.getMeterRegistry().get("dockerinspector.images.inspected").tag("result", "success").counter().count());
+        assertEquals(2.0, inspectorMetrics.getMeterRegistry().get("dockerinspector.images.inspected").tag("result", "failure").counter().count());
+        assertEquals(1024.0, inspectorMetrics.getMeterRegistry().get("dockerinspector.phase.bytes").tag("phase", "save").summary().totalAmount());
+
+        String scrape = inspectorMetrics.scrape();
+        assertTrue(scrape.contains("dockerinspector_images_inspected_total{result=\"failure\",} 2.0"));
+        assertTrue(scrape.contains("dockerinspector_phase_duration_seconds_count{phase=\"save\",} 1.0"));
+    }
+
+    @Test
+    public void testServiceMetrics() {
+        InspectorMetrics inspectorMetrics = new InspectorMetrics();
+        inspectorMetrics.recordServiceContainerStart(ImageInspectorOsEnum.UBUNTU);
+        inspectorMetrics.recordGetBdioRequest(ImageInspectorOsEnum.UBUNTU, 1500L);
+        inspectorMetrics.recordGetBdioRedirect(ImageInspectorOsEnum.UBUNTU, ImageInspectorOsEnum.ALPINE);
+        inspectorMetrics.recordGetBdioRequest(ImageInspectorOsEnum.ALPINE, 500L);
+        inspectorMetrics.recordUpload(200L, true);
+        inspectorMetrics.recordUpload(100L, false);
+
+        String scrape = inspectorMetrics.scrape();
+        assertTrue(scrape.contains("dockerinspector_service_container_starts_total{distro=\"ubuntu\",} 1.0"));
+        assertTrue(scrape.contains("dockerinspector_getbdio_duration_seconds_sum{distro=\"ubuntu\",} 1.5"));
+        assertTrue(scrape.contains("dockerinspector_getbdio_redirects_total{from=\"ubuntu\",to=\"alpine\",} 1.0"));
+        assertTrue(scrape.contains("dockerinspector_upload_duration_seconds_count{result=\"success\",} 1.0"));
+        assertTrue(scrape.contains("dockerinspector_upload_failures_total 1.0"));
+    }
+}
@@ -0,0 +1,82 @@
+package com.synopsys.integration.blackduck.dockerinspector.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.blackduck.dockerinspector.output.Result;
+import com.synopsys.integration.exception.IntegrationException;
+
+@ExtendWith(SpringExtension.class)
+public class MetricsExporterTest {
+
+    @Mock
+    private Config config;
+
+    @Spy
+    private InspectorMetrics inspectorMetrics = new InspectorMetrics();
+
+    @InjectMocks
+    private MetricsExporter metricsExporter;
+
+    @Test
+    public void testTextfile() throws IntegrationException, IOException {
+        File metricsDir = new File("test/metrics");
+        FileUtils.deleteDirectory(metricsDir);
+        metricsDir.mkdirs();
+        File metricsFile = new File(metricsDir, "dockerinspector.prom");
+        Mockito.when(config.getMetricsPort()).thenReturn(0);
+        Mockito.when(config.getMetricsTextfilePath()).thenReturn(metricsFile.getAbsolutePath());
+        Mockito.when(config.getMetricsTextfileIntervalSeconds()).thenReturn(60);
+
+        metricsExporter.start();
+        inspectorMetrics.recordImageInspected(Result.createResultFailure("test"));
+        metricsExporter.stop();
+
+        String metrics = FileUtils.readFileToString(metricsFile, StandardCharsets.UTF_8);
+        assertTrue(metrics.contains("dockerinspector_images_inspected_total{result=\"failure\",} 1.0"));
+        assertEquals(1, metricsDir.listFiles().length);
+    }
+
+    @Test
+    public void testEndpoint() throws IntegrationException, IOException {
+        int port;
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            port = serverSocket.getLocalPort();
+        }
+        Mockito.when(config.getMetricsPort()).thenReturn(port);
+        Mockito.when(config.getMetricsTextfilePath()).thenReturn("");
+        inspectorMetrics.recordImageInspected(Result.createResultFailure("test"));
+
+        metricsExporter.start();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(String.format("http://127.0.0.1:%d%s", port, MetricsExporter.METRICS_PATH)).openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(connection.getContentType().startsWith("text/plain"));
+            try (InputStream metricsStream = connection.getInputStream()) {
+                String metrics = IOUtils.toString(metricsStream, StandardCharsets.UTF_8);
+                assertTrue(metrics.contains("dockerinspector_images_inspected_total{result=\"failure\",} 1.0"));
+            }
+        } finally {
+            metricsExporter.stop();
+        }
+    }
+}
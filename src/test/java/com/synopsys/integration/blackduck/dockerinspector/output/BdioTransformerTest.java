@@ -0,0 +1,71 @@
+package com.synopsys.integration.blackduck.dockerinspector.output;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.synopsys.integration.bdio.BdioReader;
+import com.synopsys.integration.bdio.model.BdioBillOfMaterials;
+import com.synopsys.integration.bdio.model.BdioProject;
+import com.synopsys.integration.bdio.model.SimpleBdioDocument;
+import com.synopsys.integration.exception.IntegrationException;
+
+public class BdioTransformerTest {
+    private final Gson gson = new Gson();
+
+    @Test
+    public void testAdjustedHeaderAndComponentsCopied() throws IOException, IntegrationException {
+        BdioAdjuster bdioAdjuster = new BdioAdjuster() {
+            @Override
+            public void adjustBillOfMaterials(BdioBillOfMaterials billOfMaterials) {
+                billOfMaterials.spdxName = String.format("prefix_%s", billOfMaterials.spdxName);
+            }
+
+            @Override
+            public void adjustProject(BdioProject project) {
+                project.name = "adjustedProjectName";
+            }
+        };
+        StringWriter transformedBdio = new StringWriter();
+        BdioHeader bdioHeader;
+        try (Reader rawBdioReader = Files.newBufferedReader(Paths.get("src/test/resources/testApkBdio1.jsonld"), StandardCharsets.UTF_8)) {
+            bdioHeader = new BdioTransformer(gson).transform(rawBdioReader, transformedBdio, bdioAdjuster);
+        }
+        assertEquals("prefix_CodeLocationName", bdioHeader.getBillOfMaterials().spdxName);
+        assertEquals("adjustedProjectName", bdioHeader.getProject().name);
+        assertEquals("1", bdioHeader.getProject().version);
+
+        SimpleBdioDocument transformedDocument;
+        try (BdioReader bdioReader = new BdioReader(gson, new StringReader(transformedBdio.toString()))) {
+            transformedDocument = bdioReader.readSimpleBdioDocument();
+        }
+        assertEquals("prefix_CodeLocationName", transformedDocument.getBillOfMaterials().spdxName);
+        assertEquals("adjustedProjectName", transformedDocument.getProject().name);
+        assertEquals(11, transformedDocument.getComponents().size());
+    }
+
+    @Test
+    public void testMissingProject() {
+        String bdio = "[{\"@type\": \"BillOfMaterials\", \"spdx:name\": \"CodeLocationName\"}]";
+        BdioAdjuster bdioAdjuster = new BdioAdjuster() {
+            @Override
+            public void adjustBillOfMaterials(BdioBillOfMaterials billOfMaterials) {
+            }
+
+            @Override
+            public void adjustProject(BdioProject project) {
+            }
+        };
+        assertThrows(IntegrationException.class, () -> new BdioTransformer(gson).transform(new StringReader(bdio), new StringWriter(), bdioAdjuster));
+    }
+}
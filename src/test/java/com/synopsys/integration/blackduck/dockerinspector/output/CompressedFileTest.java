@@ -1,11 +1,14 @@
 package com.synopsys.integration.blackduck.dockerinspector.output;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Random;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterAll;
@@ -93,4 +96,33 @@ public class CompressedFileTest {
         assertTrue(compressedFile.exists());
         assertEquals("fileToCompress.txt.gz", compressedFile.getName());
     }
+
+    @Test
+    public void testGZipFileInvalidSettingsRejected() {
+        final File invalidSettingsCompressedFile = new File(testTarGzDir, "invalidSettings.txt.gz");
+        assertThrows(IllegalArgumentException.class, () -> CompressedFile.gZipFile(fileToCompress, invalidSettingsCompressedFile, 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> CompressedFile.gZipFile(fileToCompress, invalidSettingsCompressedFile, 0, -2));
+        assertThrows(IllegalArgumentException.class, () -> CompressedFile.gZipFile(fileToCompress, invalidSettingsCompressedFile, -1, 6));
+        assertFalse(invalidSettingsCompressedFile.exists());
+    }
+
+    @Test
+    public void testGZipFileMultiThreadedRoundTrip() throws IOException {
+        // Several compression blocks, the last one partial, with content compressible enough to exercise the dictionaries
+        final byte[] content = new byte[1000 * 1000];
+        final Random random = new Random(0);
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) ('a' + random.nextInt(8));
+        }
+        final File multiBlockFile = new File(testTarGzDir, "multiBlock.txt");
+        FileUtils.writeByteArrayToFile(multiBlockFile, content);
+        final File multiBlockCompressedFile = new File(testTarGzDir, "multiBlock.txt.gz");
+        final File multiBlockUncompressedFile = new File(testTarGzDir, "multiBlockUncompressed.txt");
+
+        CompressedFile.gZipFile(multiBlockFile, multiBlockCompressedFile, 4, 6);
+        assertTrue(multiBlockCompressedFile.length() < content.length);
+        CompressedFile.gunZipFile(multiBlockCompressedFile, multiBlockUncompressedFile);
+
+        assertArrayEquals(content, FileUtils.readFileToByteArray(multiBlockUncompressedFile));
+    }
 }
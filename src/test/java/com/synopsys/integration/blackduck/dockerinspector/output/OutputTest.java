@@ -17,16 +17,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import com.google.gson.Gson;
 import com.synopsys.integration.bdio.model.BdioBillOfMaterials;
 import com.synopsys.integration.bdio.model.BdioProject;
-import com.synopsys.integration.bdio.model.SimpleBdioDocument;
 import com.synopsys.integration.blackduck.dockerinspector.config.Config;
 import com.synopsys.integration.blackduck.dockerinspector.config.ProgramPaths;
-import com.synopsys.integration.blackduck.dockerinspector.dockerclient.DockerClientManager;
-import com.synopsys.integration.blackduck.imageinspector.linux.FileOperations;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimer;
 import com.synopsys.integration.exception.IntegrationException;
 
 @Tag("integration")
@@ -39,12 +38,15 @@ public class OutputTest {
     @Mock
     private ProgramPaths programPaths;
 
-    @Mock
-    private Gson gson;
+    @Spy
+    private Gson gson = new Gson();
 
     @Mock
     private ContainerFilesystemFilename containerFilesystemFilename;
 
+    @Spy
+    private PhaseTimer phaseTimer = new PhaseTimer();
+
     @InjectMocks
     private Output output;
 
@@ -52,6 +54,7 @@ public class OutputTest {
     private static File workingDir;
     private static File squashedImageTarfile;
     private static File squashingTempDir;
+    private static File rawBdioFile;
 
     @BeforeAll
     public static void setup() throws IOException {
@@ -66,6 +69,8 @@ public class OutputTest {
         workingDir.mkdirs();
         squashedImageTarfile = new File(workingDir, "target_squashedimage.tar");
         squashingTempDir = new File(workingDir, "squashing_tmp");
+        rawBdioFile = new File(workingDir, "target.tar_bdio.jsonld");
+        FileUtils.copyFile(new File("src/test/resources/testApkBdio1.jsonld"), rawBdioFile);
     }
 
     @Test
@@ -73,31 +78,36 @@ public class OutputTest {
 
         Mockito.when(config.getOutputPath()).thenReturn(outputDir.getAbsolutePath());
         Mockito.when(config.isOutputIncludeSquashedImage()).thenReturn(true);
+        Mockito.when(config.getOutputCompressionThreads()).thenReturn(0);
+        Mockito.when(config.getOutputCompressionLevel()).thenReturn(6);
         Mockito.when(programPaths.getUserOutputDirPath()).thenReturn(outputDir.getAbsolutePath());
         Mockito.when(programPaths.getDockerInspectorWorkingOutputPath()).thenReturn(workingDir.getAbsolutePath());
         Mockito.when(programPaths.getDockerInspectorSquashedImageTarFilePath()).thenReturn(squashedImageTarfile.getAbsolutePath());
         Mockito.when(programPaths.getDockerInspectorSquashedImageDirPath()).thenReturn(squashingTempDir.getAbsolutePath());
 
-        SimpleBdioDocument bdioDoc = Mockito.mock(SimpleBdioDocument.class);
-        BdioBillOfMaterials bom = new BdioBillOfMaterials();
-        bom.spdxName = "registry.luciddg.com_luciddg_ldg-server-qa_2020.16.03_DPKG";
-        Mockito.when(bdioDoc.getBillOfMaterials()).thenReturn(bom);
-        BdioProject project = new BdioProject();
-        Mockito.when(bdioDoc.getProject()).thenReturn(project);
+        BdioAdjuster bdioAdjuster = new BdioAdjuster() {
+            @Override
+            public void adjustBillOfMaterials(BdioBillOfMaterials billOfMaterials) {
+                billOfMaterials.spdxName = "registry.luciddg.com_luciddg_ldg-server-qa_2020.16.03_DPKG";
+            }
+
+            @Override
+            public void adjustProject(BdioProject project) {
+            }
+        };
         Mockito.when(containerFilesystemFilename.deriveContainerFilesystemFilename(null, null)).thenReturn("target_containerfilesystem.tar.gz");
 
-        ImageTarFilename imageTarFilename = new ImageTarFilename();
-        FileOperations fileOperations = new FileOperations();
-        DockerClientManager dockerClientManager = new DockerClientManager(fileOperations, config, imageTarFilename, programPaths);
         SquashedImage squashedImage = new SquashedImage();
-        squashedImage.setFileOperations(fileOperations);
-        squashedImage.setDockerClientManager(dockerClientManager);
+        squashedImage.setConfig(config);
+        squashedImage.setGson(new Gson());
         output.setSquashedImage(squashedImage);
 
         // Test
-        OutputFiles outputFiles = output.addOutputToFinalOutputDir(bdioDoc, null, null);
+        OutputFiles outputFiles = output.addOutputToFinalOutputDir(rawBdioFile, bdioAdjuster, null, null);
 
         // Verify
+        assertEquals("registry.luciddg.com_luciddg_ldg-server-qa_2020.16.03_DPKG", outputFiles.getBdioHeader().getBillOfMaterials().spdxName);
+        assertTrue(outputFiles.getBdioFile().exists());
         File generatedSquashedImageCompressedFile = outputFiles.getSquashedImageFile();
         File generatedSquashedImageTarfile = new File(workingDir, "generatedImageTarfile");
         CompressedFile.gunZipFile(generatedSquashedImageCompressedFile, generatedSquashedImageTarfile);
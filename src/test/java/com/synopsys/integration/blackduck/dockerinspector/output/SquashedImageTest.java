@@ -1,7 +1,9 @@
 package com.synopsys.integration.blackduck.dockerinspector.output;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
@@ -11,36 +13,29 @@ import java.nio.file.Path;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.BeforeAll;
-import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
-import com.synopsys.integration.blackduck.dockerinspector.ProcessId;
+import com.google.gson.Gson;
 import com.synopsys.integration.blackduck.dockerinspector.config.Config;
-import com.synopsys.integration.blackduck.dockerinspector.config.ProgramPaths;
-import com.synopsys.integration.blackduck.dockerinspector.dockerclient.DockerClientManager;
-import com.synopsys.integration.blackduck.imageinspector.linux.FileOperations;
+import com.synopsys.integration.blackduck.dockerinspector.imagetar.ImageTarMetadata;
+import com.synopsys.integration.blackduck.dockerinspector.imagetar.ImageTarMetadataReader;
 import com.synopsys.integration.exception.IntegrationException;
 
-@Tag("integration")
 public class SquashedImageTest {
     private static SquashedImage squashedImage;
-    private static DockerClientManager dockerClientManager;
     private static File testWorkingDir;
 
     @BeforeAll
     public static void setUp() throws IOException {
         testWorkingDir = new File("test/output/squashingTest");
-        ImageTarFilename imageTarFilename = new ImageTarFilename();
-        FileOperations fileOperations = new FileOperations();
         Config config = Mockito.mock(Config.class);
-        Mockito.when(config.getWorkingDirPath()).thenReturn(testWorkingDir.getCanonicalPath());
-        ProgramPaths programPaths = new ProgramPaths(config, new ProcessId());
-        dockerClientManager = new DockerClientManager(fileOperations, config, imageTarFilename, programPaths);
+        Mockito.when(config.getOutputCompressionThreads()).thenReturn(0);
+        Mockito.when(config.getOutputCompressionLevel()).thenReturn(6);
 
         squashedImage = new SquashedImage();
-        squashedImage.setDockerClientManager(dockerClientManager);
-        squashedImage.setFileOperations(new FileOperations());
+        squashedImage.setConfig(config);
+        squashedImage.setGson(new Gson());
     }
 
     @Test
@@ -61,6 +56,10 @@ public class SquashedImageTest {
         CompressedFile.gunZipUnTarFile(squashedImageTarGz, tempTarFile, unpackedSquashedImageDir);
         File manifestFile = new File(unpackedSquashedImageDir, "manifest.json");
         assertTrue(manifestFile.isFile());
+        ImageTarMetadata imageTarMetadata = new ImageTarMetadataReader(new Gson()).read(tempTarFile, null, null);
+        assertEquals(1, imageTarMetadata.getLayerPaths().size());
+        assertEquals(1, imageTarMetadata.getDiffIds().size());
+        assertEquals(String.format("sha256:%s", imageTarMetadata.getLayerPaths().get(0).split("/")[0]), imageTarMetadata.getDiffIds().get(0));
 
         // Find the one layer dir in image
         File layerDir = null;
@@ -87,10 +86,21 @@ public class SquashedImageTest {
     }
 
     @Test
-    public void testGenerateUniqueImageRepoTag() throws IntegrationException {
-        String generatedRepTag = squashedImage.generateUniqueImageRepoTag();
-
-        assertTrue(generatedRepTag.startsWith("dockerinspectorsquashed-"));
-        assertTrue(generatedRepTag.endsWith(":1"));
+    public void testInvalidCompressionLevelRejected() throws IOException {
+        Config invalidLevelConfig = Mockito.mock(Config.class);
+        Mockito.when(invalidLevelConfig.getOutputCompressionThreads()).thenReturn(0);
+        Mockito.when(invalidLevelConfig.getOutputCompressionLevel()).thenReturn(10);
+        SquashedImage invalidLevelSquashedImage = new SquashedImage();
+        invalidLevelSquashedImage.setConfig(invalidLevelConfig);
+        invalidLevelSquashedImage.setGson(new Gson());
+        File invalidLevelWorkingDir = new File(testWorkingDir, "invalidLevel");
+        FileUtils.deleteDirectory(invalidLevelWorkingDir);
+        invalidLevelWorkingDir.mkdirs();
+        File squashedImageTarGz = new File(invalidLevelWorkingDir, "test_squashedimage.tar.gz");
+
+        IntegrationException e = assertThrows(IntegrationException.class, () -> invalidLevelSquashedImage.createSquashedImageTarGz(new File("src/test/resources/test_containerfilesystem.tar.gz"),
+            squashedImageTarGz, new File(invalidLevelWorkingDir, "tempContainerFileSystem.tar"), invalidLevelWorkingDir));
+        assertTrue(e.getMessage().contains("output.compression.level"));
+        assertFalse(squashedImageTarGz.exists());
     }
 }
@@ -0,0 +1,232 @@
+package com.synopsys.integration.blackduck.dockerinspector.registry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.synopsys.integration.blackduck.dockerinspector.cache.BlobCache;
+import com.synopsys.integration.blackduck.dockerinspector.config.Config;
+import com.synopsys.integration.blackduck.dockerinspector.config.ProgramPaths;
+import com.synopsys.integration.blackduck.dockerinspector.imagetar.ImageTarAssembler;
+import com.synopsys.integration.blackduck.dockerinspector.output.ImageTarFilename;
+import com.synopsys.integration.blackduck.dockerinspector.output.ImageTarWrapper;
+import com.synopsys.integration.blackduck.dockerinspector.timing.PhaseTimer;
+import com.synopsys.integration.exception.IntegrationException;
+
+@ExtendWith(SpringExtension.class)
+public class DirectImageSourceTest {
+    private static final File testDir = new File("test/output/directImageSourceTest");
+    private static final File blobDir = new File(testDir, "blobs");
+
+    @Mock
+    private Config config;
+
+    @Mock
+    private ProgramPaths programPaths;
+
+    @Mock
+    private BlobCache blobCache;
+
+    @Spy
+    private ImageTarFilename imageTarFilename = new ImageTarFilename();
+
+    @Spy
+    private Gson gson = new Gson();
+
+    @Spy
+    private ImageTarAssembler imageTarAssembler = new ImageTarAssembler(new Gson());
+
+    @Spy
+    private PhaseTimer phaseTimer = new PhaseTimer();
+
+    @InjectMocks
+    private DirectImageSource directImageSource;
+
+    private final List<String> layerRequests = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean dropNextLayerFetch = new AtomicBoolean();
+    private final AtomicInteger unavailableLayerFetches = new AtomicInteger();
+    private HttpServer registry;
+    private byte[] layerContent;
+    private String layerDigest;
+    private File partialLayer;
+
+    @BeforeEach
+    public void setUp() throws IOException, NoSuchAlgorithmException {
+        FileUtils.deleteDirectory(testDir);
+        blobDir.mkdirs();
+        layerContent = createLayer("app/data.bin");
+        layerDigest = digest(layerContent);
+        partialLayer = new File(blobDir, ".partial-" + layerDigest.replace(":", "_"));
+        registry = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        registry.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        }));
+        registry.start();
+
+        Mockito.when(config.getRegistryUrl()).thenReturn(String.format("http://%s:%d", InetAddress.getLoopbackAddress().getHostAddress(), registry.getAddress().getPort()));
+        Mockito.when(config.getCommandTimeout()).thenReturn(30000L);
+        Mockito.when(config.getRegistryBlobFetchThreads()).thenReturn(2);
+        Mockito.when(config.getRegistryBlobFetchRetries()).thenReturn(1);
+        Mockito.when(programPaths.getDockerInspectorTargetDirPath()).thenReturn(new File(testDir, "target").getAbsolutePath());
+        Mockito.when(blobCache.getPartialFile(Mockito.anyString())).thenAnswer(invocation -> new File(blobDir, ".partial-" + invocation.<String>getArgument(0).replace(":", "_")));
+        Mockito.when(blobCache.store(Mockito.anyString(), Mockito.any(File.class))).thenAnswer(invocation -> invocation.getArgument(1));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        registry.stop(0);
+    }
+
+    @Test
+    public void testInterruptedFetchResumed() throws IOException, IntegrationException, NoSuchAlgorithmException {
+        serveImage(layerContent);
+        dropNextLayerFetch.set(true);
+
+        ImageTarWrapper imageTar = directImageSource.deriveImageTar("app", "1.0");
+
+        assertTrue(imageTar.getFile().isFile());
+        // The retry fetched only the part of the layer the dropped connection didn't deliver
+        assertEquals(2, layerRequests.size());
+        assertEquals("", layerRequests.get(0));
+        assertEquals(String.format("bytes=%d-", layerContent.length / 2), layerRequests.get(1));
+        Mockito.verify(blobCache).store(layerDigest, partialLayer);
+        Mockito.verify(blobCache, Mockito.never()).discardTempFile(Mockito.any(File.class));
+    }
+
+    @Test
+    public void testFetchResumedAfterTransientStatus() throws IOException, IntegrationException, NoSuchAlgorithmException {
+        Mockito.when(config.getRegistryBlobFetchRetries()).thenReturn(2);
+        serveImage(layerContent);
+        dropNextLayerFetch.set(true);
+        unavailableLayerFetches.set(1);
+
+        directImageSource.deriveImageTar("app", "1.0");
+
+        // The 503 neither discarded the partial layer nor ended the fetch
+        assertEquals(3, layerRequests.size());
+        assertEquals(String.format("bytes=%d-", layerContent.length / 2), layerRequests.get(1));
+        assertEquals(String.format("bytes=%d-", layerContent.length / 2), layerRequests.get(2));
+        Mockito.verify(blobCache).store(layerDigest, partialLayer);
+        Mockito.verify(blobCache, Mockito.never()).discardTempFile(Mockito.any(File.class));
+    }
+
+    @Test
+    public void testCorruptBlobDiscarded() throws IOException, NoSuchAlgorithmException {
+        byte[] corruptLayerContent = layerContent.clone();
+        corruptLayerContent[corruptLayerContent.length / 2] ^= 0x01;
+        serveImage(corruptLayerContent);
+
+        assertThrows(IntegrationException.class, () -> directImageSource.deriveImageTar("app", "1.0"));
+
+        // Corrupt content isn't retried, resumed, or cached
+        assertEquals(1, layerRequests.size());
+        Mockito.verify(blobCache).discardTempFile(partialLayer);
+        Mockito.verify(blobCache, Mockito.never()).store(Mockito.eq(layerDigest), Mockito.any(File.class));
+    }
+
+    // Serves image app:1.0, whose manifest names a layer with layerContent's digest, with servedLayerContent as that layer's content
+    private void serveImage(byte[] servedLayerContent) throws NoSuchAlgorithmException {
+        byte[] configContent = "{\"architecture\":\"amd64\",\"os\":\"linux\",\"rootfs\":{\"type\":\"layers\",\"diff_ids\":[\"sha256:aaa\"]}}".getBytes(StandardCharsets.UTF_8);
+        String configDigest = digest(configContent);
+        byte[] manifestContent = String.format("{\"schemaVersion\":2,\"mediaType\":\"%s\",\"config\":%s,\"layers\":[%s]}", ImageManifest.MEDIA_TYPE_OCI_MANIFEST,
+            descriptor("application/vnd.oci.image.config.v1+json", configDigest, configContent.length),
+            descriptor("application/vnd.oci.image.layer.v1.tar", layerDigest, layerContent.length)).getBytes(StandardCharsets.UTF_8);
+        registry.createContext("/v2/app/manifests/1.0", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", ImageManifest.MEDIA_TYPE_OCI_MANIFEST);
+            respond(exchange, 200, manifestContent, manifestContent.length);
+        });
+        registry.createContext(String.format("/v2/app/blobs/%s", configDigest), exchange -> respond(exchange, 200, configContent, configContent.length));
+        registry.createContext(String.format("/v2/app/blobs/%s", layerDigest), exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            layerRequests.add(range == null ? "" : range);
+            if (dropNextLayerFetch.getAndSet(false)) {
+                // Sends half the layer, then drops the connection
+                exchange.sendResponseHeaders(200, servedLayerContent.length);
+                exchange.getResponseBody().write(servedLayerContent, 0, servedLayerContent.length / 2);
+                exchange.getResponseBody().flush();
+                throw new IOException("Connection dropped");
+            }
+            if (unavailableLayerFetches.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+                respond(exchange, 503, new byte[0], 0);
+                return;
+            }
+            if (range == null) {
+                respond(exchange, 200, servedLayerContent, servedLayerContent.length);
+                return;
+            }
+            int offset = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+            exchange.getResponseHeaders().add("Content-Range", String.format("bytes %d-%d/%d", offset, servedLayerContent.length - 1, servedLayerContent.length));
+            exchange.sendResponseHeaders(206, servedLayerContent.length - offset);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(servedLayerContent, offset, servedLayerContent.length - offset);
+            }
+        });
+    }
+
+    private void respond(HttpExchange exchange, int statusCode, byte[] body, int length) throws IOException {
+        exchange.sendResponseHeaders(statusCode, length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body, 0, length);
+        }
+    }
+
+    private byte[] createLayer(String path) throws IOException {
+        byte[] content = new byte[64 * 1024];
+        new Random(1L).nextBytes(content);
+        ByteArrayOutputStream layerBytes = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(layerBytes)) {
+            TarArchiveEntry entry = new TarArchiveEntry(path);
+            entry.setSize(content.length);
+            tarOutputStream.putArchiveEntry(entry);
+            tarOutputStream.write(content);
+            tarOutputStream.closeArchiveEntry();
+        }
+        return layerBytes.toByteArray();
+    }
+
+    private String descriptor(String mediaType, String digest, long size) {
+        return String.format("{\"mediaType\":\"%s\",\"digest\":\"%s\",\"size\":%d}", mediaType, digest, size);
+    }
+
+    private String digest(byte[] content) throws NoSuchAlgorithmException {
+        StringBuilder digest = new StringBuilder("sha256:");
+        for (byte digestByte : MessageDigest.getInstance("SHA-256").digest(content)) {
+            digest.append(String.format("%02x", digestByte));
+        }
+        return digest.toString();
+    }
+}
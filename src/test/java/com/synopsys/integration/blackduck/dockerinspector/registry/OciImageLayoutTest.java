@@ -0,0 +1,124 @@
+package com.synopsys.integration.blackduck.dockerinspector.registry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.synopsys.integration.blackduck.dockerinspector.imagetar.ImageTarAssembler;
+import com.synopsys.integration.blackduck.dockerinspector.imagetar.ImageTarMetadata;
+import com.synopsys.integration.blackduck.dockerinspector.imagetar.ImageTarMetadataReader;
+import com.synopsys.integration.exception.IntegrationException;
+
+public class OciImageLayoutTest {
+    private static final File testDir = new File("test/output/ociImageLayoutTest");
+    private static final File layoutDir = new File(testDir, "layout");
+    private static String gzippedLayerHex;
+    private static String layerHex;
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        FileUtils.deleteDirectory(testDir);
+        new File(layoutDir, "blobs/sha256").mkdirs();
+        FileUtils.write(new File(layoutDir, "oci-layout"), "{\"imageLayoutVersion\":\"1.0.0\"}", StandardCharsets.UTF_8);
+        String configHex = writeBlob("{\"architecture\":\"amd64\",\"os\":\"linux\",\"rootfs\":{\"type\":\"layers\",\"diff_ids\":[\"sha256:aaa\",\"sha256:bbb\"]}}".getBytes(StandardCharsets.UTF_8));
+        gzippedLayerHex = writeBlob(createLayer("etc/alpine-release", true));
+        layerHex = writeBlob(createLayer("app/hello.txt", false));
+        String manifestJson = String.format("{\"schemaVersion\":2,\"mediaType\":\"%s\",\"config\":%s,\"layers\":[%s,%s]}", ImageManifest.MEDIA_TYPE_OCI_MANIFEST,
+            descriptor("application/vnd.oci.image.config.v1+json", configHex, ""),
+            descriptor("application/vnd.oci.image.layer.v1.tar+gzip", gzippedLayerHex, ""),
+            descriptor("application/vnd.oci.image.layer.v1.tar", layerHex, ""));
+        String manifestHex = writeBlob(manifestJson.getBytes(StandardCharsets.UTF_8));
+        FileUtils.write(new File(layoutDir, "index.json"), String.format("{\"schemaVersion\":2,\"manifests\":[%s]}",
+            descriptor(ImageManifest.MEDIA_TYPE_OCI_MANIFEST, manifestHex, ",\"annotations\":{\"org.opencontainers.image.ref.name\":\"3.12\"}")), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testFindImage() throws IOException, IntegrationException {
+        OciImageLayout layout = new OciImageLayout(layoutDir, new Gson());
+        assertEquals("3.12", layout.findImage(null, null).getRefName());
+        assertEquals("3.12", layout.findImage("alpine", "3.12").getRefName());
+        assertThrows(IntegrationException.class, () -> layout.findImage("alpine", "latest"));
+    }
+
+    @Test
+    public void testAssembleImageTar() throws IOException, IntegrationException {
+        Gson gson = new Gson();
+        OciImageLayout layout = new OciImageLayout(layoutDir, gson);
+        ImageManifest manifest = layout.readImageManifest(layout.findImage(null, null), "linux/amd64");
+        File imageTarfile = new File(testDir, "alpine_3.12.tar");
+        new ImageTarAssembler(gson).assemble(manifest, layout, "alpine:3.12", imageTarfile);
+
+        ImageTarMetadata metadata = new ImageTarMetadataReader(gson).read(imageTarfile, "alpine", "3.12");
+        assertEquals(Collections.singletonList("alpine:3.12"), metadata.getManifestEntry().getRepoTags());
+        assertEquals(Arrays.asList(gzippedLayerHex + "/layer.tar", layerHex + "/layer.tar"), metadata.getLayerPaths());
+        assertEquals(Arrays.asList("sha256:aaa", "sha256:bbb"), metadata.getDiffIds());
+    }
+
+    @Test
+    public void testNotAnOciImageLayout() {
+        assertThrows(IntegrationException.class, () -> new OciImageLayout(testDir, new Gson()));
+    }
+
+    @Test
+    public void testDeriveRepository() {
+        assertEquals("alpine", DirectImageSource.deriveRepository("alpine"));
+        assertEquals("blackducksoftware/blackduck-imageinspector", DirectImageSource.deriveRepository("blackducksoftware/blackduck-imageinspector"));
+        assertEquals("library/alpine", DirectImageSource.deriveRepository("registry.example.com/library/alpine"));
+        assertEquals("alpine", DirectImageSource.deriveRepository("localhost:5000/alpine"));
+    }
+
+    @Test
+    public void testDeriveTagFromRefName() {
+        assertEquals("3.12", DirectImageSource.deriveTagFromRefName("3.12"));
+        assertEquals("3.12", DirectImageSource.deriveTagFromRefName("docker.io/library/alpine:3.12"));
+        assertEquals("latest", DirectImageSource.deriveTagFromRefName("localhost:5000/alpine"));
+        assertEquals("latest", DirectImageSource.deriveTagFromRefName(null));
+    }
+
+    private static byte[] createLayer(String path, boolean gzipped) throws IOException {
+        ByteArrayOutputStream layerBytes = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(gzipped ? new GZIPOutputStream(layerBytes) : layerBytes)) {
+            byte[] content = path.getBytes(StandardCharsets.UTF_8);
+            TarArchiveEntry entry = new TarArchiveEntry(path);
+            entry.setSize(content.length);
+            tarOutputStream.putArchiveEntry(entry);
+            tarOutputStream.write(content);
+            tarOutputStream.closeArchiveEntry();
+        }
+        return layerBytes.toByteArray();
+    }
+
+    private static String writeBlob(byte[] content) throws IOException {
+        StringBuilder hex = new StringBuilder();
+        try {
+            for (byte digestByte : MessageDigest.getInstance("SHA-256").digest(content)) {
+                hex.append(String.format("%02x", digestByte));
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        FileUtils.writeByteArrayToFile(new File(layoutDir, "blobs/sha256/" + hex), content);
+        return hex.toString();
+    }
+
+    private static String descriptor(String mediaType, String hex, String extraFields) throws IOException {
+        long size = new File(layoutDir, "blobs/sha256/" + hex).length();
+        return String.format("{\"mediaType\":\"%s\",\"digest\":\"sha256:%s\",\"size\":%d%s}", mediaType, hex, size, extraFields);
+    }
+}
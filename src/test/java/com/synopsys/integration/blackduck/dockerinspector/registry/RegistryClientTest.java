@@ -0,0 +1,248 @@
+package com.synopsys.integration.blackduck.dockerinspector.registry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.synopsys.integration.exception.IntegrationException;
+
+public class RegistryClientTest {
+    private static final File testDir = new File("test/output/registryClientTest");
+    private static final File partialFile = new File(testDir, "partialBlob");
+    private static final Pattern RANGE_PATTERN = Pattern.compile("^bytes=(\\d+)-$");
+    private static final Pattern REGISTRY_PATH_PATTERN = Pattern.compile("^/v2/(.+)/(manifests|blobs)/([^/]+)$");
+    private static final int PARTIAL_LENGTH = 1000;
+    private final Gson gson = new Gson();
+    private final List<String> rangeRequests = new CopyOnWriteArrayList<>();
+    private final List<String> tokenRequests = new CopyOnWriteArrayList<>();
+    private HttpServer registry;
+    private String registryUrl;
+    private byte[] blobContent;
+    private ContentDescriptor blob;
+    private String blobDigest;
+
+    @BeforeEach
+    public void setUp() throws IOException, NoSuchAlgorithmException {
+        FileUtils.deleteDirectory(testDir);
+        testDir.mkdirs();
+        blobContent = new byte[64 * 1024];
+        new Random(1L).nextBytes(blobContent);
+        blobDigest = digest(blobContent);
+        blob = new ContentDescriptor("application/vnd.oci.image.layer.v1.tar+gzip", blobDigest, blobContent.length);
+        registry = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        registry.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        }));
+        registry.start();
+        registryUrl = String.format("http://%s:%d", InetAddress.getLoopbackAddress().getHostAddress(), registry.getAddress().getPort());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        registry.stop(0);
+    }
+
+    @Test
+    public void testFetchBlob() throws IOException, IntegrationException {
+        serveBlob(true, false, blobContent);
+
+        try (RegistryClient registryClient = createRegistryClient("alpine")) {
+            assertEquals(blobContent.length, registryClient.fetchBlob(blob, partialFile));
+        }
+        assertArrayEquals(blobContent, FileUtils.readFileToByteArray(partialFile));
+        assertEquals(Collections.emptyList(), rangeRequests);
+    }
+
+    @Test
+    public void testFetchResumedWithPartialContent() throws IOException, IntegrationException {
+        serveBlob(true, false, blobContent);
+        FileUtils.writeByteArrayToFile(partialFile, Arrays.copyOf(blobContent, PARTIAL_LENGTH));
+
+        try (RegistryClient registryClient = createRegistryClient("alpine")) {
+            assertEquals(blobContent.length - PARTIAL_LENGTH, registryClient.fetchBlob(blob, partialFile));
+        }
+        assertArrayEquals(blobContent, FileUtils.readFileToByteArray(partialFile));
+        assertEquals(Collections.singletonList(String.format("bytes=%d-", PARTIAL_LENGTH)), rangeRequests);
+    }
+
+    @Test
+    public void testFetchRestartedWhenRangeIgnored() throws IOException, IntegrationException {
+        serveBlob(false, false, blobContent);
+        FileUtils.writeByteArrayToFile(partialFile, Arrays.copyOf(blobContent, PARTIAL_LENGTH));
+
+        try (RegistryClient registryClient = createRegistryClient("alpine")) {
+            assertEquals(blobContent.length, registryClient.fetchBlob(blob, partialFile));
+        }
+        // The whole blob replaces the partial file rather than being appended to it
+        assertArrayEquals(blobContent, FileUtils.readFileToByteArray(partialFile));
+        assertEquals(Collections.singletonList(String.format("bytes=%d-", PARTIAL_LENGTH)), rangeRequests);
+    }
+
+    @Test
+    public void testWrongContentRangeRejected() throws IOException, IntegrationException {
+        serveBlob(true, true, blobContent);
+        FileUtils.writeByteArrayToFile(partialFile, Arrays.copyOf(blobContent, PARTIAL_LENGTH));
+
+        try (RegistryClient registryClient = createRegistryClient("alpine")) {
+            assertThrows(IOException.class, () -> registryClient.fetchBlob(blob, partialFile));
+        }
+        // The next attempt starts over rather than appending to a partial file that may not match the range it was sent
+        assertFalse(partialFile.exists());
+    }
+
+    @Test
+    public void testCorruptBlobRejected() throws IOException, IntegrationException {
+        byte[] corruptContent = blobContent.clone();
+        corruptContent[corruptContent.length / 2] ^= 0x01;
+        serveBlob(true, false, corruptContent);
+
+        try (RegistryClient registryClient = createRegistryClient("alpine")) {
+            IntegrationException e = assertThrows(IntegrationException.class, () -> registryClient.fetchBlob(blob, partialFile));
+            assertTrue(e.getMessage().contains("corrupt"));
+        }
+    }
+
+    @Test
+    public void testTransientStatusKeepsPartialFile() throws IOException, IntegrationException {
+        for (int statusCode : new int[] { 408, 429, 500, 503 }) {
+            serveStatus(statusCode);
+            FileUtils.writeByteArrayToFile(partialFile, Arrays.copyOf(blobContent, PARTIAL_LENGTH));
+
+            try (RegistryClient registryClient = createRegistryClient("alpine")) {
+                // Retryable, like a network error
+                assertThrows(IOException.class, () -> registryClient.fetchBlob(blob, partialFile));
+            }
+            assertArrayEquals(Arrays.copyOf(blobContent, PARTIAL_LENGTH), FileUtils.readFileToByteArray(partialFile));
+            registry.removeContext(String.format("/v2/alpine/blobs/%s", blobDigest));
+        }
+    }
+
+    @Test
+    public void testClientErrorStatusNotRetryable() throws IOException, IntegrationException {
+        serveStatus(404);
+
+        try (RegistryClient registryClient = createRegistryClient("alpine")) {
+            assertThrows(IntegrationException.class, () -> registryClient.fetchBlob(blob, partialFile));
+        }
+    }
+
+    @Test
+    public void testAnonymousBearerTokenFlow() throws IOException, IntegrationException, NoSuchAlgorithmException {
+        byte[] configContent = "{\"architecture\":\"amd64\",\"os\":\"linux\",\"rootfs\":{\"type\":\"layers\",\"diff_ids\":[]}}".getBytes(StandardCharsets.UTF_8);
+        ContentDescriptor config = new ContentDescriptor("application/vnd.oci.image.config.v1+json", digest(configContent), configContent.length);
+        byte[] manifestContent = String.format("{\"schemaVersion\":2,\"mediaType\":\"%s\",\"config\":%s,\"layers\":[%s]}", ImageManifest.MEDIA_TYPE_OCI_MANIFEST,
+            gson.toJson(config), gson.toJson(blob)).getBytes(StandardCharsets.UTF_8);
+        serveDockerHubStyleRegistry("library/alpine", "3.12", manifestContent);
+
+        try (RegistryClient registryClient = createRegistryClient("alpine")) {
+            ImageManifest manifest = registryClient.fetchImageManifest("3.12", "linux/amd64");
+            assertEquals(config.getDigest(), manifest.getConfig().getDigest());
+            // Like Docker Hub, the registry has the official image under library/
+            assertEquals("library/alpine", registryClient.getRepository());
+            assertEquals(blobContent.length, registryClient.fetchBlob(blob, partialFile));
+        }
+        assertArrayEquals(blobContent, FileUtils.readFileToByteArray(partialFile));
+        assertEquals(Arrays.asList("service=registry.test&scope=repository:alpine:pull", "service=registry.test&scope=repository:library/alpine:pull"), tokenRequests);
+    }
+
+    private RegistryClient createRegistryClient(String repository) throws IntegrationException {
+        return new RegistryClient(registryUrl, repository, 30000, 2, gson);
+    }
+
+    // Serves content as the blob; with honorRange, answers a range request with the rest of the blob (or, with wrongContentRange, the whole blob labeled as such)
+    private void serveBlob(boolean honorRange, boolean wrongContentRange, byte[] content) {
+        registry.createContext(String.format("/v2/alpine/blobs/%s", blobDigest), exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            Matcher rangeMatcher = RANGE_PATTERN.matcher(range == null ? "" : range);
+            if (range != null) {
+                rangeRequests.add(range);
+            }
+            if (honorRange && rangeMatcher.matches()) {
+                int offset = wrongContentRange ? 0 : Integer.parseInt(rangeMatcher.group(1));
+                exchange.getResponseHeaders().add("Content-Range", String.format("bytes %d-%d/%d", offset, content.length - 1, content.length));
+                respond(exchange, 206, Arrays.copyOfRange(content, offset, content.length));
+            } else {
+                respond(exchange, 200, content);
+            }
+        });
+    }
+
+    private void serveStatus(int statusCode) {
+        registry.createContext(String.format("/v2/alpine/blobs/%s", blobDigest), exchange -> respond(exchange, statusCode, "{\"errors\":[]}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Like Docker Hub: every request needs a token for the repository it names, and a repository that isn't there looks just like one the token doesn't cover
+    private void serveDockerHubStyleRegistry(String repository, String tag, byte[] manifestContent) {
+        String realm = String.format("%s/token", registryUrl);
+        registry.createContext("/token", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            tokenRequests.add(query);
+            String scope = query.substring(query.indexOf("scope=") + "scope=".length());
+            respond(exchange, 200, String.format("{\"token\":\"token-for-%s\"}", scope).getBytes(StandardCharsets.UTF_8));
+        });
+        registry.createContext("/v2/", exchange -> {
+            Matcher pathMatcher = REGISTRY_PATH_PATTERN.matcher(exchange.getRequestURI().getPath());
+            if (!pathMatcher.matches()) {
+                respond(exchange, 404, new byte[0]);
+                return;
+            }
+            String requestedRepository = pathMatcher.group(1);
+            String scope = String.format("repository:%s:pull", requestedRepository);
+            if (!String.format("Bearer token-for-%s", scope).equals(exchange.getRequestHeaders().getFirst("Authorization")) || !repository.equals(requestedRepository)) {
+                exchange.getResponseHeaders().add("WWW-Authenticate", String.format("Bearer realm=\"%s\",service=\"registry.test\",scope=\"%s\"", realm, scope));
+                respond(exchange, 401, new byte[0]);
+            } else if ("manifests".equals(pathMatcher.group(2)) && tag.equals(pathMatcher.group(3))) {
+                exchange.getResponseHeaders().add("Content-Type", ImageManifest.MEDIA_TYPE_OCI_MANIFEST);
+                respond(exchange, 200, manifestContent);
+            } else if ("blobs".equals(pathMatcher.group(2)) && blobDigest.equals(pathMatcher.group(3))) {
+                respond(exchange, 200, blobContent);
+            } else {
+                respond(exchange, 404, new byte[0]);
+            }
+        });
+    }
+
+    private void respond(HttpExchange exchange, int statusCode, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(statusCode, body.length == 0 ? -1 : body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+
+    private String digest(byte[] content) throws NoSuchAlgorithmException {
+        StringBuilder digest = new StringBuilder("sha256:");
+        for (byte digestByte : MessageDigest.getInstance("SHA-256").digest(content)) {
+            digest.append(String.format("%02x", digestByte));
+        }
+        return digest.toString();
+    }
+}
@@ -0,0 +1,95 @@
+package com.synopsys.integration.blackduck.dockerinspector.timing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class PhaseTimingsTest {
+
+    @Test
+    public void testPhaseTotals() {
+        PhaseTimings phaseTimings = new PhaseTimings();
+        try (RunningPhase savePhase = phaseTimings.start(Phase.SAVE)) {
+            savePhase.addBytes(100L);
+        }
+        try (RunningPhase savePhase = phaseTimings.start(Phase.SAVE)) {
+            savePhase.addBytes(50L);
+        }
+        try (RunningPhase healthCheckPhase = phaseTimings.start(Phase.SERVICE_HEALTH_CHECK)) {
+            healthCheckPhase.addRetry();
+            healthCheckPhase.addRetry();
+        }
+        try (RunningPhase pullPhase = phaseTimings.start(Phase.PULL)) {
+        }
+
+        Map<String, PhaseTiming> timings = phaseTimings.toMap();
+        List<String> phaseNames = new ArrayList<>(timings.keySet());
+        assertEquals(3, phaseNames.size());
+        assertEquals("pull", phaseNames.get(0));
+        assertEquals("save", phaseNames.get(1));
+        assertEquals("serviceHealthCheck", phaseNames.get(2));
+
+        assertEquals(2, timings.get("save").getCount());
+        assertEquals(150L, timings.get("save").getBytes());
+        assertEquals(0, timings.get("save").getRetries());
+        assertTrue(timings.get("save").getWallTimeMillis() >= 0L);
+        assertEquals(1, timings.get("serviceHealthCheck").getCount());
+        assertEquals(2, timings.get("serviceHealthCheck").getRetries());
+        assertFalse(timings.containsKey("upload"));
+    }
+
+    @Test
+    public void testTimingsArePerThread() throws InterruptedException {
+        PhaseTimer phaseTimer = new PhaseTimer();
+        PhaseTimings mainThreadTimings = phaseTimer.startTimings();
+        phaseTimer.start(Phase.GET_BDIO).close();
+
+        Thread otherThread = new Thread(() -> {
+            phaseTimer.startTimings();
+            phaseTimer.start(Phase.UPLOAD).close();
+        });
+        otherThread.start();
+        otherThread.join();
+
+        assertEquals(1, mainThreadTimings.toMap().size());
+        assertTrue(mainThreadTimings.toMap().containsKey("getBdio"));
+        assertNotSame(mainThreadTimings, new PhaseTimer().getTimings());
+    }
+
+    @Test
+    public void testUnboundThreadRecordsInRunTimings() throws InterruptedException {
+        PhaseTimer phaseTimer = new PhaseTimer();
+
+        Thread warmupThread = new Thread(() -> phaseTimer.start(Phase.SERVICE_START).close());
+        warmupThread.start();
+        warmupThread.join();
+
+        assertTrue(phaseTimer.getRunTimings().toMap().containsKey("serviceStart"));
+    }
+
+    @Test
+    public void testTaskRecordsInGivenTimings() throws InterruptedException {
+        PhaseTimer phaseTimer = new PhaseTimer();
+        PhaseTimings imageTimings = new PhaseTimings();
+
+        Thread poolThread = new Thread(() -> {
+            phaseTimer.withTimings(imageTimings, () -> phaseTimer.start(Phase.SAVE).close()).run();
+            phaseTimer.start(Phase.SERVICE_PULL).close();
+        });
+        poolThread.start();
+        poolThread.join();
+
+        assertEquals(1, imageTimings.toMap().size());
+        assertTrue(imageTimings.toMap().containsKey("save"));
+        // Once the task is done, the thread no longer records in the task's timings
+        assertEquals(1, phaseTimer.getRunTimings().toMap().size());
+        assertTrue(phaseTimer.getRunTimings().toMap().containsKey("servicePull"));
+    }
+}